@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import ru.yandex.practicum.filmorate.limit.ConcurrencyLimitFilter;
+import ru.yandex.practicum.filmorate.limit.GradientLimiter;
+
+/**
+ * Адаптивное ограничение одновременных запросов к /films и /users. Лимиты чтений и записей
+ * настраиваются отдельно: filmorate.limiter.reads.* и filmorate.limiter.writes.*
+ * (initial-limit, min-limit, max-limit).
+ */
+@Configuration
+@ConditionalOnProperty(name = "filmorate.limiter.enabled", havingValue = "true")
+public class ConcurrencyLimitConfig {
+
+    @Bean
+    public ConcurrencyLimitFilter concurrencyLimitFilter(
+            Environment environment, MeterRegistry meterRegistry,
+            @Value("${filmorate.limiter.retry-after-seconds:1}") int retryAfterSeconds) {
+        return new ConcurrencyLimitFilter(
+                limiter(environment, "reads", 100, 10, 500),
+                limiter(environment, "writes", 20, 2, 100),
+                retryAfterSeconds, meterRegistry);
+    }
+
+    private static GradientLimiter limiter(Environment environment, String endpointClass,
+                                           int initialLimit, int minLimit, int maxLimit) {
+        String prefix = "filmorate.limiter." + endpointClass + ".";
+        return new GradientLimiter(
+                environment.getProperty(prefix + "initial-limit", Integer.class, initialLimit),
+                environment.getProperty(prefix + "min-limit", Integer.class, minLimit),
+                environment.getProperty(prefix + "max-limit", Integer.class, maxLimit),
+                environment.getProperty("filmorate.limiter.smoothing", Double.class, 0.2),
+                environment.getProperty("filmorate.limiter.tolerance", Double.class, 1.5),
+                environment.getProperty("filmorate.limiter.long-window", Integer.class, 600));
+    }
+}
@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.Validator;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.yandex.practicum.filmorate.timing.ServerTimingAdvice;
+import ru.yandex.practicum.filmorate.timing.ServerTimingFilter;
+import ru.yandex.practicum.filmorate.timing.TimingValidator;
+
+/**
+ * Server-Timing для /films и /users: filmorate.server-timing.mode = header (по заголовку
+ * X-Debug-Timing), always или off.
+ */
+@Configuration
+@ConditionalOnExpression("'${filmorate.server-timing.mode:header}' != 'off'")
+public class ServerTimingConfig implements WebMvcConfigurer {
+    private final LocalValidatorFactoryBean validator;
+    private final ServerTimingAdvice serverTimingAdvice;
+
+    @Autowired
+    public ServerTimingConfig(LocalValidatorFactoryBean validator, ServerTimingAdvice serverTimingAdvice) {
+        this.validator = validator;
+        this.serverTimingAdvice = serverTimingAdvice;
+    }
+
+    @Bean
+    public ServerTimingFilter serverTimingFilter(
+            @Value("${filmorate.server-timing.mode:header}") String mode) {
+        return new ServerTimingFilter("always".equals(mode));
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(serverTimingAdvice).addPathPatterns("/films/**", "/users/**");
+    }
+
+    @Override
+    public Validator getValidator() {
+        return new TimingValidator(validator);
+    }
+}
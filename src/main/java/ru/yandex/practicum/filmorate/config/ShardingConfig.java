@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.filmorate.datasource.SqlStatistics;
+import ru.yandex.practicum.filmorate.datasource.SqlStatisticsDataSource;
+import ru.yandex.practicum.filmorate.storage.shard.ShardRouter;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * Пулы соединений шардов. Они не регистрируются как бины DataSource, чтобы основная БД
+ * (лента, outbox) по-прежнему настраивалась Spring Boot из spring.datasource.*.
+ * Запросы к шардам учитываются в статистике SQL, если она включена.
+ */
+@Configuration
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "sharded")
+public class ShardingConfig {
+
+    @Bean
+    public ShardRouter shardRouter(@Value("${filmorate.sharding.urls}") List<String> urls,
+                                   @Value("${filmorate.sharding.username:sa}") String username,
+                                   @Value("${filmorate.sharding.password:}") String password,
+                                   @Value("${filmorate.sharding.parallelism:8}") int parallelism,
+                                   ObjectProvider<SqlStatistics> sqlStatistics) {
+        SqlStatistics statistics = sqlStatistics.getIfAvailable();
+        List<DataSource> dataSources = urls.stream()
+                .map(String::trim)
+                .map(url -> (DataSource) DataSourceBuilder.create()
+                        .url(url)
+                        .username(username)
+                        .password(password)
+                        .build())
+                .map(dataSource -> statistics == null ? dataSource : SqlStatisticsDataSource.wrap(dataSource, statistics))
+                .toList();
+        return new ShardRouter(dataSources, parallelism);
+    }
+}
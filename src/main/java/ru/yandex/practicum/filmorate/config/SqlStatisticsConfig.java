@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import ru.yandex.practicum.filmorate.datasource.SqlStatistics;
+import ru.yandex.practicum.filmorate.datasource.SqlStatisticsDataSource;
+import ru.yandex.practicum.filmorate.datasource.SqlStatisticsEndpoint;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Статистика SQL по основной БД. Оборачивается бин dataSource; если это прокси-делегат
+ * (LazyConnectionDataSourceProxy при чтении с реплик), оборачивается его цель, чтобы ожидание
+ * соединения мерилось при фактическом получении соединения из пула.
+ */
+@Configuration
+@ConditionalOnProperty(name = "filmorate.sql.stats.enabled", havingValue = "true", matchIfMissing = true)
+public class SqlStatisticsConfig {
+
+    @Bean
+    public SqlStatistics sqlStatistics(@Value("${filmorate.sql.slow-threshold:PT0.5S}") Duration slowThreshold,
+                                       @Value("${filmorate.sql.stats.max-shapes:500}") int maxShapes,
+                                       @Value("${filmorate.sql.slow-log-values:false}") boolean logValues,
+                                       MeterRegistry meterRegistry) {
+        return new SqlStatistics(slowThreshold, maxShapes, logValues, meterRegistry);
+    }
+
+    @Bean
+    public SqlStatisticsEndpoint sqlStatisticsEndpoint(SqlStatistics sqlStatistics) {
+        return new SqlStatisticsEndpoint(sqlStatistics);
+    }
+
+    @Bean
+    public static BeanPostProcessor sqlStatisticsDataSourcePostProcessor(ObjectProvider<SqlStatistics> statistics) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!"dataSource".equals(beanName) || !(bean instanceof DataSource dataSource)) {
+                    return bean;
+                }
+                if (bean instanceof DelegatingDataSource delegating && delegating.getTargetDataSource() != null) {
+                    delegating.setTargetDataSource(
+                            SqlStatisticsDataSource.wrap(delegating.getTargetDataSource(), statistics.getObject()));
+                    return bean;
+                }
+                return SqlStatisticsDataSource.wrap(dataSource, statistics.getObject());
+            }
+        };
+    }
+}
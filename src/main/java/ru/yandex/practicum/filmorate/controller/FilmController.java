@@ -1,39 +1,69 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import ru.yandex.practicum.filmorate.dto.BatchResult;
+import ru.yandex.practicum.filmorate.dto.CursorPage;
+import ru.yandex.practicum.filmorate.dto.LikersStats;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.projection.FieldProjection;
+import ru.yandex.practicum.filmorate.service.FilmReadCoalescer;
 import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.validation.Create;
 import ru.yandex.practicum.filmorate.validation.Update;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Slf4j
 @RestController
 @RequestMapping("/films")
 @Validated
 public class FilmController {
+    static final String MISSING_IDS_HEADER = "X-Missing-Ids";
+
     private final FilmService filmService;
+    private final FilmReadCoalescer readCoalescer;
 
     @Autowired
-    public FilmController(FilmService filmService) {
+    public FilmController(FilmService filmService, FilmReadCoalescer readCoalescer) {
         this.filmService = filmService;
+        this.readCoalescer = readCoalescer;
     }
 
+    /**
+     * Без параметров возвращает все фильмы. С {@code ids=1,2,3} — только указанные, в порядке
+     * запроса; id, которых нет, перечисляются в заголовке {@value #MISSING_IDS_HEADER}.
+     * {@code fields=id,name} оставляет в ответе только перечисленные поля.
+     */
     @GetMapping
-    public Collection<Film> getAllFilms() {
-        log.info("Получение списка всех фильмов");
-        return filmService.getAllFilms();
+    public Collection<?> getAllFilms(@RequestParam(required = false) List<Integer> ids,
+                                     @RequestParam(required = false) String fields,
+                                     HttpServletResponse response) {
+        Set<String> selected = FieldProjection.FILM.parse(fields);
+        if (ids == null) {
+            log.info("Получение списка всех фильмов");
+            return FieldProjection.FILM.project(filmService.getAllFilms(selected.contains("genres")), selected);
+        }
+        log.info("Получение фильмов по списку id: {}", ids);
+        BatchResult<Film> result = filmService.getFilmsByIds(ids, selected.contains("genres"));
+        if (!result.getMissingIds().isEmpty()) {
+            response.setHeader(MISSING_IDS_HEADER, result.getMissingIds().stream()
+                    .map(String::valueOf)
+                    .collect(Collectors.joining(",")));
+        }
+        return FieldProjection.FILM.project(result.getItems(), selected);
     }
 
     @GetMapping("/{id}")
     public Film getFilmById(@PathVariable int id) {
         log.info("Получение фильма с id: {}", id);
-        return filmService.getFilmById(id);
+        return readCoalescer.getFilmById(id);
     }
 
     @PostMapping
@@ -48,6 +78,12 @@ public class FilmController {
         return filmService.updateFilm(film);
     }
 
+    @DeleteMapping("/{id}")
+    public void deleteFilm(@PathVariable int id) {
+        log.info("Удаление фильма с ID: {}", id);
+        filmService.deleteFilm(id);
+    }
+
     @PutMapping("/{id}/like/{userId}")
     public void addLike(@PathVariable int id, @PathVariable int userId) {
         log.info("Добавление лайка фильму {} от пользователя {}", id, userId);
@@ -60,9 +96,42 @@ public class FilmController {
         filmService.removeLike(id, userId);
     }
 
+    @GetMapping("/{id}/likes")
+    public CursorPage<Integer> getLikes(@PathVariable int id,
+                                        @RequestParam(required = false) String cursor,
+                                        @RequestParam(defaultValue = "100") int limit) {
+        log.info("Получение лайков фильма {}, курсор {}", id, cursor);
+        return filmService.getLikes(id, cursor, limit);
+    }
+
     @GetMapping("/popular")
-    public List<Film> getPopularFilms(@RequestParam(defaultValue = "10") int count) {
-        log.info("Получение {} популярных фильмов", count);
-        return filmService.getPopularFilms(count);
+    public Collection<?> getPopularFilms(@RequestParam(defaultValue = "10") int count,
+                                         @RequestParam(required = false) Integer genreId,
+                                         @RequestParam(required = false) Integer mpaId,
+                                         @RequestParam(required = false) Integer year,
+                                         @RequestParam(required = false) String fields) {
+        log.info("Получение {} популярных фильмов (жанр: {}, MPA: {}, год: {})", count, genreId, mpaId, year);
+        Set<String> selected = FieldProjection.FILM.parse(fields);
+        return FieldProjection.FILM.project(
+                readCoalescer.getPopularFilms(count, genreId, mpaId, year, selected.contains("genres")), selected);
+    }
+
+    @GetMapping("/trending")
+    public List<Film> getTrendingFilms(@RequestParam(defaultValue = "24h") String window,
+                                       @RequestParam(defaultValue = "10") int count) {
+        log.info("Получение {} трендовых фильмов за окно {}", count, window);
+        return filmService.getTrendingFilms(window, count);
+    }
+
+    @GetMapping("/trending/likers")
+    public LikersStats getTrendingLikers(@RequestParam(defaultValue = "24h") String window) {
+        log.info("Получение числа пользователей, ставивших лайки за окно {}", window);
+        return filmService.getTrendingLikers(window);
+    }
+
+    @GetMapping("/search")
+    public List<Film> searchFilms(@RequestParam String q, @RequestParam(defaultValue = "10") int limit) {
+        log.info("Поиск фильмов по запросу: {}", q);
+        return filmService.searchFilms(q, limit);
     }
 }
\ No newline at end of file
@@ -1,33 +1,67 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import ru.yandex.practicum.filmorate.dto.BatchResult;
+import ru.yandex.practicum.filmorate.dto.CursorPage;
+import ru.yandex.practicum.filmorate.dto.FriendsCount;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.projection.FieldProjection;
+import ru.yandex.practicum.filmorate.service.FeedService;
+import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
 import ru.yandex.practicum.filmorate.validation.Create;
 import ru.yandex.practicum.filmorate.validation.Update;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Slf4j
 @RestController
 @RequestMapping("/users")
 @Validated
 public class UserController {
+    static final String MISSING_IDS_HEADER = "X-Missing-Ids";
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final UserService userService;
+    private final FeedService feedService;
+    private final FilmService filmService;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, FeedService feedService, FilmService filmService) {
         this.userService = userService;
+        this.feedService = feedService;
+        this.filmService = filmService;
     }
 
+    /**
+     * Параметры ids и fields работают так же, как в {@code GET /films}.
+     */
     @GetMapping
-    public Collection<User> getAllUsers() {
-        log.info("Получение списка всех пользователей");
-        return userService.getAllUsers();
+    public Collection<?> getAllUsers(@RequestParam(required = false) List<Integer> ids,
+                                     @RequestParam(required = false) String fields,
+                                     HttpServletResponse response) {
+        Set<String> selected = FieldProjection.USER.parse(fields);
+        if (ids == null) {
+            log.info("Получение списка всех пользователей");
+            return FieldProjection.USER.project(userService.getAllUsers(), selected);
+        }
+        log.info("Получение пользователей по списку id: {}", ids);
+        BatchResult<User> result = userService.getUsersByIds(ids);
+        if (!result.getMissingIds().isEmpty()) {
+            response.setHeader(MISSING_IDS_HEADER, result.getMissingIds().stream()
+                    .map(String::valueOf)
+                    .collect(Collectors.joining(",")));
+        }
+        return FieldProjection.USER.project(result.getItems(), selected);
     }
 
     @GetMapping("/{id}")
@@ -60,15 +94,81 @@ public class UserController {
         userService.removeFriend(id, friendId);
     }
 
+    /**
+     * Друзья в порядке id. С параметром cursor или limit отдаётся одна страница, а курсор
+     * следующей приходит в заголовке {@value #NEXT_CURSOR_HEADER}; на последней странице его нет.
+     */
     @GetMapping("/{id}/friends")
-    public List<User> getFriends(@PathVariable int id) {
-        log.info("Получение списка друзей пользователя {}", id);
-        return userService.getFriends(id);
+    public Collection<?> getFriends(@PathVariable int id,
+                                    @RequestParam(required = false) String fields,
+                                    @RequestParam(required = false) String cursor,
+                                    @RequestParam(required = false) Integer limit,
+                                    HttpServletResponse response) {
+        log.info("Получение списка друзей пользователя {}, курсор {}", id, cursor);
+        Set<String> selected = FieldProjection.USER.parse(fields);
+        CursorPage<User> page = userService.getFriends(id, cursor, limit);
+        setNextCursor(response, page);
+        return FieldProjection.USER.project(page.getItems(), selected);
+    }
+
+    @GetMapping("/{id}/friends/count")
+    public FriendsCount getFriendsCount(@PathVariable int id) {
+        log.info("Получение числа друзей пользователя {}", id);
+        return new FriendsCount(id, userService.getFriendsCount(id));
     }
 
     @GetMapping("/{id}/friends/common/{otherId}")
-    public List<User> getCommonFriends(@PathVariable int id, @PathVariable int otherId) {
-        log.info("Получение общих друзей пользователей {} и {}", id, otherId);
-        return userService.getCommonFriends(id, otherId);
+    public List<User> getCommonFriends(@PathVariable int id,
+                                       @PathVariable int otherId,
+                                       @RequestParam(required = false) String cursor,
+                                       @RequestParam(required = false) Integer limit,
+                                       HttpServletResponse response) {
+        log.info("Получение общих друзей пользователей {} и {}, курсор {}", id, otherId, cursor);
+        CursorPage<User> page = userService.getCommonFriends(id, otherId, cursor, limit);
+        setNextCursor(response, page);
+        return page.getItems();
+    }
+
+    @GetMapping("/{id}/feed")
+    public CursorPage<FeedEvent> getFeed(@PathVariable int id,
+                                         @RequestParam(required = false) String cursor,
+                                         @RequestParam(defaultValue = "20") int limit) {
+        log.info("Получение ленты пользователя {}, курсор {}", id, cursor);
+        return feedService.getFeed(id, cursor, limit);
+    }
+
+    /**
+     * Кратчайшая цепочка друзей от id до otherId: первый элемент — id, последний — otherId.
+     */
+    @GetMapping("/{id}/path/{otherId}")
+    public List<User> getFriendPath(@PathVariable int id,
+                                    @PathVariable int otherId,
+                                    @RequestParam(defaultValue = "6") int maxDepth) {
+        log.info("Поиск цепочки друзей от пользователя {} до {}, глубина {}", id, otherId, maxDepth);
+        return userService.getFriendPath(id, otherId, maxDepth);
+    }
+
+    @GetMapping("/{id}/friends/popular-films")
+    public List<Film> getPopularAmongFriends(@PathVariable int id,
+                                             @RequestParam(defaultValue = "10") int limit) {
+        log.info("Получение фильмов, популярных среди друзей пользователя {}", id);
+        return filmService.getPopularAmongFriends(id, limit);
+    }
+
+    /**
+     * Фильмы, которые лайкнул пользователь, начиная с последнего лайка.
+     */
+    @GetMapping("/{id}/likes")
+    public CursorPage<Film> getLikedFilms(@PathVariable int id,
+                                          @RequestParam(required = false) String cursor,
+                                          @RequestParam(defaultValue = "20") int limit) {
+        log.info("Получение лайкнутых фильмов пользователя {}, курсор {}", id, cursor);
+        return filmService.getLikedFilms(id, cursor, limit);
+    }
+
+    private static void setNextCursor(HttpServletResponse response, CursorPage<?> page) {
+        if (page.getNextCursor() != null) {
+            response.setHeader(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
     }
-}
\ No newline at end of file
+}
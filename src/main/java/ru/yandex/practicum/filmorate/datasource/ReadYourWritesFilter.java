@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.datasource;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Read-your-writes для клиента: после записи ответ несёт время записи в cookie
+ * и заголовке X-Last-Write, и пока не истекло окно отставания реплик, запросы
+ * с этой отметкой читают из основной БД.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.replicas.enabled", havingValue = "true")
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    public static final String COOKIE = "filmorate-last-write";
+    public static final String HEADER = "X-Last-Write";
+
+    private final Clock clock;
+    private final Duration window;
+
+    @Autowired
+    public ReadYourWritesFilter(Clock clock,
+                                @Value("${filmorate.replicas.read-your-writes-window:PT5S}") Duration window) {
+        this.clock = clock;
+        this.window = window;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        // Сравнение без вычитания из отметки: при её отсутствии (Long.MIN_VALUE) разность переполнилась бы
+        boolean pinned = lastWrite(request) > clock.millis() - window.toMillis();
+        ReplicaRouting.open(pinned, () -> markWrite(response));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReplicaRouting.close();
+        }
+    }
+
+    private void markWrite(HttpServletResponse response) {
+        if (response.isCommitted()) {
+            return;
+        }
+        String now = String.valueOf(clock.millis());
+        Cookie cookie = new Cookie(COOKIE, now);
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge((int) Math.max(1, window.toSeconds()));
+        response.addCookie(cookie);
+        response.setHeader(HEADER, now);
+    }
+
+    private static long lastWrite(HttpServletRequest request) {
+        long lastWrite = parse(request.getHeader(HEADER));
+        if (request.getCookies() != null) {
+            for (Cookie cookie : request.getCookies()) {
+                if (COOKIE.equals(cookie.getName())) {
+                    lastWrite = Math.max(lastWrite, parse(cookie.getValue()));
+                }
+            }
+        }
+        return lastWrite;
+    }
+
+    private static long parse(String value) {
+        if (value == null) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.datasource;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Решение о маршрутизации на реплику для текущего потока. На реплику уходят только
+ * read-only транзакции и только если сессия не писала в последние несколько секунд:
+ * иначе пользователь мог бы не увидеть своё же изменение из-за отставания реплики.
+ */
+public final class ReplicaRouting {
+    private static final ThreadLocal<Session> SESSION = new ThreadLocal<>();
+    private static volatile boolean enabled;
+
+    private ReplicaRouting() {
+    }
+
+    /**
+     * true, если текущая транзакция читает с реплики. Кэши не должны сохранять такие данные:
+     * отставшая реплика вернула бы в кэш значение, которое уже сброшено записью.
+     */
+    public static boolean routesToReplica() {
+        if (!enabled
+                || !TransactionSynchronizationManager.isActualTransactionActive()
+                || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return false;
+        }
+        Session session = SESSION.get();
+        return session == null || !session.pinned;
+    }
+
+    /**
+     * Открывает сессию запроса; pinned — сессия недавно писала и читает только с основной БД.
+     * onFirstWrite вызывается при первой записи за запрос, чтобы клиент получил отметку о ней.
+     */
+    public static void open(boolean pinned, Runnable onFirstWrite) {
+        SESSION.set(new Session(pinned, onFirstWrite));
+    }
+
+    public static void close() {
+        SESSION.remove();
+    }
+
+    static void recordWrite() {
+        Session session = SESSION.get();
+        if (session == null || session.written) {
+            return;
+        }
+        session.written = true;
+        session.pinned = true;
+        session.onFirstWrite.run();
+    }
+
+    static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    private static final class Session {
+        private final Runnable onFirstWrite;
+        private boolean pinned;
+        private boolean written;
+
+        Session(boolean pinned, Runnable onFirstWrite) {
+            this.pinned = pinned;
+            this.onFirstWrite = onFirstWrite;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Выбирает пул для каждого нового соединения: read-only транзакции по кругу
+ * распределяются по репликам, всё остальное идёт в основную БД. Работает только
+ * за LazyConnectionDataSourceProxy — иначе соединение берётся до того, как известно,
+ * что транзакция read-only. Число выданных соединений по пулам — метрика
+ * filmorate.datasource.routed с тегом pool.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+    public static final String PRIMARY = "primary";
+
+    private final List<DataSource> pools = new ArrayList<>();
+    private final List<String> replicaKeys;
+    private final Map<String, Counter> routed = new HashMap<>();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, MeterRegistry meterRegistry) {
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("Не задано ни одной реплики");
+        }
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+
+        pools.add(primary);
+        pools.addAll(replicas.values());
+        replicaKeys = List.copyOf(replicas.keySet());
+        routed.put(PRIMARY, counter(meterRegistry, PRIMARY));
+        replicaKeys.forEach(key -> routed.put(key, counter(meterRegistry, key)));
+        ReplicaRouting.setEnabled(true);
+        log.info("Чтение с реплик включено: {}", replicaKeys);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String key;
+        if (ReplicaRouting.routesToReplica()) {
+            key = replicaKeys.get(Math.floorMod(nextReplica.getAndIncrement(), replicaKeys.size()));
+        } else {
+            key = PRIMARY;
+            if (TransactionSynchronizationManager.isActualTransactionActive()
+                    && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+                ReplicaRouting.recordWrite();
+            }
+        }
+        routed.get(key).increment();
+        return key;
+    }
+
+    @Override
+    public void close() {
+        ReplicaRouting.setEnabled(false);
+        for (DataSource pool : pools) {
+            if (pool instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    log.warn("Не удалось закрыть пул соединений", e);
+                }
+            }
+        }
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String pool) {
+        return Counter.builder("filmorate.datasource.routed")
+                .description("Соединения, выданные пулом")
+                .tag("pool", pool)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,277 @@
+package ru.yandex.practicum.filmorate.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Статистика SQL по форме запроса (текст с нормализованными пробелами и свёрнутыми списками IN):
+ * число выполнений, ошибки, гистограмма времени выполнения, прочитанные и изменённые строки.
+ * Время — только выполнение statement, без чтения ResultSet. Запросы дольше порога пишутся
+ * в лог вместе с параметрами: числа как есть, строки — только длиной, остальное — типом, чтобы
+ * в лог не попадали email, логины и имена; значения целиком пишутся только при logValues.
+ * Число форм ограничено, лишние учитываются под {@link #OTHER}.
+ */
+@Slf4j
+public class SqlStatistics {
+    public static final String OTHER = "<прочие>";
+
+    /**
+     * Верхние границы корзин гистограммы в микросекундах; последняя корзина — всё, что дольше.
+     */
+    static final long[] BUCKET_BOUNDS_MICROS = {
+            100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000,
+            100_000, 250_000, 500_000, 1_000_000, 2_500_000
+    };
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bIN\\s*\\(\\s*\\?(\\s*,\\s*\\?)+\\s*\\)");
+    private static final int MAX_LOGGED_PARAMETERS = 10;
+    private static final int MAX_LOGGED_VALUE_LENGTH = 32;
+
+    private final Map<String, ShapeStats> shapes = new ConcurrentHashMap<>();
+    private final Map<String, String> normalized = new ConcurrentHashMap<>();
+    private final long slowThresholdNanos;
+    private final int maxShapes;
+    private final boolean logValues;
+    private final Timer connectionWait;
+    private final LongAdder connectionWaitNanos = new LongAdder();
+    private final LongAdder connections = new LongAdder();
+    private final AtomicLong maxConnectionWaitNanos = new AtomicLong();
+
+    public SqlStatistics(Duration slowThreshold, int maxShapes, boolean logValues, MeterRegistry meterRegistry) {
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        this.maxShapes = maxShapes;
+        this.logValues = logValues;
+        this.connectionWait = Timer.builder("filmorate.datasource.connection.wait")
+                .description("Ожидание соединения из пула")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Форма запроса, под которой он учитывается.
+     */
+    public String shapeOf(String sql) {
+        String shape = normalized.get(sql);
+        if (shape == null) {
+            shape = IN_LIST.matcher(WHITESPACE.matcher(sql.strip()).replaceAll(" ")).replaceAll("IN (?...)");
+            if (normalized.size() < maxShapes * 4) {
+                normalized.put(sql, shape);
+            }
+        }
+        return shape;
+    }
+
+    public void recordConnectionWait(long nanos) {
+        connections.increment();
+        connectionWaitNanos.add(nanos);
+        maxConnectionWaitNanos.accumulateAndGet(nanos, Math::max);
+        connectionWait.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Учитывает выполнение statement; parameters нужны только для лога медленных запросов.
+     */
+    public void recordExecution(String shape, long nanos, long rowsUpdated, boolean error,
+                                Map<Integer, Object> parameters) {
+        ShapeStats stats = stats(shape);
+        stats.totalNanos.add(nanos);
+        stats.maxNanos.accumulateAndGet(nanos, Math::max);
+        stats.buckets[bucket(nanos / 1_000)].increment();
+        if (rowsUpdated > 0) {
+            stats.rowsUpdated.add(rowsUpdated);
+        }
+        if (error) {
+            stats.errors.increment();
+        }
+        if (nanos >= slowThresholdNanos) {
+            log.warn("Медленный запрос, {} мс: {} параметры: {}",
+                    nanos / 1_000_000, shape, summarize(parameters, logValues));
+        }
+    }
+
+    public void recordRowsRead(String shape, long rows) {
+        if (rows > 0) {
+            stats(shape).rowsRead.add(rows);
+        }
+    }
+
+    /**
+     * Первые limit форм, отсортированных по убыванию выбранного показателя.
+     */
+    public List<ShapeSummary> top(int limit, SortOrder order) {
+        return shapes.entrySet().stream()
+                .map(entry -> entry.getValue().summary(entry.getKey()))
+                .sorted(order.comparator)
+                .limit(limit)
+                .toList();
+    }
+
+    public ConnectionWaitSummary connectionWait() {
+        long count = connections.sum();
+        return new ConnectionWaitSummary(count,
+                count == 0 ? 0 : connectionWaitNanos.sum() / count / 1e6,
+                maxConnectionWaitNanos.get() / 1e6);
+    }
+
+    public void reset() {
+        shapes.clear();
+        connections.reset();
+        connectionWaitNanos.reset();
+        maxConnectionWaitNanos.set(0);
+    }
+
+    private ShapeStats stats(String shape) {
+        ShapeStats stats = shapes.get(shape);
+        if (stats != null) {
+            return stats;
+        }
+        if (shapes.size() >= maxShapes) {
+            return shapes.computeIfAbsent(OTHER, key -> new ShapeStats());
+        }
+        return shapes.computeIfAbsent(shape, key -> new ShapeStats());
+    }
+
+    static int bucket(long micros) {
+        for (int i = 0; i < BUCKET_BOUNDS_MICROS.length; i++) {
+            if (micros <= BUCKET_BOUNDS_MICROS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS_MICROS.length;
+    }
+
+    static String summarize(Map<Integer, Object> parameters, boolean logValues) {
+        if (parameters.isEmpty()) {
+            return "[]";
+        }
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        parameters.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .limit(MAX_LOGGED_PARAMETERS)
+                .forEach(entry -> joiner.add(entry.getKey() + "=" + describe(entry.getValue(), logValues)));
+        if (parameters.size() > MAX_LOGGED_PARAMETERS) {
+            joiner.add("… ещё " + (parameters.size() - MAX_LOGGED_PARAMETERS));
+        }
+        return joiner.toString();
+    }
+
+    private static String describe(Object value, boolean logValues) {
+        if (value == null) {
+            return "null";
+        }
+        if (!logValues && !(value instanceof Number) && !(value instanceof Boolean)) {
+            return value instanceof CharSequence text
+                    ? "<строка, " + text.length() + " симв.>"
+                    : "<" + value.getClass().getSimpleName() + ">";
+        }
+        String text = String.valueOf(value);
+        if (value instanceof CharSequence) {
+            text = text.length() > MAX_LOGGED_VALUE_LENGTH
+                    ? "'" + text.substring(0, MAX_LOGGED_VALUE_LENGTH) + "…'"
+                    : "'" + text + "'";
+        }
+        return text;
+    }
+
+    private static final class ShapeStats {
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder rowsRead = new LongAdder();
+        private final LongAdder rowsUpdated = new LongAdder();
+        private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_MICROS.length + 1];
+
+        private ShapeStats() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private ShapeSummary summary(String shape) {
+            long[] counts = new long[buckets.length];
+            long count = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+                count += counts[i];
+            }
+            long total = totalNanos.sum();
+            return new ShapeSummary(shape, count, errors.sum(),
+                    total / 1e6,
+                    count == 0 ? 0 : total / count / 1e6,
+                    percentileMillis(counts, count, 0.50),
+                    percentileMillis(counts, count, 0.99),
+                    maxNanos.get() / 1e6,
+                    rowsRead.sum(),
+                    rowsUpdated.sum(),
+                    histogram(counts));
+        }
+
+        /**
+         * Оценка сверху: граница корзины, в которую попадает перцентиль.
+         */
+        private double percentileMillis(long[] counts, long count, double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(percentile * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return i < BUCKET_BOUNDS_MICROS.length ? BUCKET_BOUNDS_MICROS[i] / 1e3 : maxNanos.get() / 1e6;
+                }
+            }
+            return maxNanos.get() / 1e6;
+        }
+
+        private static Map<String, Long> histogram(long[] counts) {
+            Map<String, Long> histogram = new LinkedHashMap<>();
+            for (int i = 0; i < counts.length; i++) {
+                String label = i < BUCKET_BOUNDS_MICROS.length
+                        ? "<=" + BUCKET_BOUNDS_MICROS[i] / 1e3 + "ms"
+                        : ">" + BUCKET_BOUNDS_MICROS[BUCKET_BOUNDS_MICROS.length - 1] / 1e3 + "ms";
+                histogram.put(label, counts[i]);
+            }
+            return histogram;
+        }
+    }
+
+    public enum SortOrder {
+        TOTAL(Comparator.comparingDouble(ShapeSummary::totalMs).reversed()),
+        MEAN(Comparator.comparingDouble(ShapeSummary::meanMs).reversed()),
+        P99(Comparator.comparingDouble(ShapeSummary::p99Ms).reversed()),
+        MAX(Comparator.comparingDouble(ShapeSummary::maxMs).reversed()),
+        COUNT(Comparator.comparingLong(ShapeSummary::executions).reversed());
+
+        private final Comparator<ShapeSummary> comparator;
+
+        SortOrder(Comparator<ShapeSummary> comparator) {
+            this.comparator = comparator;
+        }
+    }
+
+    public record ShapeSummary(String shape,
+                               long executions,
+                               long errors,
+                               double totalMs,
+                               double meanMs,
+                               double p50Ms,
+                               double p99Ms,
+                               double maxMs,
+                               long rowsRead,
+                               long rowsUpdated,
+                               Map<String, Long> histogram) {
+    }
+
+    public record ConnectionWaitSummary(long connections, double meanMs, double maxMs) {
+    }
+}
@@ -0,0 +1,150 @@
+package ru.yandex.practicum.filmorate.datasource;
+
+import ru.yandex.practicum.filmorate.timing.RequestTiming;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Обёртка над DataSource, которая передаёт в {@link SqlStatistics} время ожидания соединения,
+ * время выполнения каждого statement, число прочитанных и изменённых строк; время statement
+ * также идёт в Server-Timing текущего запроса. Сделана на
+ * динамических прокси, поэтому не зависит от пула и драйвера; обёртка закрываемого
+ * DataSource (пула) тоже закрываемая.
+ */
+public final class SqlStatisticsDataSource {
+
+    private SqlStatisticsDataSource() {
+    }
+
+    public static DataSource wrap(DataSource target, SqlStatistics statistics) {
+        Class<?>[] types = target instanceof AutoCloseable
+                ? new Class<?>[]{DataSource.class, AutoCloseable.class}
+                : new Class<?>[]{DataSource.class};
+        return (DataSource) proxy(types, target, (proxy, method, args) -> {
+            if (!method.getName().equals("getConnection")) {
+                return invoke(target, method, args);
+            }
+            long started = System.nanoTime();
+            Connection connection = (Connection) invoke(target, method, args);
+            statistics.recordConnectionWait(System.nanoTime() - started);
+            return wrap(connection, statistics);
+        });
+    }
+
+    private static Connection wrap(Connection target, SqlStatistics statistics) {
+        return (Connection) proxy(new Class<?>[]{Connection.class}, target, (proxy, method, args) -> {
+            Object result = invoke(target, method, args);
+            if (method.getName().equals("prepareStatement") && result instanceof PreparedStatement statement) {
+                return wrap(statement, statistics.shapeOf((String) args[0]), statistics);
+            }
+            if (method.getName().equals("createStatement") && result instanceof Statement statement) {
+                return wrap(statement, statistics);
+            }
+            return result;
+        });
+    }
+
+    private static PreparedStatement wrap(PreparedStatement target, String shape, SqlStatistics statistics) {
+        Map<Integer, Object> parameters = new HashMap<>();
+        return (PreparedStatement) proxy(new Class<?>[]{PreparedStatement.class}, target, (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                parameters.put(index, args[1]);
+                return invoke(target, method, args);
+            }
+            if (name.equals("clearParameters")) {
+                parameters.clear();
+            }
+            if (name.startsWith("execute") && args == null) {
+                return execute(target, method, null, shape, parameters, statistics);
+            }
+            if (name.equals("getResultSet")) {
+                return wrap((ResultSet) invoke(target, method, args), shape, statistics);
+            }
+            return invoke(target, method, args);
+        });
+    }
+
+    private static Statement wrap(Statement target, SqlStatistics statistics) {
+        return (Statement) proxy(new Class<?>[]{Statement.class}, target, (proxy, method, args) -> {
+            if (method.getName().startsWith("execute") && args != null && args[0] instanceof String sql) {
+                return execute(target, method, args, statistics.shapeOf(sql), Map.of(), statistics);
+            }
+            return invoke(target, method, args);
+        });
+    }
+
+    private static Object execute(Statement target, Method method, Object[] args, String shape,
+                                  Map<Integer, Object> parameters, SqlStatistics statistics) throws Throwable {
+        long started = System.nanoTime();
+        Object result;
+        try {
+            result = invoke(target, method, args);
+        } catch (Throwable e) {
+            long elapsed = System.nanoTime() - started;
+            statistics.recordExecution(shape, elapsed, 0, true, parameters);
+            RequestTiming.recordStatement(elapsed);
+            throw e;
+        }
+        long elapsed = System.nanoTime() - started;
+        RequestTiming.recordStatement(elapsed);
+        long updated = 0;
+        if (result instanceof Integer count) {
+            updated = count;
+        } else if (result instanceof Long count) {
+            updated = count;
+        } else if (result instanceof int[] counts) {
+            for (int count : counts) {
+                updated += Math.max(count, 0);
+            }
+        }
+        statistics.recordExecution(shape, elapsed, updated, false, parameters);
+        return result instanceof ResultSet resultSet ? wrap(resultSet, shape, statistics) : result;
+    }
+
+    private static ResultSet wrap(ResultSet target, String shape, SqlStatistics statistics) {
+        if (target == null) {
+            return null;
+        }
+        long[] rows = new long[1];
+        return (ResultSet) proxy(new Class<?>[]{ResultSet.class}, target, (proxy, method, args) -> {
+            Object result = invoke(target, method, args);
+            if (method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+                rows[0]++;
+            } else if (method.getName().equals("close")) {
+                statistics.recordRowsRead(shape, rows[0]);
+                rows[0] = 0;
+            }
+            return result;
+        });
+    }
+
+    private static Object proxy(Class<?>[] types, Object target, InvocationHandler handler) {
+        return Proxy.newProxyInstance(SqlStatisticsDataSource.class.getClassLoader(), types,
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> "SqlStatistics " + target;
+                    case "unwrap", "isWrapperFor" -> invoke(target, method, args);
+                    default -> handler.invoke(proxy, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
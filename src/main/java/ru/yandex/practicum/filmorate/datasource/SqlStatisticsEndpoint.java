@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.datasource;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * /actuator/sqlstats — самые медленные формы запросов. Параметры: limit (по умолчанию 20)
+ * и sort — total, mean, p99, max или count (по умолчанию total). DELETE сбрасывает статистику.
+ */
+@Endpoint(id = "sqlstats")
+public class SqlStatisticsEndpoint {
+    private static final int DEFAULT_LIMIT = 20;
+
+    private final SqlStatistics statistics;
+
+    public SqlStatisticsEndpoint(SqlStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    @ReadOperation
+    public Report report(@Nullable Integer limit, @Nullable String sort) {
+        SqlStatistics.SortOrder order = sort == null
+                ? SqlStatistics.SortOrder.TOTAL
+                : SqlStatistics.SortOrder.valueOf(sort.toUpperCase(Locale.ROOT));
+        return new Report(statistics.connectionWait(),
+                statistics.top(limit == null ? DEFAULT_LIMIT : limit, order));
+    }
+
+    @DeleteOperation
+    public void reset() {
+        statistics.reset();
+    }
+
+    public record Report(SqlStatistics.ConnectionWaitSummary connectionWait,
+                         List<SqlStatistics.ShapeSummary> statements) {
+    }
+}
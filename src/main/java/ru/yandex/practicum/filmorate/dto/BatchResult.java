@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Результат пакетного чтения по списку id: найденные объекты в порядке запроса
+ * и id, которых нет в хранилище.
+ */
+@Data
+@AllArgsConstructor
+public class BatchResult<T> {
+    private List<T> items;
+    private List<Integer> missingIds;
+
+    public static <T> BatchResult<T> inRequestOrder(Collection<Integer> requestedIds, Collection<T> found,
+                                                    Function<T, Integer> idOf) {
+        Map<Integer, T> byId = new HashMap<>();
+        for (T item : found) {
+            byId.put(idOf.apply(item), item);
+        }
+        List<T> items = new ArrayList<>(requestedIds.size());
+        List<Integer> missingIds = new ArrayList<>();
+        for (Integer id : requestedIds) {
+            T item = byId.get(id);
+            if (item != null) {
+                items.add(item);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        return new BatchResult<>(items, missingIds);
+    }
+}
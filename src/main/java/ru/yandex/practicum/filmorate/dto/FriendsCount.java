@@ -0,0 +1,11 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class FriendsCount {
+    private int userId;
+    private int count;
+}
@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class LikersStats {
+    private String window;
+    private long distinctLikers;
+    private boolean approximate;
+}
@@ -0,0 +1,187 @@
+package ru.yandex.practicum.filmorate.feed;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+import ru.yandex.practicum.filmorate.outbox.ChangeEntity;
+import ru.yandex.practicum.filmorate.outbox.ChangeEvent;
+import ru.yandex.practicum.filmorate.storage.feed.FeedStorage;
+import ru.yandex.practicum.filmorate.timing.RequestTiming;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Кэш последних событий каждого пользователя для сборки ленты при чтении.
+ * Запись пользователя заполняется из БД при первом обращении и затем дополняется
+ * писателем событий после каждой пачки. Чтобы заполнение не потеряло событие, записанное
+ * в БД одновременно с чтением, используются счётчики версий по полосам пользователей:
+ * если за время чтения версия полосы изменилась, результат в кэш не кладётся.
+ */
+@Slf4j
+@Component
+public class FeedCache {
+    private static final int STRIPES = 64;
+
+    private final FeedStorage feedStorage;
+    private final int eventsPerUser;
+    private final int maxUsers;
+    private final Map<Integer, UserEvents> users = new ConcurrentHashMap<>();
+    private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+
+    @Autowired
+    public FeedCache(FeedStorage feedStorage,
+                     @Value("${filmorate.feed.cache.events-per-user:100}") int eventsPerUser,
+                     @Value("${filmorate.feed.cache.max-users:100000}") int maxUsers) {
+        if (eventsPerUser < 1) {
+            throw new IllegalArgumentException("filmorate.feed.cache.events-per-user должен быть не меньше 1");
+        }
+        this.feedStorage = feedStorage;
+        this.eventsPerUser = eventsPerUser;
+        this.maxUsers = maxUsers;
+    }
+
+    public int getEventsPerUser() {
+        return eventsPerUser;
+    }
+
+    /**
+     * Возвращает записи кэша для пользователей, недостающие загружает из БД одним запросом.
+     * Пользователь может отсутствовать в результате, если его запись не удалось закэшировать.
+     */
+    public Map<Integer, UserEvents> get(Collection<Integer> userIds) {
+        Map<Integer, UserEvents> result = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (Integer userId : userIds) {
+            UserEvents events = users.get(userId);
+            if (events != null) {
+                result.put(userId, events);
+            } else {
+                missing.add(userId);
+            }
+        }
+        RequestTiming.recordCache(result.size(), missing.size());
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        long[] before = new long[missing.size()];
+        for (int i = 0; i < missing.size(); i++) {
+            before[i] = versions.get(stripe(missing.get(i)));
+        }
+        Map<Integer, List<FeedEvent>> loaded = feedStorage.findRecentByUsers(missing, eventsPerUser);
+        for (int i = 0; i < missing.size(); i++) {
+            int userId = missing.get(i);
+            long version = before[i];
+            List<FeedEvent> recent = loaded.getOrDefault(userId, List.of());
+            UserEvents events = users.compute(userId, (id, current) -> {
+                if (current != null) {
+                    return current;
+                }
+                return versions.get(stripe(id)) == version ? new UserEvents(recent, recent.size() < eventsPerUser) : null;
+            });
+            if (events != null) {
+                result.put(userId, events);
+            }
+        }
+        evictIfNeeded();
+        return result;
+    }
+
+    /**
+     * Дописывает события, уже сохранённые в БД. Вызывается только писателем событий.
+     */
+    public void appendAll(List<FeedEvent> events) {
+        Map<Integer, List<FeedEvent>> byUser = new HashMap<>();
+        for (FeedEvent event : events) {
+            byUser.computeIfAbsent(event.getUserId(), id -> new ArrayList<>()).add(event);
+        }
+        for (Map.Entry<Integer, List<FeedEvent>> entry : byUser.entrySet()) {
+            versions.incrementAndGet(stripe(entry.getKey()));
+            users.computeIfPresent(entry.getKey(), (id, current) -> {
+                entry.getValue().forEach(current::append);
+                return current;
+            });
+        }
+    }
+
+    public void invalidate(int userId) {
+        users.remove(userId);
+    }
+
+    @EventListener
+    public void onRemoteChange(ChangeEvent event) {
+        if (event.getEntityType() == ChangeEntity.FEED) {
+            versions.incrementAndGet(stripe(event.getEntityId()));
+            invalidate(event.getEntityId());
+        }
+    }
+
+    private void evictIfNeeded() {
+        int excess = users.size() - maxUsers;
+        if (excess <= 0) {
+            return;
+        }
+        Iterator<Integer> keys = users.keySet().iterator();
+        while (excess-- > 0 && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+        log.debug("Кэш ленты вытеснил записи, пользователей в кэше: {}", users.size());
+    }
+
+    private static int stripe(int userId) {
+        return Math.floorMod(userId, STRIPES);
+    }
+
+    /**
+     * Последние события пользователя, от новых к старым.
+     * {@code complete} означает, что в записи вся история пользователя.
+     */
+    public final class UserEvents {
+        private final ArrayDeque<FeedEvent> events = new ArrayDeque<>();
+        private boolean complete;
+
+        private UserEvents(List<FeedEvent> newestFirst, boolean complete) {
+            this.events.addAll(newestFirst);
+            this.complete = complete;
+        }
+
+        private synchronized void append(FeedEvent event) {
+            FeedEvent newest = events.peekFirst();
+            if (newest != null && newest.getEventId() >= event.getEventId()) {
+                // Событие уже попало в запись при заполнении из БД
+                return;
+            }
+            events.addFirst(event);
+            if (events.size() > eventsPerUser) {
+                events.removeLast();
+                complete = false;
+            }
+        }
+
+        /**
+         * Добавляет в {@code sink} до {@code limit} событий с номером меньше {@code beforeEventId}
+         * и возвращает номер, начиная с которого записи можно доверять: события с номером
+         * не меньше него в записи есть все.
+         */
+        public synchronized long collect(long beforeEventId, int limit, Collection<FeedEvent> sink) {
+            int taken = 0;
+            for (FeedEvent event : events) {
+                if (taken >= limit) {
+                    break;
+                }
+                if (event.getEventId() < beforeEventId) {
+                    sink.add(event);
+                    taken++;
+                }
+            }
+            // Неполная запись всегда заполнена до предела, а он не меньше 1, поэтому не пуста
+            return complete ? Long.MIN_VALUE : events.peekLast().getEventId();
+        }
+    }
+}
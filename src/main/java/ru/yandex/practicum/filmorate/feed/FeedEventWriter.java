@@ -0,0 +1,114 @@
+package ru.yandex.practicum.filmorate.feed;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+import ru.yandex.practicum.filmorate.storage.feed.FeedStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пишет события ленты пачками в отдельном потоке, чтобы запрос не ждал вставки в журнал.
+ * Если очередь переполнена, событие записывается синхронно в потоке запроса. Пачки пишутся
+ * строго по одной: номера событий выдаются и фиксируются в одном порядке, иначе курсор ленты
+ * пропустил бы событие с меньшим номером, зафиксированное позже, а кэш отбросил бы его.
+ */
+@Slf4j
+@Component
+public class FeedEventWriter {
+    private final FeedStorage feedStorage;
+    private final FeedCache feedCache;
+    private final BlockingQueue<FeedEvent> queue;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final Thread worker;
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final Object writeLock = new Object();
+    private volatile boolean running = true;
+
+    @Autowired
+    public FeedEventWriter(FeedStorage feedStorage, FeedCache feedCache,
+                           @Value("${filmorate.feed.writer.queue-capacity:10000}") int queueCapacity,
+                           @Value("${filmorate.feed.writer.batch-size:500}") int batchSize,
+                           @Value("${filmorate.feed.writer.flush-interval-ms:50}") long flushIntervalMillis) {
+        this.feedStorage = feedStorage;
+        this.feedCache = feedCache;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.worker = new Thread(this::run, "feed-writer");
+        this.worker.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        worker.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    public void publish(FeedEvent event) {
+        published.incrementAndGet();
+        if (!queue.offer(event)) {
+            log.warn("Очередь событий ленты переполнена, запись в потоке запроса");
+            write(List.of(event));
+        }
+    }
+
+    /**
+     * Ждёт, пока все опубликованные события будут записаны.
+     */
+    public void flush() throws InterruptedException {
+        long target = published.get();
+        while (processed.get() < target && worker.isAlive()) {
+            Thread.sleep(Math.max(1, flushIntervalMillis / 5));
+        }
+    }
+
+    private void run() {
+        List<FeedEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                FeedEvent first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        log.info("Запись событий ленты остановлена");
+    }
+
+    private void write(List<FeedEvent> batch) {
+        synchronized (writeLock) {
+            try {
+                feedStorage.addAll(batch);
+                feedCache.appendAll(batch);
+            } catch (RuntimeException e) {
+                log.error("Не удалось записать события ленты: {}", batch.size(), e);
+            } finally {
+                processed.addAndGet(batch.size());
+            }
+        }
+    }
+}
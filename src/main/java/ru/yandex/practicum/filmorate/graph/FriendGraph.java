@@ -0,0 +1,264 @@
+package ru.yandex.practicum.filmorate.graph;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.collection.IntIntHashMap;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.outbox.ChangeEntity;
+import ru.yandex.practicum.filmorate.outbox.ChangeEvent;
+import ru.yandex.practicum.filmorate.outbox.ChangeOperation;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Снимок графа дружбы в формате CSR для поиска кратчайшей цепочки друзей. Пользователи
+ * перенумерованы плотными индексами, исходящие и входящие рёбра лежат в двух парах массивов
+ * смещений и соседей. Снимок неизменяемый и заменяется целиком: изменения дружбы только
+ * помечают его устаревшим, а перестройка идёт по расписанию, поэтому ответ может отставать
+ * на интервал обновления.
+ */
+@Slf4j
+@Component
+public class FriendGraph {
+    private final UserStorage userStorage;
+    private final int maxVisited;
+    private final AtomicLong changes = new AtomicLong();
+    private volatile Snapshot snapshot = Snapshot.build(List.of());
+    private volatile long builtFrom = -1;
+
+    @Autowired
+    public FriendGraph(UserStorage userStorage,
+                       @Value("${filmorate.graph.max-visited:100000}") int maxVisited) {
+        this.userStorage = userStorage;
+        this.maxVisited = maxVisited;
+    }
+
+    public void markChanged() {
+        changes.incrementAndGet();
+    }
+
+    @EventListener
+    public void onRemoteChange(ChangeEvent event) {
+        if (event.getEntityType() == ChangeEntity.FRIENDSHIP
+                || (event.getEntityType() == ChangeEntity.USER && event.getOperation() == ChangeOperation.DELETE)) {
+            markChanged();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${filmorate.graph.refresh-interval-ms:5000}",
+            initialDelayString = "${filmorate.graph.refresh-interval-ms:5000}")
+    public void refresh() {
+        long version = changes.get();
+        if (version == builtFrom) {
+            return;
+        }
+        long started = System.nanoTime();
+        Snapshot built = Snapshot.build(userStorage.findFriendships());
+        snapshot = built;
+        builtFrom = version;
+        log.info("Снимок графа дружбы перестроен за {} мс: пользователей {}, рёбер {}",
+                (System.nanoTime() - started) / 1_000_000, built.ids.length, built.outTargets.length);
+    }
+
+    /**
+     * Кратчайшая цепочка друзей от from до to не длиннее maxDepth рёбер: каждый следующий
+     * пользователь — друг предыдущего. Пустой путь, если цепочки нет или сработал лимит
+     * посещённых вершин.
+     */
+    public PathSearch shortestPath(int from, int to, int maxDepth) {
+        return snapshot.search(from, to, maxDepth, maxVisited);
+    }
+
+    /**
+     * Результат поиска: путь из id пользователей (вместе с концами), число посещённых вершин
+     * и признак того, что поиск остановлен лимитом, а не исчерпанием графа.
+     */
+    public record PathSearch(List<Integer> path, int visited, boolean truncated) {
+    }
+
+    static final class Snapshot {
+        private final int[] ids;
+        private final int[] outOffsets;
+        private final int[] outTargets;
+        private final int[] inOffsets;
+        private final int[] inTargets;
+
+        private Snapshot(int[] ids, int[] outOffsets, int[] outTargets, int[] inOffsets, int[] inTargets) {
+            this.ids = ids;
+            this.outOffsets = outOffsets;
+            this.outTargets = outTargets;
+            this.inOffsets = inOffsets;
+            this.inTargets = inTargets;
+        }
+
+        static Snapshot build(List<Friendship> friendships) {
+            int edges = friendships.size();
+            int[] endpoints = new int[edges * 2];
+            for (int i = 0; i < edges; i++) {
+                endpoints[2 * i] = friendships.get(i).getUserId();
+                endpoints[2 * i + 1] = friendships.get(i).getFriendId();
+            }
+            int[] ids = Arrays.stream(endpoints).sorted().distinct().toArray();
+            int[] sources = new int[edges];
+            int[] targets = new int[edges];
+            for (int i = 0; i < edges; i++) {
+                sources[i] = Arrays.binarySearch(ids, endpoints[2 * i]);
+                targets[i] = Arrays.binarySearch(ids, endpoints[2 * i + 1]);
+            }
+            int[] outOffsets = new int[ids.length + 1];
+            int[] outTargets = new int[edges];
+            fill(sources, targets, outOffsets, outTargets);
+            int[] inOffsets = new int[ids.length + 1];
+            int[] inTargets = new int[edges];
+            fill(targets, sources, inOffsets, inTargets);
+            return new Snapshot(ids, outOffsets, outTargets, inOffsets, inTargets);
+        }
+
+        /**
+         * Раскладывает рёбра from → to по вершинам from: подсчёт степеней, префиксные суммы, запись.
+         */
+        private static void fill(int[] from, int[] to, int[] offsets, int[] adjacent) {
+            for (int vertex : from) {
+                offsets[vertex + 1]++;
+            }
+            for (int i = 1; i < offsets.length; i++) {
+                offsets[i] += offsets[i - 1];
+            }
+            int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+            for (int i = 0; i < from.length; i++) {
+                adjacent[next[from[i]]++] = to[i];
+            }
+        }
+
+        /**
+         * Двунаправленный поиск в ширину: на каждом шаге целиком раскрывается меньший из двух
+         * фронтов — вперёд по исходящим рёбрам от from, назад по входящим от to. Фронты —
+         * массивы индексов, посещённые вершины — битовые карты, родители — в хеш-таблице,
+         * поэтому память запроса растёт с числом посещённых вершин, а не с размером графа
+         * (кроме битовых карт, по биту на пользователя).
+         */
+        PathSearch search(int from, int to, int maxDepth, int maxVisited) {
+            if (from == to) {
+                return new PathSearch(List.of(from), 1, false);
+            }
+            int source = Arrays.binarySearch(ids, from);
+            int target = Arrays.binarySearch(ids, to);
+            if (source < 0 || target < 0 || maxDepth < 1) {
+                return new PathSearch(List.of(), 0, false);
+            }
+            Side forward = new Side(source, ids.length, outOffsets, outTargets);
+            Side backward = new Side(target, ids.length, inOffsets, inTargets);
+            int visited = 2;
+            while (forward.size > 0 && backward.size > 0 && forward.depth + backward.depth < maxDepth) {
+                Side expanding = forward.size <= backward.size ? forward : backward;
+                Side other = expanding == forward ? backward : forward;
+                int meeting = -1;
+                int best = Integer.MAX_VALUE;
+                int[] frontier = Arrays.copyOf(expanding.frontier, expanding.size);
+                expanding.size = 0;
+                for (int vertex : frontier) {
+                    for (int i = expanding.offsets[vertex]; i < expanding.offsets[vertex + 1]; i++) {
+                        int neighbour = expanding.adjacent[i];
+                        if (expanding.isVisited(neighbour)) {
+                            continue;
+                        }
+                        expanding.visit(neighbour, vertex);
+                        if (++visited > maxVisited) {
+                            return new PathSearch(List.of(), visited, true);
+                        }
+                        if (other.isVisited(neighbour)) {
+                            // Встреча может прийти из разных уровней другого фронта — берём самую короткую
+                            int length = other.distance(neighbour);
+                            if (length < best) {
+                                best = length;
+                                meeting = neighbour;
+                            }
+                        }
+                    }
+                }
+                expanding.depth++;
+                if (meeting >= 0) {
+                    return new PathSearch(path(forward, backward, meeting), visited, false);
+                }
+            }
+            boolean truncated = forward.size > 0 && backward.size > 0;
+            return new PathSearch(List.of(), visited, truncated);
+        }
+
+        private List<Integer> path(Side forward, Side backward, int meeting) {
+            List<Integer> path = new ArrayList<>();
+            for (int vertex = meeting; vertex != forward.root; vertex = forward.parent(vertex)) {
+                path.add(ids[vertex]);
+            }
+            path.add(ids[forward.root]);
+            Collections.reverse(path);
+            for (int vertex = meeting; vertex != backward.root; ) {
+                vertex = backward.parent(vertex);
+                path.add(ids[vertex]);
+            }
+            return path;
+        }
+    }
+
+    /**
+     * Одна сторона поиска: фронт текущего уровня, битовая карта посещённых и родители.
+     */
+    private static final class Side {
+        private final int root;
+        private final int[] offsets;
+        private final int[] adjacent;
+        private final long[] visited;
+        private final IntIntHashMap parents = new IntIntHashMap(64);
+        private int[] frontier = new int[16];
+        private int size;
+        private int depth;
+
+        Side(int root, int vertices, int[] offsets, int[] adjacent) {
+            this.root = root;
+            this.offsets = offsets;
+            this.adjacent = adjacent;
+            this.visited = new long[(vertices + 63) >>> 6];
+            visit(root, root);
+        }
+
+        boolean isVisited(int vertex) {
+            return (visited[vertex >>> 6] & (1L << vertex)) != 0;
+        }
+
+        /**
+         * Отмечает вершину посещённой и добавляет её в фронт; индексы в таблице родителей
+         * сдвинуты на единицу, потому что ключ 0 в ней зарезервирован.
+         */
+        void visit(int vertex, int parent) {
+            visited[vertex >>> 6] |= 1L << vertex;
+            parents.put(vertex + 1, parent + 1);
+            if (size == frontier.length) {
+                frontier = Arrays.copyOf(frontier, size * 2);
+            }
+            frontier[size++] = vertex;
+        }
+
+        int parent(int vertex) {
+            return parents.get(vertex + 1) - 1;
+        }
+
+        int distance(int vertex) {
+            int distance = 0;
+            for (int current = vertex; current != root; current = parent(current)) {
+                distance++;
+            }
+            return distance;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name(FilmorateEvents.PREFIX + "CacheLookup")
+@Label("Обращение к кэшу")
+@Category({FilmorateEvents.CATEGORY, "Кэш"})
+@Description("Чтение из кэша по ключу; при промахе длительность включает загрузку")
+@StackTrace(false)
+public class CacheLookupEvent extends Event {
+    @Label("Кэш")
+    public String cache;
+
+    @Label("Ключ")
+    public String key;
+
+    @Label("Попадание")
+    public boolean hit;
+}
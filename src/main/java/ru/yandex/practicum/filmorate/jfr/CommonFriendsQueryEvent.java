@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name(FilmorateEvents.PREFIX + "CommonFriendsQuery")
+@Label("Общие друзья")
+@Category({FilmorateEvents.CATEGORY, "Запросы"})
+@Description("Поиск общих друзей двух пользователей")
+@StackTrace(false)
+public class CommonFriendsQueryEvent extends Event {
+    @Label("Id пользователя")
+    public int userId;
+
+    @Label("Id другого пользователя")
+    public int otherId;
+
+    @Label("Строк")
+    public int rows;
+}
@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name(FilmorateEvents.PREFIX + "FilmLoad")
+@Label("Загрузка фильма")
+@Category({FilmorateEvents.CATEGORY, "Хранилище"})
+@Description("Чтение фильма с жанрами из БД")
+@StackTrace(false)
+public class FilmLoadEvent extends Event {
+    @Label("Id фильма")
+    public int filmId;
+
+    @Label("Найден")
+    public boolean found;
+
+    @Label("Жанров")
+    public int genres;
+}
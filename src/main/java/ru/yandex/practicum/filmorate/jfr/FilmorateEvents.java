@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.jfr;
+
+/**
+ * События JDK Flight Recorder приложения. Включены по умолчанию и записываются вместе
+ * с остальными событиями JFR (GC, блокировки), когда идёт запись, например
+ * {@code -XX:StartFlightRecording}. Без записи begin/commit ничего не стоят, а поля
+ * заполняются только после {@code shouldCommit()}. Отключить отдельные события можно
+ * в настройках записи по имени с префиксом {@value #PREFIX}.
+ */
+public final class FilmorateEvents {
+    public static final String PREFIX = "ru.yandex.practicum.filmorate.";
+    public static final String CATEGORY = "Filmorate";
+
+    private FilmorateEvents() {
+    }
+}
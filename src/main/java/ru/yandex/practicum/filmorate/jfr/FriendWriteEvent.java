@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name(FilmorateEvents.PREFIX + "FriendWrite")
+@Label("Запись дружбы")
+@Category({FilmorateEvents.CATEGORY, "Записи"})
+@Description("Добавление или удаление друга вместе с записью в ленту")
+@StackTrace(false)
+public class FriendWriteEvent extends Event {
+    @Label("Id пользователя")
+    public int userId;
+
+    @Label("Id друга")
+    public int friendId;
+
+    @Label("Операция")
+    @Description("add или remove")
+    public String operation;
+
+    @Label("Изменено")
+    @Description("false, если дружба уже была или её не было")
+    public boolean changed;
+}
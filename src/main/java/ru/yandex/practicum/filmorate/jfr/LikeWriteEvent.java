@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name(FilmorateEvents.PREFIX + "LikeWrite")
+@Label("Запись лайка")
+@Category({FilmorateEvents.CATEGORY, "Записи"})
+@Description("Добавление или удаление лайка вместе с обновлением индексов и ленты")
+@StackTrace(false)
+public class LikeWriteEvent extends Event {
+    @Label("Id фильма")
+    public int filmId;
+
+    @Label("Id пользователя")
+    public int userId;
+
+    @Label("Операция")
+    @Description("add или remove")
+    public String operation;
+
+    @Label("Изменено")
+    @Description("false, если лайк уже был или его не было")
+    public boolean changed;
+}
@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name(FilmorateEvents.PREFIX + "PopularQuery")
+@Label("Популярные фильмы")
+@Category({FilmorateEvents.CATEGORY, "Запросы"})
+@Description("Выбор популярных фильмов: в сервисе по индексу или в БД")
+@StackTrace(false)
+public class PopularQueryEvent extends Event {
+    @Label("Источник")
+    @Description("leaderboard, sketch или db")
+    public String source;
+
+    @Label("Запрошено")
+    public int count;
+
+    @Label("Жанр")
+    @Description("0 — без фильтра")
+    public int genreId;
+
+    @Label("Рейтинг MPA")
+    @Description("0 — без фильтра")
+    public int mpaId;
+
+    @Label("Год")
+    @Description("0 — без фильтра")
+    public int year;
+
+    @Label("Строк")
+    public int rows;
+}
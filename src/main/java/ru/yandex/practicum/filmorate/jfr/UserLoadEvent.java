@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name(FilmorateEvents.PREFIX + "UserLoad")
+@Label("Загрузка пользователя")
+@Category({FilmorateEvents.CATEGORY, "Хранилище"})
+@Description("Чтение пользователя из БД")
+@StackTrace(false)
+public class UserLoadEvent extends Event {
+    @Label("Id пользователя")
+    public int userId;
+
+    @Label("Найден")
+    public boolean found;
+}
@@ -0,0 +1,96 @@
+package ru.yandex.practicum.filmorate.limit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Ограничивает число одновременных запросов к /films и /users до того, как они займут
+ * поток и соединение из пула. Чтения (GET, HEAD) и записи — лайки, дружба, изменения
+ * фильмов и пользователей — ограничиваются отдельными {@link GradientLimiter}, чтобы
+ * всплеск одних не отнимал места у других. Сверх лимита запрос сразу получает 503
+ * с Retry-After.
+ */
+@Slf4j
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+    private static final String REJECTED_BODY =
+            "{\"error\":\"Service Unavailable\",\"message\":\"Сервер перегружен, повторите запрос позже\"}";
+
+    private final GradientLimiter reads;
+    private final GradientLimiter writes;
+    private final Counter readsRejected;
+    private final Counter writesRejected;
+    private final String retryAfter;
+
+    public ConcurrencyLimitFilter(GradientLimiter reads, GradientLimiter writes, int retryAfterSeconds,
+                                  MeterRegistry meterRegistry) {
+        this.reads = reads;
+        this.writes = writes;
+        this.readsRejected = register(meterRegistry, "reads", reads);
+        this.writesRejected = register(meterRegistry, "writes", writes);
+        this.retryAfter = String.valueOf(retryAfterSeconds);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !(path.startsWith("/films") || path.startsWith("/users"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean read = "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+        GradientLimiter limiter = read ? reads : writes;
+        if (!limiter.tryAcquire()) {
+            (read ? readsRejected : writesRejected).increment();
+            log.debug("Запрос {} {} отклонён: лимит {} исчерпан", request.getMethod(), request.getRequestURI(),
+                    limiter.limit());
+            reject(response);
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            limiter.release(System.nanoTime() - started);
+        }
+    }
+
+    private void reject(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader("Retry-After", retryAfter);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(REJECTED_BODY);
+    }
+
+    private static Counter register(MeterRegistry meterRegistry, String endpointClass, GradientLimiter limiter) {
+        Gauge.builder("filmorate.limiter.limit", limiter, GradientLimiter::limit)
+                .description("Текущий лимит одновременных запросов")
+                .tag("class", endpointClass)
+                .register(meterRegistry);
+        Gauge.builder("filmorate.limiter.inflight", limiter, GradientLimiter::inFlight)
+                .description("Запросы, выполняющиеся сейчас")
+                .tag("class", endpointClass)
+                .register(meterRegistry);
+        return Counter.builder("filmorate.limiter.rejected")
+                .description("Запросы, отклонённые с 503 из-за лимита")
+                .tag("class", endpointClass)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,99 @@
+package ru.yandex.practicum.filmorate.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Адаптивный лимит одновременных запросов в духе gradient-алгоритма. Время ответа
+ * сравнивается с долгим средним: пока оно не растёт, лимит растёт на корень из себя, а когда
+ * запросы начинают ждать в очередях (пула соединений, блокировок), лимит уменьшается
+ * пропорционально росту времени, но не больше чем вдвое за замер. Рост лимита идёт только
+ * под нагрузкой — если занято меньше половины лимита, замер его не меняет.
+ */
+public class GradientLimiter {
+    private static final int WARMUP_SAMPLES = 10;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double DRIFT_RATIO = 2.0;
+    private static final double DRIFT_DECAY = 0.95;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final double tolerance;
+    private final int longWindow;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+    private double longRtt;
+    private int samples;
+
+    /**
+     * @param smoothing  доля нового значения при сглаживании лимита, от 0 до 1
+     * @param tolerance  во сколько раз время ответа может превысить долгое среднее без снижения лимита
+     * @param longWindow число замеров, по которому усредняется долгое время ответа
+     */
+    public GradientLimiter(int initialLimit, int minLimit, int maxLimit, double smoothing, double tolerance,
+                           int longWindow) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Должно выполняться 1 <= min <= initial <= max: "
+                    + minLimit + ", " + initialLimit + ", " + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.tolerance = tolerance;
+        this.longWindow = longWindow;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * Занимает место под запрос; false, если лимит исчерпан. После успешного вызова
+     * обязателен {@link #release(long)}.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Освобождает место и учитывает время ответа запроса.
+     */
+    public void release(long rttNanos) {
+        int busy = inFlight.getAndDecrement();
+        onSample(Math.max(1, rttNanos), busy);
+    }
+
+    public int limit() {
+        return (int) limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void onSample(long rtt, int busy) {
+        if (samples < WARMUP_SAMPLES) {
+            longRtt = (longRtt * samples + rtt) / (samples + 1);
+            samples++;
+            return;
+        }
+        longRtt += (rtt - longRtt) / longWindow;
+        if (longRtt / rtt > DRIFT_RATIO) {
+            // Долгое среднее осталось от прошлой перегрузки — быстро возвращаем его вниз
+            longRtt *= DRIFT_DECAY;
+        }
+        double current = limit;
+        if (busy < current / 2) {
+            return;
+        }
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, tolerance * longRtt / rtt));
+        double target = current * gradient + Math.sqrt(current);
+        double smoothed = current * (1 - smoothing) + target * smoothing;
+        limit = Math.max(minLimit, Math.min(maxLimit, smoothed));
+    }
+}
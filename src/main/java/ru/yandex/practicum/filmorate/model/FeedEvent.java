@@ -0,0 +1,27 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+public class FeedEvent {
+    private Long eventId;
+    private Integer userId;
+    private FeedEventType eventType;
+    private FeedOperation operation;
+    private Integer entityId;
+    private Instant timestamp;
+
+    public FeedEvent() {
+    }
+
+    public FeedEvent(Integer userId, FeedEventType eventType, FeedOperation operation,
+                     Integer entityId, Instant timestamp) {
+        this.userId = userId;
+        this.eventType = eventType;
+        this.operation = operation;
+        this.entityId = entityId;
+        this.timestamp = timestamp;
+    }
+}
@@ -1,6 +1,8 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import ru.yandex.practicum.filmorate.validation.Create;
 import ru.yandex.practicum.filmorate.validation.ReleaseDateConstraint;
@@ -12,6 +14,7 @@ import java.time.LocalDate;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 @Data
 @JsonIgnoreProperties(ignoreUnknown = true)
@@ -38,14 +41,29 @@ public class Film {
 
     private Set<Genre> genres = new LinkedHashSet<>();
 
+    /**
+     * Id лайкнувших пользователей; заполняется только хранилищем в памяти и в ответы не попадает,
+     * список отдаётся постранично через {@code GET /films/{id}/likes}.
+     */
+    @JsonIgnore
     private Set<Integer> likes = new HashSet<>();
 
-    public void addLike(Integer userId) {
-        likes.add(userId);
+    /**
+     * Счётчик из БД; если хранилище его не заполнило, берётся размер {@link #likes}.
+     */
+    private Integer likesCount;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public int getLikesCount() {
+        return likesCount != null ? likesCount : likes.size();
+    }
+
+    public boolean addLike(Integer userId) {
+        return likes.add(userId);
     }
 
-    public void removeLike(Integer userId) {
-        likes.remove(userId);
+    public boolean removeLike(Integer userId) {
+        return likes.remove(userId);
     }
 
     public void addGenre(Genre genre) {
@@ -55,4 +73,24 @@ public class Film {
     public void removeGenre(Genre genre) {
         genres.remove(genre);
     }
+
+    /**
+     * Копия с собственными MPA, жанрами и множеством лайков: хранилища в памяти и кэши отдают
+     * копии, чтобы изменения у вызывающего кода не попадали в общее состояние.
+     */
+    public Film copy() {
+        Film copy = new Film();
+        copy.setId(id);
+        copy.setName(name);
+        copy.setDescription(description);
+        copy.setReleaseDate(releaseDate);
+        copy.setDuration(duration);
+        copy.setMpa(mpa == null ? null : new Mpa(mpa.getId(), mpa.getName()));
+        copy.setGenres(genres == null ? null : genres.stream()
+                .map(genre -> new Genre(genre.getId(), genre.getName()))
+                .collect(Collectors.toCollection(LinkedHashSet::new)));
+        copy.setLikes(likes == null ? new HashSet<>() : new HashSet<>(likes));
+        copy.setLikesCount(likesCount);
+        return copy;
+    }
 }
\ No newline at end of file
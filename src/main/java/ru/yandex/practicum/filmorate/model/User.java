@@ -40,4 +40,18 @@ public class User {
     public void removeFriend(Integer friendId) {
         friends.remove(friendId);
     }
+
+    /**
+     * Копия с собственным множеством друзей, см. {@link Film#copy()}.
+     */
+    public User copy() {
+        User copy = new User();
+        copy.setId(id);
+        copy.setEmail(email);
+        copy.setLogin(login);
+        copy.setName(name);
+        copy.setBirthday(birthday);
+        copy.setFriends(friends == null ? new HashSet<>() : new HashSet<>(friends));
+        return copy;
+    }
 }
\ No newline at end of file
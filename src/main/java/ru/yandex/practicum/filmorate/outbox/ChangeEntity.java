@@ -0,0 +1,9 @@
+package ru.yandex.practicum.filmorate.outbox;
+
+public enum ChangeEntity {
+    FILM,
+    USER,
+    LIKE,
+    FRIENDSHIP,
+    FEED
+}
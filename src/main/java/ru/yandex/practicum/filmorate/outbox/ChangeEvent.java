@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.outbox;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Запись outbox об изменении данных. Для лайка {@code entityId} — фильм, {@code relatedId} — пользователь,
+ * для дружбы — пользователь и друг, для ленты — автор событий.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeEvent {
+    private long eventId;
+    private ChangeEntity entityType;
+    private int entityId;
+    private Integer relatedId;
+    private ChangeOperation operation;
+    private String nodeId;
+    private Instant occurredAt;
+}
@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.outbox;
+
+public enum ChangeOperation {
+    CREATE,
+    UPDATE,
+    DELETE
+}
@@ -0,0 +1,104 @@
+package ru.yandex.practicum.filmorate.outbox;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.outbox.OutboxStorage;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Читает outbox по возрастанию номера и публикует изменения, сделанные другими узлами,
+ * как события приложения, по которым локальные кэши сбрасывают или перечитывают данные.
+ * <p>
+ * Номера выдаются при вставке, а видны после фиксации транзакции, поэтому строка с меньшим
+ * номером может появиться позже строки с большим. Пропущенные номера запоминаются и
+ * перечитываются до {@code gap-timeout}, после чего считаются откатанными транзакциями.
+ */
+@Slf4j
+@Component
+public class OutboxPoller {
+    private static final int MAX_TRACKED_GAP = 1000;
+
+    private final OutboxStorage outboxStorage;
+    private final ApplicationEventPublisher publisher;
+    private final Clock clock;
+    private final int batchSize;
+    private final long gapTimeoutMillis;
+    private final Duration retention;
+    private final Map<Long, Long> gaps = new TreeMap<>();
+    private Long highestSeen;
+
+    @Autowired
+    public OutboxPoller(OutboxStorage outboxStorage,
+                        ApplicationEventPublisher publisher,
+                        Clock clock,
+                        @Value("${filmorate.outbox.batch-size:500}") int batchSize,
+                        @Value("${filmorate.outbox.gap-timeout-ms:10000}") long gapTimeoutMillis,
+                        @Value("${filmorate.outbox.retention:PT24H}") Duration retention) {
+        this.outboxStorage = outboxStorage;
+        this.publisher = publisher;
+        this.clock = clock;
+        this.batchSize = batchSize;
+        this.gapTimeoutMillis = gapTimeoutMillis;
+        this.retention = retention;
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.outbox.poll-interval-ms:200}")
+    public synchronized void poll() {
+        if (highestSeen == null) {
+            // Узел только запустился: состояние кэшей строится из БД, история outbox не нужна
+            highestSeen = outboxStorage.lastEventId();
+            log.info("Чтение outbox начато с события {}", highestSeen);
+            return;
+        }
+        long now = clock.millis();
+        if (!gaps.isEmpty()) {
+            for (ChangeEvent event : outboxStorage.findByIds(new ArrayList<>(gaps.keySet()))) {
+                gaps.remove(event.getEventId());
+                dispatch(event);
+            }
+            gaps.values().removeIf(noticedAt -> now - noticedAt > gapTimeoutMillis);
+        }
+
+        List<ChangeEvent> events;
+        do {
+            events = outboxStorage.findAfter(highestSeen, batchSize);
+            for (ChangeEvent event : events) {
+                long missing = event.getEventId() - highestSeen - 1;
+                if (missing > 0 && missing <= MAX_TRACKED_GAP) {
+                    for (long id = highestSeen + 1; id < event.getEventId(); id++) {
+                        gaps.put(id, now);
+                    }
+                }
+                highestSeen = event.getEventId();
+                dispatch(event);
+            }
+        } while (events.size() == batchSize);
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.outbox.cleanup-interval-ms:3600000}")
+    public void cleanup() {
+        int deleted = outboxStorage.deleteOlderThan(clock.instant().minus(retention));
+        if (deleted > 0) {
+            log.info("Удалено устаревших записей outbox: {}", deleted);
+        }
+    }
+
+    private void dispatch(ChangeEvent event) {
+        if (outboxStorage.getNodeId().equals(event.getNodeId())) {
+            // Свои изменения узел уже применил к кэшам при записи
+            return;
+        }
+        try {
+            publisher.publishEvent(event);
+        } catch (RuntimeException e) {
+            log.error("Ошибка обработки события outbox {}", event.getEventId(), e);
+        }
+    }
+}
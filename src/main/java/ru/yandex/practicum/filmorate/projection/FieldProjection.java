@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.projection;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Проекция списков по параметру {@code fields=id,name}: в JSON попадают только перечисленные
+ * поля в порядке их объявления. Без параметра объекты отдаются целиком.
+ */
+public final class FieldProjection<T> {
+    public static final FieldProjection<Film> FILM = new FieldProjection<Film>()
+            .field("id", Film::getId)
+            .field("name", Film::getName)
+            .field("description", Film::getDescription)
+            .field("releaseDate", Film::getReleaseDate)
+            .field("duration", Film::getDuration)
+            .field("mpa", Film::getMpa)
+            .field("genres", Film::getGenres)
+            .field("likesCount", Film::getLikesCount);
+
+    public static final FieldProjection<User> USER = new FieldProjection<User>()
+            .field("id", User::getId)
+            .field("email", User::getEmail)
+            .field("login", User::getLogin)
+            .field("name", User::getName)
+            .field("birthday", User::getBirthday)
+            .field("friends", User::getFriends);
+
+    private final Map<String, Function<T, Object>> fields = new LinkedHashMap<>();
+
+    private FieldProjection() {
+    }
+
+    private FieldProjection<T> field(String name, Function<T, Object> getter) {
+        fields.put(name, getter);
+        return this;
+    }
+
+    /**
+     * Разбирает значение параметра fields; null означает все поля, неизвестное поле — ошибка.
+     */
+    public Set<String> parse(String value) {
+        if (value == null) {
+            return fields.keySet();
+        }
+        Set<String> selected = new HashSet<>();
+        for (String name : value.split(",")) {
+            String field = name.strip();
+            if (field.isEmpty()) {
+                continue;
+            }
+            if (!fields.containsKey(field)) {
+                throw new ValidationException("Неизвестное поле: " + field + ", допустимые: " + fields.keySet());
+            }
+            selected.add(field);
+        }
+        if (selected.isEmpty()) {
+            throw new ValidationException("Не указано ни одного поля");
+        }
+        return selected;
+    }
+
+    public Collection<?> project(Collection<T> items, Set<String> selected) {
+        if (selected.containsAll(fields.keySet())) {
+            return items;
+        }
+        List<Map<String, Object>> projected = new ArrayList<>(items.size());
+        for (T item : items) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            fields.forEach((name, getter) -> {
+                if (selected.contains(name)) {
+                    values.put(name, getter.apply(item));
+                }
+            });
+            projected.add(values);
+        }
+        return projected;
+    }
+}
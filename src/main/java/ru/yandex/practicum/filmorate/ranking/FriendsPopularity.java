@@ -0,0 +1,239 @@
+package ru.yandex.practicum.filmorate.ranking;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.collection.IntIntHashMap;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.outbox.ChangeEvent;
+import ru.yandex.practicum.filmorate.outbox.ChangeOperation;
+import ru.yandex.practicum.filmorate.storage.cache.ReadThroughCache;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Популярность фильмов среди друзей пользователя. В памяти лежат списки смежности дружбы
+ * в обе стороны и множества лайкнутых фильмов каждого пользователя — отсортированные int[],
+ * которые заменяются целиком при изменении. Ранжирование считает лайки друзей в
+ * {@link IntIntHashMap} и отбирает лучшие {@link #MAX_TOP} кучей; результат кэшируется
+ * на пользователя и сбрасывается, когда меняются его друзья или лайки кого-то из друзей.
+ */
+@Slf4j
+@Component
+public class FriendsPopularity {
+    public static final int MAX_TOP = 100;
+
+    private static final int[] NONE = new int[0];
+
+    private final Map<Integer, int[]> friends = new ConcurrentHashMap<>();
+    private final Map<Integer, int[]> followers = new ConcurrentHashMap<>();
+    private final Map<Integer, int[]> likedFilms = new ConcurrentHashMap<>();
+    private final ReadThroughCache<Integer, int[]> rankings;
+    private volatile boolean ready;
+
+    @Autowired
+    public FriendsPopularity(@Value("${filmorate.ranking.friends-cache-size:10000}") int maxEntries) {
+        this.rankings = new ReadThroughCache<>("friends-popular", maxEntries);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void rebuild(Collection<Friendship> friendships, Collection<FilmLike> likes) {
+        Map<Integer, List<Integer>> friendLists = new HashMap<>();
+        Map<Integer, List<Integer>> followerLists = new HashMap<>();
+        for (Friendship friendship : friendships) {
+            int userId = friendship.getUserId();
+            int friendId = friendship.getFriendId();
+            friendLists.computeIfAbsent(userId, id -> new ArrayList<>()).add(friendId);
+            followerLists.computeIfAbsent(friendId, id -> new ArrayList<>()).add(userId);
+        }
+        Map<Integer, List<Integer>> likeLists = new HashMap<>();
+        for (FilmLike like : likes) {
+            likeLists.computeIfAbsent(like.getUserId(), id -> new ArrayList<>()).add(like.getFilmId());
+        }
+        replace(friends, friendLists);
+        replace(followers, followerLists);
+        replace(likedFilms, likeLists);
+        rankings.invalidateAll();
+        ready = true;
+        log.info("Индекс друзей перестроен: дружб {}, лайков {}", friendships.size(), likes.size());
+    }
+
+    public void addFriend(int userId, int friendId) {
+        friends.compute(userId, (id, current) -> with(current, friendId));
+        followers.compute(friendId, (id, current) -> with(current, userId));
+        rankings.invalidate(userId);
+    }
+
+    public void removeFriend(int userId, int friendId) {
+        friends.computeIfPresent(userId, (id, current) -> without(current, friendId));
+        followers.computeIfPresent(friendId, (id, current) -> without(current, userId));
+        rankings.invalidate(userId);
+    }
+
+    public void addLike(int filmId, int userId) {
+        likedFilms.compute(userId, (id, current) -> with(current, filmId));
+        invalidateFollowers(userId);
+    }
+
+    public void removeLike(int filmId, int userId) {
+        likedFilms.computeIfPresent(userId, (id, current) -> without(current, filmId));
+        invalidateFollowers(userId);
+    }
+
+    public void removeFilm(int filmId) {
+        for (Integer userId : likedFilms.keySet()) {
+            likedFilms.computeIfPresent(userId, (id, current) -> without(current, filmId));
+        }
+        rankings.invalidateAll();
+    }
+
+    public void removeUser(int userId) {
+        for (int friendId : Objects.requireNonNullElse(friends.remove(userId), NONE)) {
+            followers.computeIfPresent(friendId, (id, current) -> without(current, userId));
+        }
+        int[] userFollowers = Objects.requireNonNullElse(followers.remove(userId), NONE);
+        for (int followerId : userFollowers) {
+            friends.computeIfPresent(followerId, (id, current) -> without(current, userId));
+            rankings.invalidate(followerId);
+        }
+        likedFilms.remove(userId);
+        rankings.invalidate(userId);
+    }
+
+    /**
+     * Применяет изменения других узлов: событие само содержит пару id, поэтому БД не читается,
+     * а повторная обработка ничего не меняет.
+     */
+    @EventListener
+    public void onRemoteChange(ChangeEvent event) {
+        boolean created = event.getOperation() == ChangeOperation.CREATE;
+        boolean deleted = event.getOperation() == ChangeOperation.DELETE;
+        switch (event.getEntityType()) {
+            case FRIENDSHIP -> {
+                if (created) {
+                    addFriend(event.getEntityId(), event.getRelatedId());
+                } else if (deleted) {
+                    removeFriend(event.getEntityId(), event.getRelatedId());
+                }
+            }
+            case LIKE -> {
+                if (created) {
+                    addLike(event.getEntityId(), event.getRelatedId());
+                } else if (deleted) {
+                    removeLike(event.getEntityId(), event.getRelatedId());
+                }
+            }
+            case FILM -> {
+                if (deleted) {
+                    removeFilm(event.getEntityId());
+                }
+            }
+            case USER -> {
+                if (deleted) {
+                    removeUser(event.getEntityId());
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * id фильмов, которые лайкнули друзья пользователя, по убыванию числа таких друзей;
+     * при равенстве меньший id выше.
+     */
+    public List<Integer> top(int userId, int count) {
+        int[] ranked = rankings.get(userId, id -> {
+            int[] userFriends = friends.getOrDefault(id, NONE);
+            List<int[]> likes = new ArrayList<>(userFriends.length);
+            for (int friendId : userFriends) {
+                likes.add(likedFilms.getOrDefault(friendId, NONE));
+            }
+            return Optional.of(rank(likes, MAX_TOP));
+        }).orElse(NONE);
+        List<Integer> result = new ArrayList<>(Math.min(count, ranked.length));
+        for (int i = 0; i < ranked.length && i < count; i++) {
+            result.add(ranked[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Ранжирует фильмы по числу множеств, в которые они входят; каждое множество — лайки
+     * одного друга без повторов.
+     */
+    public static int[] rank(Collection<int[]> likesByFriend, int count) {
+        int expected = 0;
+        for (int[] films : likesByFriend) {
+            expected += films.length;
+        }
+        IntIntHashMap counts = new IntIntHashMap(Math.min(expected, 1 << 16));
+        for (int[] films : likesByFriend) {
+            for (int filmId : films) {
+                counts.addTo(filmId, 1);
+            }
+        }
+        // Ранг упакован в long: число друзей в старших битах, инвертированный id — в младших
+        PriorityQueue<Long> top = new PriorityQueue<>(count + 1);
+        counts.forEach((filmId, friendsLiked) -> {
+            top.offer(((long) friendsLiked << 32) | (0xFFFFFFFFL - filmId));
+            if (top.size() > count) {
+                top.poll();
+            }
+        });
+        int[] ranked = new int[top.size()];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            ranked[i] = (int) (0xFFFFFFFFL - (top.poll() & 0xFFFFFFFFL));
+        }
+        return ranked;
+    }
+
+    private void invalidateFollowers(int userId) {
+        for (int followerId : followers.getOrDefault(userId, NONE)) {
+            rankings.invalidate(followerId);
+        }
+    }
+
+    private static void replace(Map<Integer, int[]> target, Map<Integer, List<Integer>> lists) {
+        target.clear();
+        lists.forEach((id, values) -> target.put(id,
+                values.stream().mapToInt(Integer::intValue).sorted().distinct().toArray()));
+    }
+
+    private static int[] with(int[] sorted, int value) {
+        if (sorted == null) {
+            return new int[]{value};
+        }
+        int index = Arrays.binarySearch(sorted, value);
+        if (index >= 0) {
+            return sorted;
+        }
+        int insertAt = -index - 1;
+        int[] result = new int[sorted.length + 1];
+        System.arraycopy(sorted, 0, result, 0, insertAt);
+        result[insertAt] = value;
+        System.arraycopy(sorted, insertAt, result, insertAt + 1, sorted.length - insertAt);
+        return result;
+    }
+
+    private static int[] without(int[] sorted, int value) {
+        int index = Arrays.binarySearch(sorted, value);
+        if (index < 0) {
+            return sorted;
+        }
+        if (sorted.length == 1) {
+            return null;
+        }
+        int[] result = new int[sorted.length - 1];
+        System.arraycopy(sorted, 0, result, 0, index);
+        System.arraycopy(sorted, index + 1, result, index, sorted.length - index - 1);
+        return result;
+    }
+}
@@ -0,0 +1,216 @@
+package ru.yandex.practicum.filmorate.ranking;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Рейтинги популярности фильмов в разрезе жанра, рейтинга MPA и года выпуска.
+ * Каждый рейтинг — отсортированное множество (лайки по убыванию, затем id),
+ * которое обновляется точечно при лайках и изменении фильма.
+ */
+@Slf4j
+@Component
+public class PopularityLeaderboards {
+    private static final Comparator<Rank> BY_POPULARITY = Comparator.comparingInt(Rank::likes).reversed()
+            .thenComparingInt(Rank::filmId);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, FilmKeys> films = new HashMap<>();
+    private final NavigableSet<Rank> overall = new TreeSet<>(BY_POPULARITY);
+    private final Map<Integer, NavigableSet<Rank>> byGenre = new HashMap<>();
+    private final Map<Integer, NavigableSet<Rank>> byMpa = new HashMap<>();
+    private final Map<Integer, NavigableSet<Rank>> byYear = new HashMap<>();
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void rebuild(Collection<Film> allFilms, Map<Integer, Integer> likesCounts) {
+        lock.writeLock().lock();
+        try {
+            films.clear();
+            overall.clear();
+            byGenre.clear();
+            byMpa.clear();
+            byYear.clear();
+            for (Film film : allFilms) {
+                insert(FilmKeys.of(film, likesCounts.getOrDefault(film.getId(), 0)));
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Рейтинги популярности перестроены: фильмов {}", allFilms.size());
+    }
+
+    /**
+     * Добавляет фильм или переносит его между рейтингами, если изменились жанры, MPA или год.
+     */
+    public void put(Film film) {
+        lock.writeLock().lock();
+        try {
+            FilmKeys previous = films.get(film.getId());
+            int likes = previous == null ? 0 : previous.likes();
+            if (previous != null) {
+                delete(previous);
+            }
+            insert(FilmKeys.of(film, likes));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int filmId) {
+        lock.writeLock().lock();
+        try {
+            FilmKeys previous = films.get(filmId);
+            if (previous != null) {
+                delete(previous);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void updateLikes(int filmId, int delta) {
+        lock.writeLock().lock();
+        try {
+            FilmKeys previous = films.get(filmId);
+            if (previous != null) {
+                delete(previous);
+                insert(previous.withLikes(Math.max(0, previous.likes() + delta)));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void setLikes(int filmId, int likes) {
+        lock.writeLock().lock();
+        try {
+            FilmKeys previous = films.get(filmId);
+            if (previous != null && previous.likes() != likes) {
+                delete(previous);
+                insert(previous.withLikes(Math.max(0, likes)));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает id самых популярных фильмов, удовлетворяющих всем заданным фильтрам.
+     * Обход идёт по самому короткому из подходящих рейтингов, остальные фильтры проверяются на лету.
+     */
+    public List<Integer> top(int count, Integer genreId, Integer mpaId, Integer year) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<Rank> board = overall;
+            if (genreId != null) {
+                board = shorter(board, byGenre.get(genreId));
+            }
+            if (mpaId != null) {
+                board = shorter(board, byMpa.get(mpaId));
+            }
+            if (year != null) {
+                board = shorter(board, byYear.get(year));
+            }
+
+            List<Integer> result = new ArrayList<>(Math.min(Math.max(count, 0), board.size()));
+            for (Rank rank : board) {
+                if (result.size() >= count) {
+                    break;
+                }
+                FilmKeys keys = films.get(rank.filmId());
+                if (keys.matches(genreId, mpaId, year)) {
+                    result.add(rank.filmId());
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static NavigableSet<Rank> shorter(NavigableSet<Rank> current, NavigableSet<Rank> candidate) {
+        if (candidate == null) {
+            return Collections.emptyNavigableSet();
+        }
+        return candidate.size() < current.size() ? candidate : current;
+    }
+
+    private void insert(FilmKeys keys) {
+        Rank rank = keys.rank();
+        films.put(keys.filmId(), keys);
+        overall.add(rank);
+        for (Integer genreId : keys.genreIds()) {
+            byGenre.computeIfAbsent(genreId, id -> new TreeSet<>(BY_POPULARITY)).add(rank);
+        }
+        if (keys.mpaId() != null) {
+            byMpa.computeIfAbsent(keys.mpaId(), id -> new TreeSet<>(BY_POPULARITY)).add(rank);
+        }
+        if (keys.year() != null) {
+            byYear.computeIfAbsent(keys.year(), y -> new TreeSet<>(BY_POPULARITY)).add(rank);
+        }
+    }
+
+    private void delete(FilmKeys keys) {
+        Rank rank = keys.rank();
+        films.remove(keys.filmId());
+        overall.remove(rank);
+        for (Integer genreId : keys.genreIds()) {
+            removeFrom(byGenre, genreId, rank);
+        }
+        removeFrom(byMpa, keys.mpaId(), rank);
+        removeFrom(byYear, keys.year(), rank);
+    }
+
+    private static void removeFrom(Map<Integer, NavigableSet<Rank>> boards, Integer key, Rank rank) {
+        if (key == null) {
+            return;
+        }
+        NavigableSet<Rank> board = boards.get(key);
+        if (board != null) {
+            board.remove(rank);
+            if (board.isEmpty()) {
+                boards.remove(key);
+            }
+        }
+    }
+
+    private record Rank(int filmId, int likes) {
+    }
+
+    private record FilmKeys(int filmId, int likes, Set<Integer> genreIds, Integer mpaId, Integer year) {
+        static FilmKeys of(Film film, int likes) {
+            Set<Integer> genreIds = film.getGenres() == null ? Set.of() : film.getGenres().stream()
+                    .map(Genre::getId)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toUnmodifiableSet());
+            Integer mpaId = film.getMpa() == null ? null : film.getMpa().getId();
+            Integer year = film.getReleaseDate() == null ? null : film.getReleaseDate().getYear();
+            return new FilmKeys(film.getId(), likes, genreIds, mpaId, year);
+        }
+
+        FilmKeys withLikes(int newLikes) {
+            return new FilmKeys(filmId, newLikes, genreIds, mpaId, year);
+        }
+
+        Rank rank() {
+            return new Rank(filmId, likes);
+        }
+
+        boolean matches(Integer genre, Integer mpa, Integer releaseYear) {
+            return (genre == null || genreIds.contains(genre))
+                    && (mpa == null || mpa.equals(mpaId))
+                    && (releaseYear == null || releaseYear.equals(year));
+        }
+    }
+}
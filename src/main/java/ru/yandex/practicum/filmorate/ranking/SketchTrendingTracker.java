@@ -0,0 +1,254 @@
+package ru.yandex.practicum.filmorate.ranking;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.ranking.sketch.CountMinSketch;
+import ru.yandex.practicum.filmorate.ranking.sketch.HyperLogLog;
+import ru.yandex.practicum.filmorate.ranking.sketch.SpaceSaving;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Приблизительный учёт лайков с памятью, не зависящей от размера каталога.
+ * Каждое окно делится на {@code slots} отрезков плюс один частично выходящий за границу окна;
+ * на отрезок приходится Count-Min sketch (частоты), Space-Saving (кандидаты в топ)
+ * и HyperLogLog (различные пользователи). Самый старый отрезок учитывается
+ * пропорционально своей доле внутри окна.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.ranking.mode", havingValue = "approximate")
+public class SketchTrendingTracker implements TrendingTracker {
+    private static final long SEED = 0x5EEDL;
+
+    private final Clock clock;
+    private final double epsilon;
+    private final double delta;
+    private final int heavyHitterCapacity;
+    private final int hllPrecision;
+    private final Map<TrendingWindow, WindowSketch> windows = new EnumMap<>(TrendingWindow.class);
+    private final CountMinSketch allTimeCounts;
+    private final SpaceSaving allTimeHeavyHitters;
+
+    @Autowired
+    public SketchTrendingTracker(Clock clock,
+                                 @Value("${filmorate.ranking.sketch.epsilon:0.001}") double epsilon,
+                                 @Value("${filmorate.ranking.sketch.delta:0.01}") double delta,
+                                 @Value("${filmorate.ranking.sketch.heavy-hitters:1000}") int heavyHitters,
+                                 @Value("${filmorate.ranking.sketch.hll-precision:14}") int hllPrecision,
+                                 @Value("${filmorate.ranking.sketch.slots:6}") int slots) {
+        this.clock = clock;
+        this.epsilon = epsilon;
+        this.delta = delta;
+        this.heavyHitterCapacity = heavyHitters;
+        this.hllPrecision = hllPrecision;
+        for (TrendingWindow window : TrendingWindow.values()) {
+            windows.put(window, new WindowSketch(window.getDuration().toMillis() / slots, slots + 1));
+        }
+        this.allTimeCounts = CountMinSketch.withErrorBounds(epsilon, delta, SEED);
+        this.allTimeHeavyHitters = new SpaceSaving(heavyHitters);
+        log.info("Приблизительный учёт лайков: epsilon={}, delta={}, CMS {}x{}, heavy hitters {}, HLL 2^{}",
+                epsilon, delta, allTimeCounts.width(), allTimeCounts.depth(), heavyHitters, hllPrecision);
+    }
+
+    @Override
+    public synchronized void rebuild(Collection<FilmLike> recentLikes, Map<Integer, Integer> likesCounts) {
+        windows.values().forEach(WindowSketch::clear);
+        allTimeCounts.clear();
+        allTimeHeavyHitters.clear();
+        likesCounts.forEach((filmId, count) -> {
+            allTimeCounts.add(filmId, count);
+            allTimeHeavyHitters.offer(filmId, count);
+        });
+        long now = clock.millis();
+        for (FilmLike like : recentLikes) {
+            for (WindowSketch sketch : windows.values()) {
+                sketch.record(like.getFilmId(), like.getUserId(), like.getCreatedAt().toEpochMilli(), now, 1);
+            }
+        }
+        log.info("Скетчи лайков перестроены: недавних лайков {}, фильмов с лайками {}",
+                recentLikes.size(), likesCounts.size());
+    }
+
+    @Override
+    public synchronized void addLike(int filmId, int userId, Instant likedAt) {
+        allTimeCounts.add(filmId, 1);
+        allTimeHeavyHitters.offer(filmId, 1);
+        long now = clock.millis();
+        for (WindowSketch sketch : windows.values()) {
+            sketch.record(filmId, userId, likedAt.toEpochMilli(), now, 1);
+        }
+    }
+
+    @Override
+    public synchronized void removeLike(int filmId, int userId, Instant likedAt) {
+        allTimeCounts.add(filmId, -1);
+        allTimeHeavyHitters.decrement(filmId);
+        long now = clock.millis();
+        for (WindowSketch sketch : windows.values()) {
+            sketch.record(filmId, userId, likedAt.toEpochMilli(), now, -1);
+        }
+    }
+
+    @Override
+    public synchronized void removeFilm(int filmId) {
+        allTimeHeavyHitters.remove(filmId);
+        for (WindowSketch sketch : windows.values()) {
+            sketch.forget(filmId);
+        }
+    }
+
+    @Override
+    public synchronized List<Integer> top(TrendingWindow window, int count) {
+        WindowSketch sketch = windows.get(window);
+        long now = clock.millis();
+        Map<Integer, Double> estimates = new HashMap<>();
+        for (Integer filmId : sketch.candidates(now)) {
+            double estimate = sketch.estimate(filmId, now);
+            if (estimate >= 0.5) {
+                estimates.put(filmId, estimate);
+            }
+        }
+        return ranked(estimates, count);
+    }
+
+    @Override
+    public synchronized Optional<List<Integer>> approximatePopular(int count) {
+        Map<Integer, Double> estimates = new HashMap<>();
+        for (Integer filmId : allTimeHeavyHitters.keys()) {
+            long estimate = Math.min(allTimeHeavyHitters.count(filmId), allTimeCounts.estimate(filmId));
+            estimates.put(filmId, (double) estimate);
+        }
+        return Optional.of(ranked(estimates, count));
+    }
+
+    @Override
+    public synchronized OptionalLong approximateDistinctLikers(TrendingWindow window) {
+        return OptionalLong.of(windows.get(window).distinctLikers(clock.millis()));
+    }
+
+    private static List<Integer> ranked(Map<Integer, Double> estimates, int count) {
+        return estimates.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(Math.max(count, 0))
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private final class WindowSketch {
+        private final long slotMillis;
+        private final Slot[] slots;
+
+        WindowSketch(long slotMillis, int slotCount) {
+            this.slotMillis = slotMillis;
+            this.slots = new Slot[slotCount];
+            for (int i = 0; i < slotCount; i++) {
+                slots[i] = new Slot();
+            }
+        }
+
+        void record(int filmId, int userId, long at, long now, int delta) {
+            long nowEpoch = Math.floorDiv(now, slotMillis);
+            long epoch = Math.min(Math.floorDiv(at, slotMillis), nowEpoch);
+            if (epoch <= nowEpoch - slots.length) {
+                return;
+            }
+            Slot slot = slots[(int) Math.floorMod(epoch, slots.length)];
+            if (slot.epoch < epoch) {
+                if (delta < 0) {
+                    return;
+                }
+                slot.reset(epoch);
+            } else if (slot.epoch > epoch) {
+                return;
+            }
+            slot.counts.add(filmId, delta);
+            if (delta > 0) {
+                slot.heavyHitters.offer(filmId, delta);
+                slot.likers.add(userId);
+            } else {
+                slot.heavyHitters.decrement(filmId);
+            }
+        }
+
+        void forget(int filmId) {
+            for (Slot slot : slots) {
+                slot.heavyHitters.remove(filmId);
+            }
+        }
+
+        Set<Integer> candidates(long now) {
+            Set<Integer> candidates = new HashSet<>();
+            for (Slot slot : slots) {
+                if (weight(slot, now) > 0) {
+                    candidates.addAll(slot.heavyHitters.keys());
+                }
+            }
+            return candidates;
+        }
+
+        double estimate(int filmId, long now) {
+            double estimate = 0;
+            for (Slot slot : slots) {
+                double weight = weight(slot, now);
+                if (weight > 0) {
+                    estimate += weight * slot.counts.estimate(filmId);
+                }
+            }
+            return estimate;
+        }
+
+        long distinctLikers(long now) {
+            HyperLogLog union = new HyperLogLog(hllPrecision);
+            for (Slot slot : slots) {
+                if (weight(slot, now) > 0) {
+                    union.merge(slot.likers);
+                }
+            }
+            return union.cardinality();
+        }
+
+        void clear() {
+            for (Slot slot : slots) {
+                slot.epoch = Long.MIN_VALUE;
+            }
+        }
+
+        /**
+         * Доля отрезка, попадающая в окно [now - (slots - 1) * slotMillis, now].
+         */
+        private double weight(Slot slot, long now) {
+            if (slot.epoch == Long.MIN_VALUE) {
+                return 0;
+            }
+            long windowStart = now - (slots.length - 1) * slotMillis;
+            long slotStart = slot.epoch * slotMillis;
+            long slotEnd = slotStart + slotMillis;
+            if (slotEnd <= windowStart || slotStart > now) {
+                return 0;
+            }
+            return Math.min(1.0, (double) (slotEnd - windowStart) / slotMillis);
+        }
+    }
+
+    private final class Slot {
+        private long epoch = Long.MIN_VALUE;
+        private final CountMinSketch counts = CountMinSketch.withErrorBounds(epsilon, delta, SEED);
+        private final SpaceSaving heavyHitters = new SpaceSaving(heavyHitterCapacity);
+        private final HyperLogLog likers = new HyperLogLog(hllPrecision);
+
+        void reset(long newEpoch) {
+            epoch = newEpoch;
+            counts.clear();
+            heavyHitters.clear();
+            likers.clear();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package ru.yandex.practicum.filmorate.ranking;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Счётчики лайков в скользящих окнах 1 час, 24 часа и 7 дней.
+ * Для каждого фильма хранятся два кольцевых буфера: 60 минутных и 168 часовых корзин,
+ * поэтому память на фильм фиксирована, а фильмы без лайков за неделю вытесняются.
+ * Окно 1h считается с точностью до минуты, окна 24h и 7d — с точностью до часа.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.ranking.mode", havingValue = "exact", matchIfMissing = true)
+public class TrendingCounters implements TrendingTracker {
+    private static final int MINUTE_BUCKETS = 60;
+    private static final int HOUR_BUCKETS = 24 * 7;
+    private static final int DAY_HOURS = 24;
+
+    private final Clock clock;
+    private final Map<Integer, FilmCounter> counters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TrendingCounters(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public void rebuild(Collection<FilmLike> likes, Map<Integer, Integer> likesCounts) {
+        counters.clear();
+        long nowMinute = minuteOf(clock.instant());
+        for (FilmLike like : likes) {
+            counters.computeIfAbsent(like.getFilmId(), id -> new FilmCounter(nowMinute))
+                    .add(minuteOf(like.getCreatedAt()), nowMinute);
+        }
+        counters.values().removeIf(FilmCounter::isEmpty);
+        log.info("Счётчики трендов перестроены: лайков {}, фильмов {}", likes.size(), counters.size());
+    }
+
+    @Override
+    public void addLike(int filmId, int userId, Instant likedAt) {
+        long nowMinute = minuteOf(clock.instant());
+        counters.compute(filmId, (id, counter) -> {
+            FilmCounter target = counter == null ? new FilmCounter(nowMinute) : counter;
+            target.add(minuteOf(likedAt), nowMinute);
+            return target;
+        });
+    }
+
+    @Override
+    public void removeLike(int filmId, int userId, Instant likedAt) {
+        FilmCounter counter = counters.get(filmId);
+        if (counter != null) {
+            counter.remove(minuteOf(likedAt), minuteOf(clock.instant()));
+        }
+    }
+
+    @Override
+    public void removeFilm(int filmId) {
+        counters.remove(filmId);
+    }
+
+    public int count(int filmId, TrendingWindow window) {
+        FilmCounter counter = counters.get(filmId);
+        return counter == null ? 0 : counter.sum(window, minuteOf(clock.instant()));
+    }
+
+    /**
+     * Возвращает id фильмов с наибольшим числом лайков в окне; при равенстве меньший id выше.
+     */
+    @Override
+    public List<Integer> top(TrendingWindow window, int count) {
+        if (count <= 0) {
+            return List.of();
+        }
+        long nowMinute = minuteOf(clock.instant());
+        Comparator<long[]> byRank = Comparator.<long[]>comparingLong(entry -> entry[1]).reversed()
+                .thenComparingLong(entry -> entry[0]);
+        PriorityQueue<long[]> top = new PriorityQueue<>(byRank.reversed());
+
+        List<Integer> expired = new ArrayList<>();
+        for (Map.Entry<Integer, FilmCounter> entry : counters.entrySet()) {
+            int sum = entry.getValue().sum(window, nowMinute);
+            if (entry.getValue().isEmpty()) {
+                expired.add(entry.getKey());
+            }
+            if (sum == 0) {
+                continue;
+            }
+            top.offer(new long[]{entry.getKey(), sum});
+            if (top.size() > count) {
+                top.poll();
+            }
+        }
+
+        // Вытеснение атомарно относительно addLike, который тоже работает через compute
+        for (Integer filmId : expired) {
+            counters.computeIfPresent(filmId, (id, counter) -> counter.isEmpty() ? null : counter);
+        }
+
+        List<long[]> ranked = new ArrayList<>(top);
+        ranked.sort(byRank);
+        List<Integer> result = new ArrayList<>(ranked.size());
+        for (long[] entry : ranked) {
+            result.add((int) entry[0]);
+        }
+        return result;
+    }
+
+    private static long minuteOf(Instant instant) {
+        return Math.floorDiv(instant.getEpochSecond(), 60);
+    }
+
+    private static final class FilmCounter {
+        private final int[] minutes = new int[MINUTE_BUCKETS];
+        private final int[] hours = new int[HOUR_BUCKETS];
+        private long currentMinute;
+        private long currentHour;
+        private int hourSum;
+        private int daySum;
+        private int weekSum;
+
+        FilmCounter(long nowMinute) {
+            this.currentMinute = nowMinute;
+            this.currentHour = Math.floorDiv(nowMinute, 60);
+        }
+
+        synchronized void add(long minute, long nowMinute) {
+            advance(nowMinute);
+            update(Math.min(minute, currentMinute), 1);
+        }
+
+        synchronized void remove(long minute, long nowMinute) {
+            advance(nowMinute);
+            update(Math.min(minute, currentMinute), -1);
+        }
+
+        synchronized int sum(TrendingWindow window, long nowMinute) {
+            advance(nowMinute);
+            return switch (window) {
+                case HOUR -> hourSum;
+                case DAY -> daySum;
+                case WEEK -> weekSum;
+            };
+        }
+
+        synchronized boolean isEmpty() {
+            return weekSum == 0;
+        }
+
+        private void update(long minute, int delta) {
+            if (currentMinute - minute < MINUTE_BUCKETS) {
+                int index = (int) Math.floorMod(minute, MINUTE_BUCKETS);
+                if (minutes[index] + delta >= 0) {
+                    minutes[index] += delta;
+                    hourSum += delta;
+                }
+            }
+            long hour = Math.floorDiv(minute, 60);
+            if (currentHour - hour < HOUR_BUCKETS) {
+                int index = (int) Math.floorMod(hour, HOUR_BUCKETS);
+                if (hours[index] + delta >= 0) {
+                    hours[index] += delta;
+                    weekSum += delta;
+                    if (currentHour - hour < DAY_HOURS) {
+                        daySum += delta;
+                    }
+                }
+            }
+        }
+
+        private void advance(long nowMinute) {
+            if (nowMinute <= currentMinute) {
+                return;
+            }
+            long minuteSteps = Math.min(nowMinute - currentMinute, MINUTE_BUCKETS);
+            for (long step = 1; step <= minuteSteps; step++) {
+                int index = (int) Math.floorMod(currentMinute + step, MINUTE_BUCKETS);
+                hourSum -= minutes[index];
+                minutes[index] = 0;
+            }
+            currentMinute = nowMinute;
+
+            long nowHour = Math.floorDiv(nowMinute, 60);
+            if (nowHour > currentHour) {
+                long hourSteps = Math.min(nowHour - currentHour, HOUR_BUCKETS);
+                for (long step = 1; step <= hourSteps; step++) {
+                    hours[(int) Math.floorMod(currentHour + step, HOUR_BUCKETS)] = 0;
+                }
+                currentHour = nowHour;
+                daySum = 0;
+                weekSum = 0;
+                for (int age = 0; age < HOUR_BUCKETS; age++) {
+                    int value = hours[(int) Math.floorMod(currentHour - age, HOUR_BUCKETS)];
+                    weekSum += value;
+                    if (age < DAY_HOURS) {
+                        daySum += value;
+                    }
+                }
+            }
+        }
+    }
+}
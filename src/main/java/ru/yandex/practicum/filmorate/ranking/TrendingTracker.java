@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.ranking;
+
+import ru.yandex.practicum.filmorate.model.FilmLike;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+/**
+ * Учёт лайков во времени для трендов. Реализация выбирается свойством
+ * {@code filmorate.ranking.mode}: {@code exact} — точные счётчики на каждый фильм,
+ * {@code approximate} — скетчи фиксированного размера.
+ */
+public interface TrendingTracker {
+
+    void rebuild(Collection<FilmLike> recentLikes, Map<Integer, Integer> likesCounts);
+
+    void addLike(int filmId, int userId, Instant likedAt);
+
+    void removeLike(int filmId, int userId, Instant likedAt);
+
+    void removeFilm(int filmId);
+
+    List<Integer> top(TrendingWindow window, int count);
+
+    /**
+     * Приблизительный топ фильмов за всё время, если трекер его ведёт.
+     */
+    default Optional<List<Integer>> approximatePopular(int count) {
+        return Optional.empty();
+    }
+
+    /**
+     * Приблизительное число различных пользователей, ставивших лайки в окне, если трекер его ведёт.
+     */
+    default OptionalLong approximateDistinctLikers(TrendingWindow window) {
+        return OptionalLong.empty();
+    }
+}
@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.ranking;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.time.Duration;
+
+public enum TrendingWindow {
+    HOUR("1h", Duration.ofHours(1)),
+    DAY("24h", Duration.ofHours(24)),
+    WEEK("7d", Duration.ofDays(7));
+
+    private final String code;
+    private final Duration duration;
+
+    TrendingWindow(String code, Duration duration) {
+        this.code = code;
+        this.duration = duration;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public static TrendingWindow fromCode(String code) {
+        for (TrendingWindow window : values()) {
+            if (window.code.equalsIgnoreCase(code)) {
+                return window;
+            }
+        }
+        throw new ValidationException("Неизвестное окно трендов: " + code + ". Допустимые значения: 1h, 24h, 7d");
+    }
+}
@@ -0,0 +1,85 @@
+package ru.yandex.practicum.filmorate.ranking.sketch;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Count-Min sketch для целочисленных ключей.
+ * При ширине ceil(e / epsilon) и глубине ceil(ln(1 / delta)) оценка превышает
+ * истинное значение не более чем на epsilon * N с вероятностью не ниже 1 - delta,
+ * где N — сумма всех добавленных величин.
+ */
+public class CountMinSketch {
+    private static final long MERSENNE_PRIME = (1L << 31) - 1;
+
+    private final int width;
+    private final int depth;
+    private final long[] hashA;
+    private final long[] hashB;
+    private final int[][] table;
+    private long total;
+
+    public CountMinSketch(int width, int depth, long seed) {
+        if (width <= 0 || depth <= 0) {
+            throw new IllegalArgumentException("Ширина и глубина должны быть положительными");
+        }
+        this.width = width;
+        this.depth = depth;
+        this.hashA = new long[depth];
+        this.hashB = new long[depth];
+        this.table = new int[depth][width];
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < depth; i++) {
+            hashA[i] = 1 + random.nextLong(MERSENNE_PRIME - 1);
+            hashB[i] = random.nextLong(MERSENNE_PRIME);
+        }
+    }
+
+    public static CountMinSketch withErrorBounds(double epsilon, double delta, long seed) {
+        if (epsilon <= 0 || epsilon >= 1 || delta <= 0 || delta >= 1) {
+            throw new IllegalArgumentException("epsilon и delta должны лежать в интервале (0, 1)");
+        }
+        int width = (int) Math.ceil(Math.E / epsilon);
+        int depth = (int) Math.ceil(Math.log(1 / delta));
+        return new CountMinSketch(width, depth, seed);
+    }
+
+    public void add(int key, int delta) {
+        for (int i = 0; i < depth; i++) {
+            table[i][bucket(i, key)] += delta;
+        }
+        total += delta;
+    }
+
+    public int estimate(int key) {
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            min = Math.min(min, table[i][bucket(i, key)]);
+        }
+        return Math.max(min, 0);
+    }
+
+    public long total() {
+        return total;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int depth() {
+        return depth;
+    }
+
+    public void clear() {
+        for (int[] row : table) {
+            Arrays.fill(row, 0);
+        }
+        total = 0;
+    }
+
+    private int bucket(int row, int key) {
+        long hash = (hashA[row] * (key & 0xFFFFFFFFL) + hashB[row]) % MERSENNE_PRIME;
+        return (int) (hash % width);
+    }
+}
@@ -0,0 +1,116 @@
+package ru.yandex.practicum.filmorate.ranking.sketch;
+
+import java.util.*;
+
+/**
+ * Алгоритм Space-Saving для поиска самых частых ключей в потоке.
+ * Хранит не более capacity счётчиков; любой ключ с частотой выше N / capacity
+ * гарантированно присутствует среди них, а завышение счётчика не больше его ошибки.
+ */
+public class SpaceSaving {
+    private static final Comparator<Counter> BY_COUNT = Comparator.comparingLong((Counter c) -> c.count)
+            .thenComparingInt(c -> c.key);
+
+    private final int capacity;
+    private final Map<Integer, Counter> counters;
+    private final NavigableSet<Counter> ordered = new TreeSet<>(BY_COUNT);
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Ёмкость должна быть положительной");
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    public void offer(int key, long increment) {
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            reorder(counter, counter.count + increment);
+            return;
+        }
+        if (counters.size() < capacity) {
+            counter = new Counter(key, increment, 0);
+        } else {
+            Counter evicted = ordered.pollFirst();
+            counters.remove(evicted.key);
+            counter = new Counter(key, evicted.count + increment, evicted.count);
+        }
+        counters.put(key, counter);
+        ordered.add(counter);
+    }
+
+    /**
+     * Уменьшает счётчик отслеживаемого ключа; для неотслеживаемых ключей ничего не делает,
+     * так как их вклад уже растворён в ошибке вытесненных счётчиков.
+     */
+    public void decrement(int key) {
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            reorder(counter, Math.max(0, counter.count - 1));
+        }
+    }
+
+    public void remove(int key) {
+        Counter counter = counters.remove(key);
+        if (counter != null) {
+            ordered.remove(counter);
+        }
+    }
+
+    public long count(int key) {
+        Counter counter = counters.get(key);
+        return counter == null ? 0 : counter.count;
+    }
+
+    /**
+     * Нижняя граница истинной частоты ключа: счётчик за вычетом унаследованной при вытеснении ошибки.
+     */
+    public long guaranteedCount(int key) {
+        Counter counter = counters.get(key);
+        return counter == null ? 0 : Math.max(0, counter.count - counter.error);
+    }
+
+    public Set<Integer> keys() {
+        return Collections.unmodifiableSet(counters.keySet());
+    }
+
+    /**
+     * Возвращает до limit ключей в порядке убывания счётчика (при равенстве — по возрастанию ключа).
+     */
+    public List<Integer> top(int limit) {
+        List<Counter> sorted = new ArrayList<>(counters.values());
+        sorted.sort(Comparator.comparingLong((Counter c) -> c.count).reversed().thenComparingInt(c -> c.key));
+        List<Integer> result = new ArrayList<>(Math.min(limit, sorted.size()));
+        for (Counter counter : sorted) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(counter.key);
+        }
+        return result;
+    }
+
+    public void clear() {
+        counters.clear();
+        ordered.clear();
+    }
+
+    private void reorder(Counter counter, long newCount) {
+        ordered.remove(counter);
+        counter.count = newCount;
+        ordered.add(counter);
+    }
+
+    private static final class Counter {
+        private final int key;
+        private long count;
+        private final long error;
+
+        Counter(int key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package ru.yandex.practicum.filmorate.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Инвертированный индекс по названию и описанию фильмов.
+ * Термины хранятся в отсортированной карте, поэтому префиксный поиск сводится к диапазону ключей.
+ */
+@Slf4j
+@Component
+public class FilmSearchIndex {
+    private static final float NAME_WEIGHT = 3.0f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+    private static final float PREFIX_MATCH_FACTOR = 0.5f;
+    private static final double LIKES_BOOST = 0.25;
+    private static final int MAX_PREFIX_EXPANSIONS = 512;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private NavigableMap<String, Map<Integer, Float>> postings = new TreeMap<>();
+    private Map<Integer, Set<String>> filmTerms = new HashMap<>();
+    private Map<Integer, Integer> likesCounts = new HashMap<>();
+
+    public void index(Film film) {
+        Map<String, Float> weights = termWeights(film);
+        lock.writeLock().lock();
+        try {
+            removeTerms(film.getId());
+            weights.forEach((term, weight) ->
+                    postings.computeIfAbsent(term, t -> new HashMap<>()).put(film.getId(), weight));
+            filmTerms.put(film.getId(), weights.keySet());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int filmId) {
+        lock.writeLock().lock();
+        try {
+            removeTerms(filmId);
+            likesCounts.remove(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void setLikes(int filmId, int likes) {
+        lock.writeLock().lock();
+        try {
+            likesCounts.put(filmId, Math.max(0, likes));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void updateLikes(int filmId, int delta) {
+        lock.writeLock().lock();
+        try {
+            likesCounts.merge(filmId, delta, (current, d) -> Math.max(0, current + d));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Полностью перестраивает индекс. Токенизация и построение списков вхождений
+     * выполняются параллельно, после чего готовые структуры подменяются целиком.
+     */
+    public void rebuild(Collection<Film> films, Map<Integer, Integer> likes) {
+        Map<Integer, Map<String, Float>> weightsByFilm = films.parallelStream()
+                .collect(Collectors.toConcurrentMap(Film::getId, FilmSearchIndex::termWeights));
+
+        ConcurrentHashMap<String, Map<Integer, Float>> built = new ConcurrentHashMap<>();
+        weightsByFilm.entrySet().parallelStream().forEach(entry ->
+                entry.getValue().forEach((term, weight) ->
+                        built.computeIfAbsent(term, t -> new ConcurrentHashMap<>()).put(entry.getKey(), weight)));
+
+        NavigableMap<String, Map<Integer, Float>> newPostings = new TreeMap<>();
+        built.forEach((term, filmWeights) -> newPostings.put(term, new HashMap<>(filmWeights)));
+        Map<Integer, Set<String>> newFilmTerms = new HashMap<>();
+        weightsByFilm.forEach((filmId, weights) -> newFilmTerms.put(filmId, weights.keySet()));
+
+        lock.writeLock().lock();
+        try {
+            postings = newPostings;
+            filmTerms = newFilmTerms;
+            likesCounts = new HashMap<>(likes);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Поисковый индекс перестроен: фильмов {}, терминов {}", newFilmTerms.size(), newPostings.size());
+    }
+
+    /**
+     * Возвращает id фильмов, содержащих все слова запроса (каждое слово может совпадать
+     * с началом термина), упорядоченные по релевантности с поправкой на число лайков.
+     */
+    public List<Integer> search(String query, int limit) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        Map<Integer, Double> scores = null;
+        lock.readLock().lock();
+        try {
+            for (String token : new LinkedHashSet<>(tokens)) {
+                Map<Integer, Double> tokenScores = scoreToken(token);
+                if (scores == null) {
+                    scores = tokenScores;
+                } else {
+                    scores.keySet().retainAll(tokenScores.keySet());
+                    scores.replaceAll((filmId, score) -> score + tokenScores.get(filmId));
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+            scores.replaceAll((filmId, score) ->
+                    score * (1 + LIKES_BOOST * Math.log1p(likesCounts.getOrDefault(filmId, 0))));
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Comparator<Map.Entry<Integer, Double>> byRank = Map.Entry.<Integer, Double>comparingByValue()
+                .reversed()
+                .thenComparing(Map.Entry.comparingByKey());
+        PriorityQueue<Map.Entry<Integer, Double>> top = new PriorityQueue<>(byRank.reversed());
+        for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+            top.offer(entry);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        List<Map.Entry<Integer, Double>> ranked = new ArrayList<>(top);
+        ranked.sort(byRank);
+        return ranked.stream()
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    private Map<Integer, Double> scoreToken(String token) {
+        Map<Integer, Double> tokenScores = new HashMap<>();
+        SortedMap<String, Map<Integer, Float>> matches = postings.subMap(token, token + Character.MAX_VALUE);
+        int expansions = 0;
+        for (Map.Entry<String, Map<Integer, Float>> match : matches.entrySet()) {
+            if (++expansions > MAX_PREFIX_EXPANSIONS) {
+                break;
+            }
+            float factor = match.getKey().equals(token) ? 1.0f : PREFIX_MATCH_FACTOR;
+            match.getValue().forEach((filmId, weight) ->
+                    tokenScores.merge(filmId, (double) (weight * factor), Math::max));
+        }
+        return tokenScores;
+    }
+
+    private void removeTerms(int filmId) {
+        Set<String> terms = filmTerms.remove(filmId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Map<Integer, Float> films = postings.get(term);
+            if (films != null) {
+                films.remove(filmId);
+                if (films.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    private static Map<String, Float> termWeights(Film film) {
+        Map<String, Float> weights = new HashMap<>();
+        for (String token : tokenize(film.getName())) {
+            weights.merge(token, NAME_WEIGHT, Float::sum);
+        }
+        for (String token : tokenize(film.getDescription())) {
+            weights.merge(token, DESCRIPTION_WEIGHT, Float::sum);
+        }
+        return weights;
+    }
+
+    /**
+     * Разбивает текст на слова из букв и цифр любого алфавита, приводя их к нижнему регистру
+     * и заменяя «ё» на «е», чтобы «Ёлки» находились по запросу «елки».
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        text.toLowerCase(Locale.ROOT).codePoints().forEach(cp -> {
+            if (Character.isLetterOrDigit(cp)) {
+                current.appendCodePoint(cp == 'ё' ? 'е' : cp);
+            } else if (current.length() > 0) {
+                tokens.add(current.toString());
+                current.setLength(0);
+            }
+        });
+        if (current.length() > 0) {
+            tokens.add(current.toString());
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,131 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dto.CursorPage;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.feed.FeedCache;
+import ru.yandex.practicum.filmorate.feed.FeedEventWriter;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+import ru.yandex.practicum.filmorate.model.FeedEventType;
+import ru.yandex.practicum.filmorate.model.FeedOperation;
+import ru.yandex.practicum.filmorate.storage.feed.FeedStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.Clock;
+import java.util.*;
+
+/**
+ * Лента активности: события самого пользователя и его друзей, от новых к старым.
+ * Лента собирается при чтении из кэша последних событий каждого участника; если кэша
+ * не хватает для полной страницы, страница читается из журнала по индексу (user_id, event_id).
+ * Друзья читаются порциями по {@link #FRIENDS_CHUNK}, в ленту попадают события всех друзей.
+ */
+@Slf4j
+@Service
+public class FeedService {
+    private static final int MAX_LIMIT = 100;
+    private static final int FRIENDS_CHUNK = 1000;
+    private static final Comparator<FeedEvent> NEWEST_FIRST =
+            Comparator.comparingLong(FeedEvent::getEventId).reversed();
+
+    private final UserStorage userStorage;
+    private final FeedStorage feedStorage;
+    private final FeedCache feedCache;
+    private final FeedEventWriter feedEventWriter;
+    private final Clock clock;
+
+    @Autowired
+    public FeedService(UserStorage userStorage,
+                       FeedStorage feedStorage,
+                       FeedCache feedCache,
+                       FeedEventWriter feedEventWriter,
+                       Clock clock) {
+        this.userStorage = userStorage;
+        this.feedStorage = feedStorage;
+        this.feedCache = feedCache;
+        this.feedEventWriter = feedEventWriter;
+        this.clock = clock;
+    }
+
+    public void publish(int userId, FeedEventType eventType, FeedOperation operation, int entityId) {
+        feedEventWriter.publish(new FeedEvent(userId, eventType, operation, entityId, clock.instant()));
+    }
+
+    public CursorPage<FeedEvent> getFeed(int userId, String cursor, int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new ValidationException("Размер страницы ленты должен быть от 1 до " + MAX_LIMIT);
+        }
+        if (userStorage.findById(userId).isEmpty()) {
+            throw new NotFoundException("Пользователь с id = " + userId + " не найден");
+        }
+        long before = parseCursor(cursor);
+
+        Set<Integer> members = new LinkedHashSet<>();
+        members.add(userId);
+        List<Integer> friendIds;
+        int afterId = 0;
+        do {
+            friendIds = userStorage.findFriendIds(userId, afterId, FRIENDS_CHUNK);
+            members.addAll(friendIds);
+            if (!friendIds.isEmpty()) {
+                afterId = friendIds.get(friendIds.size() - 1);
+            }
+        } while (friendIds.size() == FRIENDS_CHUNK);
+
+        List<FeedEvent> page = limit <= feedCache.getEventsPerUser()
+                ? fromCache(members, before, limit)
+                : null;
+        if (page == null) {
+            log.debug("Лента пользователя {} читается из журнала", userId);
+            page = feedStorage.findByUsers(members, before, limit);
+        }
+        String nextCursor = page.size() == limit ? String.valueOf(page.get(page.size() - 1).getEventId()) : null;
+        return new CursorPage<>(page, nextCursor);
+    }
+
+    /**
+     * Сливает события участников из кэша; возвращает null, если для страницы не хватает
+     * закэшированной истории хотя бы одного участника.
+     */
+    private List<FeedEvent> fromCache(Collection<Integer> members, long before, int limit) {
+        Map<Integer, FeedCache.UserEvents> cached = feedCache.get(members);
+        if (cached.size() < members.size()) {
+            return null;
+        }
+        PriorityQueue<FeedEvent> newest = new PriorityQueue<>(NEWEST_FIRST.reversed());
+        long trustedFrom = Long.MIN_VALUE;
+        List<FeedEvent> candidates = new ArrayList<>(limit);
+        for (FeedCache.UserEvents events : cached.values()) {
+            candidates.clear();
+            trustedFrom = Math.max(trustedFrom, events.collect(before, limit, candidates));
+            for (FeedEvent event : candidates) {
+                newest.offer(event);
+                if (newest.size() > limit) {
+                    newest.poll();
+                }
+            }
+        }
+        // Все события с номером выше границы страницы должны быть в кэше у каждого участника
+        long pageBoundary = newest.size() == limit ? newest.peek().getEventId() : Long.MIN_VALUE;
+        if (pageBoundary < trustedFrom) {
+            return null;
+        }
+        List<FeedEvent> page = new ArrayList<>(newest);
+        page.sort(NEWEST_FIRST);
+        return page;
+    }
+
+    private static long parseCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return Long.MAX_VALUE;
+        }
+        try {
+            return Long.parseLong(cursor.trim());
+        } catch (NumberFormatException e) {
+            throw new ValidationException("Некорректный курсор ленты: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.concurrent.SingleFlight;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Стоит перед {@link FilmService} и схлопывает одновременные одинаковые чтения фильма и
+ * популярных фильмов в одну загрузку. Сам не транзакционный: ожидающие запросы не держат
+ * соединений, транзакцию открывает только загружающий. В ключ входит версия изменений
+ * фильмов, поэтому чтение после записи никогда не получает результат загрузки, начатой
+ * до неё. Результат общий для всех дождавшихся и не должен меняться вызывающим кодом.
+ * Популярные фильмы без фильтров сначала ищутся в {@link PopularFilmsSnapshot}: он не
+ * отдаётся после изменения фильмов, но число лайков в нём может отставать до перестройки.
+ */
+@Service
+public class FilmReadCoalescer {
+    private final FilmService filmService;
+    private final PopularFilmsSnapshot popularSnapshot;
+    private final SingleFlight<FilmKey, Film> films;
+    private final SingleFlight<PopularKey, List<Film>> popular;
+
+    @Autowired
+    public FilmReadCoalescer(FilmService filmService, PopularFilmsSnapshot popularSnapshot,
+                             MeterRegistry meterRegistry) {
+        this.filmService = filmService;
+        this.popularSnapshot = popularSnapshot;
+        this.films = new SingleFlight<>("film", meterRegistry);
+        this.popular = new SingleFlight<>("popular", meterRegistry);
+    }
+
+    public Film getFilmById(int id) {
+        return films.execute(new FilmKey(filmService.writeVersion(), id), () -> filmService.getFilmById(id));
+    }
+
+    public List<Film> getPopularFilms(int count, Integer genreId, Integer mpaId, Integer year, boolean withGenres) {
+        filmService.validatePopularQuery(count, year);
+        Optional<List<Film>> snapshot = popularSnapshot.find(count, genreId, mpaId, year);
+        if (snapshot.isPresent()) {
+            return snapshot.get();
+        }
+        PopularKey key = new PopularKey(filmService.writeVersion(), count, genreId, mpaId, year, withGenres);
+        return popular.execute(key, () -> filmService.getPopularFilms(count, genreId, mpaId, year, withGenres));
+    }
+
+    private record FilmKey(long version, int id) {
+    }
+
+    private record PopularKey(long version, int count, Integer genreId, Integer mpaId, Integer year,
+                              boolean withGenres) {
+    }
+}
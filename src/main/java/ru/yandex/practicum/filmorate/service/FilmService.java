@@ -2,43 +2,169 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.dto.BatchResult;
+import ru.yandex.practicum.filmorate.dto.CursorPage;
+import ru.yandex.practicum.filmorate.dto.LikersStats;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.jfr.LikeWriteEvent;
+import ru.yandex.practicum.filmorate.jfr.PopularQueryEvent;
+import ru.yandex.practicum.filmorate.model.FeedEventType;
+import ru.yandex.practicum.filmorate.model.FeedOperation;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.outbox.ChangeEvent;
+import ru.yandex.practicum.filmorate.outbox.ChangeOperation;
+import ru.yandex.practicum.filmorate.ranking.FriendsPopularity;
+import ru.yandex.practicum.filmorate.ranking.PopularityLeaderboards;
+import ru.yandex.practicum.filmorate.ranking.TrendingTracker;
+import ru.yandex.practicum.filmorate.ranking.TrendingWindow;
+import ru.yandex.practicum.filmorate.search.FilmSearchIndex;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
 import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.time.Clock;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class FilmService {
+    private static final int MAX_SEARCH_LIMIT = 100;
+    private static final int MAX_BATCH_IDS = 100;
+    private static final int MAX_LIKES_PAGE = 1000;
+    private static final int MAX_POPULAR_COUNT = 1000;
+    private static final int MIN_RELEASE_YEAR = 1895;
+    private static final int MAX_RELEASE_YEAR = 9999;
+
     private final FilmStorage filmStorage;
     private final UserStorage userStorage;
     private final MpaStorage mpaStorage;
     private final GenreStorage genreStorage;
+    private final FilmSearchIndex searchIndex;
+    private final PopularityLeaderboards leaderboards;
+    private final TrendingTracker trendingTracker;
+    private final FriendsPopularity friendsPopularity;
+    private final FeedService feedService;
+    private final Clock clock;
+    private final AtomicLong writeVersion = new AtomicLong();
+    private final AtomicLong likeWrites = new AtomicLong();
 
     @Autowired
-    public FilmService(@Qualifier("filmDbStorage") FilmStorage filmStorage,
-                       @Qualifier("userDbStorage") UserStorage userStorage,
+    public FilmService(FilmStorage filmStorage,
+                       UserStorage userStorage,
                        MpaStorage mpaStorage,
-                       GenreStorage genreStorage) {
+                       GenreStorage genreStorage,
+                       FilmSearchIndex searchIndex,
+                       PopularityLeaderboards leaderboards,
+                       TrendingTracker trendingTracker,
+                       FriendsPopularity friendsPopularity,
+                       FeedService feedService,
+                       Clock clock) {
         this.filmStorage = filmStorage;
         this.userStorage = userStorage;
         this.mpaStorage = mpaStorage;
         this.genreStorage = genreStorage;
+        this.searchIndex = searchIndex;
+        this.leaderboards = leaderboards;
+        this.trendingTracker = trendingTracker;
+        this.friendsPopularity = friendsPopularity;
+        this.feedService = feedService;
+        this.clock = clock;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIndexes() {
+        Collection<Film> films = filmStorage.findAll();
+        Map<Integer, Integer> likesCounts = filmStorage.getLikesCounts();
+        searchIndex.rebuild(films, likesCounts);
+        leaderboards.rebuild(films, likesCounts);
+        trendingTracker.rebuild(filmStorage.findLikesSince(clock.instant().minus(TrendingWindow.WEEK.getDuration())),
+                likesCounts);
+        friendsPopularity.rebuild(userStorage.findFriendships(), filmStorage.findLikesSince(Instant.EPOCH));
+    }
+
+    /**
+     * Применяет к локальным индексам изменения, сделанные другими узлами.
+     * Фильм и число лайков перечитываются из БД, поэтому повторная обработка безопасна;
+     * тренды обновляются приращением со временем лайка из outbox.
+     */
+    @EventListener
+    public void onRemoteChange(ChangeEvent event) {
+        writeVersion.incrementAndGet();
+        switch (event.getEntityType()) {
+            case FILM -> {
+                Optional<Film> film = filmStorage.findById(event.getEntityId());
+                if (film.isPresent()) {
+                    searchIndex.index(film.get());
+                    leaderboards.put(film.get());
+                    refreshLikes(event.getEntityId());
+                } else {
+                    searchIndex.remove(event.getEntityId());
+                    leaderboards.remove(event.getEntityId());
+                    trendingTracker.removeFilm(event.getEntityId());
+                }
+            }
+            case LIKE -> {
+                likeWrites.incrementAndGet();
+                refreshLikes(event.getEntityId());
+                if (event.getOperation() == ChangeOperation.CREATE) {
+                    trendingTracker.addLike(event.getEntityId(), event.getRelatedId(), event.getOccurredAt());
+                } else if (event.getOperation() == ChangeOperation.DELETE) {
+                    trendingTracker.removeLike(event.getEntityId(), event.getRelatedId(), event.getOccurredAt());
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void refreshLikes(int filmId) {
+        int likes = filmStorage.getLikesCount(filmId);
+        searchIndex.setLikes(filmId, likes);
+        leaderboards.setLikes(filmId, likes);
+    }
+
+    /**
+     * Счётчик изменений фильмов и лайков, включая изменения других узлов. Чтение, начатое
+     * после изменения, не должно присоединяться к загрузке, начатой до него.
+     */
+    public long writeVersion() {
+        return writeVersion.get();
+    }
+
+    /**
+     * Счётчик поставленных и снятых лайков, включая лайки других узлов; входит в writeVersion.
+     */
+    public long likeWrites() {
+        return likeWrites.get();
     }
 
     public Film createFilm(Film film) {
         validateFilmData(film);
         Film createdFilm = filmStorage.add(film);
+        writeVersion.incrementAndGet();
+        searchIndex.index(createdFilm);
+        leaderboards.put(createdFilm);
         log.info("Создан фильм с id: {}", createdFilm.getId());
         return createdFilm;
     }
@@ -49,10 +175,26 @@ public class FilmService {
         }
         validateFilmData(film);
         Film updatedFilm = filmStorage.update(film);
+        writeVersion.incrementAndGet();
+        searchIndex.index(updatedFilm);
+        leaderboards.put(updatedFilm);
         log.info("Обновлён фильм с id: {}", updatedFilm.getId());
         return updatedFilm;
     }
 
+    public void deleteFilm(int id) {
+        if (filmStorage.findById(id).isEmpty()) {
+            throw new NotFoundException("Фильм с id = " + id + " не найден");
+        }
+        filmStorage.delete(id);
+        writeVersion.incrementAndGet();
+        searchIndex.remove(id);
+        leaderboards.remove(id);
+        trendingTracker.removeFilm(id);
+        friendsPopularity.removeFilm(id);
+        log.info("Удалён фильм с id: {}", id);
+    }
+
     private void validateFilmData(Film film) {
         if (film.getMpa() != null && film.getMpa().getId() != null) {
             if (mpaStorage.findById(film.getMpa().getId()).isEmpty()) {
@@ -87,16 +229,33 @@ public class FilmService {
         }
     }
 
+    @Transactional(readOnly = true)
     public Film getFilmById(int id) {
         return filmStorage.findById(id)
                 .orElseThrow(() -> new NotFoundException("Фильм с id = " + id + " не найден"));
     }
 
-    public Collection<Film> getAllFilms() {
-        return filmStorage.findAll();
+    @Transactional(readOnly = true)
+    public Collection<Film> getAllFilms(boolean withGenres) {
+        return filmStorage.findAll(withGenres);
+    }
+
+    /**
+     * Фильмы по списку id в порядке запроса; повторы схлопываются, отсутствующие id
+     * возвращаются отдельно.
+     */
+    @Transactional(readOnly = true)
+    public BatchResult<Film> getFilmsByIds(List<Integer> ids, boolean withGenres) {
+        Set<Integer> requested = new LinkedHashSet<>(ids);
+        if (requested.isEmpty() || requested.size() > MAX_BATCH_IDS) {
+            throw new ValidationException("Количество id должно быть от 1 до " + MAX_BATCH_IDS);
+        }
+        return BatchResult.inRequestOrder(requested, filmStorage.findByIds(requested, withGenres), Film::getId);
     }
 
     public void addLike(int filmId, int userId) {
+        LikeWriteEvent event = new LikeWriteEvent();
+        event.begin();
         if (filmStorage.findById(filmId).isEmpty()) {
             throw new NotFoundException("Фильм с id = " + filmId + " не найден");
         }
@@ -104,11 +263,24 @@ public class FilmService {
             throw new NotFoundException("Пользователь с id = " + userId + " не найден");
         }
 
-        filmStorage.addLike(filmId, userId);
+        Instant likedAt = clock.instant();
+        boolean added = filmStorage.addLike(filmId, userId, likedAt);
+        if (added) {
+            likeWrites.incrementAndGet();
+            writeVersion.incrementAndGet();
+            searchIndex.updateLikes(filmId, 1);
+            leaderboards.updateLikes(filmId, 1);
+            trendingTracker.addLike(filmId, userId, likedAt);
+            friendsPopularity.addLike(filmId, userId);
+            feedService.publish(userId, FeedEventType.LIKE, FeedOperation.ADD, filmId);
+        }
+        commitLikeWrite(event, filmId, userId, "add", added);
         log.info("Пользователь {} поставил лайк фильму {}", userId, filmId);
     }
 
     public void removeLike(int filmId, int userId) {
+        LikeWriteEvent event = new LikeWriteEvent();
+        event.begin();
         if (filmStorage.findById(filmId).isEmpty()) {
             throw new NotFoundException("Фильм с id = " + filmId + " не найден");
         }
@@ -116,11 +288,218 @@ public class FilmService {
             throw new NotFoundException("Пользователь с id = " + userId + " не найден");
         }
 
-        filmStorage.removeLike(filmId, userId);
+        Optional<Instant> likedAt = filmStorage.getLikeTime(filmId, userId);
+        boolean removed = likedAt.isPresent() && filmStorage.removeLike(filmId, userId, likedAt.get());
+        if (removed) {
+            likeWrites.incrementAndGet();
+            writeVersion.incrementAndGet();
+            searchIndex.updateLikes(filmId, -1);
+            leaderboards.updateLikes(filmId, -1);
+            trendingTracker.removeLike(filmId, userId, likedAt.get());
+            friendsPopularity.removeLike(filmId, userId);
+            feedService.publish(userId, FeedEventType.LIKE, FeedOperation.REMOVE, filmId);
+        }
+        commitLikeWrite(event, filmId, userId, "remove", removed);
         log.info("Пользователь {} удалил лайк фильму {}", userId, filmId);
     }
 
-    public List<Film> getPopularFilms(int count) {
-        return filmStorage.getPopularFilms(count);
+    private static void commitLikeWrite(LikeWriteEvent event, int filmId, int userId, String operation,
+                                        boolean changed) {
+        if (event.shouldCommit()) {
+            event.filmId = filmId;
+            event.userId = userId;
+            event.operation = operation;
+            event.changed = changed;
+            event.commit();
+        }
+    }
+
+    /**
+     * withGenres = false позволяет хранилищу не читать жанры, когда они не попадут в ответ.
+     */
+    @Transactional(readOnly = true)
+    public List<Film> getPopularFilms(int count, Integer genreId, Integer mpaId, Integer year, boolean withGenres) {
+        validatePopularQuery(count, year);
+        PopularQueryEvent event = new PopularQueryEvent();
+        event.begin();
+        String source;
+        List<Film> films;
+        if (!leaderboards.isReady()) {
+            source = "db";
+            films = filmStorage.getPopularFilms(count, genreId, mpaId, year, withGenres);
+        } else {
+            boolean unfiltered = genreId == null && mpaId == null && year == null;
+            Optional<List<Integer>> approximate = unfiltered ? trendingTracker.approximatePopular(count) : Optional.empty();
+            source = approximate.isPresent() ? "sketch" : "leaderboard";
+            List<Integer> filmIds = approximate.map(top -> padFromLeaderboard(top, count))
+                    .orElseGet(() -> leaderboards.top(count, genreId, mpaId, year));
+            films = findInOrder(filmIds, withGenres);
+        }
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.count = count;
+            event.genreId = genreId == null ? 0 : genreId;
+            event.mpaId = mpaId == null ? 0 : mpaId;
+            event.year = year == null ? 0 : year;
+            event.rows = films.size();
+            event.commit();
+        }
+        return films;
+    }
+
+    /**
+     * Проверяет размер выборки и год до обращения к хранилищу: год за пределами дат
+     * {@link java.time.LocalDate} иначе превратился бы в 500 при построении диапазона дат.
+     */
+    public void validatePopularQuery(int count, Integer year) {
+        if (count < 1 || count > MAX_POPULAR_COUNT) {
+            throw new ValidationException("Количество популярных фильмов должно быть от 1 до " + MAX_POPULAR_COUNT);
+        }
+        if (year != null && (year < MIN_RELEASE_YEAR || year > MAX_RELEASE_YEAR)) {
+            throw new ValidationException(
+                    "Год выпуска должен быть от " + MIN_RELEASE_YEAR + " до " + MAX_RELEASE_YEAR);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public List<Film> getTrendingFilms(String window, int count) {
+        validatePopularQuery(count, null);
+        return findInOrder(trendingTracker.top(TrendingWindow.fromCode(window), count), true);
+    }
+
+    /**
+     * Страница id лайкнувших пользователей по возрастанию; курсор — последний id предыдущей страницы.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<Integer> getLikes(int filmId, String cursor, int limit) {
+        if (limit < 1 || limit > MAX_LIKES_PAGE) {
+            throw new ValidationException("Размер страницы лайков должен быть от 1 до " + MAX_LIKES_PAGE);
+        }
+        if (filmStorage.findById(filmId).isEmpty()) {
+            throw new NotFoundException("Фильм с id = " + filmId + " не найден");
+        }
+        int after;
+        try {
+            after = cursor == null || cursor.isBlank() ? 0 : Integer.parseInt(cursor.trim());
+        } catch (NumberFormatException e) {
+            throw new ValidationException("Некорректный курсор лайков: " + cursor);
+        }
+        List<Integer> page = filmStorage.findLikerIds(filmId, after, limit);
+        String nextCursor = page.size() == limit ? String.valueOf(page.get(page.size() - 1)) : null;
+        return new CursorPage<>(page, nextCursor);
+    }
+
+    /**
+     * Фильмы, которые чаще всего лайкали друзья пользователя. Пока индекс друзей не построен
+     * (сразу после старта), лайки друзей читаются из хранилища.
+     */
+    @Transactional(readOnly = true)
+    public List<Film> getPopularAmongFriends(int userId, int count) {
+        if (count < 1 || count > FriendsPopularity.MAX_TOP) {
+            throw new ValidationException("Количество фильмов должно быть от 1 до " + FriendsPopularity.MAX_TOP);
+        }
+        if (userStorage.findById(userId).isEmpty()) {
+            throw new NotFoundException("Пользователь с id = " + userId + " не найден");
+        }
+        if (friendsPopularity.isReady()) {
+            return findInOrder(friendsPopularity.top(userId, count), true);
+        }
+        List<int[]> likesByFriend = new ArrayList<>();
+        for (User friend : userStorage.getFriends(userId)) {
+            likesByFriend.add(filmStorage.findLikesByUser(friend.getId(), null, Integer.MAX_VALUE).stream()
+                    .mapToInt(FilmLike::getFilmId)
+                    .toArray());
+        }
+        return findInOrder(Arrays.stream(FriendsPopularity.rank(likesByFriend, count)).boxed().toList(), true);
+    }
+
+    /**
+     * Фильмы, которые лайкнул пользователь, от последнего лайка к первому. Курсор — время и id
+     * фильма последнего лайка предыдущей страницы; фильмы дочитываются одним пакетом.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<Film> getLikedFilms(int userId, String cursor, int limit) {
+        if (limit < 1 || limit > MAX_LIKES_PAGE) {
+            throw new ValidationException("Размер страницы лайков должен быть от 1 до " + MAX_LIKES_PAGE);
+        }
+        if (userStorage.findById(userId).isEmpty()) {
+            throw new NotFoundException("Пользователь с id = " + userId + " не найден");
+        }
+        List<FilmLike> likes = filmStorage.findLikesByUser(userId, parseLikeCursor(userId, cursor), limit);
+        List<Film> films = findInOrder(likes.stream().map(FilmLike::getFilmId).toList(), true);
+        String nextCursor = null;
+        if (likes.size() == limit) {
+            FilmLike last = likes.get(likes.size() - 1);
+            nextCursor = last.getCreatedAt().getEpochSecond() + ":" + last.getCreatedAt().getNano()
+                    + ":" + last.getFilmId();
+        }
+        return new CursorPage<>(films, nextCursor);
+    }
+
+    private static FilmLike parseLikeCursor(int userId, String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        String[] parts = cursor.trim().split(":");
+        if (parts.length != 3) {
+            throw new ValidationException("Некорректный курсор лайков: " + cursor);
+        }
+        try {
+            Instant likedAt = Instant.ofEpochSecond(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            return new FilmLike(Integer.parseInt(parts[2]), userId, likedAt);
+        } catch (NumberFormatException | DateTimeException e) {
+            throw new ValidationException("Некорректный курсор лайков: " + cursor);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public LikersStats getTrendingLikers(String window) {
+        TrendingWindow trendingWindow = TrendingWindow.fromCode(window);
+        OptionalLong approximate = trendingTracker.approximateDistinctLikers(trendingWindow);
+        if (approximate.isPresent()) {
+            return new LikersStats(trendingWindow.getCode(), approximate.getAsLong(), true);
+        }
+        long exact = filmStorage.countDistinctLikersSince(clock.instant().minus(trendingWindow.getDuration()));
+        return new LikersStats(trendingWindow.getCode(), exact, false);
+    }
+
+    @Transactional(readOnly = true)
+    public List<Film> searchFilms(String query, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new ValidationException("Поисковый запрос не может быть пустым");
+        }
+        if (limit <= 0 || limit > MAX_SEARCH_LIMIT) {
+            throw new ValidationException("Количество результатов должно быть от 1 до " + MAX_SEARCH_LIMIT);
+        }
+        return findInOrder(searchIndex.search(query, limit), true);
+    }
+
+    /**
+     * Скетч помнит только часто лайкаемые фильмы; остаток выдачи, как и в точном режиме,
+     * добирается из общего рейтинга, включая фильмы без лайков.
+     */
+    private List<Integer> padFromLeaderboard(List<Integer> top, int count) {
+        if (top.size() >= count) {
+            return top;
+        }
+        Set<Integer> padded = new LinkedHashSet<>(top);
+        for (Integer filmId : leaderboards.top(count + top.size(), null, null, null)) {
+            if (padded.size() >= count) {
+                break;
+            }
+            padded.add(filmId);
+        }
+        return List.copyOf(padded);
+    }
+
+    /**
+     * Загружает рейтинг или выдачу поиска одним пакетным чтением вместо чтения по одному фильму.
+     */
+    private List<Film> findInOrder(List<Integer> filmIds, boolean withGenres) {
+        if (filmIds.isEmpty()) {
+            return List.of();
+        }
+        return BatchResult.inRequestOrder(filmIds, filmStorage.findByIds(filmIds, withGenres), Film::getId)
+                .getItems();
     }
 }
\ No newline at end of file
@@ -0,0 +1,127 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.IntFunction;
+import java.util.function.LongSupplier;
+
+/**
+ * Заранее посчитанный список популярных фильмов без фильтров. Фоновая задача загружает
+ * первые maxCount фильмов вместе с жанрами и целиком подменяет неизменяемый снимок, а чтение
+ * любого count не больше maxCount отдаёт его начало и не обращается к БД. Снимок
+ * перестраивается по интервалу, раньше — после earlyRefreshLikes новых лайков, и сразу на
+ * следующей проверке, если изменились сами фильмы. Без изменений перестройки нет.
+ * Лайки в снимке могут отставать до перестройки, а после изменения или удаления фильма
+ * снимок не отдаётся, пока не будет перестроен.
+ */
+@Slf4j
+@Component
+public class PopularFilmsSnapshot {
+    private final boolean enabled;
+    private final int maxCount;
+    private final Duration refreshInterval;
+    private final long earlyRefreshLikes;
+    private final LongSupplier writeVersion;
+    private final LongSupplier likeWrites;
+    private final IntFunction<List<Film>> loader;
+    private final Clock clock;
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    public PopularFilmsSnapshot(FilmService filmService, Clock clock, MeterRegistry meterRegistry,
+                           @Value("${filmorate.ranking.popular-snapshot.enabled:false}") boolean enabled,
+                           @Value("${filmorate.ranking.popular-snapshot.max-count:100}") int maxCount,
+                           @Value("${filmorate.ranking.popular-snapshot.refresh-interval-ms:30000}") long refreshIntervalMillis,
+                           @Value("${filmorate.ranking.popular-snapshot.early-refresh-likes:500}") long earlyRefreshLikes) {
+        this(enabled, maxCount, Duration.ofMillis(refreshIntervalMillis), earlyRefreshLikes,
+                filmService::writeVersion, filmService::likeWrites,
+                count -> filmService.getPopularFilms(count, null, null, null, true), clock);
+        Gauge.builder("filmorate.popular.snapshot.age", this, PopularFilmsSnapshot::ageSeconds)
+                .description("Возраст снимка популярных фильмов")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    PopularFilmsSnapshot(boolean enabled, int maxCount, Duration refreshInterval, long earlyRefreshLikes,
+                    LongSupplier writeVersion, LongSupplier likeWrites, IntFunction<List<Film>> loader,
+                    Clock clock) {
+        this.enabled = enabled;
+        this.maxCount = maxCount;
+        this.refreshInterval = refreshInterval;
+        this.earlyRefreshLikes = earlyRefreshLikes;
+        this.writeVersion = writeVersion;
+        this.likeWrites = likeWrites;
+        this.loader = loader;
+        this.clock = clock;
+    }
+
+    /**
+     * Первые count популярных фильмов из снимка; пусто, если снимок выключен, ещё не
+     * построен, запрошены фильтры, count больше посчитанного или после постройки менялись
+     * не только лайки.
+     */
+    public Optional<List<Film>> find(int count, Integer genreId, Integer mpaId, Integer year) {
+        Snapshot current = snapshot;
+        if (current == null || genreId != null || mpaId != null || year != null || count <= 0 || count > maxCount) {
+            return Optional.empty();
+        }
+        long likes = likeWrites.getAsLong();
+        if (writeVersion.getAsLong() - likes != current.version - current.likes) {
+            return Optional.empty();
+        }
+        return Optional.of(current.films.subList(0, Math.min(count, current.films.size())));
+    }
+
+    /**
+     * Проверка по расписанию: версии читаются до загрузки, поэтому изменения, пришедшие во
+     * время неё, вызовут следующую перестройку.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${filmorate.ranking.popular-snapshot.check-interval-ms:250}")
+    public void refreshIfDue() {
+        if (!enabled) {
+            return;
+        }
+        long version = writeVersion.getAsLong();
+        long likes = likeWrites.getAsLong();
+        Snapshot current = snapshot;
+        if (current != null && current.version == version) {
+            return;
+        }
+        Instant now = clock.instant();
+        boolean due = current == null
+                || likes - current.likes >= earlyRefreshLikes
+                || version - current.version > likes - current.likes
+                || !now.isBefore(current.builtAt.plus(refreshInterval));
+        if (!due) {
+            return;
+        }
+        long started = System.nanoTime();
+        List<Film> films = List.copyOf(loader.apply(maxCount));
+        snapshot = new Snapshot(films, version, likes, now);
+        log.debug("Снимок популярных фильмов перестроен за {} мс: фильмов {}",
+                (System.nanoTime() - started) / 1_000_000, films.size());
+    }
+
+    private double ageSeconds() {
+        Snapshot current = snapshot;
+        return current == null ? 0 : Duration.between(current.builtAt, clock.instant()).toMillis() / 1000.0;
+    }
+
+    private record Snapshot(List<Film> films, long version, long likes, Instant builtAt) {
+    }
+}
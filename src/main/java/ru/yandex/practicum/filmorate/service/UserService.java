@@ -2,23 +2,50 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dto.BatchResult;
+import ru.yandex.practicum.filmorate.dto.CursorPage;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.graph.FriendGraph;
+import ru.yandex.practicum.filmorate.jfr.CommonFriendsQueryEvent;
+import ru.yandex.practicum.filmorate.jfr.FriendWriteEvent;
+import ru.yandex.practicum.filmorate.model.FeedEventType;
+import ru.yandex.practicum.filmorate.model.FeedOperation;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.ranking.FriendsPopularity;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.BiFunction;
 
 @Slf4j
 @Service
 public class UserService {
+    private static final int MAX_BATCH_IDS = 100;
+    private static final int DEFAULT_FRIENDS_PAGE = 100;
+    private static final int MAX_FRIENDS_PAGE = 1000;
+    private static final int MAX_PATH_DEPTH = 6;
+
     private final UserStorage userStorage;
+    private final FeedService feedService;
+    private final FriendsPopularity friendsPopularity;
+    private final FriendGraph friendGraph;
 
     @Autowired
-    public UserService(@Qualifier("userDbStorage") UserStorage userStorage) {
+    public UserService(UserStorage userStorage,
+                       FeedService feedService,
+                       FriendsPopularity friendsPopularity,
+                       FriendGraph friendGraph) {
         this.userStorage = userStorage;
+        this.feedService = feedService;
+        this.friendsPopularity = friendsPopularity;
+        this.friendGraph = friendGraph;
     }
 
     public User createUser(User user) {
@@ -42,16 +69,33 @@ public class UserService {
         return updatedUser;
     }
 
+    @Transactional(readOnly = true)
     public User getUserById(int id) {
         return userStorage.findById(id)
                 .orElseThrow(() -> new NotFoundException("Пользователь с id = " + id + " не найден"));
     }
 
+    @Transactional(readOnly = true)
     public Collection<User> getAllUsers() {
         return userStorage.findAll();
     }
 
+    /**
+     * Пользователи по списку id в порядке запроса; повторы схлопываются, отсутствующие id
+     * возвращаются отдельно.
+     */
+    @Transactional(readOnly = true)
+    public BatchResult<User> getUsersByIds(List<Integer> ids) {
+        Set<Integer> requested = new LinkedHashSet<>(ids);
+        if (requested.isEmpty() || requested.size() > MAX_BATCH_IDS) {
+            throw new ValidationException("Количество id должно быть от 1 до " + MAX_BATCH_IDS);
+        }
+        return BatchResult.inRequestOrder(requested, userStorage.findByIds(requested), User::getId);
+    }
+
     public void addFriend(int userId, int friendId) {
+        FriendWriteEvent event = new FriendWriteEvent();
+        event.begin();
         if (userStorage.findById(userId).isEmpty()) {
             throw new NotFoundException("Пользователь с id = " + userId + " не найден");
         }
@@ -59,11 +103,19 @@ public class UserService {
             throw new NotFoundException("Пользователь с id = " + friendId + " не найден");
         }
 
-        userStorage.addFriend(userId, friendId);
+        boolean added = userStorage.addFriend(userId, friendId);
+        if (added) {
+            friendsPopularity.addFriend(userId, friendId);
+            friendGraph.markChanged();
+            feedService.publish(userId, FeedEventType.FRIEND, FeedOperation.ADD, friendId);
+        }
+        commitFriendWrite(event, userId, friendId, "add", added);
         log.info("Пользователь {} добавил в друзья пользователя {}", userId, friendId);
     }
 
     public void removeFriend(int userId, int friendId) {
+        FriendWriteEvent event = new FriendWriteEvent();
+        event.begin();
         if (userStorage.findById(userId).isEmpty()) {
             throw new NotFoundException("Пользователь с id = " + userId + " не найден");
         }
@@ -71,24 +123,146 @@ public class UserService {
             throw new NotFoundException("Пользователь с id = " + friendId + " не найден");
         }
 
-        userStorage.removeFriend(userId, friendId);
+        boolean removed = userStorage.removeFriend(userId, friendId);
+        if (removed) {
+            friendsPopularity.removeFriend(userId, friendId);
+            friendGraph.markChanged();
+            feedService.publish(userId, FeedEventType.FRIEND, FeedOperation.REMOVE, friendId);
+        }
+        commitFriendWrite(event, userId, friendId, "remove", removed);
         log.info("Пользователь {} удалил из друзей пользователя {}", userId, friendId);
     }
 
-    public List<User> getFriends(int userId) {
+    private static void commitFriendWrite(FriendWriteEvent event, int userId, int friendId, String operation,
+                                          boolean changed) {
+        if (event.shouldCommit()) {
+            event.userId = userId;
+            event.friendId = friendId;
+            event.operation = operation;
+            event.changed = changed;
+            event.commit();
+        }
+    }
+
+    /**
+     * Страница друзей по возрастанию id; курсор — id последнего друга предыдущей страницы.
+     * Без cursor и limit возвращается весь список, как до постраничного режима.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<User> getFriends(int userId, String cursor, Integer limit) {
+        validatePageSize(limit);
+        if (userStorage.findById(userId).isEmpty()) {
+            throw new NotFoundException("Пользователь с id = " + userId + " не найден");
+        }
+        return pageOrAll((afterId, size) -> userStorage.findFriendIds(userId, afterId, size), cursor, limit);
+    }
+
+    @Transactional(readOnly = true)
+    public int getFriendsCount(int userId) {
+        if (userStorage.findById(userId).isEmpty()) {
+            throw new NotFoundException("Пользователь с id = " + userId + " не найден");
+        }
+        return userStorage.getFriendsCount(userId);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<User> getCommonFriends(int userId, int otherId, String cursor, Integer limit) {
+        CommonFriendsQueryEvent event = new CommonFriendsQueryEvent();
+        event.begin();
+        validatePageSize(limit);
         if (userStorage.findById(userId).isEmpty()) {
             throw new NotFoundException("Пользователь с id = " + userId + " не найден");
         }
-        return userStorage.getFriends(userId);
+        if (userStorage.findById(otherId).isEmpty()) {
+            throw new NotFoundException("Пользователь с id = " + otherId + " не найден");
+        }
+        CursorPage<User> common = pageOrAll(
+                (afterId, size) -> userStorage.findCommonFriendIds(userId, otherId, afterId, size), cursor, limit);
+        if (event.shouldCommit()) {
+            event.userId = userId;
+            event.otherId = otherId;
+            event.rows = common.getItems().size();
+            event.commit();
+        }
+        return common;
     }
 
-    public List<User> getCommonFriends(int userId, int otherId) {
+    /**
+     * Кратчайшая цепочка друзей от userId до otherId по снимку графа дружбы, который может
+     * отставать от БД на интервал обновления снимка.
+     */
+    @Transactional(readOnly = true)
+    public List<User> getFriendPath(int userId, int otherId, int maxDepth) {
+        if (maxDepth < 1 || maxDepth > MAX_PATH_DEPTH) {
+            throw new ValidationException("Глубина поиска должна быть от 1 до " + MAX_PATH_DEPTH);
+        }
         if (userStorage.findById(userId).isEmpty()) {
             throw new NotFoundException("Пользователь с id = " + userId + " не найден");
         }
         if (userStorage.findById(otherId).isEmpty()) {
             throw new NotFoundException("Пользователь с id = " + otherId + " не найден");
         }
-        return userStorage.getCommonFriends(userId, otherId);
+        FriendGraph.PathSearch search = friendGraph.shortestPath(userId, otherId, maxDepth);
+        log.debug("Поиск цепочки {} → {}: посещено {}, остановлен лимитом: {}",
+                userId, otherId, search.visited(), search.truncated());
+        if (search.path().isEmpty()) {
+            throw new NotFoundException("Цепочка друзей от пользователя " + userId + " до " + otherId
+                    + " не найдена в пределах " + maxDepth + " шагов");
+        }
+        BatchResult<User> users = BatchResult.inRequestOrder(search.path(), userStorage.findByIds(search.path()),
+                User::getId);
+        if (!users.getMissingIds().isEmpty()) {
+            throw new NotFoundException("Цепочка друзей от пользователя " + userId + " до " + otherId
+                    + " устарела: пользователи " + users.getMissingIds() + " удалены");
+        }
+        return users.getItems();
+    }
+
+    private static void validatePageSize(Integer limit) {
+        if (limit != null && (limit < 1 || limit > MAX_FRIENDS_PAGE)) {
+            throw new ValidationException("Размер страницы друзей должен быть от 1 до " + MAX_FRIENDS_PAGE);
+        }
+    }
+
+    private static int parseCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(cursor.trim());
+        } catch (NumberFormatException e) {
+            throw new ValidationException("Некорректный курсор друзей: " + cursor);
+        }
+    }
+
+    /**
+     * Одна страница, если задан cursor или limit, иначе все страницы подряд: клиенты без
+     * курсора по-прежнему получают полный список друзей.
+     */
+    private CursorPage<User> pageOrAll(BiFunction<Integer, Integer, List<Integer>> idsAfter,
+                                       String cursor, Integer limit) {
+        if (cursor != null || limit != null) {
+            int size = limit == null ? DEFAULT_FRIENDS_PAGE : limit;
+            return page(idsAfter.apply(parseCursor(cursor), size), size);
+        }
+        List<User> users = new ArrayList<>();
+        String next = null;
+        do {
+            CursorPage<User> page = page(idsAfter.apply(parseCursor(next), MAX_FRIENDS_PAGE), MAX_FRIENDS_PAGE);
+            users.addAll(page.getItems());
+            next = page.getNextCursor();
+        } while (next != null);
+        return new CursorPage<>(users, null);
+    }
+
+    /**
+     * Курсор берётся из страницы id, а не из загруженных пользователей: друг, удалённый на
+     * другом шарде, выпадает из страницы, но не обрывает обход.
+     */
+    private CursorPage<User> page(List<Integer> friendIds, int limit) {
+        List<User> users = BatchResult.inRequestOrder(friendIds, userStorage.findByIds(friendIds), User::getId)
+                .getItems();
+        String nextCursor = friendIds.size() == limit ? String.valueOf(friendIds.get(friendIds.size() - 1)) : null;
+        return new CursorPage<>(users, nextCursor);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,185 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import ru.yandex.practicum.filmorate.datasource.ReplicaRouting;
+import ru.yandex.practicum.filmorate.jfr.CacheLookupEvent;
+import ru.yandex.practicum.filmorate.timing.RequestTiming;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Кэш со сквозным чтением и явным сбросом при изменениях.
+ * Загруженное значение кладётся в кэш, только если за время загрузки ключ не сбрасывался:
+ * иначе чтение, начатое до записи, могло бы вернуть в кэш устаревшие данные.
+ * По той же причине не кэшируется прочитанное с реплики.
+ * Вытесняется давно не читанный ключ (LRU). Изменяемые значения кэш хранит и отдаёт
+ * копиями через {@code copier}, чтобы вызывающий код не менял закэшированное.
+ */
+public class ReadThroughCache<K, V> {
+    private static final int STRIPES = 64;
+
+    private final LinkedHashMap<K, V> entries;
+    private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final String name;
+    private final UnaryOperator<V> copier;
+
+    /**
+     * Для неизменяемых значений, которые можно отдавать без копирования.
+     */
+    public ReadThroughCache(String name, int maxEntries) {
+        this(name, maxEntries, UnaryOperator.identity());
+    }
+
+    public ReadThroughCache(String name, int maxEntries, UnaryOperator<V> copier) {
+        this.name = name;
+        this.copier = copier;
+        // Порядок доступа: самый давно прочитанный ключ первым уходит при переполнении
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public Optional<V> get(K key, Function<K, Optional<V>> loader) {
+        CacheLookupEvent event = new CacheLookupEvent();
+        event.begin();
+        V cached = lookup(key);
+        if (cached != null) {
+            hits.increment();
+            RequestTiming.recordCache(1, 0);
+            commitLookup(event, key, true);
+            return Optional.of(copier.apply(cached));
+        }
+        misses.increment();
+        RequestTiming.recordCache(0, 1);
+        int stripe = stripe(key);
+        long version = versions.get(stripe);
+        Optional<V> loaded = loader.apply(key);
+        if (loaded.isPresent() && !ReplicaRouting.routesToReplica()) {
+            store(key, stripe, version, loaded.get());
+        }
+        commitLookup(event, key, false);
+        return loaded;
+    }
+
+    /**
+     * Пакетное чтение: найденные в кэше значения возвращаются сразу, остальные ключи
+     * загружаются одним вызовом loader. Ключи, которых нет ни в кэше, ни в результате
+     * загрузки, в ответ не попадают.
+     */
+    public Map<K, V> getAll(Collection<K> keys, Function<List<K>, Map<K, V>> loader) {
+        Map<K, V> result = new HashMap<>();
+        Set<K> absent = new LinkedHashSet<>();
+        for (K key : keys) {
+            V cached = lookup(key);
+            if (cached != null) {
+                result.put(key, copier.apply(cached));
+            } else {
+                absent.add(key);
+            }
+        }
+        List<K> missing = new ArrayList<>(absent);
+        hits.add(result.size());
+        misses.add(missing.size());
+        RequestTiming.recordCache(result.size(), missing.size());
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        long[] started = new long[missing.size()];
+        for (int i = 0; i < started.length; i++) {
+            started[i] = versions.get(stripe(missing.get(i)));
+        }
+        Map<K, V> loaded = loader.apply(missing);
+        boolean cacheable = !ReplicaRouting.routesToReplica();
+        for (int i = 0; i < started.length; i++) {
+            K key = missing.get(i);
+            V value = loaded.get(key);
+            if (value == null) {
+                continue;
+            }
+            result.put(key, value);
+            if (cacheable) {
+                store(key, stripe(key), started[i], value);
+            }
+        }
+        return result;
+    }
+
+    public void invalidate(K key) {
+        versions.incrementAndGet(stripe(key));
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Сбрасывает весь кэш, когда изменение затрагивает заранее неизвестный набор ключей.
+     */
+    public void invalidateAll() {
+        for (int i = 0; i < STRIPES; i++) {
+            versions.incrementAndGet(i);
+        }
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Чтение в порядке доступа меняет саму карту, поэтому и оно идёт под блокировкой.
+     */
+    private V lookup(K key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    /**
+     * Кладёт копию загруженного значения, если ключ не сбрасывался с начала загрузки;
+     * проверка версии и запись под одной блокировкой с invalidate.
+     */
+    private void store(K key, int stripe, long version, V value) {
+        V copy = copier.apply(value);
+        synchronized (entries) {
+            if (versions.get(stripe) == version) {
+                entries.put(key, copy);
+            }
+        }
+    }
+
+    private void commitLookup(CacheLookupEvent event, K key, boolean hit) {
+        if (event.shouldCommit()) {
+            event.cache = name;
+            event.key = String.valueOf(key);
+            event.hit = hit;
+            event.commit();
+        }
+    }
+
+    private int stripe(K key) {
+        return Math.floorMod(key.hashCode(), STRIPES);
+    }
+}
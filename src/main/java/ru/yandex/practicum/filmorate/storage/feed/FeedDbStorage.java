@@ -0,0 +1,154 @@
+package ru.yandex.practicum.filmorate.storage.feed;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+import ru.yandex.practicum.filmorate.model.FeedEventType;
+import ru.yandex.practicum.filmorate.model.FeedOperation;
+import ru.yandex.practicum.filmorate.outbox.ChangeEntity;
+import ru.yandex.practicum.filmorate.outbox.ChangeOperation;
+import ru.yandex.practicum.filmorate.storage.outbox.OutboxStorage;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Журнал событий ленты: только вставка, номер события берётся из последовательности БД,
+ * поэтому он монотонно растёт и служит курсором постраничного чтения.
+ */
+@Slf4j
+@Repository
+public class FeedDbStorage implements FeedStorage {
+    private static final int IN_CHUNK = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final OutboxStorage outboxStorage;
+    private final Clock clock;
+    private final RowMapper<FeedEvent> mapper = new FeedEventRowMapper();
+
+    @Autowired
+    public FeedDbStorage(JdbcTemplate jdbcTemplate, OutboxStorage outboxStorage, Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.outboxStorage = outboxStorage;
+        this.clock = clock;
+    }
+
+    @Override
+    @Transactional
+    public void addAll(List<FeedEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        // Номера выделяются одним запросом на всю пачку и идут по возрастанию в порядке событий
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT NEXT VALUE FOR feed_events_seq FROM SYSTEM_RANGE(1, ?)", Long.class, events.size());
+        List<Long> sorted = new ArrayList<>(ids);
+        Collections.sort(sorted);
+        for (int i = 0; i < events.size(); i++) {
+            events.get(i).setEventId(sorted.get(i));
+        }
+
+        String sql = """
+                INSERT INTO feed_events (event_id, user_id, event_type, operation, entity_id, created_at)
+                VALUES (?, ?, ?, ?, ?, ?)
+                """;
+        jdbcTemplate.batchUpdate(sql, events, events.size(), (ps, event) -> {
+            ps.setLong(1, event.getEventId());
+            ps.setInt(2, event.getUserId());
+            ps.setString(3, event.getEventType().name());
+            ps.setString(4, event.getOperation().name());
+            ps.setInt(5, event.getEntityId());
+            ps.setTimestamp(6, Timestamp.from(event.getTimestamp()));
+        });
+        // Другие узлы сбрасывают по этим записям кэш ленты авторов
+        Set<Integer> authors = new LinkedHashSet<>();
+        events.forEach(event -> authors.add(event.getUserId()));
+        Instant now = clock.instant();
+        for (Integer userId : authors) {
+            outboxStorage.append(ChangeEntity.FEED, userId, null, ChangeOperation.CREATE, now);
+        }
+        log.debug("Записано событий ленты: {}", events.size());
+    }
+
+    /**
+     * Список id режется на части по {@link #IN_CHUNK}: из каждой части берётся своя первая
+     * страница, и они сливаются в общую.
+     */
+    @Override
+    public List<FeedEvent> findByUsers(Collection<Integer> userIds, Long beforeEventId, int limit) {
+        if (userIds.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(userIds));
+        List<FeedEvent> events = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += IN_CHUNK) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + IN_CHUNK, ids.size()));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            String sql = """
+                    SELECT event_id, user_id, event_type, operation, entity_id, created_at
+                    FROM feed_events
+                    WHERE user_id IN (%s) AND event_id < ?
+                    ORDER BY event_id DESC
+                    LIMIT ?
+                    """.formatted(placeholders);
+            List<Object> params = new ArrayList<>(chunk);
+            params.add(beforeEventId == null ? Long.MAX_VALUE : beforeEventId);
+            params.add(limit);
+            events.addAll(jdbcTemplate.query(sql, mapper, params.toArray()));
+        }
+        if (ids.size() <= IN_CHUNK) {
+            return events;
+        }
+        events.sort(Comparator.comparingLong(FeedEvent::getEventId).reversed());
+        return events.size() > limit ? new ArrayList<>(events.subList(0, limit)) : events;
+    }
+
+    @Override
+    public Map<Integer, List<FeedEvent>> findRecentByUsers(Collection<Integer> userIds, int perUser) {
+        Map<Integer, List<FeedEvent>> result = new HashMap<>();
+        List<Integer> ids = new ArrayList<>(userIds);
+        for (int from = 0; from < ids.size(); from += IN_CHUNK) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + IN_CHUNK, ids.size()));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            String sql = """
+                    SELECT event_id, user_id, event_type, operation, entity_id, created_at
+                    FROM (
+                        SELECT e.*, ROW_NUMBER() OVER (PARTITION BY user_id ORDER BY event_id DESC) AS rn
+                        FROM feed_events e
+                        WHERE user_id IN (%s)
+                    ) ranked
+                    WHERE rn <= ?
+                    ORDER BY user_id, event_id DESC
+                    """.formatted(placeholders);
+            List<Object> params = new ArrayList<>(chunk);
+            params.add(perUser);
+            jdbcTemplate.query(sql, rs -> {
+                FeedEvent event = mapper.mapRow(rs, 0);
+                result.computeIfAbsent(event.getUserId(), id -> new ArrayList<>()).add(event);
+            }, params.toArray());
+        }
+        return result;
+    }
+
+    private static class FeedEventRowMapper implements RowMapper<FeedEvent> {
+        @Override
+        public FeedEvent mapRow(ResultSet rs, int rowNum) throws SQLException {
+            FeedEvent event = new FeedEvent(
+                    rs.getInt("user_id"),
+                    FeedEventType.valueOf(rs.getString("event_type")),
+                    FeedOperation.valueOf(rs.getString("operation")),
+                    rs.getInt("entity_id"),
+                    rs.getTimestamp("created_at").toInstant());
+            event.setEventId(rs.getLong("event_id"));
+            return event;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.storage.feed;
+
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface FeedStorage {
+    void addAll(List<FeedEvent> events);
+
+    List<FeedEvent> findByUsers(Collection<Integer> userIds, Long beforeEventId, int limit);
+
+    Map<Integer, List<FeedEvent>> findRecentByUsers(Collection<Integer> userIds, int perUser);
+}
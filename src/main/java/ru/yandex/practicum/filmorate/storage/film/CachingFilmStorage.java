@@ -0,0 +1,177 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.outbox.ChangeEntity;
+import ru.yandex.practicum.filmorate.outbox.ChangeEvent;
+import ru.yandex.practicum.filmorate.outbox.ChangeOperation;
+import ru.yandex.practicum.filmorate.storage.cache.ReadThroughCache;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Хранилище фильмов в БД с кэшем фильмов по id. Кэш сбрасывается при своих изменениях
+ * и при изменениях других узлов, пришедших через outbox. В фильме из БД есть число лайков,
+ * поэтому лайк сбрасывает запись фильма, а удаление пользователя — весь кэш: его лайки
+ * удаляются каскадом, и какие фильмы они затронули, заранее неизвестно.
+ */
+@Slf4j
+@Primary
+@Component
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "cached")
+public class CachingFilmStorage implements FilmStorage {
+    private final FilmDbStorage delegate;
+    private final ReadThroughCache<Integer, Film> films;
+
+    @Autowired
+    public CachingFilmStorage(FilmDbStorage delegate,
+                              @Value("${filmorate.storage.cache.max-entries:10000}") int maxEntries) {
+        this.delegate = delegate;
+        this.films = new ReadThroughCache<>("films", maxEntries, Film::copy);
+        log.info("Кэш фильмов включён: до {} записей", maxEntries);
+    }
+
+    @Override
+    public Film add(Film film) {
+        return delegate.add(film);
+    }
+
+    @Override
+    public Film update(Film film) {
+        try {
+            return delegate.update(film);
+        } finally {
+            films.invalidate(film.getId());
+        }
+    }
+
+    @Override
+    public void delete(int id) {
+        try {
+            delegate.delete(id);
+        } finally {
+            films.invalidate(id);
+        }
+    }
+
+    @Override
+    public Optional<Film> findById(int id) {
+        return films.get(id, delegate::findById);
+    }
+
+    @Override
+    public Collection<Film> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public Collection<Film> findAll(boolean withGenres) {
+        return delegate.findAll(withGenres);
+    }
+
+    @Override
+    public List<Film> findByIds(Collection<Integer> ids) {
+        return films.getAll(ids, missing -> delegate.findByIds(missing).stream()
+                        .collect(Collectors.toMap(Film::getId, Function.identity())))
+                .values().stream()
+                .sorted(Comparator.comparing(Film::getId))
+                .toList();
+    }
+
+    @Override
+    public boolean addLike(int filmId, int userId, Instant likedAt) {
+        try {
+            return delegate.addLike(filmId, userId, likedAt);
+        } finally {
+            films.invalidate(filmId);
+        }
+    }
+
+    @Override
+    public boolean removeLike(int filmId, int userId, Instant likedAt) {
+        try {
+            return delegate.removeLike(filmId, userId, likedAt);
+        } finally {
+            films.invalidate(filmId);
+        }
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int count) {
+        return delegate.getPopularFilms(count);
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int count, Integer genreId, Integer mpaId, Integer year) {
+        return delegate.getPopularFilms(count, genreId, mpaId, year);
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int count, Integer genreId, Integer mpaId, Integer year, boolean withGenres) {
+        return delegate.getPopularFilms(count, genreId, mpaId, year, withGenres);
+    }
+
+    @Override
+    public Map<Integer, Integer> getLikesCounts() {
+        return delegate.getLikesCounts();
+    }
+
+    @Override
+    public int getLikesCount(int filmId) {
+        return delegate.getLikesCount(filmId);
+    }
+
+    @Override
+    public Optional<Instant> getLikeTime(int filmId, int userId) {
+        return delegate.getLikeTime(filmId, userId);
+    }
+
+    @Override
+    public List<Integer> findLikerIds(int filmId, int afterUserId, int limit) {
+        return delegate.findLikerIds(filmId, afterUserId, limit);
+    }
+
+    @Override
+    public List<FilmLike> findLikesByUser(int userId, FilmLike after, int limit) {
+        return delegate.findLikesByUser(userId, after, limit);
+    }
+
+    @Override
+    public List<FilmLike> findLikesSince(Instant since) {
+        return delegate.findLikesSince(since);
+    }
+
+    @Override
+    public long countDistinctLikersSince(Instant since) {
+        return delegate.countDistinctLikersSince(since);
+    }
+
+    /**
+     * Выполняется раньше остальных обработчиков, чтобы они перечитали фильм уже мимо кэша.
+     */
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onRemoteChange(ChangeEvent event) {
+        if (event.getEntityType() == ChangeEntity.FILM || event.getEntityType() == ChangeEntity.LIKE) {
+            films.invalidate(event.getEntityId());
+        } else if (event.getEntityType() == ChangeEntity.USER && event.getOperation() == ChangeOperation.DELETE) {
+            films.invalidateAll();
+        }
+    }
+}
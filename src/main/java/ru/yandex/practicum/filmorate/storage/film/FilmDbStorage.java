@@ -2,37 +2,51 @@ package ru.yandex.practicum.filmorate.storage.film;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.dao.DataAccessException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.jfr.FilmLoadEvent;
+import ru.yandex.practicum.filmorate.jfr.PopularQueryEvent;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.outbox.ChangeEntity;
+import ru.yandex.practicum.filmorate.outbox.ChangeOperation;
+import ru.yandex.practicum.filmorate.storage.outbox.OutboxStorage;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Repository
-@Qualifier("filmDbStorage")
+@ConditionalOnExpression("'${filmorate.storage:jdbc}' matches 'jdbc|cached'")
 public class FilmDbStorage implements FilmStorage {
+    private static final int IN_CHUNK = 1000;
+
     private final JdbcTemplate jdbcTemplate;
+    private final OutboxStorage outboxStorage;
+    private final Clock clock;
 
     @Autowired
-    public FilmDbStorage(JdbcTemplate jdbcTemplate) {
+    public FilmDbStorage(JdbcTemplate jdbcTemplate, OutboxStorage outboxStorage, Clock clock) {
         this.jdbcTemplate = jdbcTemplate;
+        this.outboxStorage = outboxStorage;
+        this.clock = clock;
     }
 
     @Override
+    @Transactional
     public Film add(Film film) {
         String sql = "INSERT INTO films (name, description, release_date, duration, mpa_id) VALUES (?, ?, ?, ?, ?)";
         KeyHolder keyHolder = new GeneratedKeyHolder();
@@ -52,12 +66,14 @@ public class FilmDbStorage implements FilmStorage {
         if (film.getGenres() != null && !film.getGenres().isEmpty()) {
             addGenresToFilm(film.getId(), film.getGenres());
         }
+        outboxStorage.append(ChangeEntity.FILM, film.getId(), null, ChangeOperation.CREATE, clock.instant());
 
         log.debug("Добавлен фильм с id: {}", film.getId());
         return findById(film.getId()).orElse(film);
     }
 
     @Override
+    @Transactional
     public Film update(Film film) {
         Film existingFilm = getExistingFilm(film.getId());
 
@@ -86,6 +102,7 @@ public class FilmDbStorage implements FilmStorage {
                 film.getMpa().getId(), film.getId());
 
         updateFilmGenres(film.getId(), film.getGenres());
+        outboxStorage.append(ChangeEntity.FILM, film.getId(), null, ChangeOperation.UPDATE, clock.instant());
 
         log.debug("Обновлён фильм с id: {}", film.getId());
         return findById(film.getId()).orElse(film);
@@ -93,7 +110,7 @@ public class FilmDbStorage implements FilmStorage {
 
     private Film getExistingFilm(int id) {
         String sql = """
-                SELECT f.id, f.name, f.description, f.release_date, f.duration,
+                SELECT f.id, f.name, f.description, f.release_date, f.duration, f.likes_count,
                        m.id as mpa_id, m.name as mpa_name,
                        g.id as genre_id, g.name as genre_name
                 FROM films f
@@ -112,15 +129,18 @@ public class FilmDbStorage implements FilmStorage {
     }
 
     @Override
+    @Transactional
     public void delete(int id) {
-        jdbcTemplate.update("DELETE FROM films WHERE id = ?", id);
+        if (jdbcTemplate.update("DELETE FROM films WHERE id = ?", id) > 0) {
+            outboxStorage.append(ChangeEntity.FILM, id, null, ChangeOperation.DELETE, clock.instant());
+        }
         log.debug("Удалён фильм с id: {}", id);
     }
 
     @Override
     public Optional<Film> findById(int id) {
         String sql = """
-                SELECT f.id, f.name, f.description, f.release_date, f.duration,
+                SELECT f.id, f.name, f.description, f.release_date, f.duration, f.likes_count,
                        m.id as mpa_id, m.name as mpa_name,
                        g.id as genre_id, g.name as genre_name
                 FROM films f
@@ -131,14 +151,22 @@ public class FilmDbStorage implements FilmStorage {
                 ORDER BY g.id
                 """;
 
+        FilmLoadEvent event = new FilmLoadEvent();
+        event.begin();
         List<Film> films = jdbcTemplate.query(sql, new FilmWithGenresExtractor(), id);
+        if (event.shouldCommit()) {
+            event.filmId = id;
+            event.found = !films.isEmpty();
+            event.genres = films.isEmpty() || films.get(0).getGenres() == null ? 0 : films.get(0).getGenres().size();
+            event.commit();
+        }
         return films.isEmpty() ? Optional.empty() : Optional.of(films.get(0));
     }
 
     @Override
     public Collection<Film> findAll() {
         String sql = """
-                SELECT f.id, f.name, f.description, f.release_date, f.duration,
+                SELECT f.id, f.name, f.description, f.release_date, f.duration, f.likes_count,
                        m.id as mpa_id, m.name as mpa_name,
                        g.id as genre_id, g.name as genre_name
                 FROM films f
@@ -152,38 +180,257 @@ public class FilmDbStorage implements FilmStorage {
     }
 
     @Override
-    public void addLike(int filmId, int userId) {
-        String sql = "MERGE INTO film_likes (film_id, user_id) KEY(film_id, user_id) VALUES (?, ?)";
-        jdbcTemplate.update(sql, filmId, userId);
+    public Collection<Film> findAll(boolean withGenres) {
+        if (withGenres) {
+            return findAll();
+        }
+        String sql = """
+                SELECT f.id, f.name, f.description, f.release_date, f.duration, f.likes_count,
+                       m.id as mpa_id, m.name as mpa_name
+                FROM films f
+                LEFT JOIN mpa m ON f.mpa_id = m.id
+                ORDER BY f.id
+                """;
+        return jdbcTemplate.query(sql, new FilmRowMapper());
+    }
+
+    @Override
+    public List<Film> findByIds(Collection<Integer> ids) {
+        return findByIds(ids, true);
+    }
+
+    /**
+     * Фильмы и жанры читаются двумя запросами по списку id, а не соединением с жанрами:
+     * так строки фильмов не размножаются по числу жанров.
+     */
+    @Override
+    public List<Film> findByIds(Collection<Integer> ids, boolean withGenres) {
+        List<Integer> sorted = ids.stream().distinct().sorted().toList();
+        List<Film> films = new ArrayList<>(sorted.size());
+        for (int from = 0; from < sorted.size(); from += IN_CHUNK) {
+            List<Integer> chunk = sorted.subList(from, Math.min(from + IN_CHUNK, sorted.size()));
+            String sql = """
+                    SELECT f.id, f.name, f.description, f.release_date, f.duration, f.likes_count,
+                           m.id as mpa_id, m.name as mpa_name
+                    FROM films f
+                    LEFT JOIN mpa m ON f.mpa_id = m.id
+                    WHERE f.id IN (%s)
+                    ORDER BY f.id
+                    """.formatted(String.join(",", Collections.nCopies(chunk.size(), "?")));
+            List<Film> loaded = jdbcTemplate.query(sql, new FilmRowMapper(), chunk.toArray());
+            if (withGenres) {
+                loadGenres(loaded);
+            }
+            films.addAll(loaded);
+        }
+        return films;
+    }
+
+    @Override
+    @Transactional
+    public boolean addLike(int filmId, int userId, Instant likedAt) {
+        String sql = """
+                INSERT INTO film_likes (film_id, user_id, created_at)
+                SELECT ?, ?, ?
+                WHERE NOT EXISTS (SELECT 1 FROM film_likes WHERE film_id = ? AND user_id = ?)
+                """;
+        boolean added;
+        try {
+            added = jdbcTemplate.update(sql, filmId, userId, Timestamp.from(likedAt), filmId, userId) > 0;
+        } catch (DuplicateKeyException e) {
+            added = false;
+        }
+        if (added) {
+            jdbcTemplate.update("UPDATE films SET likes_count = likes_count + 1 WHERE id = ?", filmId);
+            outboxStorage.append(ChangeEntity.LIKE, filmId, userId, ChangeOperation.CREATE, likedAt);
+        }
         log.debug("Добавлен лайк от пользователя {} к фильму {}", userId, filmId);
+        return added;
     }
 
     @Override
-    public void removeLike(int filmId, int userId) {
+    @Transactional
+    public boolean removeLike(int filmId, int userId, Instant likedAt) {
         String sql = "DELETE FROM film_likes WHERE film_id = ? AND user_id = ?";
-        jdbcTemplate.update(sql, filmId, userId);
+        boolean removed = jdbcTemplate.update(sql, filmId, userId) > 0;
+        if (removed) {
+            jdbcTemplate.update("UPDATE films SET likes_count = likes_count - 1 WHERE id = ?", filmId);
+            outboxStorage.append(ChangeEntity.LIKE, filmId, userId, ChangeOperation.DELETE, likedAt);
+        }
         log.debug("Удалён лайк от пользователя {} к фильму {}", userId, filmId);
+        return removed;
     }
 
     @Override
     public List<Film> getPopularFilms(int count) {
+        return getPopularFilms(count, null, null, null);
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int count, Integer genreId, Integer mpaId, Integer year) {
+        return getPopularFilms(count, genreId, mpaId, year, true);
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int count, Integer genreId, Integer mpaId, Integer year, boolean withGenres) {
+        StringBuilder where = new StringBuilder("WHERE 1 = 1");
+        List<Object> args = new ArrayList<>();
+        if (genreId != null) {
+            where.append(" AND f.id IN (SELECT fg.film_id FROM film_genres fg WHERE fg.genre_id = ?)");
+            args.add(genreId);
+        }
+        if (year != null) {
+            where.append(" AND f.release_date >= ? AND f.release_date < ?");
+            args.add(Date.valueOf(LocalDate.of(year, 1, 1)));
+            args.add(Date.valueOf(LocalDate.of(year + 1, 1, 1)));
+        }
+        if (mpaId != null) {
+            where.append(" AND f.mpa_id = ?");
+            args.add(mpaId);
+        }
+        args.add(count);
+
+        // Рейтинг строится по материализованному счётчику без чтения film_likes. Жанры
+        // подтягиваются уже к top-N, чтобы LIMIT считал фильмы, а не строки соединения
+        PopularQueryEvent event = new PopularQueryEvent();
+        event.begin();
+        List<Film> films;
+        if (withGenres) {
+            String sql = """
+                    SELECT f.id, f.name, f.description, f.release_date, f.duration, f.likes_count,
+                           m.id as mpa_id, m.name as mpa_name,
+                           g.id as genre_id, g.name as genre_name
+                    FROM (SELECT f.id
+                          FROM films f
+                          %s
+                          ORDER BY f.likes_count DESC, f.id
+                          LIMIT ?) ranked
+                    JOIN films f ON f.id = ranked.id
+                    LEFT JOIN mpa m ON f.mpa_id = m.id
+                    LEFT JOIN film_genres fg ON f.id = fg.film_id
+                    LEFT JOIN genres g ON fg.genre_id = g.id
+                    ORDER BY f.likes_count DESC, f.id, g.id
+                    """.formatted(where);
+            films = jdbcTemplate.query(sql, new FilmWithGenresExtractor(), args.toArray());
+        } else {
+            String sql = """
+                    SELECT f.id, f.name, f.description, f.release_date, f.duration, f.likes_count,
+                           m.id as mpa_id, m.name as mpa_name
+                    FROM films f
+                    LEFT JOIN mpa m ON f.mpa_id = m.id
+                    %s
+                    ORDER BY f.likes_count DESC, f.id
+                    LIMIT ?
+                    """.formatted(where);
+            films = jdbcTemplate.query(sql, new FilmRowMapper(), args.toArray());
+        }
+        if (event.shouldCommit()) {
+            event.source = "db";
+            event.count = count;
+            event.genreId = genreId == null ? 0 : genreId;
+            event.mpaId = mpaId == null ? 0 : mpaId;
+            event.year = year == null ? 0 : year;
+            event.rows = films.size();
+            event.commit();
+        }
+        return films;
+    }
+
+    @Override
+    public Map<Integer, Integer> getLikesCounts() {
+        String sql = "SELECT id AS film_id, likes_count FROM films WHERE likes_count > 0";
+        Map<Integer, Integer> likesCounts = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            likesCounts.put(rs.getInt("film_id"), rs.getInt("likes_count"));
+        });
+        return likesCounts;
+    }
+
+    @Override
+    public int getLikesCount(int filmId) {
+        List<Integer> counts = jdbcTemplate.queryForList("SELECT likes_count FROM films WHERE id = ?",
+                Integer.class, filmId);
+        return counts.isEmpty() ? 0 : counts.get(0);
+    }
+
+    @Override
+    public Optional<Instant> getLikeTime(int filmId, int userId) {
+        String sql = "SELECT created_at FROM film_likes WHERE film_id = ? AND user_id = ?";
+        List<Instant> times = jdbcTemplate.query(sql,
+                (rs, rowNum) -> rs.getTimestamp("created_at").toInstant(), filmId, userId);
+        return times.stream().findFirst();
+    }
+
+    @Override
+    public List<Integer> findLikerIds(int filmId, int afterUserId, int limit) {
+        String sql = "SELECT user_id FROM film_likes WHERE film_id = ? AND user_id > ? ORDER BY user_id LIMIT ?";
+        return jdbcTemplate.queryForList(sql, Integer.class, filmId, afterUserId, limit);
+    }
+
+    /**
+     * Идёт по индексу film_likes(user_id, created_at DESC, film_id DESC), который покрывает
+     * все выбираемые колонки.
+     */
+    @Override
+    public List<FilmLike> findLikesByUser(int userId, FilmLike after, int limit) {
+        if (after == null) {
+            String sql = """
+                    SELECT film_id, user_id, created_at
+                    FROM film_likes
+                    WHERE user_id = ?
+                    ORDER BY created_at DESC, film_id DESC
+                    LIMIT ?
+                    """;
+            return jdbcTemplate.query(sql, new FilmLikeRowMapper(), userId, limit);
+        }
         String sql = """
-                SELECT f.id, f.name, f.description, f.release_date, f.duration,
-                       m.id as mpa_id, m.name as mpa_name,
-                       g.id as genre_id, g.name as genre_name,
-                       COUNT(fl.user_id) as likes_count
-                FROM films f
-                LEFT JOIN mpa m ON f.mpa_id = m.id
-                LEFT JOIN film_genres fg ON f.id = fg.film_id
-                LEFT JOIN genres g ON fg.genre_id = g.id
-                LEFT JOIN film_likes fl ON f.id = fl.film_id
-                GROUP BY f.id, f.name, f.description, f.release_date, f.duration,
-                         m.id, m.name, g.id, g.name
-                ORDER BY likes_count DESC, f.id, g.id
+                SELECT film_id, user_id, created_at
+                FROM film_likes
+                WHERE user_id = ? AND (created_at < ? OR (created_at = ? AND film_id < ?))
+                ORDER BY created_at DESC, film_id DESC
                 LIMIT ?
                 """;
+        Timestamp likedAt = Timestamp.from(after.getCreatedAt());
+        return jdbcTemplate.query(sql, new FilmLikeRowMapper(), userId, likedAt, likedAt, after.getFilmId(), limit);
+    }
+
+    @Override
+    public List<FilmLike> findLikesSince(Instant since) {
+        String sql = "SELECT film_id, user_id, created_at FROM film_likes WHERE created_at >= ?";
+        return jdbcTemplate.query(sql, new FilmLikeRowMapper(), Timestamp.from(since));
+    }
 
-        return jdbcTemplate.query(sql, new FilmWithGenresExtractor(), count);
+    @Override
+    public long countDistinctLikersSince(Instant since) {
+        String sql = "SELECT COUNT(DISTINCT user_id) FROM film_likes WHERE created_at >= ?";
+        Long count = jdbcTemplate.queryForObject(sql, Long.class, Timestamp.from(since));
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Дозагружает жанры одним запросом на все фильмы списка.
+     */
+    private void loadGenres(List<Film> films) {
+        if (films.isEmpty()) {
+            return;
+        }
+        Map<Integer, Film> byId = new HashMap<>();
+        for (Film film : films) {
+            byId.put(film.getId(), film);
+        }
+        String sql = """
+                SELECT fg.film_id, g.id as genre_id, g.name as genre_name
+                FROM film_genres fg
+                JOIN genres g ON fg.genre_id = g.id
+                WHERE fg.film_id IN (%s)
+                ORDER BY fg.film_id, g.id
+                """.formatted(String.join(",", Collections.nCopies(byId.size(), "?")));
+        jdbcTemplate.query(sql, rs -> {
+            Genre genre = new Genre();
+            genre.setId(rs.getInt("genre_id"));
+            genre.setName(rs.getString("genre_name"));
+            byId.get(rs.getInt("film_id")).getGenres().add(genre);
+        }, byId.keySet().toArray());
     }
 
     private void addGenresToFilm(int filmId, Set<Genre> genres) {
@@ -203,43 +450,4 @@ public class FilmDbStorage implements FilmStorage {
         jdbcTemplate.update("DELETE FROM film_genres WHERE film_id = ?", filmId);
         addGenresToFilm(filmId, genres);
     }
-
-    private static class FilmWithGenresExtractor implements ResultSetExtractor<List<Film>> {
-        @Override
-        public List<Film> extractData(ResultSet rs) throws SQLException, DataAccessException {
-            Map<Integer, Film> filmMap = new LinkedHashMap<>();
-
-            while (rs.next()) {
-                int filmId = rs.getInt("id");
-
-                Film film = filmMap.get(filmId);
-                if (film == null) {
-                    film = new Film();
-                    film.setId(filmId);
-                    film.setName(rs.getString("name"));
-                    film.setDescription(rs.getString("description"));
-                    film.setReleaseDate(rs.getDate("release_date").toLocalDate());
-                    film.setDuration(rs.getInt("duration"));
-
-                    Mpa mpa = new Mpa();
-                    mpa.setId(rs.getInt("mpa_id"));
-                    mpa.setName(rs.getString("mpa_name"));
-                    film.setMpa(mpa);
-
-                    film.setGenres(new LinkedHashSet<>());
-                    filmMap.put(filmId, film);
-                }
-
-                int genreId = rs.getInt("genre_id");
-                if (!rs.wasNull()) {
-                    Genre genre = new Genre();
-                    genre.setId(genreId);
-                    genre.setName(rs.getString("genre_name"));
-                    film.getGenres().add(genre);
-                }
-            }
-
-            return new ArrayList<>(filmMap.values());
-        }
-    }
 }
\ No newline at end of file
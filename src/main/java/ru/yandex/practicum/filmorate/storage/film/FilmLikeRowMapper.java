@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.springframework.jdbc.core.RowMapper;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Лайк из строки film_likes с колонками film_id, user_id и created_at.
+ */
+public class FilmLikeRowMapper implements RowMapper<FilmLike> {
+    @Override
+    public FilmLike mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return new FilmLike(rs.getInt("film_id"), rs.getInt("user_id"), rs.getTimestamp("created_at").toInstant());
+    }
+}
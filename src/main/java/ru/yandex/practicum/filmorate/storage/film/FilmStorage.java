@@ -1,9 +1,12 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 
+import java.time.Instant;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface FilmStorage {
@@ -17,9 +20,56 @@ public interface FilmStorage {
 
     Collection<Film> findAll();
 
-    void addLike(int filmId, int userId);
+    /**
+     * Как {@link #findAll()}; при withGenres = false хранилище может не загружать жанры.
+     */
+    default Collection<Film> findAll(boolean withGenres) {
+        return findAll();
+    }
 
-    void removeLike(int filmId, int userId);
+    /**
+     * Фильмы с указанными id, отсортированные по id; отсутствующие id пропускаются.
+     */
+    List<Film> findByIds(Collection<Integer> ids);
+
+    default List<Film> findByIds(Collection<Integer> ids, boolean withGenres) {
+        return findByIds(ids);
+    }
+
+    boolean addLike(int filmId, int userId, Instant likedAt);
+
+    /**
+     * likedAt — время удаляемого лайка из {@link #getLikeTime}; по нему другие узлы снимают
+     * лайк с нужной корзины трендов.
+     */
+    boolean removeLike(int filmId, int userId, Instant likedAt);
 
     List<Film> getPopularFilms(int count);
+
+    List<Film> getPopularFilms(int count, Integer genreId, Integer mpaId, Integer year);
+
+    default List<Film> getPopularFilms(int count, Integer genreId, Integer mpaId, Integer year, boolean withGenres) {
+        return getPopularFilms(count, genreId, mpaId, year);
+    }
+
+    Map<Integer, Integer> getLikesCounts();
+
+    int getLikesCount(int filmId);
+
+    Optional<Instant> getLikeTime(int filmId, int userId);
+
+    /**
+     * Страница id лайкнувших фильм пользователей по возрастанию id, начиная после afterUserId.
+     */
+    List<Integer> findLikerIds(int filmId, int afterUserId, int limit);
+
+    /**
+     * Страница лайков пользователя от новых к старым, при равном времени — по убыванию film_id.
+     * Начинается строго после лайка after; null — с самого нового.
+     */
+    List<FilmLike> findLikesByUser(int userId, FilmLike after, int limit);
+
+    List<FilmLike> findLikesSince(Instant since);
+
+    long countDistinctLikersSince(Instant since);
 }
\ No newline at end of file
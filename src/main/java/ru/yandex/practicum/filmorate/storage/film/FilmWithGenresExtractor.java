@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Собирает фильмы из строк соединения films (с likes_count), mpa и жанров;
+ * строки одного фильма должны идти подряд.
+ */
+public class FilmWithGenresExtractor implements ResultSetExtractor<List<Film>> {
+    @Override
+    public List<Film> extractData(ResultSet rs) throws SQLException, DataAccessException {
+        Map<Integer, Film> filmMap = new LinkedHashMap<>();
+
+        while (rs.next()) {
+            int filmId = rs.getInt("id");
+
+            Film film = filmMap.get(filmId);
+            if (film == null) {
+                film = new Film();
+                film.setId(filmId);
+                film.setName(rs.getString("name"));
+                film.setDescription(rs.getString("description"));
+                film.setReleaseDate(rs.getDate("release_date").toLocalDate());
+                film.setDuration(rs.getInt("duration"));
+                film.setLikesCount(rs.getInt("likes_count"));
+
+                Mpa mpa = new Mpa();
+                mpa.setId(rs.getInt("mpa_id"));
+                mpa.setName(rs.getString("mpa_name"));
+                film.setMpa(mpa);
+
+                film.setGenres(new LinkedHashSet<>());
+                filmMap.put(filmId, film);
+            }
+
+            int genreId = rs.getInt("genre_id");
+            if (!rs.wasNull()) {
+                Genre genre = new Genre();
+                genre.setId(genreId);
+                genre.setName(rs.getString("genre_name"));
+                film.getGenres().add(genre);
+            }
+        }
+
+        return new ArrayList<>(filmMap.values());
+    }
+}
@@ -1,70 +1,394 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.memory.BinaryReader;
+import ru.yandex.practicum.filmorate.storage.memory.BinaryWriter;
+import ru.yandex.practicum.filmorate.storage.memory.Codecs;
+import ru.yandex.practicum.filmorate.storage.memory.DurableStore;
+import ru.yandex.practicum.filmorate.storage.memory.MemoryPersistence;
 
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Component
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "memory")
 public class InMemoryFilmStorage implements FilmStorage {
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte LIKE = 3;
+    private static final byte UNLIKE = 4;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
     private final Map<Integer, Film> films = new HashMap<>();
+    private final Map<Integer, Map<Integer, Instant>> likeTimes = new HashMap<>();
+    private final DurableStore store;
     private int nextId = 1;
 
+    public InMemoryFilmStorage() {
+        this(MemoryPersistence.disabled());
+    }
+
+    @Autowired
+    public InMemoryFilmStorage(MemoryPersistence persistence) {
+        this.store = persistence.open("films", new FilmState(), lock).orElse(null);
+    }
+
     @Override
     public Film add(Film film) {
-        film.setId(nextId++);
-        films.put(film.getId(), film);
+        write(() -> {
+            film.setId(nextId++);
+            film.setGenres(sortedGenres(film.getGenres()));
+            films.put(film.getId(), film.copy());
+        }, PUT, out -> writeFilm(out, film));
         log.debug("Добавлен фильм: {}", film);
         return film;
     }
 
+    /**
+     * Как и в БД, незаданные поля берутся из сохранённого фильма, а лайки не меняются.
+     */
     @Override
     public Film update(Film film) {
-        films.put(film.getId(), film);
+        write(() -> {
+            Film existing = films.get(film.getId());
+            if (existing == null) {
+                throw new NotFoundException("Фильм с id = " + film.getId() + " не найден");
+            }
+            if (film.getName() == null) {
+                film.setName(existing.getName());
+            }
+            if (film.getDescription() == null) {
+                film.setDescription(existing.getDescription());
+            }
+            if (film.getReleaseDate() == null) {
+                film.setReleaseDate(existing.getReleaseDate());
+            }
+            if (film.getDuration() == null) {
+                film.setDuration(existing.getDuration());
+            }
+            if (film.getMpa() == null) {
+                film.setMpa(existing.getMpa());
+            }
+            film.setGenres(sortedGenres(film.getGenres() == null ? existing.getGenres() : film.getGenres()));
+            film.setLikes(new HashSet<>(existing.getLikes()));
+            films.put(film.getId(), film.copy());
+        }, PUT, out -> writeFilm(out, film));
         log.debug("Обновлён фильм: {}", film);
         return film;
     }
 
     @Override
     public void delete(int id) {
-        films.remove(id);
+        write(() -> {
+            films.remove(id);
+            likeTimes.remove(id);
+        }, DELETE, out -> out.putInt(id));
         log.debug("Удалён фильм с id: {}", id);
     }
 
     @Override
     public Optional<Film> findById(int id) {
-        return Optional.ofNullable(films.get(id));
+        return read(() -> Optional.ofNullable(films.get(id)).map(Film::copy));
     }
 
     @Override
     public Collection<Film> findAll() {
-        return new ArrayList<>(films.values());
+        return read(() -> films.values().stream()
+                .sorted(Comparator.comparing(Film::getId))
+                .map(Film::copy)
+                .collect(Collectors.toList()));
     }
 
     @Override
-    public void addLike(int filmId, int userId) {
-        Film film = films.get(filmId);
-        if (film != null) {
-            film.addLike(userId);
-        }
+    public List<Film> findByIds(Collection<Integer> ids) {
+        return read(() -> ids.stream()
+                .distinct()
+                .sorted()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .map(Film::copy)
+                .collect(Collectors.toList()));
     }
 
     @Override
-    public void removeLike(int filmId, int userId) {
-        Film film = films.get(filmId);
-        if (film != null) {
-            film.removeLike(userId);
-        }
+    public boolean addLike(int filmId, int userId, Instant likedAt) {
+        boolean[] added = new boolean[1];
+        write(() -> added[0] = applyLike(filmId, userId, likedAt), LIKE, out -> {
+            out.putInt(filmId);
+            out.putInt(userId);
+            Codecs.putInstant(out, likedAt);
+        }, () -> added[0]);
+        return added[0];
+    }
+
+    @Override
+    public boolean removeLike(int filmId, int userId, Instant likedAt) {
+        boolean[] removed = new boolean[1];
+        write(() -> removed[0] = applyUnlike(filmId, userId), UNLIKE, out -> {
+            out.putInt(filmId);
+            out.putInt(userId);
+        }, () -> removed[0]);
+        return removed[0];
     }
 
     @Override
     public List<Film> getPopularFilms(int count) {
-        return films.values().stream()
-                .sorted((f1, f2) -> Integer.compare(f2.getLikes().size(), f1.getLikes().size()))
+        return getPopularFilms(count, null, null, null);
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int count, Integer genreId, Integer mpaId, Integer year) {
+        return read(() -> films.values().stream()
+                .filter(film -> genreId == null || film.getGenres().stream()
+                        .anyMatch(genre -> genreId.equals(genre.getId())))
+                .filter(film -> mpaId == null || (film.getMpa() != null && mpaId.equals(film.getMpa().getId())))
+                .filter(film -> year == null || film.getReleaseDate().getYear() == year)
+                .sorted(Comparator.comparingInt((Film film) -> film.getLikes().size()).reversed()
+                        .thenComparing(Film::getId))
                 .limit(count)
-                .collect(Collectors.toList());
+                .map(Film::copy)
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public Map<Integer, Integer> getLikesCounts() {
+        return read(() -> films.values().stream()
+                .filter(film -> !film.getLikes().isEmpty())
+                .collect(Collectors.toMap(Film::getId, film -> film.getLikes().size())));
+    }
+
+    @Override
+    public int getLikesCount(int filmId) {
+        return read(() -> {
+            Film film = films.get(filmId);
+            return film == null ? 0 : film.getLikes().size();
+        });
+    }
+
+    @Override
+    public Optional<Instant> getLikeTime(int filmId, int userId) {
+        return read(() -> Optional.ofNullable(likeTimes.getOrDefault(filmId, Map.of()).get(userId)));
+    }
+
+    @Override
+    public List<Integer> findLikerIds(int filmId, int afterUserId, int limit) {
+        return read(() -> {
+            Film film = films.get(filmId);
+            if (film == null) {
+                return List.of();
+            }
+            return film.getLikes().stream()
+                    .filter(userId -> userId > afterUserId)
+                    .sorted()
+                    .limit(limit)
+                    .collect(Collectors.toList());
+        });
+    }
+
+    @Override
+    public List<FilmLike> findLikesByUser(int userId, FilmLike after, int limit) {
+        Comparator<FilmLike> newestFirst = Comparator.comparing(FilmLike::getCreatedAt)
+                .thenComparing(FilmLike::getFilmId)
+                .reversed();
+        return read(() -> likeTimes.entrySet().stream()
+                .filter(entry -> entry.getValue().containsKey(userId))
+                .map(entry -> new FilmLike(entry.getKey(), userId, entry.getValue().get(userId)))
+                .filter(like -> after == null || newestFirst.compare(like, after) > 0)
+                .sorted(newestFirst)
+                .limit(limit)
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public List<FilmLike> findLikesSince(Instant since) {
+        return read(() -> {
+            List<FilmLike> likes = new ArrayList<>();
+            likeTimes.forEach((filmId, users) -> users.forEach((userId, likedAt) -> {
+                if (!likedAt.isBefore(since)) {
+                    likes.add(new FilmLike(filmId, userId, likedAt));
+                }
+            }));
+            return likes;
+        });
+    }
+
+    @Override
+    public long countDistinctLikersSince(Instant since) {
+        return findLikesSince(since).stream()
+                .map(FilmLike::getUserId)
+                .distinct()
+                .count();
+    }
+
+    private static Set<Genre> sortedGenres(Set<Genre> genres) {
+        Map<Integer, Genre> byId = new TreeMap<>();
+        if (genres != null) {
+            genres.stream()
+                    .filter(genre -> genre.getId() != null)
+                    .forEach(genre -> byId.putIfAbsent(genre.getId(), genre));
+        }
+        return new LinkedHashSet<>(byId.values());
+    }
+
+    private boolean applyLike(int filmId, int userId, Instant likedAt) {
+        Film film = films.get(filmId);
+        if (film == null || !film.addLike(userId)) {
+            return false;
+        }
+        likeTimes.computeIfAbsent(filmId, id -> new HashMap<>()).put(userId, likedAt);
+        return true;
+    }
+
+    private boolean applyUnlike(int filmId, int userId) {
+        Film film = films.get(filmId);
+        if (film == null || !film.removeLike(userId)) {
+            return false;
+        }
+        likeTimes.getOrDefault(filmId, Map.of()).remove(userId);
+        return true;
+    }
+
+    private void write(Runnable change, byte type, Consumer<BinaryWriter> record) {
+        write(change, type, record, () -> true);
+    }
+
+    /**
+     * Применяет изменение под блокировкой и, если оно что-то поменяло, пишет его в журнал;
+     * ожидание fsync происходит уже после снятия блокировки.
+     */
+    private void write(Runnable change, byte type, Consumer<BinaryWriter> record, Supplier<Boolean> changed) {
+        long seq = 0;
+        lock.writeLock().lock();
+        try {
+            change.run();
+            if (store != null && changed.get()) {
+                seq = store.log(type, record);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (seq > 0) {
+            store.commit(seq);
+        }
+    }
+
+    private <T> T read(Supplier<T> query) {
+        lock.readLock().lock();
+        try {
+            return query.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void writeFilm(BinaryWriter out, Film film) {
+        out.putInt(film.getId());
+        out.putString(film.getName());
+        out.putString(film.getDescription());
+        Codecs.putDate(out, film.getReleaseDate());
+        Codecs.putNullableInt(out, film.getDuration());
+        out.putByte((byte) (film.getMpa() == null ? 0 : 1));
+        if (film.getMpa() != null) {
+            Codecs.putNullableInt(out, film.getMpa().getId());
+            out.putString(film.getMpa().getName());
+        }
+        Set<Genre> genres = film.getGenres() == null ? Set.of() : film.getGenres();
+        out.putInt(genres.size());
+        for (Genre genre : genres) {
+            Codecs.putNullableInt(out, genre.getId());
+            out.putString(genre.getName());
+        }
+        Map<Integer, Instant> times = likeTimes.getOrDefault(film.getId(), Map.of());
+        out.putInt(film.getLikes().size());
+        for (Integer userId : film.getLikes()) {
+            out.putInt(userId);
+            Codecs.putInstant(out, times.get(userId));
+        }
+    }
+
+    private void readFilm(BinaryReader in) {
+        Film film = new Film();
+        film.setId(in.getInt());
+        film.setName(in.getString());
+        film.setDescription(in.getString());
+        film.setReleaseDate(Codecs.getDate(in));
+        film.setDuration(Codecs.getNullableInt(in));
+        if (in.getByte() == 1) {
+            Integer mpaId = Codecs.getNullableInt(in);
+            film.setMpa(new Mpa(mpaId, in.getString()));
+        }
+        int genres = in.getInt();
+        for (int i = 0; i < genres; i++) {
+            Integer genreId = Codecs.getNullableInt(in);
+            film.addGenre(new Genre(genreId, in.getString()));
+        }
+        int likes = in.getInt();
+        Map<Integer, Instant> times = new HashMap<>();
+        for (int i = 0; i < likes; i++) {
+            int userId = in.getInt();
+            Instant likedAt = Codecs.getInstant(in);
+            film.addLike(userId);
+            if (likedAt != null) {
+                times.put(userId, likedAt);
+            }
+        }
+        films.put(film.getId(), film);
+        if (times.isEmpty()) {
+            likeTimes.remove(film.getId());
+        } else {
+            likeTimes.put(film.getId(), times);
+        }
+        nextId = Math.max(nextId, film.getId() + 1);
+    }
+
+    private final class FilmState implements DurableStore.State {
+        @Override
+        public void writeSnapshot(BinaryWriter out) {
+            out.putInt(nextId);
+            out.putInt(films.size());
+            for (Film film : films.values()) {
+                writeFilm(out, film);
+            }
+        }
+
+        @Override
+        public void readSnapshot(BinaryReader in) {
+            films.clear();
+            likeTimes.clear();
+            nextId = in.getInt();
+            int count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                readFilm(in);
+            }
+        }
+
+        @Override
+        public void apply(byte type, BinaryReader record) {
+            switch (type) {
+                case PUT -> readFilm(record);
+                case DELETE -> {
+                    int id = record.getInt();
+                    films.remove(id);
+                    likeTimes.remove(id);
+                }
+                case LIKE -> applyLike(record.getInt(), record.getInt(), Codecs.getInstant(record));
+                case UNLIKE -> applyUnlike(record.getInt(), record.getInt());
+                default -> throw new IllegalStateException("Неизвестный тип записи журнала фильмов: " + type);
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -5,6 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.Genre;
 
 import java.sql.ResultSet;
@@ -30,6 +31,7 @@ public class GenreDbStorage implements GenreStorage {
     };
 
     @Override
+    @Transactional(readOnly = true)
     public Optional<Genre> findById(int id) {
         String sql = "SELECT * FROM genres WHERE id = ?";
         try {
@@ -41,6 +43,7 @@ public class GenreDbStorage implements GenreStorage {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Collection<Genre> findAll() {
         String sql = "SELECT * FROM genres ORDER BY id";
         return jdbcTemplate.query(sql, genreRowMapper);
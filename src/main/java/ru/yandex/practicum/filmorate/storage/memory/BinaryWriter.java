@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+/**
+ * Запись примитивов в компактном двоичном формате снимков и журнала.
+ */
+public interface BinaryWriter {
+    void putByte(byte value);
+
+    void putInt(int value);
+
+    void putLong(long value);
+
+    void putString(String value);
+}
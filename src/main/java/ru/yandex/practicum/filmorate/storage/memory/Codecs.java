@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Кодирование необязательных значений и дат для снимков и журнала.
+ */
+public final class Codecs {
+    private Codecs() {
+    }
+
+    public static void putNullableInt(BinaryWriter out, Integer value) {
+        out.putByte((byte) (value == null ? 0 : 1));
+        if (value != null) {
+            out.putInt(value);
+        }
+    }
+
+    public static Integer getNullableInt(BinaryReader in) {
+        return in.getByte() == 0 ? null : in.getInt();
+    }
+
+    public static void putDate(BinaryWriter out, LocalDate date) {
+        out.putLong(date == null ? Long.MIN_VALUE : date.toEpochDay());
+    }
+
+    public static LocalDate getDate(BinaryReader in) {
+        long epochDay = in.getLong();
+        return epochDay == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    public static void putInstant(BinaryWriter out, Instant instant) {
+        out.putLong(instant == null ? Long.MIN_VALUE : instant.getEpochSecond());
+        out.putInt(instant == null ? 0 : instant.getNano());
+    }
+
+    public static Instant getInstant(BinaryReader in) {
+        long seconds = in.getLong();
+        int nanos = in.getInt();
+        return seconds == Long.MIN_VALUE ? null : Instant.ofEpochSecond(seconds, nanos);
+    }
+}
@@ -0,0 +1,106 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Path;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Долговечность одного хранилища в памяти: снимок плюс журнал изменений после него.
+ * Хранилище применяет изменение под своей блокировкой записи, там же вызывает {@link #log},
+ * а после снятия блокировки — {@link #commit}, чтобы fsync не держал блокировку.
+ */
+@Slf4j
+public class DurableStore implements AutoCloseable {
+
+    /**
+     * Состояние хранилища, которое умеет сохранять себя в снимок и применять записи журнала.
+     */
+    public interface State {
+        void writeSnapshot(BinaryWriter out);
+
+        void readSnapshot(BinaryReader in);
+
+        void apply(byte type, BinaryReader record);
+    }
+
+    private final String name;
+    private final Path snapshotPath;
+    private final WriteAheadLog wal;
+    private final State state;
+    private final ReadWriteLock lock;
+
+    private DurableStore(String name, Path directory, FsyncPolicy policy, long fsyncIntervalMillis,
+                         State state, ReadWriteLock lock) {
+        this.name = name;
+        this.snapshotPath = directory.resolve(name + ".snapshot");
+        this.wal = new WriteAheadLog(directory, name, policy, fsyncIntervalMillis);
+        this.state = state;
+        this.lock = lock;
+    }
+
+    static DurableStore open(String name, Path directory, FsyncPolicy policy, long fsyncIntervalMillis,
+                             State state, ReadWriteLock lock) {
+        DurableStore store = new DurableStore(name, directory, policy, fsyncIntervalMillis, state, lock);
+        store.recover();
+        return store;
+    }
+
+    private void recover() {
+        long started = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            long fromSegment = SnapshotFile.read(snapshotPath)
+                    .map(snapshot -> {
+                        state.readSnapshot(snapshot.content());
+                        return snapshot.walSegment();
+                    })
+                    .orElse(0L);
+            long replayed = wal.recover(fromSegment, state::apply);
+            log.info("Хранилище {} восстановлено за {} мс: снимок до сегмента {}, записей журнала {}",
+                    name, (System.nanoTime() - started) / 1_000_000, fromSegment, replayed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет изменение в журнал. Вызывается под блокировкой записи хранилища.
+     */
+    public long log(byte type, Consumer<BinaryWriter> payload) {
+        HeapBinaryWriter writer = new HeapBinaryWriter();
+        payload.accept(writer);
+        return wal.append(type, writer);
+    }
+
+    /**
+     * Ждёт, пока изменение станет долговечным согласно политике fsync.
+     */
+    public void commit(long seq) {
+        wal.awaitDurable(seq);
+    }
+
+    /**
+     * Пишет снимок и начинает новый сегмент журнала. Изменения на время записи
+     * снимка блокируются, чтение продолжает работать.
+     */
+    public synchronized void snapshot() {
+        long started = System.nanoTime();
+        long segment;
+        lock.readLock().lock();
+        try {
+            SnapshotFile.write(snapshotPath, wal.currentSegment() + 1, state::writeSnapshot);
+            segment = wal.rotate();
+        } finally {
+            lock.readLock().unlock();
+        }
+        wal.deleteSegmentsBefore(segment);
+        log.info("Снимок хранилища {} записан за {} мс", name, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    @Override
+    public void close() {
+        wal.close();
+    }
+}
@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import java.util.Locale;
+
+/**
+ * Когда записи журнала сбрасываются на диск.
+ */
+public enum FsyncPolicy {
+    /**
+     * Вызов ждёт fsync; одновременные записи подтверждаются одним fsync (групповая фиксация).
+     */
+    ALWAYS,
+    /**
+     * Фоновый fsync раз в заданный интервал; при сбое теряется не больше интервала записей.
+     */
+    INTERVAL,
+    /**
+     * Данные только передаются ОС, сброс на диск остаётся на её усмотрение.
+     */
+    NEVER;
+
+    public static FsyncPolicy fromString(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Неизвестная политика fsync: " + value, e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Буфер в куче для одной записи журнала.
+ */
+public class HeapBinaryWriter implements BinaryWriter {
+    private byte[] bytes = new byte[64];
+    private int size;
+
+    @Override
+    public void putByte(byte value) {
+        ensure(1);
+        bytes[size++] = value;
+    }
+
+    @Override
+    public void putInt(int value) {
+        ensure(Integer.BYTES);
+        ByteBuffer.wrap(bytes, size, Integer.BYTES).putInt(value);
+        size += Integer.BYTES;
+    }
+
+    @Override
+    public void putLong(long value) {
+        ensure(Long.BYTES);
+        ByteBuffer.wrap(bytes, size, Long.BYTES).putLong(value);
+        size += Long.BYTES;
+    }
+
+    @Override
+    public void putString(String value) {
+        if (value == null) {
+            putInt(-1);
+            return;
+        }
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        putInt(encoded.length);
+        ensure(encoded.length);
+        System.arraycopy(encoded, 0, bytes, size, encoded.length);
+        size += encoded.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte[] array() {
+        return bytes;
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+        }
+    }
+}
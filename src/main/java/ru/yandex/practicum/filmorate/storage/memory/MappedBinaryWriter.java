@@ -0,0 +1,97 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Запись снимка через отображение файла в память. Файл отображается окнами по {@code CHUNK} байт,
+ * при переходе к следующему окну записанная часть учитывается в контрольной сумме.
+ */
+class MappedBinaryWriter implements BinaryWriter {
+    private static final int CHUNK = 8 << 20;
+
+    private final FileChannel channel;
+    private final CRC32 crc = new CRC32();
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+
+    MappedBinaryWriter(FileChannel channel, long start) {
+        this.channel = channel;
+        this.position = start;
+    }
+
+    @Override
+    public void putByte(byte value) {
+        ensure(1).put(value);
+        position++;
+    }
+
+    @Override
+    public void putInt(int value) {
+        ensure(Integer.BYTES).putInt(value);
+        position += Integer.BYTES;
+    }
+
+    @Override
+    public void putLong(long value) {
+        ensure(Long.BYTES).putLong(value);
+        position += Long.BYTES;
+    }
+
+    @Override
+    public void putString(String value) {
+        if (value == null) {
+            putInt(-1);
+            return;
+        }
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        putInt(encoded.length);
+        ensure(encoded.length).put(encoded);
+        position += encoded.length;
+    }
+
+    long position() {
+        return position;
+    }
+
+    /**
+     * Завершает запись: сбрасывает последнее окно на диск, обрезает файл до записанных байт
+     * (окно отображения растягивает его до границы {@code CHUNK}) и возвращает контрольную сумму.
+     */
+    long finish() {
+        closeWindow();
+        try {
+            channel.truncate(position);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return crc.getValue();
+    }
+
+    private MappedByteBuffer ensure(int bytes) {
+        if (window == null || window.remaining() < bytes) {
+            closeWindow();
+            try {
+                windowStart = position;
+                window = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.max(CHUNK, bytes));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return window;
+    }
+
+    private void closeWindow() {
+        if (window == null) {
+            return;
+        }
+        crc.update(window.duplicate().position(0).limit((int) (position - windowStart)));
+        window.force();
+        window = null;
+    }
+}
@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * Настройки и жизненный цикл долговечности хранилищ в памяти: открывает {@link DurableStore}
+ * для каждого хранилища, периодически пишет снимки и закрывает журналы при остановке.
+ * По умолчанию выключено, тогда хранилища работают только в памяти.
+ */
+@Slf4j
+@Component
+public class MemoryPersistence {
+    private final boolean enabled;
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMillis;
+    private final List<DurableStore> stores = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    public MemoryPersistence(@Value("${filmorate.memory.persistence.enabled:false}") boolean enabled,
+                             @Value("${filmorate.memory.persistence.dir:./db/memory}") String directory,
+                             @Value("${filmorate.memory.persistence.fsync:always}") String fsyncPolicy,
+                             @Value("${filmorate.memory.persistence.fsync-interval-ms:50}") long fsyncIntervalMillis) {
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.fsyncPolicy = FsyncPolicy.fromString(fsyncPolicy);
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        if (enabled) {
+            log.info("Долговечность хранилищ в памяти: каталог {}, fsync {}", this.directory, this.fsyncPolicy);
+        }
+    }
+
+    public static MemoryPersistence disabled() {
+        return new MemoryPersistence(false, ".", FsyncPolicy.NEVER.name(), 0);
+    }
+
+    /**
+     * Восстанавливает состояние хранилища с диска и возвращает объект для записи его изменений.
+     */
+    public Optional<DurableStore> open(String name, DurableStore.State state, ReadWriteLock lock) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        DurableStore store = DurableStore.open(name, directory, fsyncPolicy, fsyncIntervalMillis, state, lock);
+        stores.add(store);
+        return Optional.of(store);
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.memory.persistence.snapshot-interval-ms:300000}",
+            initialDelayString = "${filmorate.memory.persistence.snapshot-interval-ms:300000}")
+    public void snapshotAll() {
+        for (DurableStore store : stores) {
+            try {
+                store.snapshot();
+            } catch (RuntimeException e) {
+                log.error("Не удалось записать снимок хранилища", e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        stores.forEach(DurableStore::close);
+        stores.clear();
+    }
+}
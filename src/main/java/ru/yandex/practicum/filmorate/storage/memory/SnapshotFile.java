@@ -0,0 +1,91 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Снимок состояния хранилища: заголовок (сигнатура, версия, сегмент журнала, с которого
+ * продолжать восстановление, длина и CRC32 содержимого) и двоичное содержимое.
+ * Снимок пишется во временный файл через отображение в память и атомарно подменяет предыдущий.
+ */
+final class SnapshotFile {
+    private static final int MAGIC = 0x46534E50;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    private SnapshotFile() {
+    }
+
+    record Snapshot(long walSegment, BinaryReader content) {
+    }
+
+    static void write(Path target, long walSegment, Consumer<BinaryWriter> body) {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedBinaryWriter writer = new MappedBinaryWriter(channel, HEADER_SIZE);
+                body.accept(writer);
+                long crc = writer.finish();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putLong(walSegment)
+                        .putLong(writer.position() - HEADER_SIZE).putLong(crc).flip();
+                channel.write(header, 0);
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(target.getParent());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать снимок " + target, e);
+        }
+    }
+
+    static Optional<Snapshot> read(Path file) {
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IllegalStateException("Снимок " + file + " повреждён: нет заголовка");
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.getInt() != MAGIC || mapped.getInt() != VERSION) {
+                throw new IllegalStateException("Снимок " + file + " имеет неизвестный формат");
+            }
+            long walSegment = mapped.getLong();
+            long length = mapped.getLong();
+            long expectedCrc = mapped.getLong();
+            if (length < 0 || HEADER_SIZE + length > channel.size()) {
+                throw new IllegalStateException("Снимок " + file + " повреждён: неверная длина");
+            }
+            ByteBuffer content = mapped.slice(HEADER_SIZE, (int) length);
+            CRC32 crc = new CRC32();
+            crc.update(content.duplicate());
+            if (crc.getValue() != expectedCrc) {
+                throw new IllegalStateException("Снимок " + file + " повреждён: контрольная сумма не совпала");
+            }
+            return Optional.of(new Snapshot(walSegment, new BinaryReader(content)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать снимок " + file, e);
+        }
+    }
+
+    static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Не все файловые системы позволяют синхронизировать каталог
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал упреждающей записи из сегментов {@code <name>-<номер>.wal}.
+ * Запись: длина содержимого (int), CRC32 типа и содержимого (int), тип (byte), содержимое.
+ * <p>
+ * Записи копируются в общий буфер под короткой блокировкой, а на диск его пишет один поток
+ * за раз: пока он выполняет fsync, следующие записи копятся и уходят на диск одним вызовом.
+ */
+@Slf4j
+class WriteAheadLog implements Closeable {
+    private static final int RECORD_HEADER = 9;
+    private static final int INITIAL_BUFFER = 64 << 10;
+    private static final int MAX_PENDING = 4 << 20;
+
+    private final Path directory;
+    private final String name;
+    private final FsyncPolicy policy;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Object bufferLock = new Object();
+    private final ScheduledExecutorService flusher;
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER);
+    private ByteBuffer spare = ByteBuffer.allocate(INITIAL_BUFFER);
+    private long appendedSeq;
+    private volatile long durableSeq;
+    private FileChannel channel;
+    private long segment;
+
+    interface RecordHandler {
+        void apply(byte type, BinaryReader payload);
+    }
+
+    WriteAheadLog(Path directory, String name, FsyncPolicy policy, long fsyncIntervalMillis) {
+        this.directory = directory;
+        this.name = name;
+        this.policy = policy;
+        if (policy == FsyncPolicy.ALWAYS) {
+            this.flusher = null;
+        } else {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name + "-wal-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::backgroundFlush,
+                    fsyncIntervalMillis, fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Проигрывает сегменты начиная с {@code fromSegment} и открывает последний на дозапись.
+     * Оборванная запись в конце последнего сегмента (сбой посреди записи) отрезается.
+     *
+     * @return число применённых записей
+     */
+    long recover(long fromSegment, RecordHandler handler) {
+        List<Long> segments = listSegments().stream().filter(number -> number >= fromSegment).toList();
+        long applied = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            boolean last = i == segments.size() - 1;
+            applied += replaySegment(segments.get(i), last, handler);
+        }
+        segment = segments.isEmpty() ? fromSegment : segments.get(segments.size() - 1);
+        openSegment(segment);
+        return applied;
+    }
+
+    /**
+     * Добавляет запись в буфер и возвращает её номер для {@link #awaitDurable(long)}.
+     * Порядок записей совпадает с порядком вызовов, поэтому вызывать нужно под блокировкой хранилища.
+     */
+    long append(byte type, HeapBinaryWriter payload) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload.array(), 0, payload.size());
+        long seq;
+        boolean overflow;
+        synchronized (bufferLock) {
+            int needed = RECORD_HEADER + payload.size();
+            if (pending.remaining() < needed) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + needed));
+                pending.flip();
+                grown.put(pending);
+                pending = grown;
+            }
+            pending.putInt(payload.size()).putInt((int) crc.getValue()).put(type).put(payload.array(), 0, payload.size());
+            seq = ++appendedSeq;
+            overflow = pending.position() > MAX_PENDING;
+        }
+        if (overflow && policy != FsyncPolicy.ALWAYS) {
+            flush(seq, false);
+        }
+        return seq;
+    }
+
+    /**
+     * При политике {@link FsyncPolicy#ALWAYS} ждёт, пока запись окажется на диске.
+     */
+    void awaitDurable(long seq) {
+        if (policy == FsyncPolicy.ALWAYS && durableSeq < seq) {
+            flush(seq, true);
+        }
+    }
+
+    long currentSegment() {
+        return segment;
+    }
+
+    /**
+     * Закрывает текущий сегмент и начинает следующий. Вызывается, когда записи не добавляются.
+     *
+     * @return номер нового сегмента
+     */
+    long rotate() {
+        flush(Long.MAX_VALUE, true);
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        segment++;
+        openSegment(segment);
+        SnapshotFile.syncDirectory(directory);
+        return segment;
+    }
+
+    void deleteSegmentsBefore(long number) {
+        for (Long old : listSegments()) {
+            if (old < number) {
+                try {
+                    Files.deleteIfExists(segmentPath(old));
+                } catch (IOException e) {
+                    log.warn("Не удалось удалить сегмент журнала {}", segmentPath(old), e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        if (channel != null) {
+            flush(Long.MAX_VALUE, true);
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void backgroundFlush() {
+        try {
+            flush(Long.MAX_VALUE, policy == FsyncPolicy.INTERVAL);
+        } catch (RuntimeException e) {
+            log.error("Ошибка фонового сброса журнала {}", name, e);
+        }
+    }
+
+    private void flush(long seq, boolean force) {
+        flushLock.lock();
+        try {
+            if (force && durableSeq >= seq) {
+                // Запись уже ушла на диск в группе, которую сбросил другой поток
+                return;
+            }
+            ByteBuffer toWrite;
+            long upTo;
+            synchronized (bufferLock) {
+                toWrite = pending;
+                pending = spare;
+                upTo = appendedSeq;
+            }
+            toWrite.flip();
+            while (toWrite.hasRemaining()) {
+                channel.write(toWrite);
+            }
+            toWrite.clear();
+            spare = toWrite.capacity() > MAX_PENDING * 2 ? ByteBuffer.allocate(INITIAL_BUFFER) : toWrite;
+            if (force) {
+                channel.force(false);
+                durableSeq = upTo;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать журнал " + name, e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private long replaySegment(long number, boolean last, RecordHandler handler) {
+        Path path = segmentPath(number);
+        long applied = 0;
+        long validEnd = 0;
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = file.size();
+            MappedByteBuffer mapped = file.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32 crc = new CRC32();
+            while (mapped.remaining() >= RECORD_HEADER) {
+                int start = mapped.position();
+                int length = mapped.getInt();
+                int expectedCrc = mapped.getInt();
+                byte type = mapped.get();
+                if (length < 0 || length > mapped.remaining()) {
+                    mapped.position(start);
+                    break;
+                }
+                ByteBuffer payload = mapped.slice(mapped.position(), length);
+                crc.reset();
+                crc.update(type);
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != expectedCrc) {
+                    mapped.position(start);
+                    break;
+                }
+                mapped.position(mapped.position() + length);
+                handler.apply(type, new BinaryReader(payload));
+                applied++;
+            }
+            validEnd = mapped.position();
+            if (validEnd < size) {
+                if (!last) {
+                    throw new IllegalStateException("Журнал " + path + " повреждён на смещении " + validEnd);
+                }
+                log.warn("Журнал {}: отрезана незавершённая запись, {} байт с смещения {}",
+                        path, size - validEnd, validEnd);
+                file.truncate(validEnd);
+                file.force(true);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать журнал " + path, e);
+        }
+        return applied;
+    }
+
+    private void openSegment(long number) {
+        try {
+            Files.createDirectories(directory);
+            channel = FileChannel.open(segmentPath(number), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть журнал " + segmentPath(number), e);
+        }
+    }
+
+    private List<Long> listSegments() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        String prefix = name + "-";
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(file -> file.startsWith(prefix) && file.endsWith(".wal"))
+                    .map(file -> Long.parseLong(file.substring(prefix.length(), file.length() - 4)))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("%s-%016d.wal", name, number));
+    }
+}
@@ -5,6 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.Mpa;
 
 import java.sql.ResultSet;
@@ -30,6 +31,7 @@ public class MpaDbStorage implements MpaStorage {
     };
 
     @Override
+    @Transactional(readOnly = true)
     public Optional<Mpa> findById(int id) {
         String sql = "SELECT * FROM mpa WHERE id = ?";
         try {
@@ -41,6 +43,7 @@ public class MpaDbStorage implements MpaStorage {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Collection<Mpa> findAll() {
         String sql = "SELECT * FROM mpa ORDER BY id";
         return jdbcTemplate.query(sql, mpaRowMapper);
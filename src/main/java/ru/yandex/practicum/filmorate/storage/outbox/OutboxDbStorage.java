@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate.storage.outbox;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.outbox.ChangeEntity;
+import ru.yandex.practicum.filmorate.outbox.ChangeEvent;
+import ru.yandex.practicum.filmorate.outbox.ChangeOperation;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+@Slf4j
+@Repository
+public class OutboxDbStorage implements OutboxStorage {
+    private final JdbcTemplate jdbcTemplate;
+    private final String nodeId;
+    private final RowMapper<ChangeEvent> mapper = new ChangeEventRowMapper();
+
+    @Autowired
+    public OutboxDbStorage(JdbcTemplate jdbcTemplate,
+                           @Value("${filmorate.node-id:#{T(java.util.UUID).randomUUID().toString()}}") String nodeId) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.nodeId = nodeId;
+        log.info("Идентификатор узла для outbox: {}", nodeId);
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void append(ChangeEntity entityType, int entityId, Integer relatedId, ChangeOperation operation,
+                       Instant occurredAt) {
+        String sql = """
+                INSERT INTO outbox_events (entity_type, entity_id, related_id, operation, node_id, occurred_at)
+                VALUES (?, ?, ?, ?, ?, ?)
+                """;
+        jdbcTemplate.update(sql, entityType.name(), entityId, relatedId, operation.name(), nodeId,
+                Timestamp.from(occurredAt));
+    }
+
+    @Override
+    public List<ChangeEvent> findAfter(long eventId, int limit) {
+        String sql = """
+                SELECT event_id, entity_type, entity_id, related_id, operation, node_id, occurred_at
+                FROM outbox_events
+                WHERE event_id > ?
+                ORDER BY event_id
+                LIMIT ?
+                """;
+        return jdbcTemplate.query(sql, mapper, eventId, limit);
+    }
+
+    @Override
+    public List<ChangeEvent> findByIds(Collection<Long> eventIds) {
+        if (eventIds.isEmpty()) {
+            return List.of();
+        }
+        String placeholders = String.join(",", Collections.nCopies(eventIds.size(), "?"));
+        String sql = """
+                SELECT event_id, entity_type, entity_id, related_id, operation, node_id, occurred_at
+                FROM outbox_events
+                WHERE event_id IN (%s)
+                ORDER BY event_id
+                """.formatted(placeholders);
+        return jdbcTemplate.query(sql, mapper, eventIds.toArray());
+    }
+
+    @Override
+    public long lastEventId() {
+        Long last = jdbcTemplate.queryForObject("SELECT MAX(event_id) FROM outbox_events", Long.class);
+        return last == null ? 0 : last;
+    }
+
+    @Override
+    public int deleteOlderThan(Instant threshold) {
+        return jdbcTemplate.update("DELETE FROM outbox_events WHERE created_at < ?", Timestamp.from(threshold));
+    }
+
+    private static class ChangeEventRowMapper implements RowMapper<ChangeEvent> {
+        @Override
+        public ChangeEvent mapRow(ResultSet rs, int rowNum) throws SQLException {
+            return new ChangeEvent(
+                    rs.getLong("event_id"),
+                    ChangeEntity.valueOf(rs.getString("entity_type")),
+                    rs.getInt("entity_id"),
+                    rs.getObject("related_id", Integer.class),
+                    ChangeOperation.valueOf(rs.getString("operation")),
+                    rs.getString("node_id"),
+                    rs.getTimestamp("occurred_at").toInstant());
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package ru.yandex.practicum.filmorate.storage.outbox;
+
+import ru.yandex.practicum.filmorate.outbox.ChangeEntity;
+import ru.yandex.practicum.filmorate.outbox.ChangeEvent;
+import ru.yandex.practicum.filmorate.outbox.ChangeOperation;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboxStorage {
+    String getNodeId();
+
+    /**
+     * Добавляет запись в outbox; должна вызываться в той же транзакции, что и само изменение.
+     */
+    void append(ChangeEntity entityType, int entityId, Integer relatedId, ChangeOperation operation, Instant occurredAt);
+
+    List<ChangeEvent> findAfter(long eventId, int limit);
+
+    List<ChangeEvent> findByIds(Collection<Long> eventIds);
+
+    long lastEventId();
+
+    int deleteOlderThan(Instant threshold);
+}
@@ -0,0 +1,169 @@
+package ru.yandex.practicum.filmorate.storage.shard;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmWithGenresExtractor;
+import ru.yandex.practicum.filmorate.storage.shard.ShardRouter.Shard;
+import ru.yandex.practicum.filmorate.storage.user.UserRowMapper;
+
+import java.sql.Date;
+import java.util.*;
+
+/**
+ * Перенос данных после добавления шарда в конец filmorate.sharding.urls.
+ * Сначала фильмы дореплицируются с нулевого шарда (он считается эталоном), затем каждый
+ * пользователь, чей шард по хешу изменился, переезжает вместе со своей дружбой и лайками.
+ * Копирование идёт через MERGE, удаление со старого шарда — после копирования, поэтому
+ * прерванный перенос можно просто запустить ещё раз. Запускается при старте
+ * с filmorate.sharding.rebalance=true, до того как узел начнёт принимать запросы.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "sharded")
+public class ShardRebalancer {
+    private static final int BATCH_SIZE = 500;
+
+    private final ShardRouter router;
+    private final boolean rebalanceOnStartup;
+
+    @Autowired
+    public ShardRebalancer(ShardRouter router,
+                           @Value("${filmorate.sharding.rebalance:false}") boolean rebalanceOnStartup) {
+        this.router = router;
+        this.rebalanceOnStartup = rebalanceOnStartup;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (rebalanceOnStartup) {
+            rebalance();
+        }
+    }
+
+    /**
+     * Возвращает число перенесённых пользователей.
+     */
+    public int rebalance() {
+        long started = System.nanoTime();
+        int films = replicateFilms();
+        int moved = 0;
+        for (Shard source : router.shards()) {
+            moved += moveMisplacedUsers(source);
+        }
+        log.info("Перебалансировка шардов завершена за {} мс: дореплицировано фильмов {}, перенесено пользователей {}",
+                (System.nanoTime() - started) / 1_000_000, films, moved);
+        return moved;
+    }
+
+    private int replicateFilms() {
+        Shard source = router.shard(0);
+        Set<Integer> sourceIds = new HashSet<>(source.jdbc().queryForList("SELECT id FROM films", Integer.class));
+        int copied = 0;
+        for (Shard target : router.shards()) {
+            if (target.index() == 0) {
+                continue;
+            }
+            Set<Integer> targetIds = new HashSet<>(target.jdbc().queryForList("SELECT id FROM films", Integer.class));
+            List<Integer> missing = sourceIds.stream().filter(id -> !targetIds.contains(id)).sorted().toList();
+            List<Object[]> extra = targetIds.stream()
+                    .filter(id -> !sourceIds.contains(id))
+                    .map(id -> new Object[]{id})
+                    .toList();
+            if (!extra.isEmpty()) {
+                target.jdbc().batchUpdate("DELETE FROM films WHERE id = ?", extra);
+            }
+            for (List<Integer> chunk : chunks(missing)) {
+                List<Film> films = source.jdbc().query(ShardedFilmStorage.FILM_COLUMNS + " WHERE f.id IN (" + placeholders(chunk) + ")",
+                        new FilmWithGenresExtractor(), chunk.toArray());
+                target.tx().executeWithoutResult(status -> copyFilms(target, films));
+                copied += films.size();
+            }
+        }
+        return copied;
+    }
+
+    private static void copyFilms(Shard target, List<Film> films) {
+        List<Object[]> filmRows = new ArrayList<>(films.size());
+        List<Object[]> genreRows = new ArrayList<>();
+        for (Film film : films) {
+            filmRows.add(new Object[]{film.getId(), film.getName(), film.getDescription(),
+                    Date.valueOf(film.getReleaseDate()), film.getDuration(), film.getMpa().getId()});
+            film.getGenres().forEach(genre -> genreRows.add(new Object[]{film.getId(), genre.getId()}));
+        }
+        target.jdbc().batchUpdate("MERGE INTO films (id, name, description, release_date, duration, mpa_id) "
+                + "KEY(id) VALUES (?, ?, ?, ?, ?, ?)", filmRows);
+        target.jdbc().batchUpdate("MERGE INTO film_genres (film_id, genre_id) KEY(film_id, genre_id) VALUES (?, ?)",
+                genreRows);
+    }
+
+    private int moveMisplacedUsers(Shard source) {
+        List<Integer> misplaced = source.jdbc().queryForList("SELECT id FROM users ORDER BY id", Integer.class)
+                .stream()
+                .filter(id -> router.shardOf(id) != source.index())
+                .toList();
+        for (List<Integer> chunk : chunks(misplaced)) {
+            String in = placeholders(chunk);
+            Object[] ids = chunk.toArray();
+            List<User> users = source.jdbc().query(
+                    "SELECT id, email, login, name, birthday FROM users WHERE id IN (" + in + ")",
+                    new UserRowMapper(), ids);
+            List<Object[]> friendships = source.jdbc().query(
+                    "SELECT user_id, friend_id, confirmed FROM friendships WHERE user_id IN (" + in + ")",
+                    (rs, rowNum) -> new Object[]{rs.getInt("user_id"), rs.getInt("friend_id"), rs.getBoolean("confirmed")},
+                    ids);
+            List<Object[]> likes = source.jdbc().query(
+                    "SELECT film_id, user_id, created_at FROM film_likes WHERE user_id IN (" + in + ")",
+                    (rs, rowNum) -> new Object[]{rs.getInt("film_id"), rs.getInt("user_id"), rs.getTimestamp("created_at")},
+                    ids);
+
+            for (Map.Entry<Shard, List<Integer>> group : router.groupByShard(chunk).entrySet()) {
+                Set<Integer> groupIds = new HashSet<>(group.getValue());
+                Shard target = group.getKey();
+                target.tx().executeWithoutResult(status -> {
+                    target.jdbc().batchUpdate("MERGE INTO users (id, email, login, name, birthday) KEY(id) "
+                            + "VALUES (?, ?, ?, ?, ?)", users.stream()
+                            .filter(user -> groupIds.contains(user.getId()))
+                            .map(user -> new Object[]{user.getId(), user.getEmail(), user.getLogin(),
+                                    user.getName(), Date.valueOf(user.getBirthday())})
+                            .toList());
+                    target.jdbc().batchUpdate("MERGE INTO friendships (user_id, friend_id, confirmed) "
+                            + "KEY(user_id, friend_id) VALUES (?, ?, ?)", ownedBy(friendships, 0, groupIds));
+                    target.jdbc().batchUpdate("MERGE INTO film_likes (film_id, user_id, created_at) "
+                            + "KEY(film_id, user_id) VALUES (?, ?, ?)", ownedBy(likes, 1, groupIds));
+                    // Счётчик друзей на исходном шарде мог не совпадать с перенесённой дружбой
+                    target.jdbc().update("""
+                            UPDATE users u SET friends_count =
+                                (SELECT COUNT(*) FROM friendships f WHERE f.user_id = u.id AND f.confirmed = true)
+                            WHERE u.id IN (%s)
+                            """.formatted(placeholders(group.getValue())), group.getValue().toArray());
+                });
+            }
+            // Дружба и лайки удаляются каскадом
+            source.jdbc().update("DELETE FROM users WHERE id IN (" + in + ")", ids);
+            log.debug("С шарда {} перенесено пользователей: {}", source.index(), chunk.size());
+        }
+        return misplaced.size();
+    }
+
+    private static List<Object[]> ownedBy(List<Object[]> rows, int userColumn, Set<Integer> userIds) {
+        return rows.stream().filter(row -> userIds.contains((Integer) row[userColumn])).toList();
+    }
+
+    private static List<List<Integer>> chunks(List<Integer> ids) {
+        List<List<Integer>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            chunks.add(ids.subList(from, Math.min(from + BATCH_SIZE, ids.size())));
+        }
+        return chunks;
+    }
+
+    private static String placeholders(List<Integer> ids) {
+        return String.join(",", Collections.nCopies(ids.size(), "?"));
+    }
+}
@@ -0,0 +1,166 @@
+package ru.yandex.practicum.filmorate.storage.shard;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Маршрутизация по шардам: пользователь, его дружба и лайки живут на шарде {@link #shardOf(int)}.
+ * Используется jump consistent hash, поэтому при добавлении шарда в конец списка переезжает
+ * только ~1/N пользователей. Нулевой шард выдаёт глобальные id пользователей и фильмов.
+ */
+@Slf4j
+public class ShardRouter implements AutoCloseable {
+    private final List<DataSource> dataSources;
+    private final List<Shard> shards;
+    private final ExecutorService executor;
+
+    public ShardRouter(List<DataSource> dataSources, int parallelism) {
+        if (dataSources.isEmpty()) {
+            throw new IllegalArgumentException("Не задано ни одного шарда");
+        }
+        this.dataSources = List.copyOf(dataSources);
+        List<Shard> created = new ArrayList<>(dataSources.size());
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(
+                new ClassPathResource("shard-schema.sql"), new ClassPathResource("data.sql"));
+        populator.setSqlScriptEncoding("UTF-8");
+        for (int i = 0; i < dataSources.size(); i++) {
+            DataSource dataSource = dataSources.get(i);
+            DatabasePopulatorUtils.execute(populator, dataSource);
+            created.add(new Shard(i, new JdbcTemplate(dataSource),
+                    new TransactionTemplate(new DataSourceTransactionManager(dataSource))));
+        }
+        this.shards = List.copyOf(created);
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, parallelism), runnable -> {
+            Thread thread = new Thread(runnable, "shard-query-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("Шардирование включено: шардов {}, параллельных запросов {}", shards.size(), parallelism);
+    }
+
+    public int size() {
+        return shards.size();
+    }
+
+    public List<Shard> shards() {
+        return shards;
+    }
+
+    public Shard shard(int index) {
+        return shards.get(index);
+    }
+
+    public int shardOf(int userId) {
+        return jumpHash(userId, shards.size());
+    }
+
+    public Shard forUser(int userId) {
+        return shards.get(shardOf(userId));
+    }
+
+    /**
+     * Реплика фильма для чтения: фильмы есть на всех шардах, чтения распределяются по id.
+     */
+    public Shard forFilm(int filmId) {
+        return shards.get(jumpHash(filmId, shards.size()));
+    }
+
+    public int nextUserId() {
+        return nextValue("user_ids_seq");
+    }
+
+    public int nextFilmId() {
+        return nextValue("film_ids_seq");
+    }
+
+    /**
+     * Группирует id пользователей по шардам, сохраняя порядок внутри группы.
+     */
+    public Map<Shard, List<Integer>> groupByShard(Collection<Integer> userIds) {
+        Map<Shard, List<Integer>> groups = new LinkedHashMap<>();
+        for (Integer userId : userIds) {
+            groups.computeIfAbsent(forUser(userId), shard -> new ArrayList<>()).add(userId);
+        }
+        return groups;
+    }
+
+    /**
+     * Выполняет запрос на всех шардах параллельно; результаты идут в порядке шардов.
+     */
+    public <T> List<T> scatter(Function<Shard, T> query) {
+        return scatter(shards, query);
+    }
+
+    public <T> List<T> scatter(Collection<Shard> targets, Function<Shard, T> query) {
+        if (targets.size() == 1) {
+            return List.of(query.apply(targets.iterator().next()));
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(targets.size());
+        for (Shard shard : targets) {
+            futures.add(CompletableFuture.supplyAsync(() -> query.apply(shard), executor));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        for (DataSource dataSource : dataSources) {
+            if (dataSource instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    log.warn("Не удалось закрыть пул соединений шарда", e);
+                }
+            }
+        }
+    }
+
+    private int nextValue(String sequence) {
+        Integer id = shards.get(0).jdbc().queryForObject("SELECT NEXT VALUE FOR " + sequence, Integer.class);
+        return Objects.requireNonNull(id);
+    }
+
+    /**
+     * Jump consistent hash (Lamping, Veach): номер корзины в [0, buckets).
+     */
+    static int jumpHash(long key, int buckets) {
+        long bucket = -1;
+        long next = 0;
+        while (next < buckets) {
+            bucket = next;
+            key = key * 2862933555777941757L + 1;
+            next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) bucket;
+    }
+
+    public record Shard(int index, JdbcTemplate jdbc, TransactionTemplate tx) {
+    }
+}
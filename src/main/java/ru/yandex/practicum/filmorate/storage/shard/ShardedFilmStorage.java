@@ -0,0 +1,416 @@
+package ru.yandex.practicum.filmorate.storage.shard;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.outbox.ChangeEntity;
+import ru.yandex.practicum.filmorate.outbox.ChangeOperation;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmLikeRowMapper;
+import ru.yandex.practicum.filmorate.storage.film.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.film.FilmWithGenresExtractor;
+import ru.yandex.practicum.filmorate.storage.outbox.OutboxStorage;
+import ru.yandex.practicum.filmorate.storage.shard.ShardRouter.Shard;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Фильмы реплицируются на все шарды, чтобы лайк можно было записать и отфильтровать по жанру
+ * на шарде пользователя без распределённых соединений. Лайки лежат на шарде поставившего их
+ * пользователя, поэтому счётчики лайков собираются со всех шардов и суммируются.
+ * Запись фильма на шарды не атомарна: при ошибке на одном из шардов запрос завершается ошибкой,
+ * а расхождение реплик исправляет повторная запись или {@link ShardRebalancer}.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "sharded")
+public class ShardedFilmStorage implements FilmStorage {
+    private static final int IN_CHUNK = 1000;
+    /**
+     * Лайки лежат на шардах лайкнувших, поэтому счётчика в реплицированной строке фильма нет:
+     * likes_count здесь всегда 0, настоящее значение собирает {@link #withLikesCounts}.
+     */
+    static final String FILM_COLUMNS = """
+            SELECT f.id, f.name, f.description, f.release_date, f.duration, 0 AS likes_count,
+                   m.id as mpa_id, m.name as mpa_name,
+                   g.id as genre_id, g.name as genre_name
+            FROM films f
+            LEFT JOIN mpa m ON f.mpa_id = m.id
+            LEFT JOIN film_genres fg ON f.id = fg.film_id
+            LEFT JOIN genres g ON fg.genre_id = g.id
+            """;
+
+    private final ShardRouter router;
+    private final OutboxStorage outboxStorage;
+    private final Clock clock;
+
+    @Autowired
+    public ShardedFilmStorage(ShardRouter router, OutboxStorage outboxStorage, Clock clock) {
+        this.router = router;
+        this.outboxStorage = outboxStorage;
+        this.clock = clock;
+    }
+
+    @Override
+    public Film add(Film film) {
+        film.setId(router.nextFilmId());
+        film.setGenres(sortedGenres(film.getGenres()));
+        router.scatter(shard -> shard.tx().execute(status -> {
+            shard.jdbc().update("INSERT INTO films (id, name, description, release_date, duration, mpa_id) "
+                            + "VALUES (?, ?, ?, ?, ?, ?)", film.getId(), film.getName(), film.getDescription(),
+                    Date.valueOf(film.getReleaseDate()), film.getDuration(), film.getMpa().getId());
+            insertGenres(shard, film.getId(), film.getGenres());
+            return null;
+        }));
+        outboxStorage.append(ChangeEntity.FILM, film.getId(), null, ChangeOperation.CREATE, clock.instant());
+        log.debug("Добавлен фильм с id: {}", film.getId());
+        return findById(film.getId()).orElse(film);
+    }
+
+    @Override
+    public Film update(Film film) {
+        Film existingFilm = findById(film.getId())
+                .orElseThrow(() -> new NotFoundException("Фильм с id = " + film.getId() + " не найден"));
+        if (film.getName() == null) {
+            film.setName(existingFilm.getName());
+        }
+        if (film.getDescription() == null) {
+            film.setDescription(existingFilm.getDescription());
+        }
+        if (film.getReleaseDate() == null) {
+            film.setReleaseDate(existingFilm.getReleaseDate());
+        }
+        if (film.getDuration() == null) {
+            film.setDuration(existingFilm.getDuration());
+        }
+        if (film.getMpa() == null) {
+            film.setMpa(existingFilm.getMpa());
+        }
+        film.setGenres(sortedGenres(film.getGenres() == null ? existingFilm.getGenres() : film.getGenres()));
+
+        router.scatter(shard -> shard.tx().execute(status -> {
+            shard.jdbc().update("UPDATE films SET name = ?, description = ?, release_date = ?, duration = ?, "
+                            + "mpa_id = ? WHERE id = ?", film.getName(), film.getDescription(),
+                    Date.valueOf(film.getReleaseDate()), film.getDuration(), film.getMpa().getId(), film.getId());
+            shard.jdbc().update("DELETE FROM film_genres WHERE film_id = ?", film.getId());
+            insertGenres(shard, film.getId(), film.getGenres());
+            return null;
+        }));
+        outboxStorage.append(ChangeEntity.FILM, film.getId(), null, ChangeOperation.UPDATE, clock.instant());
+        log.debug("Обновлён фильм с id: {}", film.getId());
+        return findById(film.getId()).orElse(film);
+    }
+
+    @Override
+    public void delete(int id) {
+        int deleted = router.scatter(shard -> shard.jdbc().update("DELETE FROM films WHERE id = ?", id)).stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+        if (deleted > 0) {
+            outboxStorage.append(ChangeEntity.FILM, id, null, ChangeOperation.DELETE, clock.instant());
+        }
+        log.debug("Удалён фильм с id: {}", id);
+    }
+
+    @Override
+    public Optional<Film> findById(int id) {
+        List<Film> films = router.forFilm(id).jdbc()
+                .query(FILM_COLUMNS + " WHERE f.id = ? ORDER BY g.id", new FilmWithGenresExtractor(), id);
+        return withLikesCounts(films).stream().findFirst();
+    }
+
+    @Override
+    public Collection<Film> findAll() {
+        return withLikesCounts(router.shard(0).jdbc()
+                .query(FILM_COLUMNS + " ORDER BY f.id, g.id", new FilmWithGenresExtractor()));
+    }
+
+    @Override
+    public Collection<Film> findAll(boolean withGenres) {
+        if (withGenres) {
+            return findAll();
+        }
+        String sql = """
+                SELECT f.id, f.name, f.description, f.release_date, f.duration, 0 AS likes_count,
+                       m.id as mpa_id, m.name as mpa_name
+                FROM films f
+                LEFT JOIN mpa m ON f.mpa_id = m.id
+                ORDER BY f.id
+                """;
+        return withLikesCounts(router.shard(0).jdbc().query(sql, new FilmRowMapper()));
+    }
+
+    @Override
+    public List<Film> findByIds(Collection<Integer> ids) {
+        return withLikesCounts(findByIds(router.shard(0), ids.stream().distinct().sorted().toList()));
+    }
+
+    @Override
+    public boolean addLike(int filmId, int userId, Instant likedAt) {
+        String sql = """
+                INSERT INTO film_likes (film_id, user_id, created_at)
+                SELECT ?, ?, ?
+                WHERE NOT EXISTS (SELECT 1 FROM film_likes WHERE film_id = ? AND user_id = ?)
+                """;
+        boolean added;
+        try {
+            added = router.forUser(userId).jdbc()
+                    .update(sql, filmId, userId, Timestamp.from(likedAt), filmId, userId) > 0;
+        } catch (DuplicateKeyException e) {
+            added = false;
+        }
+        if (added) {
+            outboxStorage.append(ChangeEntity.LIKE, filmId, userId, ChangeOperation.CREATE, likedAt);
+        }
+        log.debug("Добавлен лайк от пользователя {} к фильму {}", userId, filmId);
+        return added;
+    }
+
+    @Override
+    public boolean removeLike(int filmId, int userId, Instant likedAt) {
+        String sql = "DELETE FROM film_likes WHERE film_id = ? AND user_id = ?";
+        boolean removed = router.forUser(userId).jdbc().update(sql, filmId, userId) > 0;
+        if (removed) {
+            outboxStorage.append(ChangeEntity.LIKE, filmId, userId, ChangeOperation.DELETE, likedAt);
+        }
+        log.debug("Удалён лайк от пользователя {} к фильму {}", userId, filmId);
+        return removed;
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int count) {
+        return getPopularFilms(count, null, null, null);
+    }
+
+    /**
+     * Каждый шард считает лайки отфильтрованных фильмов у своих пользователей, счётчики суммируются.
+     * Локальный top-N шарда для глобального не годится: фильм может быть вторым на каждом шарде
+     * и первым в сумме, поэтому шарды возвращают все фильмы, у которых есть лайки.
+     * Если таких меньше N, список добирается фильмами без лайков в порядке id.
+     */
+    @Override
+    public List<Film> getPopularFilms(int count, Integer genreId, Integer mpaId, Integer year) {
+        if (count <= 0) {
+            return List.of();
+        }
+        StringBuilder where = new StringBuilder("WHERE 1 = 1");
+        List<Object> args = new ArrayList<>();
+        if (genreId != null) {
+            where.append(" AND f.id IN (SELECT fg.film_id FROM film_genres fg WHERE fg.genre_id = ?)");
+            args.add(genreId);
+        }
+        if (year != null) {
+            where.append(" AND f.release_date >= ? AND f.release_date < ?");
+            args.add(Date.valueOf(LocalDate.of(year, 1, 1)));
+            args.add(Date.valueOf(LocalDate.of(year + 1, 1, 1)));
+        }
+        if (mpaId != null) {
+            where.append(" AND f.mpa_id = ?");
+            args.add(mpaId);
+        }
+
+        String countSql = """
+                SELECT fl.film_id, COUNT(*) AS likes_count
+                FROM film_likes fl
+                JOIN films f ON f.id = fl.film_id
+                %s
+                GROUP BY fl.film_id
+                """.formatted(where);
+        Map<Integer, Integer> likes = new HashMap<>();
+        for (Map<Integer, Integer> shardCounts : router.scatter(shard -> countLikes(shard, countSql, args.toArray()))) {
+            shardCounts.forEach((filmId, shardLikes) -> likes.merge(filmId, shardLikes, Integer::sum));
+        }
+        List<Integer> ranked = likes.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(count)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toCollection(ArrayList::new));
+
+        if (ranked.size() < count) {
+            List<Object> fillArgs = new ArrayList<>(args);
+            fillArgs.add(count + likes.size());
+            String fillSql = "SELECT f.id FROM films f " + where + " ORDER BY f.id LIMIT ?";
+            for (Integer filmId : router.shard(0).jdbc().queryForList(fillSql, Integer.class, fillArgs.toArray())) {
+                if (ranked.size() >= count) {
+                    break;
+                }
+                if (!likes.containsKey(filmId)) {
+                    ranked.add(filmId);
+                }
+            }
+        }
+
+        Map<Integer, Film> films = new HashMap<>();
+        for (Film film : findByIds(router.shard(0), ranked)) {
+            film.setLikesCount(likes.getOrDefault(film.getId(), 0));
+            films.put(film.getId(), film);
+        }
+        return ranked.stream().map(films::get).filter(Objects::nonNull).toList();
+    }
+
+    @Override
+    public Map<Integer, Integer> getLikesCounts() {
+        String sql = "SELECT film_id, COUNT(*) AS likes_count FROM film_likes GROUP BY film_id";
+        Map<Integer, Integer> likesCounts = new HashMap<>();
+        for (Map<Integer, Integer> shardCounts : router.scatter(shard -> countLikes(shard, sql))) {
+            shardCounts.forEach((filmId, likes) -> likesCounts.merge(filmId, likes, Integer::sum));
+        }
+        return likesCounts;
+    }
+
+    @Override
+    public int getLikesCount(int filmId) {
+        return router.scatter(shard -> shard.jdbc().queryForObject(
+                        "SELECT COUNT(*) FROM film_likes WHERE film_id = ?", Integer.class, filmId)).stream()
+                .mapToInt(count -> count == null ? 0 : count)
+                .sum();
+    }
+
+    @Override
+    public Optional<Instant> getLikeTime(int filmId, int userId) {
+        String sql = "SELECT created_at FROM film_likes WHERE film_id = ? AND user_id = ?";
+        return router.forUser(userId).jdbc()
+                .query(sql, (rs, rowNum) -> rs.getTimestamp("created_at").toInstant(), filmId, userId)
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Лайки пользователя лежат на его шарде, поэтому страница читается с одного шарда.
+     */
+    @Override
+    public List<FilmLike> findLikesByUser(int userId, FilmLike after, int limit) {
+        Shard shard = router.forUser(userId);
+        if (after == null) {
+            String sql = """
+                    SELECT film_id, user_id, created_at
+                    FROM film_likes
+                    WHERE user_id = ?
+                    ORDER BY created_at DESC, film_id DESC
+                    LIMIT ?
+                    """;
+            return shard.jdbc().query(sql, new FilmLikeRowMapper(), userId, limit);
+        }
+        String sql = """
+                SELECT film_id, user_id, created_at
+                FROM film_likes
+                WHERE user_id = ? AND (created_at < ? OR (created_at = ? AND film_id < ?))
+                ORDER BY created_at DESC, film_id DESC
+                LIMIT ?
+                """;
+        Timestamp likedAt = Timestamp.from(after.getCreatedAt());
+        return shard.jdbc().query(sql, new FilmLikeRowMapper(), userId, likedAt, likedAt, after.getFilmId(), limit);
+    }
+
+    @Override
+    public List<FilmLike> findLikesSince(Instant since) {
+        String sql = "SELECT film_id, user_id, created_at FROM film_likes WHERE created_at >= ?";
+        List<FilmLike> likes = new ArrayList<>();
+        router.scatter(shard -> shard.jdbc().query(sql, new FilmLikeRowMapper(), Timestamp.from(since)))
+                .forEach(likes::addAll);
+        return likes;
+    }
+
+    /**
+     * Пользователь целиком живёт на одном шарде, поэтому множества лайкнувших на шардах
+     * не пересекаются и сумма по шардам точна.
+     */
+    @Override
+    public long countDistinctLikersSince(Instant since) {
+        String sql = "SELECT COUNT(DISTINCT user_id) FROM film_likes WHERE created_at >= ?";
+        return router.scatter(shard -> shard.jdbc().queryForObject(sql, Long.class, Timestamp.from(since))).stream()
+                .mapToLong(count -> count == null ? 0 : count)
+                .sum();
+    }
+
+    @Override
+    public List<Integer> findLikerIds(int filmId, int afterUserId, int limit) {
+        String sql = "SELECT user_id FROM film_likes WHERE film_id = ? AND user_id > ? ORDER BY user_id LIMIT ?";
+        return router.scatter(shard -> shard.jdbc().queryForList(sql, Integer.class, filmId, afterUserId, limit))
+                .stream()
+                .flatMap(List::stream)
+                .sorted()
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Проставляет фильмам число лайков, суммированное по шардам. Для больших списков
+     * дешевле один раз посчитать все лайки, чем перечислять id в IN.
+     */
+    private List<Film> withLikesCounts(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        Map<Integer, Integer> likesCounts;
+        if (films.size() > IN_CHUNK) {
+            likesCounts = getLikesCounts();
+        } else {
+            List<Integer> ids = films.stream().map(Film::getId).toList();
+            String sql = "SELECT film_id, COUNT(*) AS likes_count FROM film_likes WHERE film_id IN ("
+                    + String.join(",", Collections.nCopies(ids.size(), "?")) + ") GROUP BY film_id";
+            likesCounts = new HashMap<>();
+            for (Map<Integer, Integer> shardCounts : router.scatter(shard -> countLikes(shard, sql, ids.toArray()))) {
+                shardCounts.forEach((filmId, likes) -> likesCounts.merge(filmId, likes, Integer::sum));
+            }
+        }
+        for (Film film : films) {
+            film.setLikesCount(likesCounts.getOrDefault(film.getId(), 0));
+        }
+        return films;
+    }
+
+    private static Map<Integer, Integer> countLikes(Shard shard, String sql, Object... args) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        shard.jdbc().query(sql, rs -> {
+            counts.put(rs.getInt("film_id"), rs.getInt("likes_count"));
+        }, args);
+        return counts;
+    }
+
+    private static List<Film> findByIds(Shard shard, List<Integer> ids) {
+        List<Film> films = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += IN_CHUNK) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + IN_CHUNK, ids.size()));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            films.addAll(shard.jdbc().query(FILM_COLUMNS + " WHERE f.id IN (" + placeholders + ") ORDER BY f.id, g.id",
+                    new FilmWithGenresExtractor(), chunk.toArray()));
+        }
+        return films;
+    }
+
+    private static void insertGenres(Shard shard, int filmId, Set<Genre> genres) {
+        if (genres.isEmpty()) {
+            return;
+        }
+        List<Object[]> batchArgs = genres.stream()
+                .map(genre -> new Object[]{filmId, genre.getId()})
+                .toList();
+        shard.jdbc().batchUpdate("INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)", batchArgs);
+    }
+
+    private static Set<Genre> sortedGenres(Set<Genre> genres) {
+        Map<Integer, Genre> byId = new TreeMap<>();
+        if (genres != null) {
+            for (Genre genre : genres) {
+                if (genre.getId() != null) {
+                    byId.putIfAbsent(genre.getId(), genre);
+                }
+            }
+        }
+        return new LinkedHashSet<>(byId.values());
+    }
+}
@@ -0,0 +1,283 @@
+package ru.yandex.practicum.filmorate.storage.shard;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.outbox.ChangeEntity;
+import ru.yandex.practicum.filmorate.outbox.ChangeOperation;
+import ru.yandex.practicum.filmorate.storage.outbox.OutboxStorage;
+import ru.yandex.practicum.filmorate.storage.shard.ShardRouter.Shard;
+import ru.yandex.practicum.filmorate.storage.user.UserRowMapper;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.sql.Date;
+import java.time.Clock;
+import java.util.*;
+
+/**
+ * Пользователи, распределённые по шардам по id. Дружба хранится на шарде того, кто добавил друга,
+ * поэтому список друзей читается с одного шарда, а сами друзья — параллельно с их шардов.
+ * Outbox остаётся в основной БД и пишется после изменения шарда, не в одной транзакции с ним.
+ * Уникальность email и логина проверяется только в пределах шарда.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "sharded")
+public class ShardedUserStorage implements UserStorage {
+    private static final int IN_CHUNK = 1000;
+    private static final String USER_COLUMNS = "SELECT id, email, login, name, birthday FROM users";
+
+    private final ShardRouter router;
+    private final OutboxStorage outboxStorage;
+    private final Clock clock;
+
+    @Autowired
+    public ShardedUserStorage(ShardRouter router, OutboxStorage outboxStorage, Clock clock) {
+        this.router = router;
+        this.outboxStorage = outboxStorage;
+        this.clock = clock;
+    }
+
+    @Override
+    public User add(User user) {
+        int id = router.nextUserId();
+        router.forUser(id).jdbc().update("INSERT INTO users (id, email, login, name, birthday) VALUES (?, ?, ?, ?, ?)",
+                id, user.getEmail(), user.getLogin(), user.getName(), Date.valueOf(user.getBirthday()));
+        user.setId(id);
+        outboxStorage.append(ChangeEntity.USER, id, null, ChangeOperation.CREATE, clock.instant());
+        log.debug("Добавлен пользователь с id: {} на шард {}", id, router.shardOf(id));
+        return user;
+    }
+
+    @Override
+    public User update(User user) {
+        Shard shard = router.forUser(user.getId());
+        shard.tx().executeWithoutResult(status -> {
+            User existingUser = findOnShard(shard, user.getId())
+                    .orElseThrow(() -> new NotFoundException("Пользователь с id = " + user.getId() + " не найден"));
+            if (user.getEmail() == null) {
+                user.setEmail(existingUser.getEmail());
+            }
+            if (user.getLogin() == null) {
+                user.setLogin(existingUser.getLogin());
+            }
+            if (user.getName() == null) {
+                user.setName(existingUser.getName());
+            }
+            if (user.getBirthday() == null) {
+                user.setBirthday(existingUser.getBirthday());
+            }
+            shard.jdbc().update("UPDATE users SET email = ?, login = ?, name = ?, birthday = ? WHERE id = ?",
+                    user.getEmail(), user.getLogin(), user.getName(), Date.valueOf(user.getBirthday()), user.getId());
+        });
+        outboxStorage.append(ChangeEntity.USER, user.getId(), null, ChangeOperation.UPDATE, clock.instant());
+        log.debug("Обновлён пользователь с id: {}", user.getId());
+        return user;
+    }
+
+    @Override
+    public void delete(int id) {
+        // Дружба и лайки самого пользователя удаляются каскадом, входящую дружбу чистим на всех шардах
+        boolean deleted = router.forUser(id).jdbc().update("DELETE FROM users WHERE id = ?", id) > 0;
+        router.scatter(shard -> {
+            shard.jdbc().update("""
+                    UPDATE users SET friends_count = friends_count - 1
+                    WHERE id IN (SELECT user_id FROM friendships WHERE friend_id = ? AND confirmed = true)
+                    """, id);
+            return shard.jdbc().update("DELETE FROM friendships WHERE friend_id = ?", id);
+        });
+        if (deleted) {
+            outboxStorage.append(ChangeEntity.USER, id, null, ChangeOperation.DELETE, clock.instant());
+        }
+        log.debug("Удалён пользователь с id: {}", id);
+    }
+
+    @Override
+    public Optional<User> findById(int id) {
+        return findOnShard(router.forUser(id), id);
+    }
+
+    @Override
+    public Collection<User> findAll() {
+        List<User> users = new ArrayList<>();
+        router.scatter(shard -> shard.jdbc().query(USER_COLUMNS + " ORDER BY id", new UserRowMapper()))
+                .forEach(users::addAll);
+        users.sort(Comparator.comparing(User::getId));
+        return users;
+    }
+
+    @Override
+    public boolean addFriend(int userId, int friendId) {
+        if (userId == friendId) {
+            throw new ValidationException("Пользователь не может добавить в друзья самого себя");
+        }
+        // Дружба и счётчик лежат на шарде пользователя, поэтому меняются в одной локальной транзакции
+        Shard shard = router.forUser(userId);
+        Boolean added = shard.tx().execute(status -> {
+            String insert = """
+                    INSERT INTO friendships (user_id, friend_id, confirmed)
+                    SELECT ?, ?, true
+                    WHERE NOT EXISTS (SELECT 1 FROM friendships WHERE user_id = ? AND friend_id = ?)
+                    """;
+            int changed;
+            try {
+                changed = shard.jdbc().update(insert, userId, friendId, userId, friendId);
+            } catch (DuplicateKeyException e) {
+                changed = 0;
+            }
+            if (changed == 0) {
+                changed = shard.jdbc().update(
+                        "UPDATE friendships SET confirmed = true WHERE user_id = ? AND friend_id = ? AND confirmed = false",
+                        userId, friendId);
+            }
+            if (changed > 0) {
+                shard.jdbc().update("UPDATE users SET friends_count = friends_count + 1 WHERE id = ?", userId);
+            }
+            return changed > 0;
+        });
+        if (Boolean.TRUE.equals(added)) {
+            outboxStorage.append(ChangeEntity.FRIENDSHIP, userId, friendId, ChangeOperation.CREATE, clock.instant());
+        }
+        log.debug("Пользователь {} добавил в друзья пользователя {}", userId, friendId);
+        return Boolean.TRUE.equals(added);
+    }
+
+    @Override
+    public boolean removeFriend(int userId, int friendId) {
+        Shard shard = router.forUser(userId);
+        Boolean removed = shard.tx().execute(status -> {
+            String sql = "DELETE FROM friendships WHERE user_id = ? AND friend_id = ? AND confirmed = ?";
+            int confirmed = shard.jdbc().update(sql, userId, friendId, true);
+            if (confirmed > 0) {
+                shard.jdbc().update("UPDATE users SET friends_count = friends_count - 1 WHERE id = ?", userId);
+            }
+            return confirmed + shard.jdbc().update(sql, userId, friendId, false) > 0;
+        });
+        if (Boolean.TRUE.equals(removed)) {
+            outboxStorage.append(ChangeEntity.FRIENDSHIP, userId, friendId, ChangeOperation.DELETE, clock.instant());
+        }
+        log.debug("Пользователь {} удалил из друзей пользователя {}", userId, friendId);
+        return Boolean.TRUE.equals(removed);
+    }
+
+    @Override
+    public List<User> getFriends(int userId) {
+        return findByIds(friendIds(userId));
+    }
+
+    @Override
+    public List<User> getCommonFriends(int userId, int otherId) {
+        Shard userShard = router.forUser(userId);
+        Shard otherShard = router.forUser(otherId);
+        Set<Integer> common;
+        if (userShard.equals(otherShard)) {
+            String sql = """
+                    SELECT f1.friend_id
+                    FROM friendships f1
+                    INNER JOIN friendships f2 ON f1.friend_id = f2.friend_id
+                    WHERE f1.user_id = ? AND f1.confirmed = true
+                      AND f2.user_id = ? AND f2.confirmed = true
+                    """;
+            common = new HashSet<>(userShard.jdbc().queryForList(sql, Integer.class, userId, otherId));
+        } else {
+            List<Set<Integer>> friends = router.scatter(List.of(userShard, otherShard),
+                    shard -> friendIds(shard == userShard ? userId : otherId));
+            common = friends.get(0);
+            common.retainAll(friends.get(1));
+        }
+        return findByIds(common);
+    }
+
+    @Override
+    public List<Integer> findFriendIds(int userId, int afterId, int limit) {
+        String sql = """
+                SELECT friend_id FROM friendships
+                WHERE user_id = ? AND confirmed = true AND friend_id > ?
+                ORDER BY friend_id
+                LIMIT ?
+                """;
+        return router.forUser(userId).jdbc().queryForList(sql, Integer.class, userId, afterId, limit);
+    }
+
+    /**
+     * Для пользователей на разных шардах пересечение считается в памяти по полным спискам друзей.
+     */
+    @Override
+    public List<Integer> findCommonFriendIds(int userId, int otherId, int afterId, int limit) {
+        Shard userShard = router.forUser(userId);
+        if (userShard.equals(router.forUser(otherId))) {
+            String sql = """
+                    SELECT f1.friend_id
+                    FROM friendships f1
+                    INNER JOIN friendships f2 ON f2.user_id = ? AND f2.friend_id = f1.friend_id AND f2.confirmed = true
+                    WHERE f1.user_id = ? AND f1.confirmed = true AND f1.friend_id > ?
+                    ORDER BY f1.friend_id
+                    LIMIT ?
+                    """;
+            return userShard.jdbc().queryForList(sql, Integer.class, otherId, userId, afterId, limit);
+        }
+        Set<Integer> common = friendIds(userId);
+        common.retainAll(friendIds(otherId));
+        return common.stream()
+                .filter(id -> id > afterId)
+                .sorted()
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public int getFriendsCount(int userId) {
+        List<Integer> counts = router.forUser(userId).jdbc()
+                .queryForList("SELECT friends_count FROM users WHERE id = ?", Integer.class, userId);
+        return counts.isEmpty() ? 0 : counts.get(0);
+    }
+
+    @Override
+    public List<Friendship> findFriendships() {
+        String sql = "SELECT user_id, friend_id FROM friendships WHERE confirmed = true";
+        List<Friendship> friendships = new ArrayList<>();
+        router.scatter(shard -> shard.jdbc().query(sql, (rs, rowNum) ->
+                new Friendship(rs.getInt("user_id"), rs.getInt("friend_id"), true))).forEach(friendships::addAll);
+        return friendships;
+    }
+
+    private Set<Integer> friendIds(int userId) {
+        String sql = "SELECT friend_id FROM friendships WHERE user_id = ? AND confirmed = true";
+        return new HashSet<>(router.forUser(userId).jdbc().queryForList(sql, Integer.class, userId));
+    }
+
+    private Optional<User> findOnShard(Shard shard, int id) {
+        return shard.jdbc().query(USER_COLUMNS + " WHERE id = ?", new UserRowMapper(), id).stream().findFirst();
+    }
+
+    /**
+     * Загружает пользователей с их шардов параллельно; результат отсортирован по id.
+     */
+    @Override
+    public List<User> findByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Shard, List<Integer>> groups = router.groupByShard(new HashSet<>(ids));
+        List<User> users = new ArrayList<>(ids.size());
+        router.scatter(groups.keySet(), shard -> {
+            List<Integer> shardIds = groups.get(shard);
+            List<User> found = new ArrayList<>(shardIds.size());
+            for (int from = 0; from < shardIds.size(); from += IN_CHUNK) {
+                List<Integer> chunk = shardIds.subList(from, Math.min(from + IN_CHUNK, shardIds.size()));
+                String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+                found.addAll(shard.jdbc().query(USER_COLUMNS + " WHERE id IN (" + placeholders + ")",
+                        new UserRowMapper(), chunk.toArray()));
+            }
+            return found;
+        }).forEach(users::addAll);
+        users.sort(Comparator.comparing(User::getId));
+        return users;
+    }
+}
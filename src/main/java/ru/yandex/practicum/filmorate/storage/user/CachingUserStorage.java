@@ -0,0 +1,135 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.outbox.ChangeEntity;
+import ru.yandex.practicum.filmorate.outbox.ChangeEvent;
+import ru.yandex.practicum.filmorate.storage.cache.ReadThroughCache;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Хранилище пользователей в БД с кэшем пользователей по id; почти каждая операция сервисов
+ * начинается с проверки существования пользователя. Список друзей в объект из БД не входит,
+ * поэтому изменения дружбы кэш не сбрасывают.
+ */
+@Slf4j
+@Primary
+@Component
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "cached")
+public class CachingUserStorage implements UserStorage {
+    private final UserDbStorage delegate;
+    private final ReadThroughCache<Integer, User> users;
+
+    @Autowired
+    public CachingUserStorage(UserDbStorage delegate,
+                              @Value("${filmorate.storage.cache.max-entries:10000}") int maxEntries) {
+        this.delegate = delegate;
+        this.users = new ReadThroughCache<>("users", maxEntries, User::copy);
+        log.info("Кэш пользователей включён: до {} записей", maxEntries);
+    }
+
+    @Override
+    public User add(User user) {
+        return delegate.add(user);
+    }
+
+    @Override
+    public User update(User user) {
+        try {
+            return delegate.update(user);
+        } finally {
+            users.invalidate(user.getId());
+        }
+    }
+
+    @Override
+    public void delete(int id) {
+        try {
+            delegate.delete(id);
+        } finally {
+            users.invalidate(id);
+        }
+    }
+
+    @Override
+    public Optional<User> findById(int id) {
+        return users.get(id, delegate::findById);
+    }
+
+    @Override
+    public Collection<User> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<User> findByIds(Collection<Integer> ids) {
+        return users.getAll(ids, missing -> delegate.findByIds(missing).stream()
+                        .collect(Collectors.toMap(User::getId, Function.identity())))
+                .values().stream()
+                .sorted(Comparator.comparing(User::getId))
+                .toList();
+    }
+
+    @Override
+    public boolean addFriend(int userId, int friendId) {
+        return delegate.addFriend(userId, friendId);
+    }
+
+    @Override
+    public boolean removeFriend(int userId, int friendId) {
+        return delegate.removeFriend(userId, friendId);
+    }
+
+    @Override
+    public List<User> getFriends(int userId) {
+        return delegate.getFriends(userId);
+    }
+
+    @Override
+    public List<User> getCommonFriends(int userId, int otherId) {
+        return delegate.getCommonFriends(userId, otherId);
+    }
+
+    @Override
+    public List<Integer> findFriendIds(int userId, int afterId, int limit) {
+        return delegate.findFriendIds(userId, afterId, limit);
+    }
+
+    @Override
+    public List<Integer> findCommonFriendIds(int userId, int otherId, int afterId, int limit) {
+        return delegate.findCommonFriendIds(userId, otherId, afterId, limit);
+    }
+
+    @Override
+    public int getFriendsCount(int userId) {
+        return delegate.getFriendsCount(userId);
+    }
+
+    @Override
+    public List<Friendship> findFriendships() {
+        return delegate.findFriendships();
+    }
+
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onRemoteChange(ChangeEvent event) {
+        if (event.getEntityType() == ChangeEntity.USER) {
+            users.invalidate(event.getEntityId());
+        }
+    }
+}
@@ -1,97 +1,334 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.memory.BinaryReader;
+import ru.yandex.practicum.filmorate.storage.memory.BinaryWriter;
+import ru.yandex.practicum.filmorate.storage.memory.Codecs;
+import ru.yandex.practicum.filmorate.storage.memory.DurableStore;
+import ru.yandex.practicum.filmorate.storage.memory.MemoryPersistence;
 
 import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Component
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "memory")
 public class InMemoryUserStorage implements UserStorage {
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte FRIEND_ADD = 3;
+    private static final byte FRIEND_REMOVE = 4;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
     private final Map<Integer, User> users = new HashMap<>();
+    private final DurableStore store;
     private int nextId = 1;
 
+    public InMemoryUserStorage() {
+        this(MemoryPersistence.disabled());
+    }
+
+    @Autowired
+    public InMemoryUserStorage(MemoryPersistence persistence) {
+        this.store = persistence.open("users", new UserState(), lock).orElse(null);
+    }
+
     @Override
     public User add(User user) {
-        user.setId(nextId++);
-        users.put(user.getId(), user);
+        write(() -> {
+            user.setId(nextId++);
+            users.put(user.getId(), user.copy());
+        }, PUT, out -> writeUser(out, user));
         log.debug("Добавлен пользователь: {}", user);
         return user;
     }
 
+    /**
+     * Как и в БД, незаданные поля берутся из сохранённого пользователя, а друзья не меняются.
+     */
     @Override
     public User update(User user) {
-        users.put(user.getId(), user);
+        write(() -> {
+            User existing = users.get(user.getId());
+            if (existing == null) {
+                throw new NotFoundException("Пользователь с id = " + user.getId() + " не найден");
+            }
+            if (user.getEmail() == null) {
+                user.setEmail(existing.getEmail());
+            }
+            if (user.getLogin() == null) {
+                user.setLogin(existing.getLogin());
+            }
+            if (user.getName() == null) {
+                user.setName(existing.getName());
+            }
+            if (user.getBirthday() == null) {
+                user.setBirthday(existing.getBirthday());
+            }
+            user.setFriends(new HashSet<>(existing.getFriends()));
+            users.put(user.getId(), user.copy());
+        }, PUT, out -> writeUser(out, user));
         log.debug("Обновлён пользователь: {}", user);
         return user;
     }
 
     @Override
     public void delete(int id) {
-        users.remove(id);
+        write(() -> applyDelete(id), DELETE, out -> out.putInt(id));
         log.debug("Удалён пользователь с id: {}", id);
     }
 
     @Override
     public Optional<User> findById(int id) {
-        return Optional.ofNullable(users.get(id));
+        return read(() -> Optional.ofNullable(users.get(id)).map(User::copy));
     }
 
     @Override
     public Collection<User> findAll() {
-        return new ArrayList<>(users.values());
+        return read(() -> users.values().stream()
+                .sorted(Comparator.comparing(User::getId))
+                .map(User::copy)
+                .collect(Collectors.toList()));
     }
 
     @Override
-    public void addFriend(int userId, int friendId) {
-        User user = users.get(userId);
-        User friend = users.get(friendId);
-        if (user != null && friend != null) {
-            user.addFriend(friendId);
-            friend.addFriend(userId);
-        }
+    public List<User> findByIds(Collection<Integer> ids) {
+        return read(() -> ids.stream()
+                .distinct()
+                .sorted()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .map(User::copy)
+                .collect(Collectors.toList()));
     }
 
     @Override
-    public void removeFriend(int userId, int friendId) {
-        User user = users.get(userId);
-        User friend = users.get(friendId);
-        if (user != null && friend != null) {
-            user.removeFriend(friendId);
-            friend.removeFriend(userId);
+    public boolean addFriend(int userId, int friendId) {
+        if (userId == friendId) {
+            throw new ValidationException("Пользователь не может добавить в друзья самого себя");
         }
+        boolean[] added = new boolean[1];
+        write(() -> added[0] = applyFriendship(userId, friendId, true), FRIEND_ADD, out -> {
+            out.putInt(userId);
+            out.putInt(friendId);
+        }, () -> added[0]);
+        return added[0];
+    }
+
+    @Override
+    public boolean removeFriend(int userId, int friendId) {
+        boolean[] removed = new boolean[1];
+        write(() -> removed[0] = applyFriendship(userId, friendId, false), FRIEND_REMOVE, out -> {
+            out.putInt(userId);
+            out.putInt(friendId);
+        }, () -> removed[0]);
+        return removed[0];
     }
 
     @Override
     public List<User> getFriends(int userId) {
-        User user = users.get(userId);
-        if (user == null) {
-            return new ArrayList<>();
-        }
+        return read(() -> {
+            User user = users.get(userId);
+            if (user == null) {
+                return new ArrayList<>();
+            }
 
-        return user.getFriends().stream()
-                .map(users::get)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+            return user.getFriends().stream()
+                    .sorted()
+                    .map(users::get)
+                    .filter(Objects::nonNull)
+                    .map(User::copy)
+                    .collect(Collectors.toList());
+        });
     }
 
     @Override
     public List<User> getCommonFriends(int userId, int otherId) {
+        return read(() -> {
+            User user = users.get(userId);
+            User other = users.get(otherId);
+
+            if (user == null || other == null) {
+                return new ArrayList<>();
+            }
+
+            Set<Integer> commonFriends = new HashSet<>(user.getFriends());
+            commonFriends.retainAll(other.getFriends());
+
+            return commonFriends.stream()
+                    .sorted()
+                    .map(users::get)
+                    .filter(Objects::nonNull)
+                    .map(User::copy)
+                    .collect(Collectors.toList());
+        });
+    }
+
+    @Override
+    public List<Integer> findFriendIds(int userId, int afterId, int limit) {
+        return read(() -> {
+            User user = users.get(userId);
+            if (user == null) {
+                return new ArrayList<>();
+            }
+            return page(user.getFriends().stream(), afterId, limit);
+        });
+    }
+
+    @Override
+    public List<Integer> findCommonFriendIds(int userId, int otherId, int afterId, int limit) {
+        return read(() -> {
+            User user = users.get(userId);
+            User other = users.get(otherId);
+            if (user == null || other == null) {
+                return new ArrayList<>();
+            }
+            return page(user.getFriends().stream().filter(other.getFriends()::contains), afterId, limit);
+        });
+    }
+
+    @Override
+    public int getFriendsCount(int userId) {
+        return read(() -> {
+            User user = users.get(userId);
+            return user == null ? 0 : user.getFriends().size();
+        });
+    }
+
+    @Override
+    public List<Friendship> findFriendships() {
+        return read(() -> users.values().stream()
+                .flatMap(user -> user.getFriends().stream()
+                        .map(friendId -> new Friendship(user.getId(), friendId, true)))
+                .collect(Collectors.toList()));
+    }
+
+    private static List<Integer> page(Stream<Integer> friendIds, int afterId, int limit) {
+        return friendIds
+                .filter(id -> id > afterId)
+                .sorted()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Дружба односторонняя, как в таблице friendships: пользователь добавляет друга в свой список.
+     */
+    private boolean applyFriendship(int userId, int friendId, boolean add) {
         User user = users.get(userId);
-        User other = users.get(otherId);
+        if (user == null || !users.containsKey(friendId)) {
+            return false;
+        }
+        return add ? user.getFriends().add(friendId) : user.getFriends().remove(friendId);
+    }
 
-        if (user == null || other == null) {
-            return new ArrayList<>();
+    private void applyDelete(int id) {
+        if (users.remove(id) != null) {
+            users.values().forEach(user -> user.removeFriend(id));
         }
+    }
 
-        Set<Integer> commonFriends = new HashSet<>(user.getFriends());
-        commonFriends.retainAll(other.getFriends());
+    private void write(Runnable change, byte type, Consumer<BinaryWriter> record) {
+        write(change, type, record, () -> true);
+    }
 
-        return commonFriends.stream()
-                .map(users::get)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+    /**
+     * Применяет изменение под блокировкой и, если оно что-то поменяло, пишет его в журнал;
+     * ожидание fsync происходит уже после снятия блокировки.
+     */
+    private void write(Runnable change, byte type, Consumer<BinaryWriter> record, Supplier<Boolean> changed) {
+        long seq = 0;
+        lock.writeLock().lock();
+        try {
+            change.run();
+            if (store != null && changed.get()) {
+                seq = store.log(type, record);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (seq > 0) {
+            store.commit(seq);
+        }
+    }
+
+    private <T> T read(Supplier<T> query) {
+        lock.readLock().lock();
+        try {
+            return query.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void writeUser(BinaryWriter out, User user) {
+        out.putInt(user.getId());
+        out.putString(user.getEmail());
+        out.putString(user.getLogin());
+        out.putString(user.getName());
+        Codecs.putDate(out, user.getBirthday());
+        out.putInt(user.getFriends().size());
+        for (Integer friendId : user.getFriends()) {
+            out.putInt(friendId);
+        }
+    }
+
+    private void readUser(BinaryReader in) {
+        User user = new User();
+        user.setId(in.getInt());
+        user.setEmail(in.getString());
+        user.setLogin(in.getString());
+        user.setName(in.getString());
+        user.setBirthday(Codecs.getDate(in));
+        int friends = in.getInt();
+        for (int i = 0; i < friends; i++) {
+            user.addFriend(in.getInt());
+        }
+        users.put(user.getId(), user);
+        nextId = Math.max(nextId, user.getId() + 1);
+    }
+
+    private final class UserState implements DurableStore.State {
+        @Override
+        public void writeSnapshot(BinaryWriter out) {
+            out.putInt(nextId);
+            out.putInt(users.size());
+            for (User user : users.values()) {
+                writeUser(out, user);
+            }
+        }
+
+        @Override
+        public void readSnapshot(BinaryReader in) {
+            users.clear();
+            nextId = in.getInt();
+            int count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                readUser(in);
+            }
+        }
+
+        @Override
+        public void apply(byte type, BinaryReader record) {
+            switch (type) {
+                case PUT -> readUser(record);
+                case DELETE -> applyDelete(record.getInt());
+                case FRIEND_ADD -> applyFriendship(record.getInt(), record.getInt(), true);
+                case FRIEND_REMOVE -> applyFriendship(record.getInt(), record.getInt(), false);
+                default -> throw new IllegalStateException("Неизвестный тип записи журнала пользователей: " + type);
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -2,36 +2,51 @@ package ru.yandex.practicum.filmorate.storage.user;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.jfr.UserLoadEvent;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.outbox.ChangeEntity;
+import ru.yandex.practicum.filmorate.outbox.ChangeOperation;
+import ru.yandex.practicum.filmorate.storage.outbox.OutboxStorage;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.time.Clock;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
 @Slf4j
 @Repository
-@Qualifier("userDbStorage")
+@ConditionalOnExpression("'${filmorate.storage:jdbc}' matches 'jdbc|cached'")
 public class UserDbStorage implements UserStorage {
+    private static final int IN_CHUNK = 1000;
+
     private final JdbcTemplate jdbcTemplate;
+    private final OutboxStorage outboxStorage;
+    private final Clock clock;
 
     @Autowired
-    public UserDbStorage(JdbcTemplate jdbcTemplate) {
+    public UserDbStorage(JdbcTemplate jdbcTemplate, OutboxStorage outboxStorage, Clock clock) {
         this.jdbcTemplate = jdbcTemplate;
+        this.outboxStorage = outboxStorage;
+        this.clock = clock;
     }
 
     @Override
+    @Transactional
     public User add(User user) {
         String sql = "INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)";
         KeyHolder keyHolder = new GeneratedKeyHolder();
@@ -46,11 +61,13 @@ public class UserDbStorage implements UserStorage {
         }, keyHolder);
 
         user.setId(keyHolder.getKey().intValue());
+        outboxStorage.append(ChangeEntity.USER, user.getId(), null, ChangeOperation.CREATE, clock.instant());
         log.debug("Добавлен пользователь с id: {}", user.getId());
         return user;
     }
 
     @Override
+    @Transactional
     public User update(User user) {
         User existingUser = loadExistingUser(user.getId());
 
@@ -70,6 +87,7 @@ public class UserDbStorage implements UserStorage {
         String sql = "UPDATE users SET email = ?, login = ?, name = ?, birthday = ? WHERE id = ?";
         jdbcTemplate.update(sql, user.getEmail(), user.getLogin(), user.getName(),
                 Date.valueOf(user.getBirthday()), user.getId());
+        outboxStorage.append(ChangeEntity.USER, user.getId(), null, ChangeOperation.UPDATE, clock.instant());
         log.debug("Обновлён пользователь с id: {}", user.getId());
         return user;
     }
@@ -88,20 +106,40 @@ public class UserDbStorage implements UserStorage {
     }
 
     @Override
+    @Transactional
     public void delete(int id) {
-        jdbcTemplate.update("DELETE FROM users WHERE id = ?", id);
+        // Лайки пользователя и дружба с ним удаляются каскадом, счётчики уменьшаем заранее
+        jdbcTemplate.update("""
+                UPDATE films SET likes_count = likes_count - 1
+                WHERE id IN (SELECT film_id FROM film_likes WHERE user_id = ?)
+                """, id);
+        jdbcTemplate.update("""
+                UPDATE users SET friends_count = friends_count - 1
+                WHERE id IN (SELECT user_id FROM friendships WHERE friend_id = ? AND confirmed = true)
+                """, id);
+        if (jdbcTemplate.update("DELETE FROM users WHERE id = ?", id) > 0) {
+            outboxStorage.append(ChangeEntity.USER, id, null, ChangeOperation.DELETE, clock.instant());
+        }
         log.debug("Удалён пользователь с id: {}", id);
     }
 
     @Override
     public Optional<User> findById(int id) {
         String sql = "SELECT id, email, login, name, birthday FROM users WHERE id = ?";
+        UserLoadEvent event = new UserLoadEvent();
+        event.begin();
+        Optional<User> user;
         try {
-            User user = jdbcTemplate.queryForObject(sql, new UserRowMapper(), id);
-            return Optional.ofNullable(user);
+            user = Optional.ofNullable(jdbcTemplate.queryForObject(sql, new UserRowMapper(), id));
         } catch (DataAccessException e) {
-            return Optional.empty();
+            user = Optional.empty();
         }
+        if (event.shouldCommit()) {
+            event.userId = id;
+            event.found = user.isPresent();
+            event.commit();
+        }
+        return user;
     }
 
     @Override
@@ -111,17 +149,62 @@ public class UserDbStorage implements UserStorage {
     }
 
     @Override
-    public void addFriend(int userId, int friendId) {
-        String sql = "MERGE INTO friendships (user_id, friend_id, confirmed) KEY(user_id, friend_id) VALUES (?, ?, true)";
-        jdbcTemplate.update(sql, userId, friendId);
+    public List<User> findByIds(Collection<Integer> ids) {
+        List<Integer> sorted = ids.stream().distinct().sorted().toList();
+        List<User> users = new ArrayList<>(sorted.size());
+        for (int from = 0; from < sorted.size(); from += IN_CHUNK) {
+            List<Integer> chunk = sorted.subList(from, Math.min(from + IN_CHUNK, sorted.size()));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            String sql = "SELECT id, email, login, name, birthday FROM users WHERE id IN (" + placeholders + ") ORDER BY id";
+            users.addAll(jdbcTemplate.query(sql, new UserRowMapper(), chunk.toArray()));
+        }
+        return users;
+    }
+
+    @Override
+    @Transactional
+    public boolean addFriend(int userId, int friendId) {
+        if (userId == friendId) {
+            throw new ValidationException("Пользователь не может добавить в друзья самого себя");
+        }
+        String insert = """
+                INSERT INTO friendships (user_id, friend_id, confirmed)
+                SELECT ?, ?, true
+                WHERE NOT EXISTS (SELECT 1 FROM friendships WHERE user_id = ? AND friend_id = ?)
+                """;
+        int changed;
+        try {
+            changed = jdbcTemplate.update(insert, userId, friendId, userId, friendId);
+        } catch (DuplicateKeyException e) {
+            changed = 0;
+        }
+        if (changed == 0) {
+            changed = jdbcTemplate.update(
+                    "UPDATE friendships SET confirmed = true WHERE user_id = ? AND friend_id = ? AND confirmed = false",
+                    userId, friendId);
+        }
+        if (changed > 0) {
+            jdbcTemplate.update("UPDATE users SET friends_count = friends_count + 1 WHERE id = ?", userId);
+            outboxStorage.append(ChangeEntity.FRIENDSHIP, userId, friendId, ChangeOperation.CREATE, clock.instant());
+        }
         log.debug("Пользователь {} добавил в друзья пользователя {}", userId, friendId);
+        return changed > 0;
     }
 
     @Override
-    public void removeFriend(int userId, int friendId) {
-        String sql = "DELETE FROM friendships WHERE user_id = ? AND friend_id = ?";
-        jdbcTemplate.update(sql, userId, friendId);
+    @Transactional
+    public boolean removeFriend(int userId, int friendId) {
+        String sql = "DELETE FROM friendships WHERE user_id = ? AND friend_id = ? AND confirmed = ?";
+        int confirmed = jdbcTemplate.update(sql, userId, friendId, true);
+        if (confirmed > 0) {
+            jdbcTemplate.update("UPDATE users SET friends_count = friends_count - 1 WHERE id = ?", userId);
+        }
+        boolean removed = confirmed + jdbcTemplate.update(sql, userId, friendId, false) > 0;
+        if (removed) {
+            outboxStorage.append(ChangeEntity.FRIENDSHIP, userId, friendId, ChangeOperation.DELETE, clock.instant());
+        }
         log.debug("Пользователь {} удалил из друзей пользователя {}", userId, friendId);
+        return removed;
     }
 
     @Override
@@ -150,16 +233,41 @@ public class UserDbStorage implements UserStorage {
         return jdbcTemplate.query(sql, new UserRowMapper(), userId, otherId);
     }
 
-    private static class UserRowMapper implements RowMapper<User> {
-        @Override
-        public User mapRow(ResultSet rs, int rowNum) throws SQLException {
-            User user = new User();
-            user.setId(rs.getInt("id"));
-            user.setEmail(rs.getString("email"));
-            user.setLogin(rs.getString("login"));
-            user.setName(rs.getString("name"));
-            user.setBirthday(rs.getDate("birthday").toLocalDate());
-            return user;
-        }
+    @Override
+    public List<Integer> findFriendIds(int userId, int afterId, int limit) {
+        String sql = """
+                SELECT friend_id FROM friendships
+                WHERE user_id = ? AND confirmed = true AND friend_id > ?
+                ORDER BY friend_id
+                LIMIT ?
+                """;
+        return jdbcTemplate.queryForList(sql, Integer.class, userId, afterId, limit);
+    }
+
+    @Override
+    public List<Integer> findCommonFriendIds(int userId, int otherId, int afterId, int limit) {
+        String sql = """
+                SELECT f1.friend_id
+                FROM friendships f1
+                INNER JOIN friendships f2 ON f2.user_id = ? AND f2.friend_id = f1.friend_id AND f2.confirmed = true
+                WHERE f1.user_id = ? AND f1.confirmed = true AND f1.friend_id > ?
+                ORDER BY f1.friend_id
+                LIMIT ?
+                """;
+        return jdbcTemplate.queryForList(sql, Integer.class, otherId, userId, afterId, limit);
+    }
+
+    @Override
+    public int getFriendsCount(int userId) {
+        List<Integer> counts = jdbcTemplate.queryForList("SELECT friends_count FROM users WHERE id = ?",
+                Integer.class, userId);
+        return counts.isEmpty() ? 0 : counts.get(0);
+    }
+
+    @Override
+    public List<Friendship> findFriendships() {
+        String sql = "SELECT user_id, friend_id FROM friendships WHERE confirmed = true";
+        return jdbcTemplate.query(sql, (rs, rowNum) ->
+                new Friendship(rs.getInt("user_id"), rs.getInt("friend_id"), true));
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.Collection;
@@ -17,11 +18,41 @@ public interface UserStorage {
 
     Collection<User> findAll();
 
-    void addFriend(int userId, int friendId);
+    /**
+     * Пользователи с указанными id, отсортированные по id; отсутствующие id пропускаются.
+     */
+    List<User> findByIds(Collection<Integer> ids);
 
-    void removeFriend(int userId, int friendId);
+    /**
+     * true, если дружба добавлена или подтверждена; false, если она уже была.
+     * Дружба с самим собой отклоняется с {@link ru.yandex.practicum.filmorate.exception.ValidationException}.
+     */
+    boolean addFriend(int userId, int friendId);
+
+    /**
+     * true, если дружба была и удалена.
+     */
+    boolean removeFriend(int userId, int friendId);
 
     List<User> getFriends(int userId);
 
     List<User> getCommonFriends(int userId, int otherId);
+
+    /**
+     * Страница id друзей по возрастанию, начиная после afterId. Курсор следующей страницы
+     * считается по этим id: пользователи, которых не удалось загрузить, не обрывают обход.
+     */
+    List<Integer> findFriendIds(int userId, int afterId, int limit);
+
+    /**
+     * Страница id общих друзей по возрастанию, начиная после afterId.
+     */
+    List<Integer> findCommonFriendIds(int userId, int otherId, int afterId, int limit);
+
+    int getFriendsCount(int userId);
+
+    /**
+     * Все подтверждённые дружбы; нужны для построения индексов в памяти.
+     */
+    List<Friendship> findFriendships();
 }
\ No newline at end of file
@@ -0,0 +1,104 @@
+package ru.yandex.practicum.filmorate.timing;
+
+import java.util.Locale;
+
+/**
+ * Накопитель времени одного запроса для заголовка Server-Timing. Живёт в ThreadLocal
+ * только у запросов, для которых замер включён; у остальных каждый хук — одно чтение
+ * ThreadLocal и выход. Запросы, выполненные в других потоках (параллельные запросы
+ * к шардам), в БД-время не попадают.
+ */
+public final class RequestTiming {
+    public static final String HEADER = "Server-Timing";
+
+    private static final ThreadLocal<RequestTiming> CURRENT = new ThreadLocal<>();
+
+    private final long started;
+    private long handlerStarted;
+    private long handlerFinished;
+    private long validationNanos;
+    private long dbNanos;
+    private int statements;
+    private int cacheHits;
+    private int cacheMisses;
+
+    private RequestTiming(long started) {
+        this.started = started;
+    }
+
+    static RequestTiming start() {
+        RequestTiming timing = new RequestTiming(System.nanoTime());
+        CURRENT.set(timing);
+        return timing;
+    }
+
+    static void finish() {
+        CURRENT.remove();
+    }
+
+    static boolean active() {
+        return CURRENT.get() != null;
+    }
+
+    public static void recordStatement(long nanos) {
+        RequestTiming timing = CURRENT.get();
+        if (timing != null) {
+            timing.dbNanos += nanos;
+            timing.statements++;
+        }
+    }
+
+    public static void recordCache(int hits, int misses) {
+        RequestTiming timing = CURRENT.get();
+        if (timing != null) {
+            timing.cacheHits += hits;
+            timing.cacheMisses += misses;
+        }
+    }
+
+    static void recordValidation(long nanos) {
+        RequestTiming timing = CURRENT.get();
+        if (timing != null) {
+            timing.validationNanos += nanos;
+        }
+    }
+
+    static void markHandlerStarted() {
+        RequestTiming timing = CURRENT.get();
+        if (timing != null && timing.handlerStarted == 0) {
+            timing.handlerStarted = System.nanoTime();
+        }
+    }
+
+    /**
+     * Конец работы контроллера и начало сериализации ответа.
+     */
+    static void markHandlerFinished() {
+        RequestTiming timing = CURRENT.get();
+        if (timing != null && timing.handlerFinished == 0) {
+            timing.handlerFinished = System.nanoTime();
+        }
+    }
+
+    /**
+     * Значение заголовка на момент finished: app — работа контроллера и сервисов без проверки
+     * и БД, serialization — от конца контроллера до конца записи тела.
+     */
+    String header(long finished) {
+        long handlerStart = handlerStarted == 0 ? started : handlerStarted;
+        long handlerEnd = handlerFinished == 0 ? finished : handlerFinished;
+        long app = Math.max(0, handlerEnd - handlerStart - validationNanos - dbNanos);
+        return String.join(", ",
+                metric("validation", validationNanos, null),
+                metric("app", app, null),
+                metric("db", dbNanos, statements + " statements"),
+                "cache;desc=\"hit=" + cacheHits + " miss=" + cacheMisses + "\"",
+                metric("serialization", finished - handlerEnd, null),
+                metric("total", finished - started, null));
+    }
+
+    private static String metric(String name, long nanos, String description) {
+        String metric = String.format(Locale.ROOT, "%s;dur=%.3f", name, nanos / 1e6);
+        return description == null ? metric : metric + ";desc=\"" + description + "\"";
+    }
+}
@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate.timing;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+
+/**
+ * Добавляет Server-Timing к ответам /films и /users. В режиме header замер включается
+ * заголовком запроса X-Debug-Timing, в режиме always — для всех запросов. Тело ответа
+ * буферизуется, чтобы заголовок с временем сериализации успел попасть в ответ.
+ */
+public class ServerTimingFilter extends OncePerRequestFilter {
+    public static final String DEBUG_HEADER = "X-Debug-Timing";
+
+    private final boolean always;
+
+    public ServerTimingFilter(boolean always) {
+        this.always = always;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !(path.startsWith("/films") || path.startsWith("/users"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!always && !requested(request)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        RequestTiming timing = RequestTiming.start();
+        ContentCachingResponseWrapper buffered = new ContentCachingResponseWrapper(response);
+        try {
+            chain.doFilter(request, buffered);
+        } finally {
+            RequestTiming.finish();
+            buffered.setHeader(RequestTiming.HEADER, timing.header(System.nanoTime()));
+            buffered.copyBodyToResponse();
+        }
+    }
+
+    private static boolean requested(HttpServletRequest request) {
+        String value = request.getHeader(DEBUG_HEADER);
+        return value != null && !value.isBlank() && !"false".equalsIgnoreCase(value) && !"0".equals(value);
+    }
+}
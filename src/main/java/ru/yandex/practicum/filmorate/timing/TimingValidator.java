@@ -0,0 +1,95 @@
+package ru.yandex.practicum.filmorate.timing;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.executable.ExecutableValidator;
+import jakarta.validation.metadata.BeanDescriptor;
+import org.springframework.lang.Nullable;
+import org.springframework.validation.Errors;
+import org.springframework.validation.SmartValidator;
+import org.springframework.validation.beanvalidation.SpringValidatorAdapter;
+
+import java.util.Set;
+
+/**
+ * Валидатор MVC, который учитывает время проверки тела запроса в {@link RequestTiming}.
+ * Реализует оба интерфейса, как и валидатор по умолчанию, чтобы MVC настраивался так же.
+ */
+public class TimingValidator implements SmartValidator, jakarta.validation.Validator {
+    private final SpringValidatorAdapter delegate;
+
+    public TimingValidator(SpringValidatorAdapter delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public boolean supports(Class<?> clazz) {
+        return delegate.supports(clazz);
+    }
+
+    @Override
+    public void validate(Object target, Errors errors) {
+        long started = System.nanoTime();
+        try {
+            delegate.validate(target, errors);
+        } finally {
+            RequestTiming.recordValidation(System.nanoTime() - started);
+        }
+    }
+
+    @Override
+    public void validate(Object target, Errors errors, Object... validationHints) {
+        long started = System.nanoTime();
+        try {
+            delegate.validate(target, errors, validationHints);
+        } finally {
+            RequestTiming.recordValidation(System.nanoTime() - started);
+        }
+    }
+
+    @Override
+    public void validateValue(Class<?> targetType, String fieldName, @Nullable Object value, Errors errors,
+                              Object... validationHints) {
+        long started = System.nanoTime();
+        try {
+            delegate.validateValue(targetType, fieldName, value, errors, validationHints);
+        } finally {
+            RequestTiming.recordValidation(System.nanoTime() - started);
+        }
+    }
+
+    @Override
+    public <T> Set<ConstraintViolation<T>> validate(T object, Class<?>... groups) {
+        long started = System.nanoTime();
+        try {
+            return delegate.validate(object, groups);
+        } finally {
+            RequestTiming.recordValidation(System.nanoTime() - started);
+        }
+    }
+
+    @Override
+    public <T> Set<ConstraintViolation<T>> validateProperty(T object, String propertyName, Class<?>... groups) {
+        return delegate.validateProperty(object, propertyName, groups);
+    }
+
+    @Override
+    public <T> Set<ConstraintViolation<T>> validateValue(Class<T> beanType, String propertyName, Object value,
+                                                         Class<?>... groups) {
+        return delegate.validateValue(beanType, propertyName, value, groups);
+    }
+
+    @Override
+    public BeanDescriptor getConstraintsForClass(Class<?> clazz) {
+        return delegate.getConstraintsForClass(clazz);
+    }
+
+    @Override
+    public <T> T unwrap(@Nullable Class<T> type) {
+        return delegate.unwrap(type);
+    }
+
+    @Override
+    public ExecutableValidator forExecutables() {
+        return delegate.forExecutables();
+    }
+}
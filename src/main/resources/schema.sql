@@ -35,9 +35,25 @@ CREATE TABLE IF NOT EXISTS film_genres (
 CREATE TABLE IF NOT EXISTS film_likes (
     film_id INTEGER REFERENCES films(id) ON DELETE CASCADE,
     user_id INTEGER REFERENCES users(id) ON DELETE CASCADE,
+    created_at TIMESTAMP DEFAULT LOCALTIMESTAMP NOT NULL,
     PRIMARY KEY (film_id, user_id)
 );
 
+ALTER TABLE film_likes ADD COLUMN IF NOT EXISTS created_at TIMESTAMP DEFAULT LOCALTIMESTAMP NOT NULL;
+
+-- Разовые заполнения новых колонок: записанное здесь имя не выполняется повторно при старте
+CREATE TABLE IF NOT EXISTS schema_backfills (
+    name VARCHAR(64) PRIMARY KEY,
+    applied_at TIMESTAMP DEFAULT LOCALTIMESTAMP NOT NULL
+);
+
+-- Материализованное число лайков фильма; меняется вместе с film_likes,
+-- заполняется один раз при появлении колонки
+ALTER TABLE films ADD COLUMN IF NOT EXISTS likes_count INTEGER DEFAULT 0 NOT NULL;
+UPDATE films f SET likes_count = (SELECT COUNT(*) FROM film_likes fl WHERE fl.film_id = f.id)
+WHERE NOT EXISTS (SELECT 1 FROM schema_backfills WHERE name = 'films.likes_count');
+MERGE INTO schema_backfills (name) KEY (name) VALUES ('films.likes_count');
+
 CREATE TABLE IF NOT EXISTS friendships (
     user_id INTEGER REFERENCES users(id) ON DELETE CASCADE,
     friend_id INTEGER REFERENCES users(id) ON DELETE CASCADE,
@@ -46,11 +62,51 @@ CREATE TABLE IF NOT EXISTS friendships (
     CHECK (user_id != friend_id)
 );
 
+-- Материализованное число друзей: меняется вместе с friendships, заполняется один раз
+-- при появлении колонки
+ALTER TABLE users ADD COLUMN IF NOT EXISTS friends_count INTEGER DEFAULT 0 NOT NULL;
+UPDATE users u SET friends_count =
+    (SELECT COUNT(*) FROM friendships f WHERE f.user_id = u.id AND f.confirmed = true)
+WHERE NOT EXISTS (SELECT 1 FROM schema_backfills WHERE name = 'users.friends_count');
+MERGE INTO schema_backfills (name) KEY (name) VALUES ('users.friends_count');
+
 CREATE INDEX IF NOT EXISTS idx_films_mpa ON films(mpa_id);
 CREATE INDEX IF NOT EXISTS idx_film_likes_film ON film_likes(film_id);
-CREATE INDEX IF NOT EXISTS idx_film_likes_user ON film_likes(user_id);
+-- Покрывающий индекс истории лайков пользователя; заменяет прежний индекс по одному user_id
+DROP INDEX IF EXISTS idx_film_likes_user;
+CREATE INDEX IF NOT EXISTS idx_film_likes_user_created ON film_likes(user_id, created_at DESC, film_id DESC);
 CREATE INDEX IF NOT EXISTS idx_friendships_user ON friendships(user_id);
 CREATE INDEX IF NOT EXISTS idx_friendships_friend ON friendships(friend_id);
 CREATE INDEX IF NOT EXISTS idx_films_release_date ON films(release_date);
 CREATE INDEX IF NOT EXISTS idx_users_email ON users(email);
-CREATE INDEX IF NOT EXISTS idx_users_login ON users(login);
\ No newline at end of file
+CREATE INDEX IF NOT EXISTS idx_users_login ON users(login);
+CREATE INDEX IF NOT EXISTS idx_film_genres_genre_film ON film_genres(genre_id, film_id);
+CREATE INDEX IF NOT EXISTS idx_films_release_date_mpa ON films(release_date, mpa_id);
+CREATE INDEX IF NOT EXISTS idx_film_likes_created ON film_likes(created_at);
+CREATE INDEX IF NOT EXISTS idx_films_likes_count ON films(likes_count DESC, id);
+
+CREATE SEQUENCE IF NOT EXISTS feed_events_seq;
+
+CREATE TABLE IF NOT EXISTS feed_events (
+    event_id BIGINT PRIMARY KEY,
+    user_id INTEGER NOT NULL,
+    event_type VARCHAR(20) NOT NULL,
+    operation VARCHAR(20) NOT NULL,
+    entity_id INTEGER NOT NULL,
+    created_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_feed_events_user_event ON feed_events(user_id, event_id);
+
+CREATE TABLE IF NOT EXISTS outbox_events (
+    event_id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    entity_type VARCHAR(20) NOT NULL,
+    entity_id INTEGER NOT NULL,
+    related_id INTEGER,
+    operation VARCHAR(10) NOT NULL,
+    node_id VARCHAR(64) NOT NULL,
+    occurred_at TIMESTAMP NOT NULL,
+    created_at TIMESTAMP DEFAULT LOCALTIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_outbox_events_created ON outbox_events(created_at);
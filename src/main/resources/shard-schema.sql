@@ -0,0 +1,78 @@
+-- Схема одного шарда. Пользователи, их дружба и лайки лежат на шарде владельца,
+-- фильмы с жанрами реплицируются на все шарды. Друг может жить на другом шарде,
+-- поэтому friend_id не ссылается на users.
+
+CREATE TABLE IF NOT EXISTS mpa (
+    id INTEGER PRIMARY KEY,
+    name VARCHAR(10) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS genres (
+    id INTEGER PRIMARY KEY,
+    name VARCHAR(50) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS users (
+    id INTEGER PRIMARY KEY,
+    email VARCHAR(100) NOT NULL UNIQUE,
+    login VARCHAR(50) NOT NULL UNIQUE,
+    name VARCHAR(100),
+    birthday DATE NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS films (
+    id INTEGER PRIMARY KEY,
+    name VARCHAR(100) NOT NULL,
+    description VARCHAR(200),
+    release_date DATE NOT NULL,
+    duration INTEGER NOT NULL CHECK (duration > 0),
+    mpa_id INTEGER REFERENCES mpa(id)
+);
+
+CREATE TABLE IF NOT EXISTS film_genres (
+    film_id INTEGER REFERENCES films(id) ON DELETE CASCADE,
+    genre_id INTEGER REFERENCES genres(id),
+    PRIMARY KEY (film_id, genre_id)
+);
+
+CREATE TABLE IF NOT EXISTS film_likes (
+    film_id INTEGER REFERENCES films(id) ON DELETE CASCADE,
+    user_id INTEGER REFERENCES users(id) ON DELETE CASCADE,
+    created_at TIMESTAMP DEFAULT LOCALTIMESTAMP NOT NULL,
+    PRIMARY KEY (film_id, user_id)
+);
+
+CREATE TABLE IF NOT EXISTS friendships (
+    user_id INTEGER REFERENCES users(id) ON DELETE CASCADE,
+    friend_id INTEGER NOT NULL,
+    confirmed BOOLEAN DEFAULT FALSE,
+    PRIMARY KEY (user_id, friend_id),
+    CHECK (user_id != friend_id)
+);
+
+-- Разовые заполнения новых колонок: записанное здесь имя не выполняется повторно при старте
+CREATE TABLE IF NOT EXISTS schema_backfills (
+    name VARCHAR(64) PRIMARY KEY,
+    applied_at TIMESTAMP DEFAULT LOCALTIMESTAMP NOT NULL
+);
+
+-- Материализованное число друзей: меняется вместе с friendships, заполняется один раз
+-- при появлении колонки
+ALTER TABLE users ADD COLUMN IF NOT EXISTS friends_count INTEGER DEFAULT 0 NOT NULL;
+UPDATE users u SET friends_count =
+    (SELECT COUNT(*) FROM friendships f WHERE f.user_id = u.id AND f.confirmed = true)
+WHERE NOT EXISTS (SELECT 1 FROM schema_backfills WHERE name = 'users.friends_count');
+MERGE INTO schema_backfills (name) KEY (name) VALUES ('users.friends_count');
+
+-- Используются только на нулевом шарде: он выдаёт глобальные id
+CREATE SEQUENCE IF NOT EXISTS user_ids_seq;
+CREATE SEQUENCE IF NOT EXISTS film_ids_seq;
+
+CREATE INDEX IF NOT EXISTS idx_film_likes_film ON film_likes(film_id);
+-- Покрывающий индекс истории лайков пользователя; заменяет прежний индекс по одному user_id
+DROP INDEX IF EXISTS idx_film_likes_user;
+CREATE INDEX IF NOT EXISTS idx_film_likes_user_created ON film_likes(user_id, created_at DESC, film_id DESC);
+CREATE INDEX IF NOT EXISTS idx_film_likes_created ON film_likes(created_at);
+CREATE INDEX IF NOT EXISTS idx_friendships_friend ON friendships(friend_id);
+CREATE INDEX IF NOT EXISTS idx_film_genres_genre_film ON film_genres(genre_id, film_id);
+CREATE INDEX IF NOT EXISTS idx_films_release_date_mpa ON films(release_date, mpa_id);
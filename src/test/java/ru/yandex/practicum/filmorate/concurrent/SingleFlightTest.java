@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate.concurrent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+    private final SingleFlight<String, Integer> flight = new SingleFlight<>("test", new SimpleMeterRegistry());
+
+    @Test
+    public void concurrentCallsWithSameKeyShouldShareOneLoad() throws Exception {
+        int callers = 8;
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            results.add(executor.submit(() -> flight.execute("popular", () -> {
+                leaderStarted.countDown();
+                await(release);
+                return loads.incrementAndGet();
+            })));
+            assertThat(leaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            for (int i = 1; i < callers; i++) {
+                results.add(executor.submit(() -> flight.execute("popular", loads::incrementAndGet)));
+            }
+            while (flight.coalesced() < callers - 1) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            for (Future<Integer> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+            }
+            assertThat(loads).hasValue(1);
+            assertThat(flight.leaders()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void finishedLoadShouldNotBeReusedAndFailureShouldPropagate() {
+        AtomicInteger loads = new AtomicInteger();
+        assertThat(flight.execute("film", loads::incrementAndGet)).isEqualTo(1);
+        assertThat(flight.execute("film", loads::incrementAndGet)).isEqualTo(2);
+
+        assertThatThrownBy(() -> flight.execute("film", () -> {
+            throw new IllegalStateException("сбой загрузки");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(flight.execute("film", loads::incrementAndGet)).isEqualTo(3);
+        assertThat(flight.coalesced()).isZero();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
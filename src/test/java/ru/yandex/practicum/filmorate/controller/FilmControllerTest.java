@@ -13,6 +13,8 @@ import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Mpa;
 
 import java.time.LocalDate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -83,9 +85,90 @@ public class FilmControllerTest {
                 .andExpect(jsonPath("$.id").value(createdFilm.getId()));
     }
 
+    @Test
+    public void shouldGetFilmsByIdsInRequestOrder() throws Exception {
+        Film first = createFilm("First");
+        Film second = createFilm("Second");
+
+        mockMvc.perform(get("/films").param("ids", second.getId() + ",999," + first.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Missing-Ids", "999"))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(second.getId()))
+                .andExpect(jsonPath("$[1].id").value(first.getId()));
+    }
+
+    @Test
+    public void shouldProjectRequestedFields() throws Exception {
+        Film film = createFilm("Projected");
+
+        mockMvc.perform(get("/films").param("fields", "id,name"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(film.getId()))
+                .andExpect(jsonPath("$[0].name").value("Projected"))
+                .andExpect(jsonPath("$[0].description").doesNotExist())
+                .andExpect(jsonPath("$[0].genres").doesNotExist());
+        mockMvc.perform(get("/films").param("ids", String.valueOf(film.getId())).param("fields", "id,name"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Projected"))
+                .andExpect(jsonPath("$[0].genres").doesNotExist());
+        mockMvc.perform(get("/films").param("ids", String.valueOf(film.getId())).param("fields", "id,genres"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].genres").isArray());
+        mockMvc.perform(get("/films/popular").param("fields", "name,mpa"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].mpa.id").value(1))
+                .andExpect(jsonPath("$[0].id").doesNotExist());
+        mockMvc.perform(get("/films").param("fields", "id,unknown"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void shouldExposeLikesCountAndPagedLikes() throws Exception {
+        Film film = createFilm("Liked");
+
+        mockMvc.perform(get("/films/" + film.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.likesCount").value(0))
+                .andExpect(jsonPath("$.likes").doesNotExist());
+        mockMvc.perform(get("/films/" + film.getId() + "/likes").param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(0))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+        mockMvc.perform(get("/films/999/likes"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void shouldRejectTooManyIds() throws Exception {
+        String ids = IntStream.rangeClosed(1, 101).mapToObj(String::valueOf).collect(Collectors.joining(","));
+
+        mockMvc.perform(get("/films").param("ids", ids))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     public void shouldReturn404ForNonExistentFilm() throws Exception {
         mockMvc.perform(get("/films/999"))
                 .andExpect(status().isNotFound());
     }
-}
\ No newline at end of file
+
+    private Film createFilm(String name) throws Exception {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Test Description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(120);
+
+        Mpa mpa = new Mpa();
+        mpa.setId(1);
+        film.setMpa(mpa);
+
+        String response = mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(film)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(response, Film.class);
+    }
+}
@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,10 +10,17 @@ import org.springframework.http.MediaType;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.matchesPattern;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -72,4 +80,114 @@ public class UserControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id").value(createdUser.getId()));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void friendsShouldBePagedWithCursorHeader() throws Exception {
+        int userId = createUser(1);
+        int first = createUser(2);
+        int second = createUser(3);
+        mockMvc.perform(put("/users/" + userId + "/friends/" + first)).andExpect(status().isOk());
+        mockMvc.perform(put("/users/" + userId + "/friends/" + second)).andExpect(status().isOk());
+
+        mockMvc.perform(get("/users/" + userId + "/friends"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andExpect(jsonPath("$[*].id").value(contains(first, second)));
+        mockMvc.perform(get("/users/" + userId + "/friends").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", String.valueOf(first)))
+                .andExpect(jsonPath("$[*].id").value(contains(first)));
+        mockMvc.perform(get("/users/" + userId + "/friends").param("limit", "1")
+                        .param("cursor", String.valueOf(first)))
+                .andExpect(header().string("X-Next-Cursor", String.valueOf(second)))
+                .andExpect(jsonPath("$[*].id").value(contains(second)));
+        mockMvc.perform(get("/users/" + userId + "/friends").param("cursor", String.valueOf(second)))
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andExpect(jsonPath("$").isEmpty());
+        mockMvc.perform(get("/users/" + userId + "/friends/common/" + first))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andExpect(jsonPath("$").isEmpty());
+    }
+
+    @Test
+    public void likedFilmsShouldBePagedWithCursor() throws Exception {
+        int userId = createUser(1);
+        int first = createFilm("First");
+        int second = createFilm("Second");
+        int third = createFilm("Third");
+        for (int filmId : List.of(first, second, third)) {
+            mockMvc.perform(put("/films/" + filmId + "/like/" + userId)).andExpect(status().isOk());
+        }
+
+        JsonNode firstPage = objectMapper.readTree(mockMvc.perform(get("/users/" + userId + "/likes")
+                        .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.nextCursor").value(matchesPattern("\\d+:\\d+:\\d+")))
+                .andReturn().getResponse().getContentAsString());
+        String cursor = firstPage.get("nextCursor").asText();
+        JsonNode secondPage = objectMapper.readTree(mockMvc.perform(get("/users/" + userId + "/likes")
+                        .param("limit", "2").param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist())
+                .andReturn().getResponse().getContentAsString());
+
+        List<Integer> ids = new ArrayList<>();
+        firstPage.get("items").forEach(film -> ids.add(film.get("id").asInt()));
+        secondPage.get("items").forEach(film -> ids.add(film.get("id").asInt()));
+        assertThat(ids).containsExactlyInAnyOrder(first, second, third);
+    }
+
+    @Test
+    public void likedFilmsShouldRejectBadCursorLimitAndUnknownUser() throws Exception {
+        int userId = createUser(1);
+
+        mockMvc.perform(get("/users/" + userId + "/likes").param("cursor", "abc"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/users/" + userId + "/likes").param("cursor", "1:2"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/users/" + userId + "/likes").param("cursor", "1:x:3"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/users/" + userId + "/likes").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/users/" + userId + "/likes").param("limit", "1001"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/users/" + userId + "/likes").param("limit", "1000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items").isEmpty());
+        mockMvc.perform(get("/users/999/likes"))
+                .andExpect(status().isNotFound());
+    }
+
+    private int createUser(int n) throws Exception {
+        User user = new User();
+        user.setEmail("friend" + n + "@example.com");
+        user.setLogin("friend" + n);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        String response = mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(user)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(response, User.class).getId();
+    }
+
+    private int createFilm(String name) throws Exception {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Test Description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(120);
+        Mpa mpa = new Mpa();
+        mpa.setId(1);
+        film.setMpa(mpa);
+        String response = mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(film)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(response, Film.class).getId();
+    }
+}
@@ -240,4 +240,32 @@ public class ValidationBoundaryTest {
                         .content(objectMapper.writeValueAsString(updateFilm)))
                 .andExpect(status().isOk());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldRejectPopularFilmsWithYearOutOfRange() throws Exception {
+        mockMvc.perform(get("/films/popular").param("year", "999999999"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/films/popular").param("year", "1000"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/films/popular").param("year", "2000"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void shouldRejectPopularFilmsWithCountOutOfRange() throws Exception {
+        mockMvc.perform(get("/films/popular").param("count", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/films/popular").param("count", "1001"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void shouldRejectTrendingFilmsWithCountOutOfRange() throws Exception {
+        mockMvc.perform(get("/films/trending").param("count", "-1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/films/trending").param("count", "1001"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/films/trending").param("count", "1000"))
+                .andExpect(status().isOk());
+    }
+}
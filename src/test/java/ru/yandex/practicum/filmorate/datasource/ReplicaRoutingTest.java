@@ -0,0 +1,85 @@
+package ru.yandex.practicum.filmorate.datasource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Реплики — отдельные пулы к той же базе H2 в памяти: данные видны сразу,
+ * а по метрикам пулов видно, куда ушёл каждый запрос.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:replicas;DB_CLOSE_DELAY=-1",
+        "spring.sql.init.mode=always",
+        "filmorate.replicas.enabled=true",
+        "filmorate.replicas.urls=jdbc:h2:mem:replicas;DB_CLOSE_DELAY=-1,jdbc:h2:mem:replicas;DB_CLOSE_DELAY=-1"
+})
+@DirtiesContext
+class ReplicaRoutingTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void readsShouldGoToReplicasUnlessClientJustWrote() throws Exception {
+        User user = new User();
+        user.setEmail("replica@example.com");
+        user.setLogin("replica");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+
+        MvcResult created = mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(user)))
+                .andExpect(status().isOk())
+                .andExpect(cookie().exists(ReadYourWritesFilter.COOKIE))
+                .andReturn();
+        Cookie lastWrite = created.getResponse().getCookie(ReadYourWritesFilter.COOKIE);
+        int id = objectMapper.readValue(created.getResponse().getContentAsString(), User.class).getId();
+
+        double replicaReads = routed("replica-1") + routed("replica-2");
+        mockMvc.perform(get("/users/" + id)).andExpect(status().isOk());
+        mockMvc.perform(get("/users/" + id)).andExpect(status().isOk());
+        assertThat(routed("replica-1") + routed("replica-2")).isEqualTo(replicaReads + 2);
+        assertThat(routed("replica-1")).isPositive();
+        assertThat(routed("replica-2")).isPositive();
+
+        replicaReads = routed("replica-1") + routed("replica-2");
+        mockMvc.perform(get("/users/" + id).cookie(lastWrite)).andExpect(status().isOk());
+        assertThat(routed("replica-1") + routed("replica-2")).isEqualTo(replicaReads);
+
+        assertThat(meterRegistry.find("hikaricp.connections").tag("pool", "replica-1").gauge()).isNotNull();
+        assertThat(meterRegistry.find("hikaricp.connections").tag("pool", "primary").gauge()).isNotNull();
+    }
+
+    private double routed(String pool) {
+        Counter counter = meterRegistry.find("filmorate.datasource.routed").tag("pool", pool).counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
@@ -0,0 +1,91 @@
+package ru.yandex.practicum.filmorate.datasource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SqlStatisticsTest {
+    private SqlStatistics statistics;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        statistics = new SqlStatistics(Duration.ofSeconds(1), 100, false, new SimpleMeterRegistry());
+        jdbcTemplate = new JdbcTemplate(SqlStatisticsDataSource.wrap(DataSourceBuilder.create()
+                .url("jdbc:h2:mem:sqlstats-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1")
+                .username("sa")
+                .password("")
+                .build(), statistics));
+        jdbcTemplate.execute("CREATE TABLE items (id INTEGER PRIMARY KEY, name VARCHAR(20))");
+        statistics.reset();
+    }
+
+    @Test
+    public void statementsShouldBeGroupedByShape() {
+        jdbcTemplate.batchUpdate("INSERT INTO items (id, name) VALUES (?, ?)",
+                List.of(new Object[]{1, "a"}, new Object[]{2, "b"}, new Object[]{3, "c"}));
+        jdbcTemplate.queryForList("SELECT name FROM items WHERE id IN (?, ?)", String.class, 1, 2);
+        jdbcTemplate.queryForList("SELECT name\n  FROM items WHERE id IN (?,?,?)", String.class, 1, 2, 3);
+
+        List<SqlStatistics.ShapeSummary> top = statistics.top(10, SqlStatistics.SortOrder.COUNT);
+
+        assertThat(top).hasSize(2);
+        SqlStatistics.ShapeSummary select = top.get(0);
+        assertThat(select.shape()).isEqualTo("SELECT name FROM items WHERE id IN (?...)");
+        assertThat(select.executions()).isEqualTo(2);
+        assertThat(select.rowsRead()).isEqualTo(5);
+        assertThat(select.histogram().values().stream().mapToLong(Long::longValue).sum()).isEqualTo(2);
+        assertThat(top.get(1).rowsUpdated()).isEqualTo(3);
+        assertThat(statistics.connectionWait().connections()).isPositive();
+    }
+
+    @Test
+    public void failedStatementsShouldBeCountedAsErrors() {
+        jdbcTemplate.update("INSERT INTO items (id, name) VALUES (?, ?)", 1, "a");
+        assertThatThrownBy(() -> jdbcTemplate.update("INSERT INTO items (id, name) VALUES (?, ?)", 1, "b"))
+                .isInstanceOf(DuplicateKeyException.class);
+
+        assertThat(statistics.top(10, SqlStatistics.SortOrder.TOTAL))
+                .singleElement()
+                .satisfies(summary -> {
+                    assertThat(summary.executions()).isEqualTo(2);
+                    assertThat(summary.errors()).isEqualTo(1);
+                    assertThat(summary.rowsUpdated()).isEqualTo(1);
+                });
+    }
+
+    @Test
+    public void shapesAboveLimitShouldBeMergedIntoOther() {
+        statistics = new SqlStatistics(Duration.ofSeconds(1), 2, false, new SimpleMeterRegistry());
+        for (int i = 0; i < 5; i++) {
+            statistics.recordExecution("SELECT " + i, 1_000, 0, false, Map.of());
+        }
+
+        assertThat(statistics.top(10, SqlStatistics.SortOrder.COUNT))
+                .extracting(SqlStatistics.ShapeSummary::shape)
+                .contains(SqlStatistics.OTHER)
+                .hasSize(3);
+    }
+
+    @Test
+    public void slowQueryLogShouldHideStringValuesUnlessEnabled() {
+        Map<Integer, Object> parameters = Map.of(1, "alice@example.com", 2, 42, 3, LocalDate.of(1990, 1, 1));
+
+        assertThat(SqlStatistics.summarize(parameters, false))
+                .isEqualTo("[1=<строка, 17 симв.>, 2=42, 3=<LocalDate>]");
+        assertThat(SqlStatistics.summarize(parameters, true))
+                .isEqualTo("[1='alice@example.com', 2=42, 3=1990-01-01]");
+    }
+}
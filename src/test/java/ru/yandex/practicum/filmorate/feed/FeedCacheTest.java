@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.feed;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+import ru.yandex.practicum.filmorate.model.FeedEventType;
+import ru.yandex.practicum.filmorate.model.FeedOperation;
+import ru.yandex.practicum.filmorate.storage.feed.FeedStorage;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FeedCacheTest {
+
+    @Test
+    public void zeroEventsPerUserShouldBeRejected() {
+        assertThatThrownBy(() -> new FeedCache(new EmptyFeedStorage(), 0, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void overflowedEntryShouldTrustOnlyItsOldestEvent() {
+        FeedCache cache = new FeedCache(new EmptyFeedStorage(), 1, 10);
+        cache.get(List.of(1));
+        cache.appendAll(List.of(event(1, 10), event(1, 11)));
+
+        List<FeedEvent> sink = new ArrayList<>();
+        long trustedFrom = cache.get(List.of(1)).get(1).collect(Long.MAX_VALUE, 5, sink);
+
+        assertThat(sink).extracting(FeedEvent::getEventId).containsExactly(11L);
+        assertThat(trustedFrom).isEqualTo(11L);
+    }
+
+    private static FeedEvent event(int userId, long eventId) {
+        FeedEvent event = new FeedEvent(userId, FeedEventType.LIKE, FeedOperation.ADD, 1, Instant.EPOCH);
+        event.setEventId(eventId);
+        return event;
+    }
+
+    private static class EmptyFeedStorage implements FeedStorage {
+        @Override
+        public void addAll(List<FeedEvent> events) {
+        }
+
+        @Override
+        public List<FeedEvent> findByUsers(Collection<Integer> userIds, Long beforeEventId, int limit) {
+            return List.of();
+        }
+
+        @Override
+        public Map<Integer, List<FeedEvent>> findRecentByUsers(Collection<Integer> userIds, int perUser) {
+            return Map.of();
+        }
+    }
+}
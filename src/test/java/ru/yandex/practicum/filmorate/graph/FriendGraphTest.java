@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.graph;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Friendship;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FriendGraphTest {
+
+    private final FriendGraph.Snapshot graph = FriendGraph.Snapshot.build(List.of(
+            friendship(1, 2), friendship(2, 3), friendship(3, 4), friendship(4, 5),
+            friendship(1, 6), friendship(6, 5), friendship(7, 1)));
+
+    @Test
+    public void shouldFindShortestChainAlongFriendshipDirection() {
+        assertThat(graph.search(1, 5, 6, 100).path()).containsExactly(1, 6, 5);
+        assertThat(graph.search(1, 4, 6, 100).path()).containsExactly(1, 2, 3, 4);
+        assertThat(graph.search(7, 5, 6, 100).path()).containsExactly(7, 1, 6, 5);
+        assertThat(graph.search(5, 1, 6, 100).path()).isEmpty();
+    }
+
+    @Test
+    public void shouldStopAtDepthAndVisitedLimits() {
+        FriendGraph.PathSearch tooShallow = graph.search(1, 4, 2, 100);
+        assertThat(tooShallow.path()).isEmpty();
+        assertThat(tooShallow.truncated()).isTrue();
+
+        FriendGraph.PathSearch tooWide = graph.search(7, 4, 6, 3);
+        assertThat(tooWide.path()).isEmpty();
+        assertThat(tooWide.truncated()).isTrue();
+    }
+
+    private static Friendship friendship(int userId, int friendId) {
+        return new Friendship(userId, friendId, true);
+    }
+}
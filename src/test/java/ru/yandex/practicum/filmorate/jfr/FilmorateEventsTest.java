@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.storage.cache.ReadThroughCache;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilmorateEventsTest {
+
+    @Test
+    public void cacheLookupsShouldBeRecorded(@TempDir Path dir) throws Exception {
+        ReadThroughCache<Integer, String> cache = new ReadThroughCache<>("films", 10);
+        Path file = dir.resolve("cache.jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable(FilmorateEvents.PREFIX + "CacheLookup");
+            recording.start();
+            cache.get(7, id -> Optional.of("Солярис"));
+            cache.get(7, id -> Optional.of("Солярис"));
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        assertThat(events).hasSize(2).allSatisfy(event -> {
+            assertThat(event.getString("cache")).isEqualTo("films");
+            assertThat(event.getString("key")).isEqualTo("7");
+        });
+        assertThat(events).extracting(event -> event.getBoolean("hit")).containsExactly(false, true);
+    }
+
+    @Test
+    public void eventsShouldNotBeCommittedWithoutRecording() {
+        FilmLoadEvent event = new FilmLoadEvent();
+        event.begin();
+
+        assertThat(event.shouldCommit()).isFalse();
+    }
+}
@@ -0,0 +1,195 @@
+package ru.yandex.practicum.filmorate.limit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.Ordered;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:limiter;DB_CLOSE_DELAY=-1",
+        "spring.sql.init.mode=always",
+        "filmorate.limiter.enabled=true",
+        "filmorate.limiter.reads.initial-limit=1",
+        "filmorate.limiter.reads.min-limit=1",
+        "filmorate.limiter.reads.max-limit=1",
+        "filmorate.limiter.writes.initial-limit=1",
+        "filmorate.limiter.writes.min-limit=1",
+        "filmorate.limiter.writes.max-limit=1",
+        "filmorate.limiter.retry-after-seconds=3"
+})
+@DirtiesContext
+class ConcurrencyLimitFilterTest {
+    private static final String HOLD_HEADER = "X-Test-Hold";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private HoldFilter holdFilter;
+
+    @AfterEach
+    public void releaseHeldRequests() {
+        holdFilter.release();
+    }
+
+    @Test
+    public void readOverLimitShouldBeRejectedWhileWritesAndOtherPathsPass() throws Exception {
+        CompletableFuture<Integer> held = hold(get("/films"));
+        double rejectedBefore = rejected("reads");
+
+        mockMvc.perform(get("/users"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "3"))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.error").value("Service Unavailable"))
+                .andExpect(jsonPath("$.message").exists());
+        mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(user("reader"))))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/genres"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/mpa/1"))
+                .andExpect(status().isOk());
+
+        assertThat(rejected("reads")).isEqualTo(rejectedBefore + 1);
+        holdFilter.release();
+        assertThat(held.get(5, TimeUnit.SECONDS)).isEqualTo(200);
+        mockMvc.perform(get("/films"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void writeOverLimitShouldBeRejectedWhileReadsPass() throws Exception {
+        CompletableFuture<Integer> held = hold(post("/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(user("held"))));
+        double rejectedBefore = rejected("writes");
+
+        mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(user("writer"))))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "3"))
+                .andExpect(jsonPath("$.error").value("Service Unavailable"));
+        mockMvc.perform(get("/users"))
+                .andExpect(status().isOk());
+
+        assertThat(rejected("writes")).isEqualTo(rejectedBefore + 1);
+        holdFilter.release();
+        assertThat(held.get(5, TimeUnit.SECONDS)).isEqualTo(200);
+    }
+
+    /**
+     * Запускает запрос в отдельном потоке и дожидается, пока он пройдёт лимитер и встанет
+     * в {@link HoldFilter}, заняв единственное место.
+     */
+    private CompletableFuture<Integer> hold(MockHttpServletRequestBuilder request) throws InterruptedException {
+        CountDownLatch entered = holdFilter.arm();
+        RequestBuilder held = request.header(HOLD_HEADER, "1");
+        CompletableFuture<Integer> result = CompletableFuture.supplyAsync(() -> {
+            try {
+                return mockMvc.perform(held).andReturn().getResponse().getStatus();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+        return result;
+    }
+
+    private double rejected(String endpointClass) {
+        return meterRegistry.get("filmorate.limiter.rejected").tag("class", endpointClass).counter().count();
+    }
+
+    private static User user(String login) {
+        User user = new User();
+        user.setEmail(login + "@mail.ru");
+        user.setLogin(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+
+    @TestConfiguration
+    static class HoldConfig {
+        @Bean
+        HoldFilter holdFilter() {
+            return new HoldFilter();
+        }
+    }
+
+    /**
+     * Стоит после лимитера и держит запросы с заголовком {@link #HOLD_HEADER}, пока тест
+     * их не отпустит, — так место в лимите занято без гонок по времени.
+     */
+    static class HoldFilter extends OncePerRequestFilter implements Ordered {
+        private volatile CountDownLatch entered = new CountDownLatch(0);
+        private volatile CountDownLatch released = new CountDownLatch(0);
+
+        CountDownLatch arm() {
+            entered = new CountDownLatch(1);
+            released = new CountDownLatch(1);
+            return entered;
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                throws ServletException, IOException {
+            if (request.getHeader(HOLD_HEADER) != null) {
+                entered.countDown();
+                try {
+                    released.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            chain.doFilter(request, response);
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.LOWEST_PRECEDENCE;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GradientLimiterTest {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    public void requestsOverLimitShouldBeRejected() {
+        GradientLimiter limiter = new GradientLimiter(2, 1, 10, 0.2, 1.5, 100);
+
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isFalse();
+        assertThat(limiter.inFlight()).isEqualTo(2);
+
+        limiter.release(FAST);
+
+        assertThat(limiter.tryAcquire()).isTrue();
+    }
+
+    @Test
+    public void limitShouldGrowUnderLoadWhileLatencyIsStable() {
+        GradientLimiter limiter = new GradientLimiter(10, 5, 100, 0.2, 1.5, 100);
+
+        saturate(limiter, FAST, 50);
+
+        assertThat(limiter.limit()).isEqualTo(100);
+    }
+
+    @Test
+    public void limitShouldShrinkWhenLatencyGrows() {
+        GradientLimiter limiter = new GradientLimiter(50, 5, 100, 0.2, 1.5, 100);
+        saturate(limiter, FAST, 5);
+        int before = limiter.limit();
+
+        saturate(limiter, SLOW, 1);
+
+        assertThat(limiter.limit()).isLessThan(before / 2);
+    }
+
+    @Test
+    public void limitShouldNotGrowWithoutLoad() {
+        GradientLimiter limiter = new GradientLimiter(10, 5, 100, 0.2, 1.5, 100);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(limiter.tryAcquire()).isTrue();
+            limiter.release(FAST);
+        }
+
+        assertThat(limiter.limit()).isEqualTo(10);
+    }
+
+    @Test
+    public void inconsistentBoundsShouldBeRejected() {
+        assertThatThrownBy(() -> new GradientLimiter(1, 5, 10, 0.2, 1.5, 100))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Каждый раунд занимает весь текущий лимит и освобождает его с заданным временем ответа.
+     */
+    private static void saturate(GradientLimiter limiter, long rtt, int rounds) {
+        for (int round = 0; round < rounds; round++) {
+            int acquired = 0;
+            while (limiter.tryAcquire()) {
+                acquired++;
+            }
+            for (int i = 0; i < acquired; i++) {
+                limiter.release(rtt);
+            }
+        }
+    }
+}
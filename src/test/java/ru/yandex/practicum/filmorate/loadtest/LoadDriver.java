@@ -0,0 +1,151 @@
+package ru.yandex.practicum.filmorate.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Открытая модель нагрузки: запросы отправляются с постоянной частотой независимо от того,
+ * успевает ли сервер. Задержка считается от запланированного момента отправки, поэтому
+ * время ожидания в очереди клиента тоже входит в неё и перегрузка не маскируется
+ * (coordinated omission). Запросы первых warmup секунд не учитываются.
+ */
+class LoadDriver {
+    private final String baseUrl;
+    private final LoadProfile profile;
+    private final HttpClient client;
+    private final ZipfSampler filmPopularity;
+    private final ZipfSampler userActivity;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+
+    LoadDriver(String baseUrl, LoadProfile profile) {
+        this.baseUrl = baseUrl;
+        this.profile = profile;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.filmPopularity = new ZipfSampler(profile.films(), profile.zipfExponent());
+        this.userActivity = new ZipfSampler(profile.users(), profile.zipfExponent());
+        this.operations = profile.mix().keySet().toArray(new Operation[0]);
+        this.cumulativeWeights = new int[operations.length];
+        int sum = 0;
+        for (int i = 0; i < operations.length; i++) {
+            sum += profile.mix().get(operations[i]);
+            cumulativeWeights[i] = sum;
+        }
+    }
+
+    LoadResult run() throws InterruptedException {
+        Map<Operation, LatencyRecorder> recorders = new EnumMap<>(Operation.class);
+        for (Operation operation : operations) {
+            recorders.put(operation, new LatencyRecorder());
+        }
+        ExecutorService workers = Executors.newFixedThreadPool(profile.concurrency());
+        Random random = new Random(profile.seed() + 1);
+        long period = 1_000_000_000L / profile.rate();
+        Instant startedAt = Instant.now();
+        long start = System.nanoTime();
+        long measureFrom = start + profile.warmup().toNanos();
+        long end = measureFrom + profile.duration().toNanos();
+
+        for (long i = 0; ; i++) {
+            long intended = start + i * period;
+            if (intended >= end) {
+                break;
+            }
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Operation operation = nextOperation(random);
+            HttpRequest request = request(operation, random);
+            LatencyRecorder recorder = intended >= measureFrom ? recorders.get(operation) : null;
+            workers.execute(() -> send(request, intended, recorder));
+        }
+        workers.shutdown();
+        if (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+            workers.shutdownNow();
+        }
+
+        Map<Operation, LatencyRecorder.Snapshot> snapshots = new EnumMap<>(Operation.class);
+        recorders.forEach((operation, recorder) -> snapshots.put(operation, recorder.snapshot()));
+        return new LoadResult(startedAt, profile.duration(), snapshots);
+    }
+
+    private void send(HttpRequest request, long intended, LatencyRecorder recorder) {
+        boolean error;
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            error = response.statusCode() >= 400;
+        } catch (IOException e) {
+            error = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = true;
+        }
+        if (recorder != null) {
+            recorder.record((System.nanoTime() - intended) / 1_000, error);
+        }
+    }
+
+    private Operation nextOperation(Random random) {
+        int point = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (point < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    private HttpRequest request(Operation operation, Random random) {
+        int userId = userActivity.next(random);
+        int otherId = userActivity.next(random);
+        int filmId = filmPopularity.next(random);
+        return switch (operation) {
+            case FILM -> get("/films/" + filmId);
+            case USER -> get("/users/" + userId);
+            case POPULAR -> get("/films/popular?count=10");
+            case FRIENDS -> get("/users/" + userId + "/friends");
+            case COMMON -> get("/users/" + userId + "/friends/common/" + otherId);
+            case SEARCH -> get("/films/search?q=" + URLEncoder.encode(
+                    SyntheticDataGenerator.TITLE_WORDS[random.nextInt(SyntheticDataGenerator.TITLE_WORDS.length)],
+                    StandardCharsets.UTF_8));
+            case FEED -> get("/users/" + userId + "/feed");
+            case LIKE -> put("/films/" + filmId + "/like/" + userId);
+            case FRIEND -> put("/users/" + userId + "/friends/" + (userId == otherId ? otherId % profile.users() + 1 : otherId));
+        };
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+    }
+
+    private HttpRequest put(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .PUT(HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+
+    record LoadResult(Instant startedAt, Duration measured, Map<Operation, LatencyRecorder.Snapshot> operations) {
+    }
+}
@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.loadtest;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Параметры прогона. Все значения читаются из системных свойств loadtest.*,
+ * поэтому профиль воспроизводится командой вида
+ * {@code mvn test -Ploadtest -Dloadtest.users=100000 -Dloadtest.rate=2000}.
+ */
+record LoadProfile(int users,
+                   int films,
+                   int likes,
+                   int friendships,
+                   double zipfExponent,
+                   long seed,
+                   int rate,
+                   Duration warmup,
+                   Duration duration,
+                   int concurrency,
+                   Map<Operation, Integer> mix,
+                   String reportDir,
+                   String baseline) {
+
+    static final String DEFAULT_MIX = "film:25,user:15,popular:15,friends:15,common:5,search:5,feed:5,like:10,friend:5";
+
+    static LoadProfile fromSystemProperties() {
+        return new LoadProfile(
+                Integer.getInteger("loadtest.users", 10_000),
+                Integer.getInteger("loadtest.films", 5_000),
+                Integer.getInteger("loadtest.likes", 200_000),
+                Integer.getInteger("loadtest.friendships", 100_000),
+                Double.parseDouble(System.getProperty("loadtest.zipf-exponent", "1.1")),
+                Long.getLong("loadtest.seed", 42L),
+                Integer.getInteger("loadtest.rate", 500),
+                Duration.parse(System.getProperty("loadtest.warmup", "PT10S")),
+                Duration.parse(System.getProperty("loadtest.duration", "PT60S")),
+                Integer.getInteger("loadtest.concurrency", 64),
+                parseMix(System.getProperty("loadtest.mix", DEFAULT_MIX)),
+                System.getProperty("loadtest.report-dir", "target/loadtest"),
+                System.getProperty("loadtest.baseline", ""));
+    }
+
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new LinkedHashMap<>();
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split(":");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Ожидается операция:вес, получено: " + part);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight > 0) {
+                weights.put(Operation.fromCode(pair[0].trim()), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Смесь запросов пуста: " + mix);
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,150 @@
+package ru.yandex.practicum.filmorate.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * Отчёт о прогоне: JSON для сравнения между прогонами и HTML для чтения глазами.
+ * Если задан loadtest.baseline (путь к JSON прошлого прогона), в HTML добавляется
+ * изменение пропускной способности и p99 относительно него.
+ */
+class LoadReport {
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")
+            .withZone(ZoneOffset.UTC);
+    static final String TOTAL = "total";
+
+    private final ObjectMapper objectMapper;
+    private final LoadProfile profile;
+
+    LoadReport(ObjectMapper objectMapper, LoadProfile profile) {
+        this.objectMapper = objectMapper.copy().enable(SerializationFeature.INDENT_OUTPUT);
+        this.profile = profile;
+    }
+
+    /**
+     * Пишет loadtest-&lt;время&gt;.json/html и latest.json в каталог отчётов; возвращает путь к JSON.
+     */
+    Path write(LoadDriver.LoadResult result) throws IOException {
+        Data data = collect(result);
+        Path dir = Path.of(profile.reportDir());
+        Files.createDirectories(dir);
+        String name = "loadtest-" + FILE_TIME.format(result.startedAt());
+        Path json = dir.resolve(name + ".json");
+        objectMapper.writeValue(json.toFile(), data);
+        Files.copy(json, dir.resolve("latest.json"), StandardCopyOption.REPLACE_EXISTING);
+
+        Data baseline = profile.baseline().isBlank()
+                ? null
+                : objectMapper.readValue(Path.of(profile.baseline()).toFile(), Data.class);
+        Files.writeString(dir.resolve(name + ".html"), html(data, baseline), StandardCharsets.UTF_8);
+        return json;
+    }
+
+    Data collect(LoadDriver.LoadResult result) {
+        double seconds = result.measured().toNanos() / 1e9;
+        Map<String, Stats> operations = new LinkedHashMap<>();
+        List<long[]> all = new ArrayList<>();
+        long errors = 0;
+        for (Map.Entry<Operation, LatencyRecorder.Snapshot> entry : result.operations().entrySet()) {
+            LatencyRecorder.Snapshot snapshot = entry.getValue();
+            operations.put(entry.getKey().getCode(), stats(entry.getKey().getEndpoint(), snapshot, seconds));
+            all.add(snapshot.sorted());
+            errors += snapshot.errors();
+        }
+        long[] merged = all.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        operations.put(TOTAL, stats("*", new LatencyRecorder.Snapshot(merged, errors), seconds));
+
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        parameters.put("users", profile.users());
+        parameters.put("films", profile.films());
+        parameters.put("likes", profile.likes());
+        parameters.put("friendships", profile.friendships());
+        parameters.put("zipfExponent", profile.zipfExponent());
+        parameters.put("seed", profile.seed());
+        parameters.put("rate", profile.rate());
+        parameters.put("warmup", profile.warmup().toString());
+        parameters.put("duration", profile.duration().toString());
+        parameters.put("concurrency", profile.concurrency());
+        parameters.put("mix", profile.mix().toString());
+        return new Data(result.startedAt().toString(), parameters, seconds, operations);
+    }
+
+    private static Stats stats(String endpoint, LatencyRecorder.Snapshot snapshot, double seconds) {
+        return new Stats(endpoint, snapshot.count(), snapshot.errors(), snapshot.count() / seconds,
+                snapshot.percentileMillis(50), snapshot.percentileMillis(99), snapshot.percentileMillis(99.9),
+                snapshot.maxMillis());
+    }
+
+    private static String html(Data data, Data baseline) {
+        StringBuilder html = new StringBuilder("""
+                <!DOCTYPE html>
+                <html lang="ru"><head><meta charset="UTF-8"><title>Нагрузочный прогон</title>
+                <style>body{font-family:sans-serif}table{border-collapse:collapse}
+                td,th{border:1px solid #ccc;padding:4px 8px;text-align:right}
+                .worse{color:#b00}.better{color:#080}</style></head><body>
+                """);
+        html.append("<h1>Нагрузочный прогон ").append(data.startedAt()).append("</h1>\n");
+        html.append("<p>").append(escape(data.profile().toString())).append("</p>\n");
+        if (baseline != null) {
+            html.append("<p>Сравнение с прогоном ").append(baseline.startedAt()).append("</p>\n");
+        }
+        html.append("<table><tr><th>Операция</th><th>Запросов</th><th>Ошибок</th><th>RPS</th>")
+                .append("<th>p50, мс</th><th>p99, мс</th><th>p99.9, мс</th><th>max, мс</th>");
+        if (baseline != null) {
+            html.append("<th>Δ RPS</th><th>Δ p99</th>");
+        }
+        html.append("</tr>\n");
+        data.operations().forEach((code, stats) -> {
+            html.append("<tr><td style=\"text-align:left\">").append(escape(stats.endpoint())).append("</td>")
+                    .append(cell(stats.requests())).append(cell(stats.errors()))
+                    .append(cell(stats.throughput())).append(cell(stats.p50Ms())).append(cell(stats.p99Ms()))
+                    .append(cell(stats.p999Ms())).append(cell(stats.maxMs()));
+            Stats before = baseline == null ? null : baseline.operations().get(code);
+            if (before != null) {
+                html.append(delta(before.throughput(), stats.throughput(), true))
+                        .append(delta(before.p99Ms(), stats.p99Ms(), false));
+            } else if (baseline != null) {
+                html.append("<td></td><td></td>");
+            }
+            html.append("</tr>\n");
+        });
+        return html.append("</table></body></html>\n").toString();
+    }
+
+    private static String cell(double value) {
+        return String.format(Locale.ROOT, "<td>%.2f</td>", value);
+    }
+
+    private static String cell(long value) {
+        return "<td>" + value + "</td>";
+    }
+
+    private static String delta(double before, double after, boolean higherIsBetter) {
+        if (before == 0) {
+            return "<td></td>";
+        }
+        double change = (after - before) / before * 100;
+        boolean better = higherIsBetter ? change >= 0 : change <= 0;
+        return String.format(Locale.ROOT, "<td class=\"%s\">%+.1f%%</td>", better ? "better" : "worse", change);
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    record Data(String startedAt, Map<String, Object> profile, double measuredSeconds, Map<String, Stats> operations) {
+    }
+
+    record Stats(String endpoint, long requests, long errors, double throughput,
+                 double p50Ms, double p99Ms, double p999Ms, double maxMs) {
+    }
+}
@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Нагрузочный прогон на поднятом приложении: {@code mvn test -Ploadtest}.
+ * Параметры задаются свойствами loadtest.* (см. {@link LoadProfile}), отчёт пишется в target/loadtest.
+ */
+@Tag("loadtest")
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+        "logging.level.ru.yandex.practicum.filmorate=WARN",
+        "logging.level.ru.yandex.practicum.filmorate.loadtest=INFO",
+        "logging.level.org.zalando.logbook=OFF"
+})
+@Slf4j
+class LoadTest {
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    public void runLoadProfile() throws Exception {
+        LoadProfile profile = LoadProfile.fromSystemProperties();
+        long started = System.nanoTime();
+        new SyntheticDataGenerator(jdbcTemplate, profile).generate();
+        filmService.rebuildIndexes();
+        log.info("Данные сгенерированы за {} мс: {}", (System.nanoTime() - started) / 1_000_000, profile);
+
+        LoadDriver.LoadResult result = new LoadDriver("http://localhost:" + port, profile).run();
+        LoadReport report = new LoadReport(objectMapper, profile);
+        Path json = report.write(result);
+
+        LoadReport.Stats total = report.collect(result).operations().get(LoadReport.TOTAL);
+        log.info("Запросов {}, ошибок {}, {} rps, p50 {} мс, p99 {} мс, p99.9 {} мс; отчёт {}",
+                total.requests(), total.errors(), String.format("%.1f", total.throughput()),
+                String.format("%.2f", total.p50Ms()), String.format("%.2f", total.p99Ms()),
+                String.format("%.2f", total.p999Ms()), json.toAbsolutePath());
+        assertThat(total.requests()).isPositive();
+    }
+}
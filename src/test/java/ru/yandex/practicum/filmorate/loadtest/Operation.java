@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Запросы, из которых составляется нагрузка.
+ */
+enum Operation {
+    FILM("film", "GET /films/{id}"),
+    USER("user", "GET /users/{id}"),
+    POPULAR("popular", "GET /films/popular"),
+    FRIENDS("friends", "GET /users/{id}/friends"),
+    COMMON("common", "GET /users/{id}/friends/common/{otherId}"),
+    SEARCH("search", "GET /films/search"),
+    FEED("feed", "GET /users/{id}/feed"),
+    LIKE("like", "PUT /films/{id}/like/{userId}"),
+    FRIEND("friend", "PUT /users/{id}/friends/{friendId}");
+
+    private final String code;
+    private final String endpoint;
+
+    Operation(String code, String endpoint) {
+        this.code = code;
+        this.endpoint = endpoint;
+    }
+
+    String getCode() {
+        return code;
+    }
+
+    String getEndpoint() {
+        return endpoint;
+    }
+
+    static Operation fromCode(String code) {
+        return Arrays.stream(values())
+                .filter(operation -> operation.code.equals(code))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Неизвестная операция: " + code));
+    }
+}
@@ -0,0 +1,136 @@
+package ru.yandex.practicum.filmorate.loadtest;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Заполняет схему синтетическими данными пакетными вставками. Активность пользователей
+ * и популярность фильмов распределены по Ципфу, поэтому у небольшой доли фильмов
+ * большая часть лайков, а у небольшой доли пользователей — большая часть друзей.
+ * При одинаковом seed данные совпадают между прогонами.
+ */
+class SyntheticDataGenerator {
+    static final String[] TITLE_WORDS = {
+            "Звёздный", "Тёмный", "Последний", "Город", "Путь", "Ночь", "Война", "Любовь",
+            "Дом", "Мир", "Берег", "Зима", "Остров", "Тайна", "Сердце", "Дорога"
+    };
+    private static final int BATCH_SIZE = 5_000;
+    private static final int GENRES = 6;
+    private static final int MPA_RATINGS = 5;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LoadProfile profile;
+    private final Random random;
+
+    SyntheticDataGenerator(JdbcTemplate jdbcTemplate, LoadProfile profile) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.profile = profile;
+        this.random = new Random(profile.seed());
+    }
+
+    void generate() {
+        insertUsers();
+        insertFilms();
+        insertLikes();
+        insertFriendships();
+    }
+
+    private void insertUsers() {
+        List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        for (int id = 1; id <= profile.users(); id++) {
+            rows.add(new Object[]{id, "user" + id + "@load.test", "user" + id, "Пользователь " + id,
+                    Date.valueOf(LocalDate.of(1960, 1, 1).plusDays(random.nextInt(40 * 365)))});
+            flushIfFull("INSERT INTO users (id, email, login, name, birthday) VALUES (?, ?, ?, ?, ?)", rows);
+        }
+        flush("INSERT INTO users (id, email, login, name, birthday) VALUES (?, ?, ?, ?, ?)", rows);
+        jdbcTemplate.execute("ALTER TABLE users ALTER COLUMN id RESTART WITH " + (profile.users() + 1));
+    }
+
+    private void insertFilms() {
+        String filmSql = "INSERT INTO films (id, name, description, release_date, duration, mpa_id) VALUES (?, ?, ?, ?, ?, ?)";
+        String genreSql = "INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)";
+        List<Object[]> films = new ArrayList<>(BATCH_SIZE);
+        List<Object[]> genres = new ArrayList<>(BATCH_SIZE);
+        for (int id = 1; id <= profile.films(); id++) {
+            String title = TITLE_WORDS[random.nextInt(TITLE_WORDS.length)] + " "
+                    + TITLE_WORDS[random.nextInt(TITLE_WORDS.length)].toLowerCase() + " " + id;
+            films.add(new Object[]{id, title, "Синтетический фильм " + id,
+                    Date.valueOf(LocalDate.of(1950 + random.nextInt(75), 1 + random.nextInt(12), 1)),
+                    60 + random.nextInt(120), 1 + random.nextInt(MPA_RATINGS)});
+            int first = 1 + random.nextInt(GENRES);
+            genres.add(new Object[]{id, first});
+            if (random.nextBoolean()) {
+                genres.add(new Object[]{id, 1 + (first % GENRES)});
+            }
+            flushIfFull(filmSql, films);
+            if (films.isEmpty()) {
+                flush(genreSql, genres);
+            }
+        }
+        flush(filmSql, films);
+        flush(genreSql, genres);
+        jdbcTemplate.execute("ALTER TABLE films ALTER COLUMN id RESTART WITH " + (profile.films() + 1));
+    }
+
+    private void insertLikes() {
+        String sql = "INSERT INTO film_likes (film_id, user_id, created_at) VALUES (?, ?, ?)";
+        ZipfSampler filmPopularity = new ZipfSampler(profile.films(), profile.zipfExponent());
+        ZipfSampler userActivity = new ZipfSampler(profile.users(), profile.zipfExponent());
+        long maxPairs = (long) profile.films() * profile.users();
+        int target = (int) Math.min(profile.likes(), maxPairs / 2);
+        long now = Instant.now().toEpochMilli();
+        long week = Duration.ofDays(7).toMillis();
+
+        Set<Long> seen = new HashSet<>(target * 2);
+        List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        while (seen.size() < target) {
+            int filmId = filmPopularity.next(random);
+            int userId = userActivity.next(random);
+            if (seen.add(((long) filmId << 32) | userId)) {
+                rows.add(new Object[]{filmId, userId, new Timestamp(now - (long) (random.nextDouble() * week))});
+                flushIfFull(sql, rows);
+            }
+        }
+        flush(sql, rows);
+        jdbcTemplate.update("UPDATE films f SET likes_count = (SELECT COUNT(*) FROM film_likes fl WHERE fl.film_id = f.id)");
+    }
+
+    private void insertFriendships() {
+        String sql = "INSERT INTO friendships (user_id, friend_id, confirmed) VALUES (?, ?, true)";
+        ZipfSampler userActivity = new ZipfSampler(profile.users(), profile.zipfExponent());
+        long maxPairs = (long) profile.users() * (profile.users() - 1);
+        int target = (int) Math.min(profile.friendships(), maxPairs / 2);
+
+        Set<Long> seen = new HashSet<>(target * 2);
+        List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        while (seen.size() < target) {
+            int userId = 1 + random.nextInt(profile.users());
+            int friendId = userActivity.next(random);
+            if (userId != friendId && seen.add(((long) userId << 32) | friendId)) {
+                rows.add(new Object[]{userId, friendId});
+                flushIfFull(sql, rows);
+            }
+        }
+        flush(sql, rows);
+        jdbcTemplate.update("UPDATE users u SET friends_count = (SELECT COUNT(*) FROM friendships f WHERE f.user_id = u.id AND f.confirmed = true)");
+    }
+
+    private void flushIfFull(String sql, List<Object[]> rows) {
+        if (rows.size() >= BATCH_SIZE) {
+            flush(sql, rows);
+        }
+    }
+
+    private void flush(String sql, List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, rows);
+            rows.clear();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.loadtest;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Выборка рангов 1..size с вероятностью, пропорциональной 1 / rank^exponent.
+ */
+class ZipfSampler {
+    private final double[] cdf;
+
+    ZipfSampler(int size, double exponent) {
+        cdf = new double[size];
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < size; i++) {
+            cdf[i] /= sum;
+        }
+    }
+
+    int next(Random random) {
+        int index = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min((index >= 0 ? index : -index - 1) + 1, cdf.length);
+    }
+}
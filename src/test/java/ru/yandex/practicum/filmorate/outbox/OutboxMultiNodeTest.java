@@ -0,0 +1,132 @@
+package ru.yandex.practicum.filmorate.outbox;
+
+import org.h2.tools.Server;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.ranking.PopularityLeaderboards;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.net.ServerSocket;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Два экземпляра приложения на одной H2, доступной по TCP: изменения, сделанные через
+ * один узел, должны доходить до локальных индексов другого через outbox.
+ */
+class OutboxMultiNodeTest {
+
+    private static Server h2;
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    @BeforeAll
+    static void startNodes() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        h2 = Server.createTcpServer("-tcpPort", String.valueOf(port), "-ifNotExists").start();
+        String url = "jdbc:h2:tcp://localhost:" + port + "/mem:outbox;DB_CLOSE_DELAY=-1";
+        nodeA = startNode(url, "node-a");
+        nodeB = startNode(url, "node-b");
+        // Первый опрос фиксирует позицию чтения; делаем его явно, чтобы не гоняться с планировщиком
+        nodeA.getBean(OutboxPoller.class).poll();
+        nodeB.getBean(OutboxPoller.class).poll();
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        if (nodeA != null) {
+            nodeA.close();
+        }
+        if (nodeB != null) {
+            nodeB.close();
+        }
+        if (h2 != null) {
+            h2.stop();
+        }
+    }
+
+    @Test
+    public void changesOnOneNodeShouldReachIndexesOfAnother() {
+        FilmService filmsA = nodeA.getBean(FilmService.class);
+        FilmService filmsB = nodeB.getBean(FilmService.class);
+        UserService usersA = nodeA.getBean(UserService.class);
+
+        Film first = filmsA.createFilm(film("Солярис"));
+        Film second = filmsA.createFilm(film("Сталкер"));
+        awaitTrue(() -> ids(filmsB.searchFilms("сталкер", 10)).contains(second.getId()));
+
+        User user = usersA.createUser(user());
+        filmsA.addLike(second.getId(), user.getId());
+        awaitTrue(() -> ids(filmsB.getPopularFilms(1, null, null, null, true)).equals(List.of(second.getId())));
+
+        filmsA.removeLike(second.getId(), user.getId());
+        filmsA.addLike(first.getId(), user.getId());
+        awaitTrue(() -> ids(filmsB.getPopularFilms(1, null, null, null, true)).equals(List.of(first.getId())));
+
+        filmsA.deleteFilm(second.getId());
+        PopularityLeaderboards leaderboardsB = nodeB.getBean(PopularityLeaderboards.class);
+        awaitTrue(() -> !leaderboardsB.top(10, null, null, null).contains(second.getId()));
+    }
+
+    private static ConfigurableApplicationContext startNode(String url, String nodeId) {
+        return new SpringApplicationBuilder(FilmorateApplication.class)
+                // Аргументы командной строки, а не properties(): те лишь значения по умолчанию,
+                // и application.properties их перекрывает
+                .run("--server.port=0",
+                        "--spring.datasource.url=" + url,
+                        "--spring.sql.init.mode=always",
+                        "--filmorate.node-id=" + nodeId,
+                        "--filmorate.outbox.poll-interval-ms=50");
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("изменение не дошло до второго узла").isLessThan(deadline);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static List<Integer> ids(List<Film> films) {
+        return films.stream().map(Film::getId).toList();
+    }
+
+    private static Film film(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Фильм Тарковского");
+        film.setReleaseDate(LocalDate.of(1979, 5, 25));
+        film.setDuration(160);
+        Mpa mpa = new Mpa();
+        mpa.setId(1);
+        film.setMpa(mpa);
+        return film;
+    }
+
+    private static User user() {
+        User user = new User();
+        user.setEmail("viewer@example.com");
+        user.setLogin("viewer");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+}
@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.ranking;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.Friendship;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FriendsPopularityTest {
+
+    private static final Instant LIKED_AT = Instant.parse("2024-03-01T12:00:00Z");
+
+    private final FriendsPopularity popularity = new FriendsPopularity(100);
+
+    @Test
+    public void shouldRankFilmsByNumberOfFriendsWhoLikedThem() {
+        popularity.rebuild(
+                List.of(friendship(1, 2), friendship(1, 3), friendship(1, 4), friendship(5, 2)),
+                List.of(like(10, 2), like(10, 3), like(11, 3), like(12, 4), like(10, 4), like(13, 5)));
+
+        assertThat(popularity.top(1, 10)).containsExactly(10, 11, 12);
+        assertThat(popularity.top(1, 1)).containsExactly(10);
+        assertThat(popularity.top(5, 10)).containsExactly(10);
+        assertThat(popularity.top(2, 10)).isEmpty();
+    }
+
+    @Test
+    public void cachedRankingShouldFollowFriendAndLikeChanges() {
+        popularity.rebuild(List.of(friendship(1, 2)), List.of(like(10, 2)));
+        assertThat(popularity.top(1, 10)).containsExactly(10);
+
+        popularity.addLike(11, 2);
+        popularity.addFriend(1, 3);
+        popularity.addLike(11, 3);
+        assertThat(popularity.top(1, 10)).containsExactly(11, 10);
+
+        popularity.removeFriend(1, 3);
+        popularity.removeLike(10, 2);
+        assertThat(popularity.top(1, 10)).containsExactly(11);
+
+        popularity.removeFilm(11);
+        assertThat(popularity.top(1, 10)).isEmpty();
+    }
+
+    @Test
+    public void rankShouldBreakTiesByFilmIdAndKeepOnlyTopK() {
+        int[] ranked = FriendsPopularity.rank(List.of(new int[]{5, 7, 9}, new int[]{7, 9}, new int[]{3}), 3);
+
+        assertThat(ranked).containsExactly(7, 9, 3);
+    }
+
+    private static Friendship friendship(int userId, int friendId) {
+        return new Friendship(userId, friendId, true);
+    }
+
+    private static FilmLike like(int filmId, int userId) {
+        return new FilmLike(filmId, userId, LIKED_AT);
+    }
+}
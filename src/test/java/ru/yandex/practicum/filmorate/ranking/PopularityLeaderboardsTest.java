@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.ranking;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PopularityLeaderboardsTest {
+
+    private final PopularityLeaderboards leaderboards = new PopularityLeaderboards();
+
+    @Test
+    public void yearFilterShouldSplitFilmsAtNewYear() {
+        leaderboards.rebuild(List.of(
+                film(1, LocalDate.of(1999, 12, 31), 1),
+                film(2, LocalDate.of(2000, 1, 1), 1),
+                film(3, LocalDate.of(2000, 12, 31), 1),
+                film(4, LocalDate.of(2001, 1, 1), 1)), Map.of(1, 5, 2, 1, 3, 3, 4, 9));
+
+        assertThat(leaderboards.top(10, null, null, 1999)).containsExactly(1);
+        assertThat(leaderboards.top(10, null, null, 2000)).containsExactly(3, 2);
+        assertThat(leaderboards.top(10, null, null, 2001)).containsExactly(4);
+        assertThat(leaderboards.top(10, null, null, 2002)).isEmpty();
+    }
+
+    @Test
+    public void genreAndYearFiltersShouldCombine() {
+        leaderboards.rebuild(List.of(
+                film(1, LocalDate.of(2000, 6, 1), 1, 1, 2),
+                film(2, LocalDate.of(2000, 6, 1), 1, 2),
+                film(3, LocalDate.of(2001, 6, 1), 1, 1),
+                film(4, LocalDate.of(2000, 6, 1), 2, 1)), Map.of(1, 1, 2, 2, 3, 3, 4, 4));
+
+        assertThat(leaderboards.top(10, 1, null, null)).containsExactly(4, 3, 1);
+        assertThat(leaderboards.top(10, 1, null, 2000)).containsExactly(4, 1);
+        assertThat(leaderboards.top(10, 1, 1, 2000)).containsExactly(1);
+        assertThat(leaderboards.top(10, 3, null, 2000)).isEmpty();
+        assertThat(leaderboards.top(1, 2, null, 2000)).containsExactly(2);
+    }
+
+    @Test
+    public void putShouldMoveFilmToNewYearAndKeepLikes() {
+        leaderboards.rebuild(List.of(
+                film(1, LocalDate.of(2000, 12, 31), 1, 1),
+                film(2, LocalDate.of(2001, 3, 1), 1, 1)), Map.of(1, 7, 2, 2));
+
+        leaderboards.put(film(1, LocalDate.of(2001, 1, 1), 1, 1));
+
+        assertThat(leaderboards.top(10, null, null, 2000)).isEmpty();
+        assertThat(leaderboards.top(10, 1, null, 2001)).containsExactly(1, 2);
+    }
+
+    @Test
+    public void likesShouldReorderFilteredBoards() {
+        leaderboards.rebuild(List.of(
+                film(1, LocalDate.of(2000, 1, 1), 1, 1),
+                film(2, LocalDate.of(2000, 1, 1), 1, 1)), Map.of(1, 1));
+
+        leaderboards.updateLikes(2, 2);
+
+        assertThat(leaderboards.top(10, 1, null, 2000)).containsExactly(2, 1);
+
+        leaderboards.remove(2);
+
+        assertThat(leaderboards.top(10, 1, null, 2000)).containsExactly(1);
+    }
+
+    private static Film film(int id, LocalDate releaseDate, int mpaId, Integer... genreIds) {
+        Film film = new Film();
+        film.setId(id);
+        film.setReleaseDate(releaseDate);
+        Mpa mpa = new Mpa();
+        mpa.setId(mpaId);
+        film.setMpa(mpa);
+        Arrays.stream(genreIds).forEach(genreId -> {
+            Genre genre = new Genre();
+            genre.setId(genreId);
+            film.getGenres().add(genre);
+        });
+        return film;
+    }
+}
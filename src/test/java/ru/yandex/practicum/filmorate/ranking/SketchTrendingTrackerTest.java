@@ -0,0 +1,133 @@
+package ru.yandex.practicum.filmorate.ranking;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.ranking.sketch.CountMinSketch;
+import ru.yandex.practicum.filmorate.ranking.sketch.HyperLogLog;
+import ru.yandex.practicum.filmorate.ranking.sketch.SpaceSaving;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Сравнение приблизительного учёта лайков с точными счётчиками на потоке с распределением Ципфа.
+ */
+class SketchTrendingTrackerTest {
+
+    private static final double EPSILON = 0.001;
+    private static final double DELTA = 0.01;
+    private static final int FILMS = 20_000;
+    private static final int LIKES = 200_000;
+    private static final Instant NOW = Instant.parse("2024-03-01T12:00:00Z");
+
+    private final Random random = new Random(42);
+    private final double[] zipfCdf = zipfCdf(FILMS, 1.1);
+
+    @Test
+    public void countMinErrorShouldStayWithinConfiguredBound() {
+        CountMinSketch sketch = CountMinSketch.withErrorBounds(EPSILON, DELTA, 7);
+        Map<Integer, Integer> exact = new HashMap<>();
+        for (int i = 0; i < LIKES; i++) {
+            int filmId = nextFilm();
+            sketch.add(filmId, 1);
+            exact.merge(filmId, 1, Integer::sum);
+        }
+
+        long violations = 0;
+        for (int filmId = 1; filmId <= FILMS; filmId++) {
+            int truth = exact.getOrDefault(filmId, 0);
+            int estimate = sketch.estimate(filmId);
+            assertThat(estimate).isGreaterThanOrEqualTo(truth);
+            if (estimate - truth > EPSILON * LIKES) {
+                violations++;
+            }
+        }
+        assertThat((double) violations / FILMS).isLessThanOrEqualTo(DELTA);
+    }
+
+    @Test
+    public void spaceSavingShouldFindExactTopFilms() {
+        SpaceSaving heavyHitters = new SpaceSaving(500);
+        Map<Integer, Integer> exact = new HashMap<>();
+        for (int i = 0; i < LIKES; i++) {
+            int filmId = nextFilm();
+            heavyHitters.offer(filmId, 1);
+            exact.merge(filmId, 1, Integer::sum);
+        }
+
+        assertThat(heavyHitters.top(10)).containsExactlyElementsOf(exactTop(exact, 10));
+        for (Integer filmId : exactTop(exact, 10)) {
+            assertThat(heavyHitters.guaranteedCount(filmId)).isLessThanOrEqualTo(exact.get(filmId));
+            assertThat(heavyHitters.count(filmId)).isGreaterThanOrEqualTo(exact.get(filmId));
+        }
+    }
+
+    @Test
+    public void hyperLogLogShouldEstimateDistinctUsers() {
+        HyperLogLog likers = new HyperLogLog(14);
+        Set<Integer> exact = new HashSet<>();
+        for (int i = 0; i < LIKES; i++) {
+            int userId = random.nextInt(100_000);
+            likers.add(userId);
+            exact.add(userId);
+        }
+
+        double relativeError = Math.abs(likers.cardinality() - exact.size()) / (double) exact.size();
+        assertThat(relativeError).isLessThan(3 * 1.04 / Math.sqrt(1 << 14));
+    }
+
+    @Test
+    public void trackerShouldMatchExactCountersOnTopFilms() {
+        Clock clock = Clock.fixed(NOW, ZoneOffset.UTC);
+        TrendingCounters exact = new TrendingCounters(clock);
+        SketchTrendingTracker approximate = new SketchTrendingTracker(clock, EPSILON, DELTA, 500, 14, 6);
+
+        Map<Integer, Integer> allTime = new HashMap<>();
+        for (int i = 0; i < LIKES / 4; i++) {
+            int filmId = nextFilm();
+            int userId = random.nextInt(50_000);
+            Instant likedAt = NOW.minus(Duration.ofSeconds(random.nextInt(40 * 60)));
+            exact.addLike(filmId, userId, likedAt);
+            approximate.addLike(filmId, userId, likedAt);
+            allTime.merge(filmId, 1, Integer::sum);
+        }
+
+        assertThat(approximate.top(TrendingWindow.HOUR, 10))
+                .containsExactlyElementsOf(exact.top(TrendingWindow.HOUR, 10));
+        assertThat(approximate.top(TrendingWindow.WEEK, 10))
+                .containsExactlyElementsOf(exact.top(TrendingWindow.WEEK, 10));
+        assertThat(approximate.approximatePopular(10)).contains(exactTop(allTime, 10));
+    }
+
+    private int nextFilm() {
+        int index = Arrays.binarySearch(zipfCdf, random.nextDouble());
+        return (index >= 0 ? index : -index - 1) + 1;
+    }
+
+    private static List<Integer> exactTop(Map<Integer, Integer> counts, int limit) {
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    private static double[] zipfCdf(int size, double exponent) {
+        double[] cdf = new double[size];
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < size; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+}
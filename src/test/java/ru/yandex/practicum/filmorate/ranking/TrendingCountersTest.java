@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.ranking;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrendingCountersTest {
+
+    private static final Instant START = Instant.parse("2024-03-01T12:00:00Z");
+
+    private final MutableClock clock = new MutableClock(START);
+    private final TrendingCounters counters = new TrendingCounters(clock);
+
+    @Test
+    public void shouldCountLikesInsideEachWindow() {
+        counters.addLike(1, 10, clock.instant());
+        counters.addLike(1, 10, clock.instant());
+        counters.addLike(2, 10, clock.instant());
+
+        clock.advance(Duration.ofMinutes(90));
+        counters.addLike(2, 10, clock.instant());
+
+        assertThat(counters.count(1, TrendingWindow.HOUR)).isZero();
+        assertThat(counters.count(1, TrendingWindow.DAY)).isEqualTo(2);
+        assertThat(counters.count(2, TrendingWindow.HOUR)).isEqualTo(1);
+        assertThat(counters.top(TrendingWindow.HOUR, 10)).containsExactly(2);
+        assertThat(counters.top(TrendingWindow.DAY, 10)).containsExactly(1, 2);
+    }
+
+    @Test
+    public void shouldForgetLikesOlderThanAWeek() {
+        counters.addLike(1, 10, clock.instant());
+
+        clock.advance(Duration.ofDays(2));
+        assertThat(counters.top(TrendingWindow.DAY, 10)).isEmpty();
+        assertThat(counters.top(TrendingWindow.WEEK, 10)).containsExactly(1);
+
+        clock.advance(Duration.ofDays(6));
+        assertThat(counters.top(TrendingWindow.WEEK, 10)).isEmpty();
+    }
+
+    @Test
+    public void shouldRemoveLikeFromBucketItWasCountedIn() {
+        Instant likedAt = clock.instant();
+        counters.addLike(1, 10, likedAt);
+        clock.advance(Duration.ofHours(3));
+
+        counters.removeLike(1, 10, likedAt);
+
+        assertThat(counters.count(1, TrendingWindow.DAY)).isZero();
+        assertThat(counters.count(1, TrendingWindow.WEEK)).isZero();
+    }
+
+    @Test
+    public void shouldRebuildFromTimestampedLikes() {
+        counters.rebuild(List.of(
+                new FilmLike(1, 10, START.minus(Duration.ofMinutes(5))),
+                new FilmLike(2, 10, START.minus(Duration.ofHours(5))),
+                new FilmLike(2, 11, START.minus(Duration.ofHours(6))),
+                new FilmLike(3, 10, START.minus(Duration.ofDays(3)))), Map.of());
+
+        assertThat(counters.top(TrendingWindow.HOUR, 10)).containsExactly(1);
+        assertThat(counters.top(TrendingWindow.DAY, 10)).containsExactly(2, 1);
+        assertThat(counters.top(TrendingWindow.WEEK, 2)).containsExactly(2, 1);
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
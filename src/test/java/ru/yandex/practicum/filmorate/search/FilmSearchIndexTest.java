@@ -0,0 +1,64 @@
+package ru.yandex.practicum.filmorate.search;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilmSearchIndexTest {
+
+    private static Film film(int id, String name, String description) {
+        Film film = new Film();
+        film.setId(id);
+        film.setName(name);
+        film.setDescription(description);
+        return film;
+    }
+
+    @Test
+    public void shouldTokenizeCyrillicText() {
+        assertThat(FilmSearchIndex.tokenize("Ёлки-палки, 2010 год!"))
+                .containsExactly("елки", "палки", "2010", "год");
+    }
+
+    @Test
+    public void shouldFindByPrefixAndRequireAllTerms() {
+        FilmSearchIndex index = new FilmSearchIndex();
+        index.index(film(1, "Брат", "Криминальная драма о Петербурге"));
+        index.index(film(2, "Брат 2", "Продолжение: Данила едет в Америку"));
+        index.index(film(3, "Бриллиантовая рука", "Комедия"));
+
+        assertThat(index.search("бра", 10)).containsExactlyInAnyOrder(1, 2);
+        assertThat(index.search("брат америку", 10)).containsExactly(2);
+        assertThat(index.search("титаник", 10)).isEmpty();
+    }
+
+    @Test
+    public void shouldRankNameMatchesAndLikesHigher() {
+        FilmSearchIndex index = new FilmSearchIndex();
+        index.rebuild(List.of(
+                film(1, "Комедия положений", null),
+                film(2, "Ирония судьбы", "Новогодняя комедия"),
+                film(3, "Служебный роман", "Лирическая комедия")), Map.of(3, 50));
+
+        List<Integer> result = index.search("комедия", 10);
+
+        assertThat(result).containsExactly(1, 3, 2);
+    }
+
+    @Test
+    public void shouldForgetRemovedAndUpdatedFilms() {
+        FilmSearchIndex index = new FilmSearchIndex();
+        index.index(film(1, "Сталкер", "Фантастика"));
+        index.index(film(2, "Солярис", "Фантастика"));
+
+        index.index(film(1, "Зеркало", "Драма"));
+        index.remove(2);
+
+        assertThat(index.search("фантастика", 10)).isEmpty();
+        assertThat(index.search("зерк", 10)).containsExactly(1);
+    }
+}
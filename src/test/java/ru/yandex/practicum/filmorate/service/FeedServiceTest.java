@@ -0,0 +1,143 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import ru.yandex.practicum.filmorate.config.ClockConfig;
+import ru.yandex.practicum.filmorate.dto.CursorPage;
+import ru.yandex.practicum.filmorate.feed.FeedCache;
+import ru.yandex.practicum.filmorate.feed.FeedEventWriter;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+import ru.yandex.practicum.filmorate.model.FeedEventType;
+import ru.yandex.practicum.filmorate.model.FeedOperation;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.feed.FeedDbStorage;
+import ru.yandex.practicum.filmorate.storage.outbox.OutboxDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Очередь писателя ленты на одно событие, чтобы часть событий записывалась синхронно
+ * в потоке запроса одновременно с фоновым потоком. Порядок ленты — порядок записи в журнал,
+ * поэтому ожидания сверяются с журналом, а не с порядком публикации.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+@TestPropertySource(properties = "filmorate.feed.writer.queue-capacity=1")
+@Import({FeedService.class, FeedEventWriter.class, FeedCache.class, FeedDbStorage.class, UserDbStorage.class,
+        OutboxDbStorage.class, ClockConfig.class})
+class FeedServiceTest {
+    @Autowired
+    private FeedService feedService;
+
+    @Autowired
+    private FeedEventWriter feedEventWriter;
+
+    @Autowired
+    private FeedDbStorage feedStorage;
+
+    @Autowired
+    private UserDbStorage userStorage;
+
+    private int sequence;
+
+    @Test
+    public void feedShouldContainOwnAndFriendsEventsOnly() throws InterruptedException {
+        User alice = userStorage.add(user());
+        User bob = userStorage.add(user());
+        User carol = userStorage.add(user());
+        userStorage.addFriend(alice.getId(), bob.getId());
+
+        feedService.publish(bob.getId(), FeedEventType.LIKE, FeedOperation.ADD, 1);
+        feedService.publish(carol.getId(), FeedEventType.LIKE, FeedOperation.ADD, 2);
+        feedService.publish(alice.getId(), FeedEventType.FRIEND, FeedOperation.ADD, bob.getId());
+        feedEventWriter.flush();
+
+        assertThat(feedService.getFeed(alice.getId(), null, 10).getItems())
+                .extracting(FeedEvent::getUserId)
+                .containsExactlyInAnyOrder(alice.getId(), bob.getId());
+        assertThat(feedService.getFeed(bob.getId(), null, 10).getItems())
+                .extracting(FeedEvent::getUserId)
+                .containsExactly(bob.getId());
+    }
+
+    @Test
+    public void feedShouldIncludeFriendsBeyondFirstChunk() throws InterruptedException {
+        User alice = userStorage.add(user());
+        User newest = null;
+        for (int i = 0; i < 1_001; i++) {
+            newest = userStorage.add(user());
+            userStorage.addFriend(alice.getId(), newest.getId());
+        }
+
+        feedService.publish(newest.getId(), FeedEventType.LIKE, FeedOperation.ADD, 1);
+        feedEventWriter.flush();
+
+        assertThat(feedService.getFeed(alice.getId(), null, 10).getItems())
+                .extracting(FeedEvent::getUserId)
+                .containsExactly(newest.getId());
+    }
+
+    @Test
+    public void cursorShouldWalkFeedWithoutGapsOrRepeats() throws InterruptedException {
+        User alice = userStorage.add(user());
+        User bob = userStorage.add(user());
+        userStorage.addFriend(alice.getId(), bob.getId());
+        for (int i = 0; i < 5; i++) {
+            feedService.publish(i % 2 == 0 ? alice.getId() : bob.getId(), FeedEventType.LIKE, FeedOperation.ADD, i);
+        }
+        feedEventWriter.flush();
+
+        List<Long> collected = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CursorPage<FeedEvent> page = feedService.getFeed(alice.getId(), cursor, 2);
+            page.getItems().forEach(event -> collected.add(event.getEventId()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertThat(collected).isEqualTo(eventIds(feedStorage.findByUsers(List.of(alice.getId(), bob.getId()), null, 10)));
+        assertThat(collected).hasSize(5);
+        assertThat(pages).isEqualTo(3);
+    }
+
+    @Test
+    public void cachedFeedShouldMatchJournalWhenQueueOverflows() throws InterruptedException {
+        User alice = userStorage.add(user());
+        // Заполняет кэш пользователя, чтобы последующие события дописывались в него
+        feedService.getFeed(alice.getId(), null, 10);
+
+        for (int i = 0; i < 200; i++) {
+            feedService.publish(alice.getId(), FeedEventType.LIKE, FeedOperation.ADD, i);
+        }
+        feedEventWriter.flush();
+
+        assertThat(eventIds(feedService.getFeed(alice.getId(), null, 50).getItems()))
+                .isEqualTo(eventIds(feedStorage.findByUsers(List.of(alice.getId()), null, 50)))
+                .hasSize(50);
+    }
+
+    private static List<Long> eventIds(List<FeedEvent> events) {
+        return events.stream().map(FeedEvent::getEventId).toList();
+    }
+
+    private User user() {
+        int n = ++sequence;
+        User user = new User();
+        user.setEmail("feed" + n + "@example.com");
+        user.setLogin("feed" + n);
+        user.setName("Пользователь " + n);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+}
@@ -0,0 +1,128 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PopularFilmsSnapshotTest {
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2024-05-01T12:00:00Z"), ZoneOffset.UTC);
+
+    private final AtomicLong writeVersion = new AtomicLong();
+    private final AtomicLong likeWrites = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void readsShouldBeServedFromSnapshotPrefix() {
+        PopularFilmsSnapshot snapshot = snapshot(Duration.ofHours(1), 3);
+        assertThat(snapshot.find(5, null, null, null)).isEmpty();
+
+        snapshot.refreshIfDue();
+
+        assertThat(snapshot.find(3, null, null, null)).hasValueSatisfying(films ->
+                assertThat(films).extracting(Film::getId).containsExactly(1, 2, 3));
+        assertThat(snapshot.find(10, null, null, null).orElseThrow()).hasSize(10);
+        assertThat(snapshot.find(11, null, null, null)).isEmpty();
+        assertThat(snapshot.find(0, null, null, null)).isEmpty();
+        assertThat(snapshot.find(5, 1, null, null)).isEmpty();
+        assertThat(snapshot.find(5, null, null, 2000)).isEmpty();
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    public void likesShouldTriggerRefreshOnlyAfterThreshold() {
+        PopularFilmsSnapshot snapshot = snapshot(Duration.ofHours(1), 3);
+        snapshot.refreshIfDue();
+        snapshot.refreshIfDue();
+        assertThat(loads).hasValue(1);
+
+        like(2);
+        snapshot.refreshIfDue();
+        assertThat(loads).hasValue(1);
+
+        like(1);
+        snapshot.refreshIfDue();
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    public void filmChangeShouldTriggerRefreshImmediately() {
+        PopularFilmsSnapshot snapshot = snapshot(Duration.ofHours(1), 1000);
+        snapshot.refreshIfDue();
+        like(1);
+        snapshot.refreshIfDue();
+        assertThat(loads).hasValue(1);
+
+        writeVersion.incrementAndGet();
+        snapshot.refreshIfDue();
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    public void filmChangeShouldBypassSnapshotUntilRefresh() {
+        PopularFilmsSnapshot snapshot = snapshot(Duration.ofHours(1), 1000);
+        snapshot.refreshIfDue();
+        like(1);
+        assertThat(snapshot.find(3, null, null, null)).isPresent();
+
+        writeVersion.incrementAndGet();
+        assertThat(snapshot.find(3, null, null, null)).isEmpty();
+
+        snapshot.refreshIfDue();
+        assertThat(snapshot.find(3, null, null, null)).isPresent();
+    }
+
+    @Test
+    public void expiredSnapshotShouldBeRefreshedOnAnyChange() {
+        PopularFilmsSnapshot snapshot = snapshot(Duration.ZERO, 1000);
+        snapshot.refreshIfDue();
+        snapshot.refreshIfDue();
+        assertThat(loads).hasValue(1);
+
+        like(1);
+        snapshot.refreshIfDue();
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    public void disabledSnapshotShouldNeverLoad() {
+        PopularFilmsSnapshot snapshot = new PopularFilmsSnapshot(false, 10, Duration.ZERO, 1,
+                writeVersion::get, likeWrites::get, this::load, CLOCK);
+
+        snapshot.refreshIfDue();
+
+        assertThat(loads).hasValue(0);
+        assertThat(snapshot.find(5, null, null, null)).isEqualTo(Optional.empty());
+    }
+
+    private PopularFilmsSnapshot snapshot(Duration refreshInterval, long earlyRefreshLikes) {
+        return new PopularFilmsSnapshot(true, 10, refreshInterval, earlyRefreshLikes,
+                writeVersion::get, likeWrites::get, this::load, CLOCK);
+    }
+
+    private void like(int times) {
+        likeWrites.addAndGet(times);
+        writeVersion.addAndGet(times);
+    }
+
+    private List<Film> load(int count) {
+        loads.incrementAndGet();
+        List<Film> films = new ArrayList<>();
+        for (int id = 1; id <= count; id++) {
+            Film film = new Film();
+            film.setId(id);
+            films.add(film);
+        }
+        return films;
+    }
+}
@@ -0,0 +1,95 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import ru.yandex.practicum.filmorate.config.ClockConfig;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+import ru.yandex.practicum.filmorate.model.FeedEventType;
+import ru.yandex.practicum.filmorate.model.FeedOperation;
+import ru.yandex.practicum.filmorate.storage.feed.FeedDbStorage;
+import ru.yandex.practicum.filmorate.storage.outbox.OutboxDbStorage;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({FeedDbStorage.class, OutboxDbStorage.class, ClockConfig.class})
+class FeedDbStorageTest {
+    private static final Instant AT = Instant.parse("2024-03-01T12:00:00Z");
+
+    private final FeedDbStorage feedStorage;
+
+    @Test
+    public void addAllShouldNumberEventsInOrder() {
+        List<FeedEvent> events = List.of(event(1, 10), event(2, 20), event(1, 30));
+
+        feedStorage.addAll(events);
+
+        assertThat(events).extracting(FeedEvent::getEventId).isSorted().doesNotHaveDuplicates();
+    }
+
+    @Test
+    public void pagesShouldFollowCursorNewestFirstWithoutGaps() {
+        List<FeedEvent> events = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            events.add(event(i % 3 + 1, i));
+        }
+        feedStorage.addAll(events);
+        feedStorage.addAll(List.of(event(4, 100)));
+
+        List<FeedEvent> collected = new ArrayList<>();
+        Long cursor = null;
+        while (true) {
+            List<FeedEvent> page = feedStorage.findByUsers(List.of(1, 2, 3), cursor, 3);
+            collected.addAll(page);
+            if (page.size() < 3) {
+                break;
+            }
+            cursor = page.get(page.size() - 1).getEventId();
+        }
+
+        assertThat(collected).extracting(FeedEvent::getEntityId).containsExactly(6, 5, 4, 3, 2, 1, 0);
+    }
+
+    @Test
+    public void findByUsersShouldMergeChunksOfManyUsers() {
+        List<FeedEvent> events = new ArrayList<>();
+        for (int userId = 1; userId <= 2_500; userId++) {
+            events.add(event(userId, userId));
+        }
+        feedStorage.addAll(events);
+        List<Integer> users = IntStream.rangeClosed(1, 2_500).boxed().toList();
+
+        List<FeedEvent> page = feedStorage.findByUsers(users, null, 5);
+
+        assertThat(page).extracting(FeedEvent::getUserId).containsExactly(2_500, 2_499, 2_498, 2_497, 2_496);
+        assertThat(page).isSortedAccordingTo(Comparator.comparing(FeedEvent::getEventId).reversed());
+    }
+
+    @Test
+    public void findRecentByUsersShouldKeepNewestPerUser() {
+        feedStorage.addAll(List.of(event(1, 1), event(1, 2), event(1, 3), event(2, 4)));
+
+        Map<Integer, List<FeedEvent>> recent = feedStorage.findRecentByUsers(List.of(1, 2, 3), 2);
+
+        assertThat(recent.get(1)).extracting(FeedEvent::getEntityId).containsExactly(3, 2);
+        assertThat(recent.get(2)).extracting(FeedEvent::getEntityId).containsExactly(4);
+        assertThat(recent).doesNotContainKey(3);
+    }
+
+    private static FeedEvent event(int userId, int entityId) {
+        return new FeedEvent(userId, FeedEventType.LIKE, FeedOperation.ADD, entityId, AT);
+    }
+}
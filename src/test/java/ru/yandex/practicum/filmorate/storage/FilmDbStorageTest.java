@@ -6,11 +6,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.config.ClockConfig;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.outbox.OutboxDbStorage;
 
+import java.sql.Timestamp;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.Optional;
 import java.util.Set;
@@ -20,10 +25,11 @@ import static org.assertj.core.api.Assertions.assertThat;
 @JdbcTest
 @AutoConfigureTestDatabase
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@Import({FilmDbStorage.class})
+@Import({FilmDbStorage.class, OutboxDbStorage.class, ClockConfig.class})
 class FilmDbStorageTest {
 
     private final FilmDbStorage filmStorage;
+    private final JdbcTemplate jdbcTemplate;
 
     @Test
     public void testCreateAndFindFilm() {
@@ -131,4 +137,27 @@ class FilmDbStorageTest {
         assertThat(updatedFilm.getDescription()).isEqualTo("Updated Description");
         assertThat(updatedFilm.getDuration()).isEqualTo(120);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void removeLikeShouldStampOutboxWithLikeTime() {
+        Film film = new Film();
+        film.setName("Liked Film");
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        Mpa mpa = new Mpa();
+        mpa.setId(1);
+        film.setMpa(mpa);
+        Film createdFilm = filmStorage.add(film);
+        jdbcTemplate.update("INSERT INTO users (id, email, login, birthday) VALUES (900, 'l@example.com', 'l', '1990-01-01')");
+        Instant likedAt = Instant.parse("2024-03-01T12:00:00Z");
+        filmStorage.addLike(createdFilm.getId(), 900, likedAt);
+
+        assertThat(filmStorage.removeLike(createdFilm.getId(), 900, likedAt)).isTrue();
+
+        Timestamp occurredAt = jdbcTemplate.queryForObject(
+                "SELECT occurred_at FROM outbox_events WHERE entity_type = 'LIKE' AND operation = 'DELETE'",
+                Timestamp.class);
+        assertThat(occurredAt.toInstant()).isEqualTo(likedAt);
+    }
+}
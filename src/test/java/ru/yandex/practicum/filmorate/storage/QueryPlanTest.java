@@ -0,0 +1,263 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.config.ClockConfig;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.StatementRecorder.RecordedStatement;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.outbox.OutboxDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Прогоняет все методы {@link FilmDbStorage} и {@link UserDbStorage} на заполненной базе,
+ * затем выполняет EXPLAIN для каждого записанного запроса и падает, если план читает
+ * film_likes, friendships или film_genres полным сканированием. Новый метод хранилища нужно
+ * добавить в {@link #exerciseStorages()}, иначе его запросы не попадут под проверку.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({FilmDbStorage.class, UserDbStorage.class, OutboxDbStorage.class, ClockConfig.class,
+        QueryPlanTest.RecordingConfig.class})
+class QueryPlanTest {
+    private static final StatementRecorder RECORDER = new StatementRecorder();
+    private static final Pattern TABLE_SCAN =
+            Pattern.compile("PUBLIC\\.(FILM_LIKES|FRIENDSHIPS|FILM_GENRES)\\.tableScan");
+    private static final int USERS = 2_000;
+    private static final int FILMS = 1_000;
+
+    /**
+     * Запросы, которым полное сканирование разрешено: фрагмент SQL и причина.
+     */
+    private static final Map<String, String> ALLOWED_SCANS = Map.of(
+            "FROM friendships WHERE confirmed = true", "выгрузка всех дружб для индекса друзей при старте");
+
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    QueryPlanTest(FilmDbStorage filmStorage, UserDbStorage userStorage, JdbcTemplate jdbcTemplate) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Test
+    public void storageQueriesShouldNotScanLinkTables() {
+        seed();
+
+        RECORDER.start();
+        exerciseStorages();
+        List<RecordedStatement> statements = RECORDER.stop();
+
+        Map<String, RecordedStatement> unique = new LinkedHashMap<>();
+        for (RecordedStatement statement : statements) {
+            if (isExplainable(statement.sql())) {
+                unique.putIfAbsent(statement.sql(), statement);
+            }
+        }
+        assertThat(unique).as("записанные запросы").isNotEmpty();
+
+        List<String> violations = new ArrayList<>();
+        for (RecordedStatement statement : unique.values()) {
+            String plan = explain(statement);
+            Matcher scan = TABLE_SCAN.matcher(plan);
+            if (scan.find() && ALLOWED_SCANS.keySet().stream().noneMatch(statement.sql()::contains)) {
+                violations.add("полное сканирование " + scan.group(1) + ":\n" + plan);
+            }
+        }
+        assertThat(violations).as("запросы без индекса").isEmpty();
+    }
+
+    private void exerciseStorages() {
+        Instant now = Instant.now();
+        int userId = 1;
+        int otherId = 2;
+        int filmId = 1;
+
+        Film film = filmStorage.add(film("План", 1));
+        filmStorage.findById(filmId);
+        filmStorage.findAll();
+        filmStorage.findAll(false);
+        filmStorage.findByIds(List.of(filmId, 2, 3));
+        filmStorage.findByIds(List.of(filmId, 2, 3), false);
+        film.setName("План обновлён");
+        film.setGenres(null);
+        filmStorage.update(film);
+        filmStorage.addLike(filmId, userId, now);
+        filmStorage.getLikeTime(filmId, userId);
+        filmStorage.findLikerIds(filmId, 0, 10);
+        filmStorage.findLikerIds(filmId, userId, 10);
+        filmStorage.getLikesCount(filmId);
+        List<FilmLike> likedByUser = filmStorage.findLikesByUser(userId, null, 10);
+        filmStorage.findLikesByUser(userId, likedByUser.get(0), 10);
+        filmStorage.removeLike(filmId, userId, now);
+        filmStorage.getPopularFilms(10);
+        filmStorage.getPopularFilms(10, 1, null, null);
+        filmStorage.getPopularFilms(10, null, 1, null);
+        filmStorage.getPopularFilms(10, null, null, 2000);
+        filmStorage.getPopularFilms(10, 2, 3, 1999);
+        filmStorage.getPopularFilms(10, 2, null, null, false);
+        filmStorage.getLikesCounts();
+        filmStorage.findLikesSince(now.minus(Duration.ofHours(1)));
+        filmStorage.countDistinctLikersSince(now.minus(Duration.ofHours(1)));
+        filmStorage.delete(film.getId());
+
+        User user = userStorage.add(user(USERS + 1));
+        userStorage.findById(userId);
+        userStorage.findAll();
+        userStorage.findByIds(List.of(userId, otherId, 3));
+        user.setName("Обновлённый");
+        userStorage.update(user);
+        userStorage.addFriend(userId, user.getId());
+        userStorage.getFriends(userId);
+        userStorage.getCommonFriends(userId, otherId);
+        userStorage.findFriendIds(userId, 0, 10);
+        userStorage.findCommonFriendIds(userId, otherId, 0, 10);
+        userStorage.getFriendsCount(userId);
+        userStorage.findFriendships();
+        userStorage.removeFriend(userId, user.getId());
+        userStorage.delete(user.getId());
+    }
+
+    /**
+     * Заполняет базу так, чтобы планировщик видел реальную селективность: тысячи строк в
+     * связующих таблицах и свежая статистика после ANALYZE.
+     */
+    private void seed() {
+        Random random = new Random(42);
+        List<Object[]> users = new ArrayList<>();
+        for (int id = 1; id <= USERS; id++) {
+            users.add(new Object[]{"plan" + id + "@test.ru", "plan" + id, "Пользователь " + id,
+                    Date.valueOf(LocalDate.of(1980, 1, 1).plusDays(id))});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)", users);
+
+        List<Object[]> films = new ArrayList<>();
+        List<Object[]> genres = new ArrayList<>();
+        for (int id = 1; id <= FILMS; id++) {
+            films.add(new Object[]{"Фильм " + id, "Описание", Date.valueOf(LocalDate.of(1950 + id % 75, 1, 1)),
+                    90, 1 + id % 5});
+            genres.add(new Object[]{id, 1 + id % 6});
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO films (name, description, release_date, duration, mpa_id) VALUES (?, ?, ?, ?, ?)", films);
+        jdbcTemplate.batchUpdate("INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)", genres);
+
+        Set<Long> pairs = new HashSet<>();
+        List<Object[]> likes = new ArrayList<>();
+        Instant now = Instant.now();
+        while (likes.size() < 20_000) {
+            int filmId = 1 + random.nextInt(FILMS);
+            int userId = 1 + random.nextInt(USERS);
+            if (pairs.add(((long) filmId << 32) | userId)) {
+                likes.add(new Object[]{filmId, userId,
+                        Timestamp.from(now.minus(Duration.ofMinutes(random.nextInt(60 * 24 * 30))))});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO film_likes (film_id, user_id, created_at) VALUES (?, ?, ?)", likes);
+        jdbcTemplate.update("UPDATE films f SET likes_count = (SELECT COUNT(*) FROM film_likes fl WHERE fl.film_id = f.id)");
+
+        pairs.clear();
+        List<Object[]> friendships = new ArrayList<>();
+        while (friendships.size() < 10_000) {
+            int userId = 1 + random.nextInt(USERS);
+            int friendId = 1 + random.nextInt(USERS);
+            if (userId != friendId && pairs.add(((long) userId << 32) | friendId)) {
+                friendships.add(new Object[]{userId, friendId});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO friendships (user_id, friend_id, confirmed) VALUES (?, ?, true)",
+                friendships);
+        jdbcTemplate.update("UPDATE users u SET friends_count = (SELECT COUNT(*) FROM friendships f WHERE f.user_id = u.id AND f.confirmed = true)");
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    private String explain(RecordedStatement statement) {
+        return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            try (PreparedStatement explain = connection.prepareStatement("EXPLAIN " + statement.sql())) {
+                statement.bind(explain);
+                try (ResultSet rs = explain.executeQuery()) {
+                    StringBuilder plan = new StringBuilder();
+                    while (rs.next()) {
+                        plan.append(rs.getString(1)).append('\n');
+                    }
+                    return plan.toString();
+                }
+            }
+        });
+    }
+
+    private static boolean isExplainable(String sql) {
+        String statement = sql.strip().toUpperCase(Locale.ROOT);
+        return statement.startsWith("SELECT") || statement.startsWith("UPDATE") || statement.startsWith("DELETE")
+                || (statement.startsWith("INSERT") && statement.contains("SELECT"));
+    }
+
+    private static Film film(String name, int genreId) {
+        Mpa mpa = new Mpa();
+        mpa.setId(1);
+        Genre genre = new Genre();
+        genre.setId(genreId);
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Проверка плана");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        film.setMpa(mpa);
+        film.setGenres(new LinkedHashSet<>(List.of(genre)));
+        return film;
+    }
+
+    private static User user(int id) {
+        User user = new User();
+        user.setEmail("plan" + id + "@test.ru");
+        user.setLogin("plan" + id);
+        user.setName("Пользователь " + id);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+
+    @TestConfiguration
+    static class RecordingConfig {
+        @Bean
+        static BeanPostProcessor recordingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? RECORDER.wrap(dataSource) : bean;
+                }
+            };
+        }
+    }
+}
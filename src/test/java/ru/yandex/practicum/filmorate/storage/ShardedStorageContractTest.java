@@ -0,0 +1,131 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.outbox.OutboxDbStorage;
+import ru.yandex.practicum.filmorate.storage.outbox.OutboxStorage;
+import ru.yandex.practicum.filmorate.storage.shard.ShardRebalancer;
+import ru.yandex.practicum.filmorate.storage.shard.ShardRouter;
+import ru.yandex.practicum.filmorate.storage.shard.ShardedFilmStorage;
+import ru.yandex.practicum.filmorate.storage.shard.ShardedUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import(OutboxDbStorage.class)
+class ShardedStorageContractTest extends StorageContractTest {
+    private static final Instant LIKED_AT = Instant.parse("2024-03-01T12:00:00Z");
+
+    private final OutboxStorage outboxStorage;
+    private final List<DataSource> dataSources = new ArrayList<>();
+    private ShardRouter router;
+    private FilmStorage filmStorage;
+    private UserStorage userStorage;
+
+    @Autowired
+    ShardedStorageContractTest(OutboxStorage outboxStorage) {
+        this.outboxStorage = outboxStorage;
+    }
+
+    @BeforeEach
+    public void setUp() {
+        dataSources.add(newShard());
+        dataSources.add(newShard());
+        open();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        router.close();
+    }
+
+    @Override
+    protected FilmStorage filmStorage() {
+        return filmStorage;
+    }
+
+    @Override
+    protected UserStorage userStorage() {
+        return userStorage;
+    }
+
+    @Test
+    public void usersShouldBeSpreadAcrossShards() {
+        for (int i = 0; i < 40; i++) {
+            userStorage.add(user());
+        }
+
+        for (ShardRouter.Shard shard : router.shards()) {
+            List<Integer> ids = shard.jdbc().queryForList("SELECT id FROM users", Integer.class);
+            assertThat(ids).isNotEmpty().allMatch(id -> router.shardOf(id) == shard.index());
+        }
+        assertThat(userStorage.findAll()).hasSize(40).extracting(User::getId).isSorted();
+    }
+
+    @Test
+    public void rebalanceShouldMoveUsersWithFriendsAndLikes() {
+        Film film = filmStorage.add(film("Солярис", 1972, 1));
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            users.add(userStorage.add(user()));
+        }
+        for (int i = 0; i < users.size(); i++) {
+            userStorage.addFriend(users.get(i).getId(), users.get((i + 1) % users.size()).getId());
+            if (i % 2 == 0) {
+                filmStorage.addLike(film.getId(), users.get(i).getId(), LIKED_AT);
+            }
+        }
+        Map<Integer, List<User>> friendsBefore = new HashMap<>();
+        for (User user : users) {
+            friendsBefore.put(user.getId(), userStorage.getFriends(user.getId()));
+        }
+
+        // Прежний маршрутизатор не закрываем: пулы соединений переходят к новому
+        dataSources.add(newShard());
+        open();
+        int moved = new ShardRebalancer(router, false).rebalance();
+
+        assertThat(moved).isPositive().isLessThan(users.size());
+        for (ShardRouter.Shard shard : router.shards()) {
+            assertThat(shard.jdbc().queryForList("SELECT id FROM users", Integer.class))
+                    .allMatch(id -> router.shardOf(id) == shard.index());
+            assertThat(shard.jdbc().queryForList("SELECT id FROM films", Integer.class)).containsExactly(film.getId());
+        }
+        for (User user : users) {
+            assertThat(userStorage.findById(user.getId())).isPresent();
+            assertThat(userStorage.getFriends(user.getId())).isEqualTo(friendsBefore.get(user.getId()));
+        }
+        assertThat(filmStorage.getLikesCount(film.getId())).isEqualTo(users.size() / 2);
+        assertThat(filmStorage.getLikeTime(film.getId(), users.get(0).getId())).contains(LIKED_AT);
+    }
+
+    private void open() {
+        router = new ShardRouter(dataSources, 4);
+        filmStorage = new ShardedFilmStorage(router, outboxStorage, Clock.systemUTC());
+        userStorage = new ShardedUserStorage(router, outboxStorage, Clock.systemUTC());
+    }
+
+    private static DataSource newShard() {
+        return DataSourceBuilder.create()
+                .url("jdbc:h2:mem:shard-" + UUID.randomUUID())
+                .username("sa")
+                .password("")
+                .build();
+    }
+}
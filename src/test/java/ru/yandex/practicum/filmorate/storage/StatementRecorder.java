@@ -0,0 +1,121 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Обёртка над DataSource для тестов: пока запись включена, запоминает каждый выполненный
+ * SQL вместе с переданными параметрами, чтобы его можно было повторить под EXPLAIN.
+ */
+class StatementRecorder {
+    private final List<RecordedStatement> statements = new CopyOnWriteArrayList<>();
+    private volatile boolean recording;
+
+    DataSource wrap(DataSource target) {
+        return proxy(DataSource.class, target, (proxy, method, args) -> {
+            Object result = invoke(target, method, args);
+            return result instanceof Connection connection ? wrap(connection) : result;
+        });
+    }
+
+    void start() {
+        statements.clear();
+        recording = true;
+    }
+
+    List<RecordedStatement> stop() {
+        recording = false;
+        return List.copyOf(statements);
+    }
+
+    private Connection wrap(Connection target) {
+        return proxy(Connection.class, target, (proxy, method, args) -> {
+            Object result = invoke(target, method, args);
+            if (result instanceof PreparedStatement statement && method.getName().equals("prepareStatement")
+                    && args[0] instanceof String sql) {
+                return wrap(statement, sql);
+            }
+            if (result instanceof Statement statement && method.getName().equals("createStatement")) {
+                return wrap(statement);
+            }
+            return result;
+        });
+    }
+
+    private PreparedStatement wrap(PreparedStatement target, String sql) {
+        List<Binding> bindings = new ArrayList<>();
+        return proxy(PreparedStatement.class, target, (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                bindings.add(new Binding(method, args.clone()));
+            } else if (name.equals("clearParameters")) {
+                bindings.clear();
+            } else if (name.startsWith("execute") && args == null) {
+                record(sql, bindings);
+            }
+            return invoke(target, method, args);
+        });
+    }
+
+    private Statement wrap(Statement target) {
+        return proxy(Statement.class, target, (proxy, method, args) -> {
+            if (method.getName().startsWith("execute") && args != null && args[0] instanceof String sql) {
+                record(sql, List.of());
+            }
+            return invoke(target, method, args);
+        });
+    }
+
+    private void record(String sql, List<Binding> bindings) {
+        if (recording) {
+            statements.add(new RecordedStatement(sql, List.copyOf(bindings)));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(StatementRecorder.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> "Recording " + target;
+                    default -> handler.invoke(proxy, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    record Binding(Method setter, Object[] args) {
+    }
+
+    record RecordedStatement(String sql, List<Binding> bindings) {
+        /**
+         * Подставляет в statement те же параметры, с которыми выполнялся исходный запрос.
+         */
+        void bind(PreparedStatement statement) throws SQLException {
+            for (Binding binding : bindings) {
+                try {
+                    binding.setter().invoke(statement, binding.args());
+                } catch (ReflectiveOperationException e) {
+                    throw new SQLException("Не удалось подставить параметр " + binding.args()[0], e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Контракт хранилищ фильмов и пользователей: каждая реализация, выбираемая через
+ * {@code filmorate.storage}, должна вести себя так же, как хранилище в БД. Spring ищет
+ * {@code @Transactional} на классе, где объявлен тестовый метод, поэтому откат после теста
+ * в наследниках с {@code @JdbcTest} включается здесь.
+ */
+@Transactional
+@Slf4j
+abstract class StorageContractTest {
+
+    private static final Instant LIKED_AT = Instant.parse("2024-03-01T12:00:00Z");
+
+    private int sequence;
+
+    protected abstract FilmStorage filmStorage();
+
+    protected abstract UserStorage userStorage();
+
+    @Test
+    public void addedFilmShouldBeFoundWithSortedGenres() {
+        Film created = filmStorage().add(film("Солярис", 1972, 3, 1));
+
+        Film found = filmStorage().findById(created.getId()).orElseThrow();
+
+        assertThat(found.getName()).isEqualTo("Солярис");
+        assertThat(found.getMpa().getId()).isEqualTo(1);
+        assertThat(found.getGenres()).extracting(Genre::getId).containsExactly(1, 3);
+    }
+
+    @Test
+    public void updateShouldKeepUnsetFieldsAndLikes() {
+        Film created = filmStorage().add(film("Солярис", 1972, 2));
+        User user = userStorage().add(user());
+        filmStorage().addLike(created.getId(), user.getId(), LIKED_AT);
+        filmStorage().findById(created.getId());
+
+        Film patch = new Film();
+        patch.setId(created.getId());
+        patch.setName("Сталкер");
+        patch.setGenres(null);
+        filmStorage().update(patch);
+
+        Film found = filmStorage().findById(created.getId()).orElseThrow();
+        assertThat(found.getName()).isEqualTo("Сталкер");
+        assertThat(found.getDescription()).isEqualTo("Описание");
+        assertThat(found.getReleaseDate()).isEqualTo(LocalDate.of(1972, 1, 1));
+        assertThat(found.getGenres()).extracting(Genre::getId).containsExactly(2);
+        assertThat(filmStorage().getLikesCount(created.getId())).isEqualTo(1);
+    }
+
+    @Test
+    public void findByIdsShouldReturnExistingSortedById() {
+        Film first = filmStorage().add(film("Солярис", 1972, 3, 1));
+        Film second = filmStorage().add(film("Сталкер", 1979));
+        filmStorage().findById(second.getId());
+        User user = userStorage().add(user());
+
+        List<Film> films = filmStorage().findByIds(List.of(second.getId(), 9999, first.getId(), second.getId()));
+
+        assertThat(films).extracting(Film::getId).containsExactly(first.getId(), second.getId());
+        assertThat(films.get(0).getGenres()).extracting(Genre::getId).containsExactly(1, 3);
+        assertThat(films.get(1).getGenres()).isEmpty();
+        assertThat(userStorage().findByIds(List.of(9999, user.getId())))
+                .extracting(User::getId)
+                .containsExactly(user.getId());
+    }
+
+    @Test
+    public void returnedObjectsShouldNotShareStateWithStorage() {
+        Film created = filmStorage().add(film("Солярис", 1972, 1));
+        User alice = userStorage().add(user());
+        User bob = userStorage().add(user());
+        userStorage().addFriend(alice.getId(), bob.getId());
+        created.setName("Изменено после добавления");
+        filmStorage().findById(created.getId());
+
+        Film found = filmStorage().findById(created.getId()).orElseThrow();
+        found.setName("Изменено после чтения");
+        found.getGenres().clear();
+        found.addLike(bob.getId());
+        userStorage().findById(alice.getId()).orElseThrow().getFriends().clear();
+
+        Film stored = filmStorage().findById(created.getId()).orElseThrow();
+        assertThat(stored.getName()).isEqualTo("Солярис");
+        assertThat(stored.getGenres()).hasSize(1);
+        assertThat(filmStorage().getLikesCount(created.getId())).isZero();
+        assertThat(userStorage().findFriendIds(alice.getId(), 0, 10)).containsExactly(bob.getId());
+    }
+
+    @Test
+    public void updateOfMissingFilmShouldFail() {
+        Film patch = film("Нет такого", 2000);
+        patch.setId(9999);
+
+        assertThatThrownBy(() -> filmStorage().update(patch)).isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    public void likeShouldBeCountedOnce() {
+        Film film = filmStorage().add(film("Зеркало", 1975));
+        User user = userStorage().add(user());
+
+        assertThat(filmStorage().addLike(film.getId(), user.getId(), LIKED_AT)).isTrue();
+        assertThat(filmStorage().addLike(film.getId(), user.getId(), LIKED_AT)).isFalse();
+        assertThat(filmStorage().getLikeTime(film.getId(), user.getId())).contains(LIKED_AT);
+        assertThat(filmStorage().getLikesCounts()).containsEntry(film.getId(), 1);
+
+        assertThat(filmStorage().removeLike(film.getId(), user.getId(), LIKED_AT)).isTrue();
+        assertThat(filmStorage().removeLike(film.getId(), user.getId(), LIKED_AT)).isFalse();
+        assertThat(filmStorage().getLikesCount(film.getId())).isZero();
+    }
+
+    @Test
+    public void likesCountAndLikerPagesShouldFollowLikes() {
+        Film film = filmStorage().add(film("Андрей Рублёв", 1966));
+        List<Integer> likers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            User user = userStorage().add(user());
+            filmStorage().addLike(film.getId(), user.getId(), LIKED_AT);
+            likers.add(user.getId());
+        }
+        filmStorage().removeLike(film.getId(), likers.get(1), LIKED_AT);
+
+        assertThat(filmStorage().findById(film.getId()).orElseThrow().getLikesCount()).isEqualTo(4);
+        assertThat(filmStorage().getLikesCount(film.getId())).isEqualTo(4);
+        List<Integer> firstPage = filmStorage().findLikerIds(film.getId(), 0, 3);
+        assertThat(firstPage).containsExactly(likers.get(0), likers.get(2), likers.get(3));
+        assertThat(filmStorage().findLikerIds(film.getId(), firstPage.get(2), 3)).containsExactly(likers.get(4));
+    }
+
+    @Test
+    public void likesByUserShouldBePagedFromNewest() {
+        User user = userStorage().add(user());
+        List<Integer> films = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Film film = filmStorage().add(film("Фильм " + i, 1970 + i));
+            films.add(film.getId());
+        }
+        filmStorage().addLike(films.get(0), user.getId(), LIKED_AT);
+        filmStorage().addLike(films.get(1), user.getId(), LIKED_AT.plusSeconds(60));
+        filmStorage().addLike(films.get(2), user.getId(), LIKED_AT.plusSeconds(60));
+        filmStorage().addLike(films.get(3), user.getId(), LIKED_AT.plusSeconds(120));
+
+        List<FilmLike> firstPage = filmStorage().findLikesByUser(user.getId(), null, 2);
+        assertThat(firstPage).extracting(FilmLike::getFilmId).containsExactly(films.get(3), films.get(2));
+        assertThat(filmStorage().findLikesByUser(user.getId(), firstPage.get(1), 2))
+                .extracting(FilmLike::getFilmId)
+                .containsExactly(films.get(1), films.get(0));
+    }
+
+    @Test
+    public void popularFilmsShouldBeOrderedByLikesThenId() {
+        Film first = filmStorage().add(film("Первый", 1970, 1));
+        Film second = filmStorage().add(film("Второй", 1980, 2));
+        Film third = filmStorage().add(film("Третий", 1980, 2));
+        User alice = userStorage().add(user());
+        User bob = userStorage().add(user());
+        for (Film film : List.of(second, third)) {
+            filmStorage().addLike(film.getId(), alice.getId(), LIKED_AT);
+            filmStorage().addLike(film.getId(), bob.getId(), LIKED_AT);
+        }
+
+        assertThat(filmStorage().getPopularFilms(10)).extracting(Film::getId)
+                .containsExactly(second.getId(), third.getId(), first.getId());
+        assertThat(filmStorage().getPopularFilms(10, 2, null, 1980)).extracting(Film::getId)
+                .containsExactly(second.getId(), third.getId());
+        assertThat(filmStorage().getPopularFilms(10, 1, 1, null)).extracting(Film::getId)
+                .containsExactly(first.getId());
+    }
+
+    @Test
+    public void deletedFilmShouldDisappear() {
+        Film film = filmStorage().add(film("Жертвоприношение", 1986));
+
+        filmStorage().delete(film.getId());
+
+        assertThat(filmStorage().findById(film.getId())).isEmpty();
+        assertThat(filmStorage().findAll()).extracting(Film::getId).doesNotContain(film.getId());
+    }
+
+    @Test
+    public void findAllShouldBeSortedById() {
+        Film first = filmStorage().add(film("А", 2001));
+        Film second = filmStorage().add(film("Б", 2002));
+
+        assertThat(filmStorage().findAll()).extracting(Film::getId)
+                .containsSubsequence(first.getId(), second.getId())
+                .isSorted();
+        User alice = userStorage().add(user());
+        User bob = userStorage().add(user());
+        assertThat(userStorage().findAll()).extracting(User::getId)
+                .containsSubsequence(alice.getId(), bob.getId())
+                .isSorted();
+    }
+
+    @Test
+    public void friendshipShouldBeOneWay() {
+        User alice = userStorage().add(user());
+        User bob = userStorage().add(user());
+
+        userStorage().addFriend(alice.getId(), bob.getId());
+
+        assertThat(userStorage().getFriends(alice.getId())).extracting(User::getId).containsExactly(bob.getId());
+        assertThat(userStorage().getFriends(bob.getId())).isEmpty();
+
+        userStorage().removeFriend(alice.getId(), bob.getId());
+        assertThat(userStorage().getFriends(alice.getId())).isEmpty();
+    }
+
+    @Test
+    public void friendshipWritesShouldReportRealChanges() {
+        User alice = userStorage().add(user());
+        User bob = userStorage().add(user());
+
+        assertThat(userStorage().addFriend(alice.getId(), bob.getId())).isTrue();
+        assertThat(userStorage().addFriend(alice.getId(), bob.getId())).isFalse();
+        assertThat(userStorage().getFriendsCount(alice.getId())).isEqualTo(1);
+        assertThat(userStorage().removeFriend(alice.getId(), bob.getId())).isTrue();
+        assertThat(userStorage().removeFriend(alice.getId(), bob.getId())).isFalse();
+        assertThat(userStorage().getFriendsCount(alice.getId())).isZero();
+    }
+
+    @Test
+    public void selfFriendshipShouldBeRejected() {
+        User alice = userStorage().add(user());
+
+        assertThatThrownBy(() -> userStorage().addFriend(alice.getId(), alice.getId()))
+                .isInstanceOf(ValidationException.class);
+        assertThat(userStorage().getFriendsCount(alice.getId())).isZero();
+        assertThat(userStorage().findFriendIds(alice.getId(), 0, 10)).isEmpty();
+    }
+
+    @Test
+    public void commonFriendsShouldBeSortedById() {
+        User alice = userStorage().add(user());
+        User bob = userStorage().add(user());
+        User carol = userStorage().add(user());
+        User dave = userStorage().add(user());
+        for (User friend : List.of(dave, carol)) {
+            userStorage().addFriend(alice.getId(), friend.getId());
+            userStorage().addFriend(bob.getId(), friend.getId());
+        }
+
+        assertThat(userStorage().getCommonFriends(alice.getId(), bob.getId())).extracting(User::getId)
+                .containsExactly(carol.getId(), dave.getId());
+    }
+
+    @Test
+    public void friendPagesAndCountShouldFollowFriendships() {
+        User alice = userStorage().add(user());
+        User bob = userStorage().add(user());
+        List<Integer> friends = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            User friend = userStorage().add(user());
+            userStorage().addFriend(alice.getId(), friend.getId());
+            userStorage().addFriend(bob.getId(), friend.getId());
+            friends.add(friend.getId());
+        }
+        userStorage().addFriend(alice.getId(), friends.get(0));
+        userStorage().removeFriend(alice.getId(), friends.get(1));
+
+        assertThat(userStorage().getFriendsCount(alice.getId())).isEqualTo(3);
+        assertThat(userStorage().findFriendIds(alice.getId(), 0, 2))
+                .containsExactly(friends.get(0), friends.get(2));
+        assertThat(userStorage().findFriendIds(alice.getId(), friends.get(2), 2))
+                .containsExactly(friends.get(3));
+        assertThat(userStorage().findCommonFriendIds(alice.getId(), bob.getId(), friends.get(0), 10))
+                .containsExactly(friends.get(2), friends.get(3));
+    }
+
+    @Test
+    public void userUpdateShouldKeepUnsetFields() {
+        User user = userStorage().add(user());
+        userStorage().findById(user.getId());
+
+        User patch = new User();
+        patch.setId(user.getId());
+        patch.setName("Новое имя");
+        userStorage().update(patch);
+
+        User found = userStorage().findById(user.getId()).orElseThrow();
+        assertThat(found.getName()).isEqualTo("Новое имя");
+        assertThat(found.getEmail()).isEqualTo(user.getEmail());
+        assertThat(found.getBirthday()).isEqualTo(user.getBirthday());
+    }
+
+    @Test
+    public void deletedUserShouldLeaveFriendLists() {
+        User alice = userStorage().add(user());
+        User bob = userStorage().add(user());
+        userStorage().addFriend(alice.getId(), bob.getId());
+
+        userStorage().delete(bob.getId());
+
+        assertThat(userStorage().findById(bob.getId())).isEmpty();
+        assertThat(userStorage().getFriends(alice.getId())).isEmpty();
+    }
+
+    /**
+     * Одинаковая нагрузка для каждой реализации: запуск через {@code mvn test -Pbenchmark}.
+     */
+    @Test
+    @Tag("benchmark")
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkWorkload() {
+        Random random = new Random(42);
+        int films = 2_000;
+        int users = 2_000;
+        long started = System.nanoTime();
+        for (int i = 0; i < films; i++) {
+            filmStorage().add(film("Фильм " + i, 1950 + i % 70, 1 + i % 6));
+        }
+        for (int i = 0; i < users; i++) {
+            userStorage().add(user());
+        }
+        long loaded = System.nanoTime();
+
+        List<Integer> filmIds = filmStorage().findAll().stream().map(Film::getId).toList();
+        List<Integer> userIds = userStorage().findAll().stream().map(User::getId).toList();
+        for (int i = 0; i < 20_000; i++) {
+            filmStorage().addLike(filmIds.get(random.nextInt(films)), userIds.get(random.nextInt(users)), LIKED_AT);
+        }
+        for (int i = 0; i < 5_000; i++) {
+            int userId = userIds.get(random.nextInt(users));
+            int friendId = userIds.get(random.nextInt(users));
+            if (userId != friendId) {
+                userStorage().addFriend(userId, friendId);
+            }
+        }
+        long written = System.nanoTime();
+
+        for (int i = 0; i < 50_000; i++) {
+            filmStorage().findById(filmIds.get(random.nextInt(films)));
+            userStorage().findById(userIds.get(random.nextInt(users)));
+        }
+        for (int i = 0; i < 200; i++) {
+            filmStorage().getPopularFilms(10, 1 + i % 6, null, null);
+            userStorage().getFriends(userIds.get(random.nextInt(users)));
+        }
+        long read = System.nanoTime();
+
+        log.info("{}: загрузка {} мс, лайки и дружба {} мс, чтение {} мс",
+                getClass().getSimpleName(), (loaded - started) / 1_000_000,
+                (written - loaded) / 1_000_000, (read - written) / 1_000_000);
+    }
+
+    protected Film film(String name, int year, Integer... genreIds) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Описание");
+        film.setReleaseDate(LocalDate.of(year, 1, 1));
+        film.setDuration(120);
+        Mpa mpa = new Mpa();
+        mpa.setId(1);
+        film.setMpa(mpa);
+        Set<Genre> genres = new LinkedHashSet<>();
+        for (Integer genreId : genreIds) {
+            Genre genre = new Genre();
+            genre.setId(genreId);
+            genres.add(genre);
+        }
+        film.setGenres(genres);
+        return film;
+    }
+
+    protected User user() {
+        int number = ++sequence;
+        User user = new User();
+        user.setEmail("user" + number + "@example.com");
+        user.setLogin("user" + number);
+        user.setName("Пользователь " + number);
+        user.setBirthday(LocalDate.of(1990, 1, 1).plusDays(number));
+        return user;
+    }
+}
@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadThroughCacheTest {
+
+    @Test
+    public void recentlyReadKeyShouldSurviveEviction() {
+        ReadThroughCache<Integer, String> cache = new ReadThroughCache<>("test", 2);
+        AtomicInteger loads = new AtomicInteger();
+        Function<Integer, Optional<String>> loader = key -> {
+            loads.incrementAndGet();
+            return Optional.of("v" + key);
+        };
+        cache.get(1, loader);
+        cache.get(2, loader);
+        cache.get(1, loader);
+
+        cache.get(3, loader);
+        loads.set(0);
+        cache.get(1, loader);
+        cache.get(3, loader);
+
+        assertThat(loads).hasValue(0);
+        cache.get(2, loader);
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    public void cachedValuesShouldBeReturnedAsCopies() {
+        ReadThroughCache<Integer, List<Integer>> cache = new ReadThroughCache<>("test", 10, ArrayList::new);
+        List<Integer> loaded = cache.get(1, key -> Optional.of(new ArrayList<>(List.of(1, 2)))).orElseThrow();
+        loaded.clear();
+
+        cache.get(1, key -> Optional.empty()).orElseThrow().add(3);
+        Map<Integer, List<Integer>> batch = cache.getAll(List.of(1), keys -> keys.stream()
+                .collect(Collectors.toMap(key -> key, key -> new ArrayList<>())));
+
+        assertThat(batch.get(1)).containsExactly(1, 2);
+    }
+
+    @Test
+    public void invalidatedKeyShouldBeLoadedAgain() {
+        ReadThroughCache<Integer, String> cache = new ReadThroughCache<>("test", 10);
+        cache.get(1, key -> Optional.of("old"));
+
+        cache.invalidate(1);
+
+        assertThat(cache.get(1, key -> Optional.of("new"))).contains("new");
+        assertThat(cache.hits()).isZero();
+        assertThat(cache.misses()).isEqualTo(2);
+    }
+}
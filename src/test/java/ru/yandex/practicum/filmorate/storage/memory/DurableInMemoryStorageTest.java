@@ -0,0 +1,173 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class DurableInMemoryStorageTest {
+
+    private static final Instant LIKED_AT = Instant.parse("2024-03-01T12:00:00.123456789Z");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void shouldRecoverFilmsFromLogAfterRestart() {
+        MemoryPersistence persistence = persistence("always");
+        InMemoryFilmStorage storage = new InMemoryFilmStorage(persistence);
+        Film first = storage.add(film("Солярис"));
+        Film second = storage.add(film("Сталкер"));
+        storage.addLike(first.getId(), 7, LIKED_AT);
+        storage.addLike(second.getId(), 8, LIKED_AT);
+        storage.removeLike(second.getId(), 8, LIKED_AT);
+        storage.delete(second.getId());
+        persistence.close();
+
+        InMemoryFilmStorage recovered = new InMemoryFilmStorage(persistence("always"));
+
+        assertThat(recovered.findAll()).hasSize(1);
+        Film film = recovered.findById(first.getId()).orElseThrow();
+        assertThat(film.getName()).isEqualTo("Солярис");
+        assertThat(film.getMpa().getId()).isEqualTo(1);
+        assertThat(film.getGenres()).extracting(Genre::getId).containsExactly(2);
+        assertThat(film.getLikes()).containsExactly(7);
+        assertThat(recovered.getLikeTime(first.getId(), 7)).contains(LIKED_AT);
+        assertThat(recovered.add(film("Зеркало")).getId()).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldRecoverFromSnapshotAndLogTail() throws IOException {
+        MemoryPersistence persistence = persistence("interval");
+        InMemoryUserStorage storage = new InMemoryUserStorage(persistence);
+        User alice = storage.add(user("alice"));
+        User bob = storage.add(user("bob"));
+        storage.addFriend(alice.getId(), bob.getId());
+        persistence.snapshotAll();
+        // Окно отображения больше снимка; файл обрезается до записанных байт
+        assertThat(Files.size(directory.resolve("users.snapshot"))).isLessThan(4096);
+
+        User carol = storage.add(user("carol"));
+        storage.addFriend(carol.getId(), alice.getId());
+        storage.addFriend(alice.getId(), carol.getId());
+        storage.removeFriend(alice.getId(), bob.getId());
+        persistence.close();
+
+        InMemoryUserStorage recovered = new InMemoryUserStorage(persistence("interval"));
+
+        assertThat(recovered.findAll()).extracting(User::getLogin).containsExactlyInAnyOrder("alice", "bob", "carol");
+        assertThat(recovered.getFriends(alice.getId())).extracting(User::getId).containsExactly(carol.getId());
+        assertThat(recovered.getFriends(carol.getId())).extracting(User::getId).containsExactly(alice.getId());
+        assertThat(recovered.getFriends(bob.getId())).isEmpty();
+        assertThat(walSegments()).hasSize(1);
+    }
+
+    @Test
+    public void shouldDropTornRecordAtTheEndOfLog() throws IOException {
+        MemoryPersistence persistence = persistence("always");
+        InMemoryFilmStorage storage = new InMemoryFilmStorage(persistence);
+        storage.add(film("Солярис"));
+        persistence.close();
+        Path segment = walSegments().findFirst().orElseThrow();
+        // Имитируем сбой посреди записи: заголовок обещает больше данных, чем есть в файле
+        Files.write(segment, new byte[]{0, 0, 0, 100, 1, 2, 3, 4, 1, 42}, StandardOpenOption.APPEND);
+        long sizeBefore = Files.size(segment);
+
+        InMemoryFilmStorage recovered = new InMemoryFilmStorage(persistence("always"));
+
+        assertThat(recovered.findAll()).extracting(Film::getName).containsExactly("Солярис");
+        assertThat(Files.size(segment)).isEqualTo(sizeBefore - 10);
+        recovered.add(film("Сталкер"));
+    }
+
+    /**
+     * Время восстановления на миллион записей: только из журнала и из снимка.
+     * Запуск: {@code mvn test -Pbenchmark}.
+     */
+    @Test
+    @Tag("benchmark")
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkRecoveryPerMillionRecords() {
+        int films = 100_000;
+        int likesPerFilm = 9;
+        MemoryPersistence persistence = persistence("never");
+        InMemoryFilmStorage storage = new InMemoryFilmStorage(persistence);
+        for (int i = 0; i < films; i++) {
+            Film film = storage.add(film("Фильм " + i));
+            for (int user = 0; user < likesPerFilm; user++) {
+                storage.addLike(film.getId(), user, LIKED_AT);
+            }
+        }
+        long records = (long) films * (likesPerFilm + 1);
+        persistence.close();
+
+        long started = System.nanoTime();
+        InMemoryFilmStorage fromLog = new InMemoryFilmStorage(persistence("never"));
+        double logMillis = (System.nanoTime() - started) / 1e6;
+        assertThat(fromLog.findAll()).hasSize(films);
+
+        MemoryPersistence snapshotting = persistence("never");
+        new InMemoryFilmStorage(snapshotting);
+        snapshotting.snapshotAll();
+        snapshotting.close();
+
+        started = System.nanoTime();
+        InMemoryFilmStorage fromSnapshot = new InMemoryFilmStorage(persistence("never"));
+        double snapshotMillis = (System.nanoTime() - started) / 1e6;
+        assertThat(fromSnapshot.getLikesCounts()).hasSize(films);
+
+        double perMillion = 1_000_000.0 / records;
+        log.info("Восстановление из журнала: {} мс на млн записей", Math.round(logMillis * perMillion));
+        log.info("Восстановление из снимка: {} мс на млн записей", Math.round(snapshotMillis * perMillion));
+    }
+
+    private MemoryPersistence persistence(String fsync) {
+        return new MemoryPersistence(true, directory.toString(), fsync, 20);
+    }
+
+    private Stream<Path> walSegments() {
+        try {
+            return Files.list(directory).filter(path -> path.toString().endsWith(".wal")).toList().stream();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Film film(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Описание");
+        film.setReleaseDate(LocalDate.of(1972, 3, 20));
+        film.setDuration(167);
+        film.setMpa(new Mpa(1, "G"));
+        film.addGenre(new Genre(2, "Драма"));
+        return film;
+    }
+
+    private static User user(String login) {
+        User user = new User();
+        user.setEmail(login + "@example.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+}
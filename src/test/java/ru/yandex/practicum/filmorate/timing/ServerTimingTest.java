@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.timing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:server-timing;DB_CLOSE_DELAY=-1",
+        "spring.sql.init.mode=always"
+})
+@DirtiesContext
+class ServerTimingTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    public void headerShouldBeAddedOnlyWhenRequested() throws Exception {
+        mockMvc.perform(get("/users"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(RequestTiming.HEADER));
+
+        mockMvc.perform(get("/users").header(ServerTimingFilter.DEBUG_HEADER, "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(RequestTiming.HEADER, allOf(
+                        containsString("app;dur="),
+                        containsString("db;dur="),
+                        containsString("statements"),
+                        containsString("serialization;dur="),
+                        containsString("total;dur="))));
+    }
+
+    @Test
+    public void validationTimeShouldBeReportedForRequestBody() throws Exception {
+        User user = new User();
+        user.setEmail("timing@mail.ru");
+        user.setLogin("timing");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+
+        mockMvc.perform(post("/users")
+                        .header(ServerTimingFilter.DEBUG_HEADER, "true")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(user)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.login").value("timing"))
+                .andExpect(header().string(RequestTiming.HEADER, containsString("validation;dur=")));
+    }
+}